@@ -0,0 +1,124 @@
+package com.outbrain.ob1k.benchmarks.concurrent;
+
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.Try;
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures the fan-in combinators (all/first/any) over growing numbers of futures.
+ *
+ * the "completed" variants combine futures that already hold a value, the "pending" variants register
+ * on promises first and complete them afterwards, which is the shape of a real scatter-gather.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class CombinerBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  int size;
+
+  private List<ComposableFuture<Integer>> completed;
+  private Map<Integer, ComposableFuture<Integer>> completedByKey;
+
+  private final ResultSink<List<Integer>> listSink = new ResultSink<>();
+  private final ResultSink<Map<Integer, Integer>> mapSink = new ResultSink<>();
+  private final ResultSink<Integer> valueSink = new ResultSink<>();
+
+  @Setup
+  public void setup() {
+    completed = new ArrayList<>(size);
+    completedByKey = new HashMap<>(size);
+    for (int i = 0; i < size; i++) {
+      final ComposableFuture<Integer> future = ComposableFutures.fromValue(i);
+      completed.add(future);
+      completedByKey.put(i, future);
+    }
+  }
+
+  private List<ComposablePromise<Integer>> promises() {
+    final List<ComposablePromise<Integer>> promises = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      promises.add(ComposableFutures.<Integer>newPromise());
+    }
+
+    return promises;
+  }
+
+  private static List<ComposableFuture<Integer>> futures(final List<ComposablePromise<Integer>> promises) {
+    final List<ComposableFuture<Integer>> futures = new ArrayList<>(promises.size());
+    for (final ComposablePromise<Integer> promise : promises) {
+      futures.add(promise.future());
+    }
+
+    return futures;
+  }
+
+  private static void complete(final List<ComposablePromise<Integer>> promises) {
+    int i = 0;
+    for (final ComposablePromise<Integer> promise : promises) {
+      promise.set(i++);
+    }
+  }
+
+  @Benchmark
+  public Try<List<Integer>> allCompleted() {
+    ComposableFutures.all(false, completed).consume(listSink);
+    return listSink.take();
+  }
+
+  @Benchmark
+  public Try<List<Integer>> allPending() {
+    final List<ComposablePromise<Integer>> promises = promises();
+    final ComposableFuture<List<Integer>> all = ComposableFutures.all(true, futures(promises));
+    complete(promises);
+    all.consume(listSink);
+    return listSink.take();
+  }
+
+  @Benchmark
+  public Try<Map<Integer, Integer>> firstHalfCompleted() {
+    ComposableFutures.first(completedByKey, size / 2).consume(mapSink);
+    return mapSink.take();
+  }
+
+  @Benchmark
+  public Try<Map<Integer, Integer>> firstHalfPending() {
+    final List<ComposablePromise<Integer>> promises = promises();
+    final Map<Integer, ComposableFuture<Integer>> byKey = new HashMap<>(size);
+    for (int i = 0; i < size; i++) {
+      byKey.put(i, promises.get(i).future());
+    }
+
+    final ComposableFuture<Map<Integer, Integer>> first = ComposableFutures.first(byKey, size / 2);
+    complete(promises);
+    first.consume(mapSink);
+    return mapSink.take();
+  }
+
+  @Benchmark
+  public Try<Integer> anyCompleted() {
+    ComposableFutures.any(completed).consume(valueSink);
+    return valueSink.take();
+  }
+
+  @Benchmark
+  public Try<Integer> anyPending() {
+    final List<ComposablePromise<Integer>> promises = promises();
+    final ComposableFuture<Integer> any = ComposableFutures.any(futures(promises));
+    complete(promises);
+    any.consume(valueSink);
+    return valueSink.take();
+  }
+}
@@ -0,0 +1,55 @@
+package com.outbrain.ob1k.benchmarks.concurrent;
+
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.Try;
+import com.outbrain.ob1k.concurrent.eager.EagerComposableFuture;
+import com.outbrain.ob1k.concurrent.handlers.SuccessHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * compares already completed eager futures with the immutable completed futures returned by
+ * ComposableFutures.fromValue, the way cache hits and filters return them: create, continue once and consume.
+ *
+ * run with -prof gc to see the allocation rate of each variant.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class CompletedFutureBenchmark {
+
+  private static final SuccessHandler<Integer, Boolean> IS_EVEN = new SuccessHandler<Integer, Boolean>() {
+    @Override
+    public Boolean handle(final Integer result) {
+      return (result & 1) == 0;
+    }
+  };
+
+  private final ResultSink<Boolean> sink = new ResultSink<>();
+  private int counter;
+
+  @Benchmark
+  public Try<Boolean> eager() {
+    return continueAndConsume(EagerComposableFuture.fromValue(counter++));
+  }
+
+  @Benchmark
+  public Try<Boolean> completed() {
+    return continueAndConsume(ComposableFutures.fromValue(counter++));
+  }
+
+  @Benchmark
+  public Object completedNull() {
+    return ComposableFutures.fromNull();
+  }
+
+  private Try<Boolean> continueAndConsume(final ComposableFuture<Integer> future) {
+    future.continueOnSuccess(IS_EVEN).consume(sink);
+    return sink.take();
+  }
+}
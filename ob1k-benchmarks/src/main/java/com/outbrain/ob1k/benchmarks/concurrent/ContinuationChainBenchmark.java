@@ -0,0 +1,144 @@
+package com.outbrain.ob1k.benchmarks.concurrent;
+
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.Try;
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import com.outbrain.ob1k.concurrent.handlers.FutureResultHandler;
+import com.outbrain.ob1k.concurrent.handlers.FutureSuccessHandler;
+import com.outbrain.ob1k.concurrent.handlers.ResultHandler;
+import com.outbrain.ob1k.concurrent.handlers.SuccessHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures the cost of building and running continuation chains of different depths.
+ *
+ * "completed" chains start from a future that already holds a value so every continuation runs inline
+ * as it is registered, "pending" chains are fully registered on a promise before the value is set
+ * so the whole chain is executed from the handlers list.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ContinuationChainBenchmark {
+
+  private static final SuccessHandler<Integer, Integer> INC = new SuccessHandler<Integer, Integer>() {
+    @Override
+    public Integer handle(final Integer result) {
+      return result + 1;
+    }
+  };
+
+  private static final FutureSuccessHandler<Integer, Integer> FUTURE_INC = new FutureSuccessHandler<Integer, Integer>() {
+    @Override
+    public ComposableFuture<Integer> handle(final Integer result) {
+      return ComposableFutures.fromValue(result + 1);
+    }
+  };
+
+  private static final ResultHandler<Integer, Integer> TRY_INC = new ResultHandler<Integer, Integer>() {
+    @Override
+    public Integer handle(final Try<Integer> result) {
+      return result.getValue() + 1;
+    }
+  };
+
+  private static final FutureResultHandler<Integer, Integer> FUTURE_TRY_INC = new FutureResultHandler<Integer, Integer>() {
+    @Override
+    public ComposableFuture<Integer> handle(final Try<Integer> result) {
+      return ComposableFutures.fromValue(result.getValue() + 1);
+    }
+  };
+
+  @Param({"1", "10", "100", "1000"})
+  int depth;
+
+  private final ResultSink<Integer> sink = new ResultSink<>();
+
+  /**
+   * lazy futures have no promise side, so only the completed variants are run against both flavours.
+   */
+  @State(Scope.Thread)
+  public static class Origin {
+    @Param({"eager", "lazy"})
+    String mode;
+
+    ComposableFuture<Integer> start() {
+      return "lazy".equals(mode) ? ComposableFutures.fromValueLazy(0) : ComposableFutures.fromValueEager(0);
+    }
+  }
+
+  private Try<Integer> run(final ComposableFuture<Integer> chain) {
+    chain.consume(sink);
+    return sink.take();
+  }
+
+  @Benchmark
+  public Try<Integer> completedOnSuccess(final Origin origin) {
+    ComposableFuture<Integer> chain = origin.start();
+    for (int i = 0; i < depth; i++) {
+      chain = chain.continueOnSuccess(INC);
+    }
+
+    return run(chain);
+  }
+
+  @Benchmark
+  public Try<Integer> completedOnSuccessFuture(final Origin origin) {
+    ComposableFuture<Integer> chain = origin.start();
+    for (int i = 0; i < depth; i++) {
+      chain = chain.continueOnSuccess(FUTURE_INC);
+    }
+
+    return run(chain);
+  }
+
+  @Benchmark
+  public Try<Integer> completedWith(final Origin origin) {
+    ComposableFuture<Integer> chain = origin.start();
+    for (int i = 0; i < depth; i++) {
+      chain = chain.continueWith(TRY_INC);
+    }
+
+    return run(chain);
+  }
+
+  @Benchmark
+  public Try<Integer> completedWithFuture(final Origin origin) {
+    ComposableFuture<Integer> chain = origin.start();
+    for (int i = 0; i < depth; i++) {
+      chain = chain.continueWith(FUTURE_TRY_INC);
+    }
+
+    return run(chain);
+  }
+
+  @Benchmark
+  public Try<Integer> pendingOnSuccess() {
+    final ComposablePromise<Integer> promise = ComposableFutures.newPromise();
+    ComposableFuture<Integer> chain = promise.future();
+    for (int i = 0; i < depth; i++) {
+      chain = chain.continueOnSuccess(INC);
+    }
+
+    promise.set(0);
+    return run(chain);
+  }
+
+  @Benchmark
+  public Try<Integer> pendingWith() {
+    final ComposablePromise<Integer> promise = ComposableFutures.newPromise();
+    ComposableFuture<Integer> chain = promise.future();
+    for (int i = 0; i < depth; i++) {
+      chain = chain.continueWith(TRY_INC);
+    }
+
+    promise.set(0);
+    return run(chain);
+  }
+}
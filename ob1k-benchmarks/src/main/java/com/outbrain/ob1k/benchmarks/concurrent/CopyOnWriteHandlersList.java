@@ -0,0 +1,61 @@
+package com.outbrain.ob1k.benchmarks.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * the original copy-on-write handlers list, kept as a baseline for {@link HandlersListBenchmark}.
+ * every registration copies the whole list, which makes fan-in patterns quadratic.
+ */
+final class CopyOnWriteHandlersList {
+  private final AtomicReference<List<Runnable>> handlers;
+
+  CopyOnWriteHandlersList() {
+    this.handlers = new AtomicReference<List<Runnable>>(new ArrayList<Runnable>());
+  }
+
+  void addHandler(final Runnable handler, final Executor executor) {
+    while (true) {
+      final List<Runnable> list = handlers.get();
+      if (list == null) {
+        if (executor != null) {
+          executor.execute(handler);
+        } else {
+          handler.run();
+        }
+        return;
+      }
+
+      final List<Runnable> newList = new ArrayList<>(list);
+      newList.add(handler);
+
+      final boolean success = handlers.compareAndSet(list, newList);
+      if (success) {
+        return;
+      }
+    }
+  }
+
+  void execute(final Executor executor) {
+    while (true) {
+      final List<Runnable> list = handlers.get();
+      if (list == null) {
+        return;
+      }
+
+      final boolean success = handlers.compareAndSet(list, null);
+      if (success) {
+        for (final Runnable task : list) {
+          if (executor != null) {
+            executor.execute(task);
+          } else {
+            task.run();
+          }
+        }
+        return;
+      }
+    }
+  }
+}
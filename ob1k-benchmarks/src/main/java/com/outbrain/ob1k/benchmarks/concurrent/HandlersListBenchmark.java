@@ -0,0 +1,93 @@
+package com.outbrain.ob1k.benchmarks.concurrent;
+
+import com.outbrain.ob1k.concurrent.eager.HandlersList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * compares the linked handlers list used by eager futures with the original copy-on-write list.
+ *
+ * each invocation registers a number of handlers on a fresh list, executes it and then registers
+ * one more handler on the executed list, which is the full life cycle of a promise.
+ * the "contended" group does the registrations from several threads on a shared list.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class HandlersListBenchmark {
+
+  private static final Runnable NOOP = new Runnable() {
+    @Override
+    public void run() {
+    }
+  };
+
+  @State(Scope.Thread)
+  public static class Local {
+    @Param({"1", "2", "4", "16", "256"})
+    int handlers;
+  }
+
+  @Benchmark
+  public Object linked(final Local local) {
+    final HandlersList list = new HandlersList();
+    for (int i = 0; i < local.handlers; i++) {
+      list.addHandler(NOOP, null);
+    }
+
+    list.execute(null);
+    list.addHandler(NOOP, null);
+    return list;
+  }
+
+  @Benchmark
+  public Object copyOnWrite(final Local local) {
+    final CopyOnWriteHandlersList list = new CopyOnWriteHandlersList();
+    for (int i = 0; i < local.handlers; i++) {
+      list.addHandler(NOOP, null);
+    }
+
+    list.execute(null);
+    list.addHandler(NOOP, null);
+    return list;
+  }
+
+  @State(Scope.Group)
+  public static class Shared {
+    @Param({"16", "256"})
+    int batch;
+
+    volatile HandlersList linked = new HandlersList();
+    volatile CopyOnWriteHandlersList copyOnWrite = new CopyOnWriteHandlersList();
+  }
+
+  @Benchmark
+  @Group("contendedLinked")
+  @GroupThreads(4)
+  public void contendedLinked(final Shared shared) {
+    final HandlersList list = shared.linked;
+    for (int i = 0; i < shared.batch; i++) {
+      list.addHandler(NOOP, null);
+    }
+
+    // whoever gets here first resets the list, late registrations just run inline.
+    list.execute(null);
+    shared.linked = new HandlersList();
+  }
+
+  @Benchmark
+  @Group("contendedCopyOnWrite")
+  @GroupThreads(4)
+  public void contendedCopyOnWrite(final Shared shared) {
+    final CopyOnWriteHandlersList list = shared.copyOnWrite;
+    for (int i = 0; i < shared.batch; i++) {
+      list.addHandler(NOOP, null);
+    }
+
+    list.execute(null);
+    shared.copyOnWrite = new CopyOnWriteHandlersList();
+  }
+}
@@ -0,0 +1,75 @@
+package com.outbrain.ob1k.benchmarks.concurrent;
+
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.Try;
+import com.outbrain.ob1k.concurrent.handlers.SuccessHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures turning lazy chains into eager futures and re-consuming the result.
+ *
+ * a lazy future re-runs its producer on every consumption while the materialized one is served from
+ * the stored value, so the "consumers" parameter shows where materializing starts to pay off.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class MaterializeBenchmark {
+
+  private static final SuccessHandler<Integer, Integer> INC = new SuccessHandler<Integer, Integer>() {
+    @Override
+    public Integer handle(final Integer result) {
+      return result + 1;
+    }
+  };
+
+  @Param({"1", "10", "100"})
+  int depth;
+
+  @Param({"1", "4"})
+  int consumers;
+
+  private ComposableFuture<Integer> lazyChain;
+  private final ResultSink<Integer> sink = new ResultSink<>();
+
+  @Setup
+  public void setup() {
+    ComposableFuture<Integer> chain = ComposableFutures.fromValueLazy(0);
+    for (int i = 0; i < depth; i++) {
+      chain = chain.continueOnSuccess(INC);
+    }
+
+    lazyChain = chain;
+  }
+
+  private Try<Integer> consumeAll(final ComposableFuture<Integer> future) {
+    Try<Integer> last = null;
+    for (int i = 0; i < consumers; i++) {
+      future.consume(sink);
+      last = sink.take();
+    }
+
+    return last;
+  }
+
+  @Benchmark
+  public Try<Integer> lazy() {
+    return consumeAll(lazyChain);
+  }
+
+  @Benchmark
+  public Try<Integer> materialized() {
+    return consumeAll(lazyChain.materialize());
+  }
+
+  @Benchmark
+  public Try<Integer> eagerIdentity() {
+    return consumeAll(ComposableFutures.fromValue(depth).materialize());
+  }
+}
@@ -0,0 +1,103 @@
+package com.outbrain.ob1k.benchmarks.concurrent;
+
+import com.outbrain.ob1k.concurrent.Consumer;
+import com.outbrain.ob1k.concurrent.Try;
+import com.outbrain.ob1k.concurrent.eager.EagerComposableFuture;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * measures contention between completing a promise and registering consumers on it.
+ *
+ * the "race" group has one thread that keeps completing the current promise and replacing it with a fresh one
+ * while the rest of the group registers consumers on whatever promise is current, so registrations land both
+ * before and after completion.
+ * the "roundTrip" benchmark has each thread create, consume and complete its own promises and shows how the
+ * uncontended path scales with the number of threads.
+ *
+ * use the main method to sweep 1 to 64 threads, or pass -tg 1,N / -t N to the JMH command line.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class PromiseRaceBenchmark {
+
+  private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+  private static final Consumer<Integer> NOOP = new Consumer<Integer>() {
+    @Override
+    public void consume(final Try<Integer> result) {
+    }
+  };
+
+  @State(Scope.Group)
+  public static class Shared {
+    final AtomicReference<EagerComposableFuture<Integer>> current = new AtomicReference<>(new EagerComposableFuture<Integer>());
+
+    @TearDown
+    public void tearDown() {
+      current.get().set(0);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Local {
+    @Param({"1", "4"})
+    int consumers;
+  }
+
+  @Benchmark
+  @Group("race")
+  @GroupThreads(1)
+  public void complete(final Shared shared) {
+    shared.current.getAndSet(new EagerComposableFuture<Integer>()).set(1);
+  }
+
+  @Benchmark
+  @Group("race")
+  @GroupThreads(3)
+  public void register(final Shared shared) {
+    shared.current.get().consume(NOOP);
+  }
+
+  @Benchmark
+  public void roundTrip(final Local local, final Blackhole blackhole) {
+    final EagerComposableFuture<Integer> promise = new EagerComposableFuture<>();
+    for (int i = 0; i < local.consumers; i++) {
+      promise.consume(NOOP);
+    }
+
+    promise.set(1);
+    blackhole.consume(promise);
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    for (final int threads : THREADS) {
+      // one completing thread and the rest registering, the order follows the method names in the group.
+      final Options race = new OptionsBuilder().
+          include(PromiseRaceBenchmark.class.getName() + ".race").
+          threadGroups(1, Math.max(1, threads - 1)).
+          build();
+
+      new Runner(race).run();
+    }
+
+    for (final int threads : THREADS) {
+      final Options roundTrip = new OptionsBuilder().
+          include(PromiseRaceBenchmark.class.getName() + ".roundTrip").
+          threads(threads).
+          build();
+
+      new Runner(roundTrip).run();
+    }
+  }
+}
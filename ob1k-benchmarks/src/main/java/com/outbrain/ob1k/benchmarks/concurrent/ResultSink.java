@@ -0,0 +1,29 @@
+package com.outbrain.ob1k.benchmarks.concurrent;
+
+import com.outbrain.ob1k.concurrent.Consumer;
+import com.outbrain.ob1k.concurrent.Try;
+
+/**
+ * a reusable consumer that keeps the last result it was handed.
+ *
+ * the benchmarks only deal with futures that complete on the calling thread, so reading the result
+ * right after consume() returns is safe and keeps CountDownLatch based get() out of the measurements.
+ */
+final class ResultSink<T> implements Consumer<T> {
+  private Try<T> result;
+
+  @Override
+  public void consume(final Try<T> result) {
+    this.result = result;
+  }
+
+  Try<T> take() {
+    final Try<T> current = result;
+    result = null;
+    if (current == null) {
+      throw new IllegalStateException("future did not complete synchronously");
+    }
+
+    return current;
+  }
+}
@@ -0,0 +1,87 @@
+package com.outbrain.ob1k.benchmarks.concurrent;
+
+import com.outbrain.ob1k.concurrent.ConcurrentSlidingWindow;
+import com.outbrain.ob1k.concurrent.LongSlidingWindow;
+import com.outbrain.ob1k.concurrent.RingBufferSlidingWindow;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * compares the linked deque sliding window with the ring buffer ones when recording latency samples.
+ *
+ * run with -t to see how offers behave under contention and with -prof gc to see the allocation per offer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SlidingWindowBenchmark {
+
+  private static final int SIZE = 1024;
+
+  private final ConcurrentSlidingWindow<Long> deque = new ConcurrentSlidingWindow<>(SIZE);
+  private final RingBufferSlidingWindow<Long> ring = new RingBufferSlidingWindow<>(SIZE);
+  private final LongSlidingWindow longs = new LongSlidingWindow(SIZE);
+
+  @Setup
+  public void fill() {
+    for (long i = 0; i < SIZE; i++) {
+      deque.offer(i);
+      ring.offer(i);
+      longs.offer(i);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Sample {
+    long value;
+  }
+
+  @Benchmark
+  public void offerDeque(final Sample sample) {
+    deque.offer(sample.value++);
+  }
+
+  @Benchmark
+  public void offerRingBuffer(final Sample sample) {
+    ring.offer(sample.value++);
+  }
+
+  @Benchmark
+  public void offerLongs(final Sample sample) {
+    longs.offer(sample.value++);
+  }
+
+  @Benchmark
+  public long iterateDeque() {
+    long sum = 0;
+    for (final Long value : deque) {
+      sum += value;
+    }
+
+    return sum;
+  }
+
+  @Benchmark
+  public long iterateRingBuffer() {
+    long sum = 0;
+    for (final Long value : ring) {
+      sum += value;
+    }
+
+    return sum;
+  }
+
+  @Benchmark
+  public long iterateLongs() {
+    long sum = 0;
+    for (final long value : longs.snapshot()) {
+      sum += value;
+    }
+
+    return sum;
+  }
+}
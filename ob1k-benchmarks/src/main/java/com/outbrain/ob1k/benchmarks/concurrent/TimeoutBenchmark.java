@@ -0,0 +1,67 @@
+package com.outbrain.ob1k.benchmarks.concurrent;
+
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.HashedWheelScheduler;
+import com.outbrain.ob1k.concurrent.Scheduler;
+import com.outbrain.ob1k.concurrent.ThreadPoolBasedScheduler;
+import com.outbrain.ob1k.concurrent.Try;
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures the overhead withTimeout adds to a future that completes well before its deadline,
+ * i.e. the schedule + cancel round trip every guarded RPC pays.
+ *
+ * run with -t to see how each scheduler behaves when many threads arm timers concurrently.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class TimeoutBenchmark {
+
+  private static final long TIMEOUT_MS = 1000;
+
+  // shared by all the benchmark threads, like the default scheduler is.
+  @State(Scope.Benchmark)
+  public static class Schedulers {
+    @Param({"threadPool", "hashedWheel"})
+    String type;
+
+    Scheduler scheduler;
+
+    @Setup
+    public void setup() {
+      scheduler = "hashedWheel".equals(type) ?
+          new HashedWheelScheduler(10, TimeUnit.MILLISECONDS, 512, "bench-wheel") :
+          new ThreadPoolBasedScheduler(1, "bench-scheduler");
+    }
+
+    @TearDown
+    public void tearDown() {
+      scheduler.shutdown();
+    }
+  }
+
+  private final ResultSink<Integer> sink = new ResultSink<>();
+
+  @Benchmark
+  public Try<Integer> completed(final Schedulers schedulers) {
+    ComposableFutures.fromValue(1).withTimeout(schedulers.scheduler, TIMEOUT_MS, TimeUnit.MILLISECONDS).consume(sink);
+    return sink.take();
+  }
+
+  @Benchmark
+  public Try<Integer> pending(final Schedulers schedulers) {
+    final ComposablePromise<Integer> promise = ComposableFutures.newPromise();
+    final ComposableFuture<Integer> guarded = promise.future().withTimeout(schedulers.scheduler, TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    promise.set(1);
+    guarded.consume(sink);
+    return sink.take();
+  }
+}
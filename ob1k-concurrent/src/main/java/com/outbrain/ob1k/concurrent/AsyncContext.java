@@ -0,0 +1,264 @@
+package com.outbrain.ob1k.concurrent;
+
+import org.slf4j.MDC;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * an immutable set of request scoped values(trace ids, MDC entries, deadlines...) that follows an async flow.
+ *
+ * the context that is current on the thread registering a continuation on a future is captured and attached
+ * again while the continuation runs, on whatever thread that happens. so values put in the context at the
+ * beginning of a request are visible along all of its continuations without threading them through parameters.
+ *
+ * a context is modified by creating a new one and attaching it:
+ * <pre>
+ *   final AsyncContext previous = AsyncContext.current().with(TRACE_ID, id).attach();
+ *   try {
+ *     ...
+ *   } finally {
+ *     AsyncContext.restore(previous);
+ *   }
+ * </pre>
+ *
+ * the slf4j MDC is bridged on demand: a snapshot of it kept under {@link #MDC_CONTEXT}(see {@link #withMdc()}) is
+ * installed as the thread's MDC while the context is attached, so log lines written by the continuations carry the
+ * entries of the request. once a context with a snapshot was attached, the MDC of the thread belongs to the contexts
+ * until it is restored, and contexts without one clear it. contexts that never had a snapshot leave the MDC alone.
+ *
+ * contexts are expected to hold a handful of values, so they are kept in small arrays and copied on write.
+ * capturing and attaching the empty context costs a thread local lookup and no allocation.
+ */
+public final class AsyncContext {
+  /**
+   * an immutable snapshot of the slf4j MDC, installed as the MDC of the thread the context is attached to.
+   */
+  public static final Key<Map<String, String>> MDC_CONTEXT = Key.named("mdc");
+
+  public static final AsyncContext EMPTY = new AsyncContext(new Key<?>[0], new Object[0]);
+
+  private static final ThreadLocal<Holder> CURRENT = new ThreadLocal<Holder>() {
+    @Override
+    protected Holder initialValue() {
+      return new Holder();
+    }
+  };
+
+  private final Key<?>[] keys;
+  private final Object[] values;
+  // the value of MDC_CONTEXT, kept aside so attaching doesn't look it up.
+  private final Map<String, String> mdc;
+
+  private AsyncContext(final Key<?>[] keys, final Object[] values) {
+    this.keys = keys;
+    this.values = values;
+    this.mdc = get(MDC_CONTEXT);
+  }
+
+  /**
+   * @return the context attached to the current thread, never null.
+   */
+  public static AsyncContext current() {
+    return CURRENT.get().context;
+  }
+
+  /**
+   * attaches this context to the current thread.
+   *
+   * @return the previously attached context, to be passed to {@link #restore(AsyncContext)} when done.
+   */
+  public AsyncContext attach() {
+    final Holder holder = CURRENT.get();
+    final AsyncContext previous = holder.context;
+    holder.context = this;
+    switchMdc(previous, this);
+    return previous;
+  }
+
+  /**
+   * attaches back the context that was current before {@link #attach()} was called.
+   */
+  public static void restore(final AsyncContext previous) {
+    final Holder holder = CURRENT.get();
+    final AsyncContext current = holder.context;
+    holder.context = previous;
+    switchMdc(current, previous);
+  }
+
+  /**
+   * @return a new context holding a snapshot of the current thread's MDC, or without one if the MDC is empty.
+   */
+  public AsyncContext withMdc() {
+    // a raw map in the slf4j api, holding nothing but strings.
+    final Map<?, ?> mdc = MDC.getCopyOfContextMap();
+    if (mdc == null || mdc.isEmpty()) {
+      return without(MDC_CONTEXT);
+    }
+
+    final Map<String, String> snapshot = new HashMap<>(mdc.size());
+    for (final Map.Entry<?, ?> entry : mdc.entrySet()) {
+      snapshot.put((String) entry.getKey(), (String) entry.getValue());
+    }
+
+    return with(MDC_CONTEXT, Collections.unmodifiableMap(snapshot));
+  }
+
+  private static void switchMdc(final AsyncContext from, final AsyncContext to) {
+    if (from.mdc == to.mdc) {
+      return;
+    }
+
+    if (to.mdc == null) {
+      MDC.clear();
+    } else {
+      MDC.setContextMap(to.mdc);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public <T> T get(final Key<T> key) {
+    final int index = indexOf(key);
+    return index < 0 ? null : (T) values[index];
+  }
+
+  /**
+   * @return a new context with the value set for the key, a null value removes the key.
+   */
+  public <T> AsyncContext with(final Key<T> key, final T value) {
+    if (value == null) {
+      return without(key);
+    }
+
+    final int index = indexOf(key);
+    if (index >= 0) {
+      if (values[index] == value) {
+        return this;
+      }
+
+      final Object[] newValues = values.clone();
+      newValues[index] = value;
+      return new AsyncContext(keys, newValues);
+    }
+
+    final Key<?>[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+    final Object[] newValues = Arrays.copyOf(values, values.length + 1);
+    newKeys[keys.length] = key;
+    newValues[values.length] = value;
+    return new AsyncContext(newKeys, newValues);
+  }
+
+  /**
+   * @return a new context without the key.
+   */
+  public AsyncContext without(final Key<?> key) {
+    final int index = indexOf(key);
+    if (index < 0) {
+      return this;
+    }
+
+    if (keys.length == 1) {
+      return EMPTY;
+    }
+
+    final Key<?>[] newKeys = new Key<?>[keys.length - 1];
+    final Object[] newValues = new Object[values.length - 1];
+    System.arraycopy(keys, 0, newKeys, 0, index);
+    System.arraycopy(values, 0, newValues, 0, index);
+    System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+    System.arraycopy(values, index + 1, newValues, index, values.length - index - 1);
+    return new AsyncContext(newKeys, newValues);
+  }
+
+  public boolean isEmpty() {
+    return keys.length == 0;
+  }
+
+  /**
+   * runs the task with this context attached.
+   */
+  public void run(final Runnable task) {
+    final AsyncContext previous = attach();
+    try {
+      task.run();
+    } finally {
+      restore(previous);
+    }
+  }
+
+  /**
+   * calls the task with this context attached.
+   */
+  public <T> T call(final Callable<T> task) throws Exception {
+    final AsyncContext previous = attach();
+    try {
+      return task.call();
+    } finally {
+      restore(previous);
+    }
+  }
+
+  /**
+   * binds a task to this context, for handing work over to executors and callbacks outside of the futures.
+   *
+   * @return a task that runs with this context attached.
+   */
+  public Runnable wrap(final Runnable task) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        AsyncContext.this.run(task);
+      }
+    };
+  }
+
+  private int indexOf(final Key<?> key) {
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] == key) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder builder = new StringBuilder("AsyncContext{");
+    for (int i = 0; i < keys.length; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder.append(keys[i]).append('=').append(values[i]);
+    }
+
+    return builder.append('}').toString();
+  }
+
+  /**
+   * identifies a value in the context. keys are compared by identity, so they are usually kept in constants.
+   */
+  public static final class Key<T> {
+    private final String name;
+
+    private Key(final String name) {
+      this.name = name;
+    }
+
+    public static <T> Key<T> named(final String name) {
+      return new Key<>(name);
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  private static final class Holder {
+    AsyncContext context = EMPTY;
+  }
+}
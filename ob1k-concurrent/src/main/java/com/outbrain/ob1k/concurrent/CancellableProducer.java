@@ -0,0 +1,12 @@
+package com.outbrain.ob1k.concurrent;
+
+/**
+ * a producer whose computation can be cancelled before it delivers its value,
+ * e.g. a remote call that can release its connection once nobody waits for the response.
+ *
+ * the returned token is only cancelled if the value is no longer needed, i.e. any value delivered
+ * to the consumer after the token was cancelled is dropped.
+ */
+public interface CancellableProducer<T> {
+  CancellationToken produce(Consumer<T> consumer);
+}
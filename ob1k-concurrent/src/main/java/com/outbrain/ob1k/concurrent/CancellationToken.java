@@ -2,6 +2,9 @@ package com.outbrain.ob1k.concurrent;
 
 /**
  * Created by hyadid on 6/23/15.
+ *
+ * a handle for cancelling an ongoing operation, e.g. a scheduled task, a remote call or a future.
+ * cancelling an operation that already completed has no effect and returns false.
  */
 public interface CancellationToken {
   boolean cancel(final boolean mayInterrupt);
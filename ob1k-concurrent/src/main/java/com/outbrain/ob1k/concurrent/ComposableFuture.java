@@ -21,13 +21,19 @@ import java.util.concurrent.TimeoutException;
  * <p>Futures can be activated by calling the consumed method that activates the future(in the case of a lazy one)
  * or just "waits"(using a callback) for the result(in case of an eager one)</p>
  *
+ * <p>Futures can be cancelled when their result is no longer needed. cancelling an eager future fails it with
+ * a CancellationException and cancels the computation it owns: its producer, or the future returned by the handler
+ * of a continuation. the future it was continued from is cancelled too once none of the futures continued from it
+ * wait for it anymore, so a future shared by several callers keeps running as long as one of them needs it.
+ * lazy futures hold no computation of their own and can't be cancelled.</p>
+ *
  * <p>For testing purposes or for usage inside a blocking context, the future result can be returned in a blocking manner
  * by calling the get method. however, in a non-blocking asynchronous environment such as Ob1k <b>it should never be used.</b></p>
  *
  * @author aronen
  * @since 6/6/13
  */
-public interface ComposableFuture<T> {
+public interface ComposableFuture<T> extends CancellationToken {
   /**
    * Continues a future with a handler that will be called whether the future has resulted in a successful value or an error.
    *
@@ -88,6 +94,9 @@ public interface ComposableFuture<T> {
    * consumes the value(or error) of the future into a consumer.
    * if the future is lazy the value will be reproduced on each consumption.
    * if the future is eager the consumer will be served from the cached result.
+   * a consumer only observes the result, it doesn't keep the future running the way a continuation does: once the
+   * futures depending on it let go of it(see {@link com.outbrain.ob1k.concurrent.eager.EagerComposableFuture#dependencyOn}),
+   * it is cancelled even if consumers or callers blocked in get() are still waiting, and they get the CancellationException.
    *
    * @param consumer the consumer.
    */
@@ -132,6 +141,25 @@ public interface ComposableFuture<T> {
   ComposableFuture<T> withTimeout(long duration, final TimeUnit unit);
   ComposableFuture<T> withTimeout(final Scheduler scheduler, final long timeout, final TimeUnit unit);
 
+  /**
+   * caps the max time for producing a value(or error) for this future, like {@link #withTimeout(long, TimeUnit)}.
+   * when cancelOnTimeout is set, the original future is cancelled once the time is up, and cancelling the returned
+   * future cancels it too, whoever else waits for it. only set it if the caller owns the original future.
+   * @param duration max wait time for a result before producing a timeout
+   * @param unit the duration timeout.
+   * futures that can't be cancelled ignore it.
+   * @param cancelOnTimeout whether the original future is cancelled along with the returned one.
+   * @return the future with a caped time.
+   */
+  default ComposableFuture<T> withTimeout(final long duration, final TimeUnit unit, final boolean cancelOnTimeout) {
+    return withTimeout(duration, unit);
+  }
+
+  default ComposableFuture<T> withTimeout(final Scheduler scheduler, final long timeout, final TimeUnit unit,
+                                          final String taskDescription, final boolean cancelOnTimeout) {
+    return withTimeout(scheduler, timeout, unit, taskDescription);
+  }
+
   /**
    * caps the max time for producing a value(or error) for this future.
    * the returned future will return the original result if available within the specified time or a TimeoutException.
@@ -144,5 +172,31 @@ public interface ComposableFuture<T> {
   ComposableFuture<T> withTimeout(long duration, final TimeUnit unit, final String taskDescription);
   ComposableFuture<T> withTimeout(final Scheduler scheduler, final long timeout, final TimeUnit unit, final String taskDescription);
 
+  /**
+   * caps the time for producing a value(or error) for this future by an absolute deadline rather than a duration,
+   * so the whole chain of calls made for a request shares one budget.
+   * the returned future fails with a TimeoutException once the deadline passes.
+   * @param deadlineNanoTime the deadline, in {@link System#nanoTime()} terms.
+   * @return the future with a caped time.
+   * @see Deadline
+   */
+  default ComposableFuture<T> withDeadline(final long deadlineNanoTime) {
+    return withTimeout(Math.max(0, deadlineNanoTime - System.nanoTime()), TimeUnit.NANOSECONDS, "deadline");
+  }
+
   <R> ComposableFuture<R> transform(final Function<? super T, ? extends R> function);
+
+  /**
+   * cancels the computation of this future if it is not completed yet.
+   * the future fails with a CancellationException and the cancellation propagates to the producer of this future,
+   * or to the future returned by the handler that continued it. the future it was continued from is cancelled once
+   * no other future continued from it waits for it.
+   *
+   * @param mayInterrupt whether the producers may interrupt a thread that is running the computation.
+   * @return true if the future was cancelled, false if it was already completed or can't be cancelled.
+   */
+  @Override
+  default boolean cancel(final boolean mayInterrupt) {
+    return false;
+  }
 }
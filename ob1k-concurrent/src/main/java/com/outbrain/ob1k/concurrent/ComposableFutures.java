@@ -3,15 +3,25 @@ package com.outbrain.ob1k.concurrent;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.outbrain.ob1k.concurrent.circuitbreaker.CircuitBreaker;
 import com.outbrain.ob1k.concurrent.combiners.*;
 import com.outbrain.ob1k.concurrent.config.Configuration;
+import com.outbrain.ob1k.concurrent.eager.CompletedComposableFuture;
 import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
 import com.outbrain.ob1k.concurrent.eager.EagerComposableFuture;
 import com.outbrain.ob1k.concurrent.handlers.*;
+import com.outbrain.ob1k.concurrent.hedge.HedgePolicy;
 import com.outbrain.ob1k.concurrent.lazy.LazyComposableFuture;
+import com.outbrain.ob1k.concurrent.limiter.FutureLimiter;
+import com.outbrain.ob1k.concurrent.monitor.InstrumentedExecutorService;
+import com.outbrain.ob1k.concurrent.monitor.InstrumentedScheduler;
+import com.outbrain.ob1k.concurrent.monitor.TaskStats;
+import com.outbrain.ob1k.concurrent.retry.RetryPolicy;
 import com.outbrain.ob1k.concurrent.stream.FutureProviderToStreamHandler;
+import com.outbrain.ob1k.concurrent.stream.MapAsyncOperator;
+import com.outbrain.ob1k.concurrent.stream.PullingFutureStreamHandler;
 import rx.Observable;
-import rx.Subscriber;
 import rx.subjects.ReplaySubject;
 
 import java.util.*;
@@ -29,10 +39,18 @@ public class ComposableFutures {
     }
 
     private static class ExecutorServiceHolder {
-        private static final ExecutorService INSTANCE =
-            createExecutor(Configuration.getExecutorCoreSize(), Configuration.getExecutorMaxSize());
+        private static final ExecutorService INSTANCE = instrument(createExecutor(Configuration.getExecutorType(),
+            Configuration.getExecutorCoreSize(), Configuration.getExecutorMaxSize()));
 
-        private static ExecutorService createExecutor(final int coreSize, final int maxSize) {
+        private static ExecutorService createExecutor(final String type, final int coreSize, final int maxSize) {
+            if ("virtualThreads".equals(type) && VirtualThreads.isSupported()) {
+                return VirtualThreads.newVirtualThreadPerTaskExecutor("ob1k-main");
+            }
+
+            return createThreadPool(coreSize, maxSize);
+        }
+
+        private static ExecutorService createThreadPool(final int coreSize, final int maxSize) {
             final ThreadPoolExecutor threadPool = new ThreadPoolExecutor(coreSize, maxSize,
                 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
               new PrefixBasedThreadFactory("ob1k-main"));
@@ -42,11 +60,36 @@ public class ComposableFutures {
         }
     }
 
+    private static class BlockingExecutorServiceHolder {
+        // blocking tasks get a virtual thread each when possible, otherwise they share the main executor.
+        private static final ExecutorService INSTANCE = VirtualThreads.isSupported() ?
+            instrument(VirtualThreads.newVirtualThreadPerTaskExecutor("ob1k-blocking")) : ExecutorServiceHolder.INSTANCE;
+    }
+
     private static class SchedulerServiceHolder {
-        private static final Scheduler INSTANCE =
-            new ThreadPoolBasedScheduler(Configuration.getSchedulerCoreSize(),
-              new PrefixBasedThreadFactory("ob1k-scheduler-service").withDaemonThreads());
+        private static final Scheduler INSTANCE = instrument(createScheduler(Configuration.getSchedulerType()));
+
+        private static Scheduler createScheduler(final String type) {
+            final PrefixBasedThreadFactory threadFactory =
+                new PrefixBasedThreadFactory("ob1k-scheduler-service").withDaemonThreads();
+
+            if ("hashedWheel".equals(type)) {
+                return new HashedWheelScheduler(Configuration.getSchedulerTickMs(), TimeUnit.MILLISECONDS,
+                    Configuration.getSchedulerWheelSize(), threadFactory, null);
+            }
 
+            return new ThreadPoolBasedScheduler(Configuration.getSchedulerCoreSize(), threadFactory);
+        }
+    }
+
+    private static ExecutorService instrument(final ExecutorService executor) {
+        return Configuration.isInstrumentationEnabled() ?
+            new InstrumentedExecutorService(executor, TaskStats.fromConfiguration()) : executor;
+    }
+
+    private static Scheduler instrument(final Scheduler scheduler) {
+        return Configuration.isInstrumentationEnabled() ?
+            new InstrumentedScheduler(scheduler, TaskStats.fromConfiguration()) : scheduler;
     }
 
     public static <T> ComposableFuture<T> recursive(final Supplier<ComposableFuture<T>> creator, final Predicate<T> stopCriteria) {
@@ -111,6 +154,106 @@ public class ComposableFutures {
         return Combiner.combine(first, second, third, combiner);
     }
 
+    public static <T1, T2, T3, T4, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                  final ComposableFuture<T2> second,
+                                                                  final ComposableFuture<T3> third,
+                                                                  final ComposableFuture<T4> fourth,
+                                                                  final QuadFunction<T1, T2, T3, T4, R> combiner) {
+        return Combiner.combine(first, second, third, fourth, combiner);
+    }
+
+    public static <T1, T2, T3, T4, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                  final ComposableFuture<T2> second,
+                                                                  final ComposableFuture<T3> third,
+                                                                  final ComposableFuture<T4> fourth,
+                                                                  final FutureQuadFunction<T1, T2, T3, T4, R> combiner) {
+        return Combiner.combine(first, second, third, fourth, combiner);
+    }
+
+    public static <T1, T2, T3, T4, T5, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                      final ComposableFuture<T2> second,
+                                                                      final ComposableFuture<T3> third,
+                                                                      final ComposableFuture<T4> fourth,
+                                                                      final ComposableFuture<T5> fifth,
+                                                                      final PentaFunction<T1, T2, T3, T4, T5, R> combiner) {
+        return Combiner.combine(first, second, third, fourth, fifth, combiner);
+    }
+
+    public static <T1, T2, T3, T4, T5, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                      final ComposableFuture<T2> second,
+                                                                      final ComposableFuture<T3> third,
+                                                                      final ComposableFuture<T4> fourth,
+                                                                      final ComposableFuture<T5> fifth,
+                                                                      final FuturePentaFunction<T1, T2, T3, T4, T5, R> combiner) {
+        return Combiner.combine(first, second, third, fourth, fifth, combiner);
+    }
+
+    public static <T1, T2, T3, T4, T5, T6, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                          final ComposableFuture<T2> second,
+                                                                          final ComposableFuture<T3> third,
+                                                                          final ComposableFuture<T4> fourth,
+                                                                          final ComposableFuture<T5> fifth,
+                                                                          final ComposableFuture<T6> sixth,
+                                                                          final HexaFunction<T1, T2, T3, T4, T5, T6, R> combiner) {
+        return Combiner.combine(first, second, third, fourth, fifth, sixth, combiner);
+    }
+
+    public static <T1, T2, T3, T4, T5, T6, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                          final ComposableFuture<T2> second,
+                                                                          final ComposableFuture<T3> third,
+                                                                          final ComposableFuture<T4> fourth,
+                                                                          final ComposableFuture<T5> fifth,
+                                                                          final ComposableFuture<T6> sixth,
+                                                                          final FutureHexaFunction<T1, T2, T3, T4, T5, T6, R> combiner) {
+        return Combiner.combine(first, second, third, fourth, fifth, sixth, combiner);
+    }
+
+    public static <T1, T2, T3, T4, T5, T6, T7, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                              final ComposableFuture<T2> second,
+                                                                              final ComposableFuture<T3> third,
+                                                                              final ComposableFuture<T4> fourth,
+                                                                              final ComposableFuture<T5> fifth,
+                                                                              final ComposableFuture<T6> sixth,
+                                                                              final ComposableFuture<T7> seventh,
+                                                                              final HeptaFunction<T1, T2, T3, T4, T5, T6, T7, R> combiner) {
+        return Combiner.combine(first, second, third, fourth, fifth, sixth, seventh, combiner);
+    }
+
+    public static <T1, T2, T3, T4, T5, T6, T7, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                              final ComposableFuture<T2> second,
+                                                                              final ComposableFuture<T3> third,
+                                                                              final ComposableFuture<T4> fourth,
+                                                                              final ComposableFuture<T5> fifth,
+                                                                              final ComposableFuture<T6> sixth,
+                                                                              final ComposableFuture<T7> seventh,
+                                                                              final FutureHeptaFunction<T1, T2, T3, T4, T5, T6, T7, R> combiner) {
+        return Combiner.combine(first, second, third, fourth, fifth, sixth, seventh, combiner);
+    }
+
+    public static <T1, T2, T3, T4, T5, T6, T7, T8, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                                  final ComposableFuture<T2> second,
+                                                                                  final ComposableFuture<T3> third,
+                                                                                  final ComposableFuture<T4> fourth,
+                                                                                  final ComposableFuture<T5> fifth,
+                                                                                  final ComposableFuture<T6> sixth,
+                                                                                  final ComposableFuture<T7> seventh,
+                                                                                  final ComposableFuture<T8> eighth,
+                                                                                  final OctaFunction<T1, T2, T3, T4, T5, T6, T7, T8, R> combiner) {
+        return Combiner.combine(first, second, third, fourth, fifth, sixth, seventh, eighth, combiner);
+    }
+
+    public static <T1, T2, T3, T4, T5, T6, T7, T8, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                                  final ComposableFuture<T2> second,
+                                                                                  final ComposableFuture<T3> third,
+                                                                                  final ComposableFuture<T4> fourth,
+                                                                                  final ComposableFuture<T5> fifth,
+                                                                                  final ComposableFuture<T6> sixth,
+                                                                                  final ComposableFuture<T7> seventh,
+                                                                                  final ComposableFuture<T8> eighth,
+                                                                                  final FutureOctaFunction<T1, T2, T3, T4, T5, T6, T7, T8, R> combiner) {
+        return Combiner.combine(first, second, third, fourth, fifth, sixth, seventh, eighth, combiner);
+    }
+
     public static <T> ComposableFuture<T> any(final ComposableFuture<T> f1, final ComposableFuture<T> f2) {
         return any(Arrays.asList(f1, f2));
     }
@@ -166,13 +309,13 @@ public class ComposableFutures {
      */
     public static <T, R> ComposableFuture<List<R>> batch(final List<T> elements, final int batchSize,
                                                          final FutureSuccessHandler<T, R> producer) {
-        return batch(elements, 0, batchSize, producer);
+        return batch(elements, 0, batchSize, producer, new ArrayList<R>(elements.size()));
     }
 
     private static <T, R> ComposableFuture<List<R>> batch(final List<T> elements, final int index, final int batchSize,
-                                                         final FutureSuccessHandler<T, R> producer) {
+                                                         final FutureSuccessHandler<T, R> producer, final List<R> results) {
         if (index >= elements.size()) {
-            return ComposableFutures.fromValue(Collections.<R>emptyList());
+            return ComposableFutures.fromValue(results);
         }
 
         final List<ComposableFuture<R>> singleBatch = new ArrayList<>(batchSize);
@@ -184,16 +327,9 @@ public class ComposableFutures {
         return batchRes.continueOnSuccess(new FutureSuccessHandler<List<R>, List<R>>() {
             @Override
             public ComposableFuture<List<R>> handle(final List<R> batchResult) {
-                final ComposableFuture<List<R>> rest = batch(elements, index + batchSize, batchSize, producer);
-                return rest.continueOnSuccess(new SuccessHandler<List<R>, List<R>>() {
-                    @Override
-                    public List<R> handle(final List<R> result) throws ExecutionException {
-                        final ArrayList<R> res = new ArrayList<>(result.size() + batchResult.size());
-                        res.addAll(batchResult);
-                        res.addAll(result);
-                        return res;
-                    }
-                });
+                // batches run one after the other so the results can be accumulated in place
+                results.addAll(batchResult);
+                return batch(elements, index + batchSize, batchSize, producer, results);
             }
         });
     }
@@ -220,7 +356,7 @@ public class ComposableFutures {
         final AtomicInteger index = new AtomicInteger(0);
         final List<ComposableFuture<List<R>>> futures = new ArrayList<>(batchSize);
         for (int i=0; i< batchSize; i++) {
-            futures.add(seqUnordered(elements, index, producer));
+            futures.add(seqUnordered(elements, index, producer, new ArrayList<R>()));
         }
 
         return all(true, futures).continueOnSuccess(new SuccessHandler<List<List<R>>, List<R>>() {
@@ -237,24 +373,18 @@ public class ComposableFutures {
     }
 
     private static <T, R> ComposableFuture<List<R>> seqUnordered(final List<T> elements, final AtomicInteger index,
-                                                                   final FutureSuccessHandler<T, R> producer) {
+                                                                   final FutureSuccessHandler<T, R> producer,
+                                                                   final List<R> results) {
         final int currentIndex = index.getAndIncrement();
         if (currentIndex >= elements.size()) {
-            return ComposableFutures.fromValue(Collections.<R>emptyList());
+            return ComposableFutures.fromValue(results);
         } else {
             return producer.handle(elements.get(currentIndex)).continueOnSuccess(new FutureSuccessHandler<R, List<R>>() {
                 @Override
                 public ComposableFuture<List<R>> handle(final R result) {
-                    final ComposableFuture<List<R>> rest = seqUnordered(elements, index, producer);
-                    return rest.continueOnSuccess(new SuccessHandler<List<R>, List<R>>() {
-                        @Override
-                        public List<R> handle(final List<R> restResult) throws ExecutionException {
-                            final ArrayList<R> combined = new ArrayList<>(restResult.size() + 1);
-                            combined.addAll(restResult);
-                            combined.add(result);
-                            return combined;
-                        }
-                    });
+                    // each parallel flow is sequential so it can accumulate its own results in place
+                    results.add(result);
+                    return seqUnordered(elements, index, producer, results);
                 }
             });
         }
@@ -275,39 +405,96 @@ public class ComposableFutures {
      */
     public static <T, R> Observable<List<R>> batchToStream(final List<T> elements, final int batchSize,
                                                            final FutureSuccessHandler<T, R> producer) {
-        return Observable.create(new Observable.OnSubscribe<List<R>>() {
+        return Observable.create(new PullingFutureStreamHandler<>(new Supplier<FutureProvider<List<R>>>() {
             @Override
-            public void call(final Subscriber<? super List<R>> subscriber) {
-                batchToStream(elements, batchSize, 0, subscriber, producer);
+            public FutureProvider<List<R>> get() {
+                return new FutureProvider<List<R>>() {
+                    private int index = 0;
+                    private ComposableFuture<List<R>> current;
+
+                    @Override
+                    public boolean moveNext() {
+                        if (index >= elements.size()) {
+                            return false;
+                        }
+
+                        final List<ComposableFuture<R>> singleBatch = new ArrayList<>(batchSize);
+                        for (int i = index; i < index + batchSize && i < elements.size(); i++) {
+                            singleBatch.add(producer.handle(elements.get(i)));
+                        }
+
+                        index += batchSize;
+                        current = all(true, singleBatch);
+                        return true;
+                    }
+
+                    @Override
+                    public ComposableFuture<List<R>> current() {
+                        return current;
+                    }
+                };
             }
-        });
+        }, 1, true, true));
     }
 
-    private static <T, R> void batchToStream(final List<T> elements, final int batchSize, final int index,
-                                            final Subscriber<? super List<R>> subscriber,
-                                            final FutureSuccessHandler<T, R> producer) {
+    /**
+     * Execute the producer on each element and return a stream of the results.
+     * Up to parallelism elements are processed at a time as a sliding window, the next element is taken from
+     * the iterator as soon as a previous result is emitted and only when the subscriber requested more results,
+     * so neither the input nor the output has to be held in memory.
+     * An error in one of the futures produced by the producer will end the stream with the error
+     *
+     * the iterator is consumed by the first subscription.
+     *
+     * @param elements the input to the producer
+     * @param parallelism how many items will be processed in parallel
+     * @param ordered whether to emit the results in the order of the elements or in the order they complete
+     * @param producer produces a future based on input from the elements
+     * @param <T> the type of the elements in the input
+     * @param <R> the result type of the future returning from the producer
+     * @return a stream of the results produced by the producer
+     */
+    public static <T, R> Observable<R> mapAsync(final Iterator<T> elements, final int parallelism, final boolean ordered,
+                                                final FutureSuccessHandler<? super T, R> producer) {
+        final FutureProvider<R> provider = new FutureProvider<R>() {
+            private ComposableFuture<R> current;
 
-        if (index >= elements.size()) {
-            subscriber.onCompleted();
-        } else {
-            final List<ComposableFuture<R>> singleBatch = new ArrayList<>(batchSize);
-            for (int i = index; i < index + batchSize && i < elements.size(); i++) {
-                singleBatch.add(producer.handle(elements.get(i)));
+            @Override
+            public boolean moveNext() {
+                if (!elements.hasNext()) {
+                    return false;
+                }
+
+                current = producer.handle(elements.next());
+                return true;
             }
 
-            final ComposableFuture<List<R>> batchRes = all(true, singleBatch);
-            batchRes.consume(new Consumer<List<R>>() {
-                @Override
-                public void consume(final Try<List<R>> result) {
-                    if (result.isSuccess()) {
-                        subscriber.onNext(result.getValue());
-                        batchToStream(elements, batchSize, index + batchSize, subscriber, producer);
-                    } else {
-                        subscriber.onError(result.getError());
-                    }
-                }
-            });
-        }
+            @Override
+            public ComposableFuture<R> current() {
+                return current;
+            }
+        };
+
+        return Observable.create(new PullingFutureStreamHandler<>(Suppliers.ofInstance(provider), parallelism, ordered, true));
+    }
+
+    /**
+     * Execute the producer on each element of the stream and return a stream of the results.
+     * Up to parallelism elements are processed at a time as a sliding window, elements are requested from
+     * the input stream only when there is room in the window.
+     * An error in the input stream or in one of the futures produced by the producer will end the stream with the error
+     *
+     * @param elements the input to the producer
+     * @param parallelism how many items will be processed in parallel
+     * @param ordered whether to emit the results in the order of the elements or in the order they complete
+     * @param producer produces a future based on input from the elements
+     * @param <T> the type of the elements in the input
+     * @param <R> the result type of the future returning from the producer
+     * @return a stream of the results produced by the producer
+     */
+    public static <T, R> Observable<R> mapAsync(final Observable<T> elements, final int parallelism, final boolean ordered,
+                                                final FutureSuccessHandler<? super T, R> producer) {
+        return elements.lift(new MapAsyncOperator<>(producer, parallelism, ordered));
     }
 
     public static <T> ComposableFuture<T> fromValue(final T value) {
@@ -315,7 +502,7 @@ public class ComposableFutures {
     }
 
     public static <T> ComposableFuture<T> fromValueEager(final T value) {
-        return EagerComposableFuture.fromValue(value);
+        return CompletedComposableFuture.fromValue(value);
     }
 
     public static <T> ComposableFuture<T> fromValueLazy(final T value) {
@@ -327,7 +514,7 @@ public class ComposableFutures {
     }
 
     public static <T> ComposableFuture<T> fromErrorEager(final Throwable error) {
-        return EagerComposableFuture.fromError(error);
+        return CompletedComposableFuture.fromError(error);
     }
 
     public static <T> ComposableFuture<T> fromErrorLazy(final Throwable error) {
@@ -335,17 +522,17 @@ public class ComposableFutures {
     }
 
     public static <T> ComposableFuture<T> fromTry(final Try<T> tryValue) {
-        if (tryValue.isSuccess()) {
-            return fromValue(tryValue.getValue());
-        } else {
-            return fromError(tryValue.getError());
-        }
+        return CompletedComposableFuture.fromTry(tryValue);
     }
 
     public static <T> ComposableFuture<T> fromNull() {
         return fromValue(null);
     }
 
+    public static <T> ComposableFuture<List<T>> fromEmptyList() {
+        return CompletedComposableFuture.emptyList();
+    }
+
     public static <T> ComposableFuture<T> submitFuture(final Callable<ComposableFuture<T>> task) {
         final ComposableFuture<ComposableFuture<T>> submitRes = submit(false, task);
         return submitRes.continueOnSuccess(new FutureSuccessHandler<ComposableFuture<T>, T>() {
@@ -383,6 +570,23 @@ public class ComposableFutures {
         return LazyComposableFuture.submit(ExecutorServiceHolder.INSTANCE, task, delegateHandler);
     }
 
+    public static <T> ComposableFuture<T> submitLazy(final Executor executor, final Callable<T> task) {
+        return LazyComposableFuture.submit(executor, task, false);
+    }
+
+    /**
+     * sends a task that blocks(on IO, locks etc.) to the blocking executor.
+     * on JVMs that support virtual threads each task runs on its own virtual thread, so blocked tasks
+     * don't hold on to the threads of the main pool.
+     *
+     * @param task the task to run.
+     * @param <T>  the future type
+     * @return a future representing the result.
+     */
+    public static <T> ComposableFuture<T> submitBlocking(final Callable<T> task) {
+        return EagerComposableFuture.submit(BlockingExecutorServiceHolder.INSTANCE, task, false);
+    }
+
     public static <T, S> ComposableFuture<S> from(final T value, final Function<? super T, ? extends S> function) {
         return submit(new Callable<S>() {
             @Override
@@ -464,6 +668,18 @@ public class ComposableFutures {
         return EagerComposableFuture.build(producer);
     }
 
+    /**
+     * builds a new eager future from a producer that can be cancelled.
+     * cancelling the future before the producer delivers its result cancels the token returned by the producer.
+     *
+     * @param producer the result producer
+     * @param <T>      the future type
+     * @return the future
+     */
+    public static <T> ComposableFuture<T> buildCancellable(final CancellableProducer<T> producer) {
+        return EagerComposableFuture.buildCancellable(producer);
+    }
+
     /**
      * adds a time cap to the provided future.
      * if response do not arrive after the specified time a TimeoutException is returned from the returned future.
@@ -520,6 +736,19 @@ public class ComposableFutures {
         });
     }
 
+    /**
+     * executes the action and retries it on failure with the backoff, the retryable errors and the retry budget
+     * of the policy. unlike the retry methods above, retries are delayed and spread by jitter.
+     *
+     * @param action the eager future provider, executed once per attempt
+     * @param policy the retry policy
+     * @param <T>    the future type
+     * @return the result of the first successful attempt, or the error of the last one.
+     */
+    public static <T> ComposableFuture<T> retry(final FutureAction<T> action, final RetryPolicy policy) {
+        return policy.execute(action);
+    }
+
     /**
      * retries a lazy future on failure "retries" times.
      *
@@ -582,6 +811,59 @@ public class ComposableFutures {
         return ((LazyComposableFuture<T>) future).doubleDispatch(getScheduler(), duration, unit);
     }
 
+    /**
+     * executes the action and hedges it: if no result arrives in time, the action is executed again, up to the
+     * number of hedges and with the delays decided by the policy. the first result wins and the rest of the
+     * attempts are cancelled.
+     * unlike doubleDispatch, the policy can adapt the delay to the observed latency and cap the extra load,
+     * see {@link com.outbrain.ob1k.concurrent.hedge.PercentileHedgePolicy}.
+     *
+     * @param action the action to hedge, executed once per attempt
+     * @param policy decides when to hedge
+     * @param <T>    the future type
+     * @return the result of the first attempt to complete
+     */
+    public static <T> ComposableFuture<T> hedge(final FutureAction<T> action, final HedgePolicy policy) {
+        return EagerComposableFuture.hedge(action, policy, getScheduler());
+    }
+
+    /**
+     * wraps an action so that every execution goes through the limiter, queued or rejected once the limit
+     * is reached, see {@link com.outbrain.ob1k.concurrent.limiter.RateLimiter} and
+     * {@link com.outbrain.ob1k.concurrent.limiter.ConcurrencyLimiter}.
+     *
+     * @param limiter the limiter
+     * @param action  the action to limit
+     * @param <T>     the future type
+     * @return the limited action
+     */
+    public static <T> FutureAction<T> limit(final FutureLimiter limiter, final FutureAction<T> action) {
+        return new FutureAction<T>() {
+            @Override
+            public ComposableFuture<T> execute() {
+                return limiter.execute(action);
+            }
+        };
+    }
+
+    /**
+     * wraps an action so that every execution goes through the circuit breaker, failing fast with a
+     * {@link com.outbrain.ob1k.concurrent.circuitbreaker.CircuitOpenException} while the circuit is open.
+     *
+     * @param breaker the circuit breaker
+     * @param action  the action to protect
+     * @param <T>     the future type
+     * @return the protected action
+     */
+    public static <T> FutureAction<T> withCircuitBreaker(final CircuitBreaker breaker, final FutureAction<T> action) {
+        return new FutureAction<T>() {
+            @Override
+            public ComposableFuture<T> execute() {
+                return breaker.execute(action);
+            }
+        };
+    }
+
     public static <T> rx.Observable<T> toColdObservable(final List<ComposableFuture<T>> futures) {
         return toColdObservable(futures, true);
     }
@@ -595,17 +877,46 @@ public class ComposableFutures {
      * @return the stream
      */
     public static <T> Observable<T> toColdObservable(final List<ComposableFuture<T>> futures, final boolean failOnError) {
-        return Observable.create(new Observable.OnSubscribe<T>() {
+        return toColdObservable(futures, failOnError, Math.max(futures.size(), 1));
+    }
+
+    /**
+     * translate a list of lazy futures to a cold Observable stream that respects the subscriber's demand.
+     * a future is consumed only after its value was requested, with no more than maxConcurrency futures
+     * running at a time. values are emitted in the order the futures complete.
+     *
+     * @param futures        the lazy list of futures
+     * @param failOnError    whether to close the stream upon a future error
+     * @param maxConcurrency the max number of futures consumed at the same time
+     * @param <T>            the stream type
+     * @return the stream
+     */
+    public static <T> Observable<T> toColdObservable(final List<ComposableFuture<T>> futures, final boolean failOnError,
+                                                     final int maxConcurrency) {
+        return Observable.create(new PullingFutureStreamHandler<>(new Supplier<FutureProvider<T>>() {
             @Override
-            public void call(final Subscriber<? super T> subscriber) {
-                final AtomicInteger counter = new AtomicInteger(futures.size());
-                final AtomicBoolean errorTrigger = new AtomicBoolean(false);
+            public FutureProvider<T> get() {
+                return new FutureProvider<T>() {
+                    private final Iterator<ComposableFuture<T>> iterator = futures.iterator();
+                    private ComposableFuture<T> current;
 
-                for (final ComposableFuture<T> future : futures) {
-                    future.consume(provideObserverResult(subscriber, counter, errorTrigger, failOnError));
-                }
+                    @Override
+                    public boolean moveNext() {
+                        if (!iterator.hasNext()) {
+                            return false;
+                        }
+
+                        current = iterator.next();
+                        return true;
+                    }
+
+                    @Override
+                    public ComposableFuture<T> current() {
+                        return current;
+                    }
+                };
             }
-        });
+        }, maxConcurrency, false, failOnError));
     }
 
     /**
@@ -619,31 +930,38 @@ public class ComposableFutures {
      * @return the stream
      */
     public static <T> Observable<T> toColdObservable(final RecursiveFutureProvider<T> futureProvider) {
-        return Observable.create(new Observable.OnSubscribe<T>() {
+        return Observable.create(new PullingFutureStreamHandler<>(new Supplier<FutureProvider<T>>() {
             @Override
-            public void call(final Subscriber<? super T> subscriber) {
-                recursiveChain(subscriber, futureProvider.createStopCriteria());
-            }
+            public FutureProvider<T> get() {
+                final Predicate<T> stopCriteria = futureProvider.createStopCriteria();
+                return new FutureProvider<T>() {
+                    private volatile boolean stopped = false;
+                    private ComposableFuture<T> current;
 
-            private void recursiveChain(final Subscriber<? super T> subscriber, final Predicate<T> stopCriteria) {
-                futureProvider.provide().consume(new Consumer<T>() {
                     @Override
-                    public void consume(final Try<T> result) {
-                        if (result.isSuccess()) {
-                            final T value = result.getValue();
-                            subscriber.onNext(value);
-                            if (stopCriteria.apply(value)) {
-                                subscriber.onCompleted();
-                            } else {
-                                recursiveChain(subscriber, stopCriteria);
-                            }
-                        } else {
-                            subscriber.onError(result.getError());
+                    public boolean moveNext() {
+                        if (stopped) {
+                            return false;
                         }
+
+                        // the next future is only provided after the previous value was emitted.
+                        current = futureProvider.provide().transform(new Function<T, T>() {
+                            @Override
+                            public T apply(final T value) {
+                                stopped = stopCriteria.apply(value);
+                                return value;
+                            }
+                        });
+                        return true;
                     }
-                });
+
+                    @Override
+                    public ComposableFuture<T> current() {
+                        return current;
+                    }
+                };
             }
-        });
+        }, 1, true, true));
     }
 
     /**
@@ -680,6 +998,23 @@ public class ComposableFutures {
         return Observable.create(new FutureProviderToStreamHandler<>(provider));
     }
 
+    /**
+     * creates new observable given future provider, pulling futures from it according to the subscriber's demand.
+     * up to maxConcurrency futures are pending at a time, and their values are emitted either in the order
+     * they were provided or in the order they complete.
+     * unsubscribing cancels the pending futures.
+     *
+     * @param provider       the future provider for translation
+     * @param maxConcurrency the max number of pending futures
+     * @param ordered        whether to keep the order of the provider
+     * @param <T>            the stream type
+     * @return the stream
+     */
+    public static <T> Observable<T> toObservable(final FutureProvider<T> provider, final int maxConcurrency,
+                                                 final boolean ordered) {
+        return Observable.create(new PullingFutureStreamHandler<>(Suppliers.ofInstance(provider), maxConcurrency, ordered, true));
+    }
+
     private static <T> Consumer<T> provideObserverResult(final rx.Observer<? super T> observer, final AtomicInteger counter,
                                                          final AtomicBoolean errorTrigger, final boolean failOnError) {
         return new Consumer<T>() {
@@ -710,6 +1045,10 @@ public class ComposableFutures {
         return ExecutorServiceHolder.INSTANCE;
     }
 
+    public static ExecutorService getBlockingExecutor() {
+        return BlockingExecutorServiceHolder.INSTANCE;
+    }
+
     public static Scheduler getScheduler() {
         return SchedulerServiceHolder.INSTANCE;
     }
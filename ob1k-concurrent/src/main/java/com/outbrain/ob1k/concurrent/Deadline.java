@@ -0,0 +1,72 @@
+package com.outbrain.ob1k.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * an absolute point in time(in {@link System#nanoTime()} terms) by which a request has to complete.
+ *
+ * unlike a timeout a deadline doesn't restart on every hop: it is attached to the {@link AsyncContext} of the request
+ * and every call made on its behalf gets only what remains of the budget, so inner calls stop once the outer
+ * caller gave up on the result.
+ */
+public final class Deadline {
+  public static final AsyncContext.Key<Deadline> KEY = AsyncContext.Key.named("deadline");
+
+  private final long nanoTime;
+
+  private Deadline(final long nanoTime) {
+    this.nanoTime = nanoTime;
+  }
+
+  public static Deadline at(final long nanoTime) {
+    return new Deadline(nanoTime);
+  }
+
+  public static Deadline after(final long duration, final TimeUnit unit) {
+    return new Deadline(System.nanoTime() + unit.toNanos(duration));
+  }
+
+  /**
+   * @return the deadline of the current async context, or null if there is none.
+   */
+  public static Deadline current() {
+    return AsyncContext.current().get(KEY);
+  }
+
+  /**
+   * attaches the deadline to the current async context, unless the context already has an earlier one.
+   *
+   * @return the previous context, to be passed to {@link AsyncContext#restore(AsyncContext)} when done.
+   */
+  public AsyncContext attach() {
+    final AsyncContext context = AsyncContext.current();
+    return context.with(KEY, earliest(context.get(KEY))).attach();
+  }
+
+  public long getNanoTime() {
+    return nanoTime;
+  }
+
+  /**
+   * @return the time left until the deadline, zero once it passed.
+   */
+  public long remaining(final TimeUnit unit) {
+    return unit.convert(Math.max(0, nanoTime - System.nanoTime()), TimeUnit.NANOSECONDS);
+  }
+
+  public boolean isExpired() {
+    return nanoTime - System.nanoTime() <= 0;
+  }
+
+  /**
+   * @return the earlier of this deadline and the other one, which may be null.
+   */
+  public Deadline earliest(final Deadline other) {
+    return other != null && other.nanoTime - nanoTime < 0 ? other : this;
+  }
+
+  @Override
+  public String toString() {
+    return "Deadline{remaining=" + remaining(TimeUnit.MILLISECONDS) + "ms}";
+  }
+}
@@ -0,0 +1,46 @@
+package com.outbrain.ob1k.concurrent;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * a {@link RingBufferSlidingWindow} of primitive doubles that doesn't box the samples.
+ */
+public class DoubleSlidingWindow extends RingBuffer {
+  // the raw bits of the doubles, there is no atomic array of doubles.
+  private final AtomicLongArray values;
+
+  public DoubleSlidingWindow(final int capacity) {
+    super(capacity);
+    this.values = new AtomicLongArray(capacity);
+  }
+
+  public void offer(final double value) {
+    final long sequence = claim();
+    if (sequence < 0) {
+      return;
+    }
+
+    values.set(index(sequence), Double.doubleToRawLongBits(value));
+    publish(sequence);
+  }
+
+  /**
+   * @return a consistent snapshot of the window, from the oldest value to the newest
+   */
+  public double[] snapshot() {
+    final long tail = tail();
+    final double[] snapshot = new double[(int) (tail - head(tail))];
+    int size = 0;
+    for (long sequence = head(tail); sequence < tail; sequence++) {
+      if (isPublished(sequence)) {
+        final long bits = values.get(index(sequence));
+        if (isPublished(sequence)) {
+          snapshot[size++] = Double.longBitsToDouble(bits);
+        }
+      }
+    }
+
+    return size == snapshot.length ? snapshot : Arrays.copyOf(snapshot, size);
+  }
+}
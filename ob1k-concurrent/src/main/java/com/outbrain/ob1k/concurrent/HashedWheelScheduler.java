@@ -0,0 +1,292 @@
+package com.outbrain.ob1k.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * a scheduler based on a hashed timing wheel.
+ *
+ * time is divided into ticks and every timer is placed in the bucket of the tick it expires at,
+ * so scheduling and cancelling are O(1) regardless of the number of pending timers, as opposed to the
+ * O(log n) heap of a ScheduledExecutorService.
+ * the price is precision: timers fire on the first tick after their deadline, i.e. up to one tick late.
+ * this makes the wheel a good fit for timeouts, which are scheduled for every request and almost always
+ * cancelled long before they expire.
+ *
+ * a single worker thread advances the wheel and runs the expired tasks, unless an executor is supplied,
+ * in which case the tasks are handed over to it. tasks running on the worker thread must be short since
+ * they delay the following ticks.
+ *
+ * timers that did not expire by the time the scheduler is shut down are discarded.
+ */
+public class HashedWheelScheduler implements Scheduler {
+  private static final Logger logger = LoggerFactory.getLogger(HashedWheelScheduler.class);
+
+  // bounds the work done by the worker per tick so a burst of new timers can't stall the wheel.
+  private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+  private final long tickNanos;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final Executor executor;
+  private final Thread worker;
+
+  private final Queue<Timer> scheduled = new ConcurrentLinkedQueue<>();
+  private final Queue<Timer> cancelled = new ConcurrentLinkedQueue<>();
+
+  private final long startTime;
+  private volatile boolean shutdown;
+
+  public HashedWheelScheduler(final long tickDuration, final TimeUnit unit, final int wheelSize, final String threadNamePrefix) {
+    this(tickDuration, unit, wheelSize, new PrefixBasedThreadFactory(threadNamePrefix).withDaemonThreads(), null);
+  }
+
+  public HashedWheelScheduler(final long tickDuration, final TimeUnit unit, final int wheelSize,
+                              final ThreadFactory threadFactory, final Executor executor) {
+    if (tickDuration <= 0) {
+      throw new IllegalArgumentException("tickDuration must be positive: " + tickDuration);
+    }
+
+    if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+      throw new IllegalArgumentException("wheelSize must be between 1 and 2^30: " + wheelSize);
+    }
+
+    this.tickNanos = unit.toNanos(tickDuration);
+    this.wheel = createWheel(wheelSize);
+    this.mask = wheel.length - 1;
+    this.executor = executor;
+    this.startTime = System.nanoTime();
+    this.worker = threadFactory.newThread(new Worker());
+    this.worker.start();
+  }
+
+  private static Bucket[] createWheel(final int wheelSize) {
+    // round up to a power of two so the bucket of a tick is a simple mask.
+    final int size = Integer.highestOneBit(wheelSize - 1) << 1;
+    final Bucket[] wheel = new Bucket[Math.max(size, 1)];
+    for (int i = 0; i < wheel.length; i++) {
+      wheel[i] = new Bucket();
+    }
+
+    return wheel;
+  }
+
+  @Override
+  public CancellationToken schedule(final Runnable task, final long delay, final TimeUnit timeUnit) {
+    if (shutdown) {
+      throw new RejectedExecutionException("scheduler is shut down");
+    }
+
+    final long now = System.nanoTime() - startTime;
+    final long delayNanos = Math.max(timeUnit.toNanos(delay), 0);
+    final long deadline = delayNanos > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + delayNanos;
+    final Timer timer = new Timer(this, task, deadline);
+    scheduled.add(timer);
+    return timer;
+  }
+
+  @Override
+  public void shutdown() {
+    shutdown = true;
+    worker.interrupt();
+  }
+
+  private void run(final Timer timer) {
+    if (executor == null) {
+      timer.run();
+      return;
+    }
+
+    try {
+      executor.execute(timer);
+    } catch (final RejectedExecutionException e) {
+      logger.warn("timer task was rejected by the executor", e);
+    }
+  }
+
+  private final class Worker implements Runnable {
+    private long tick;
+
+    @Override
+    public void run() {
+      while (!shutdown) {
+        final long now = waitForNextTick();
+        if (now < 0) {
+          break;
+        }
+
+        removeCancelled();
+        transferScheduled();
+        expire(wheel[(int) (tick & mask)], now);
+        tick++;
+      }
+
+      scheduled.clear();
+      cancelled.clear();
+    }
+
+    // returns the current time relative to the start time, or -1 if interrupted by shutdown.
+    private long waitForNextTick() {
+      final long deadline = tickNanos * (tick + 1);
+      while (true) {
+        final long now = System.nanoTime() - startTime;
+        final long sleepNanos = deadline - now;
+        if (sleepNanos <= 0) {
+          return now;
+        }
+
+        try {
+          TimeUnit.NANOSECONDS.sleep(sleepNanos);
+        } catch (final InterruptedException e) {
+          if (shutdown) {
+            return -1;
+          }
+        }
+      }
+    }
+
+    private void removeCancelled() {
+      Timer timer;
+      while ((timer = cancelled.poll()) != null) {
+        if (timer.bucket != null) {
+          timer.bucket.remove(timer);
+        }
+      }
+    }
+
+    private void transferScheduled() {
+      for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+        final Timer timer = scheduled.poll();
+        if (timer == null) {
+          return;
+        }
+
+        if (timer.state != Timer.PENDING) {
+          continue;
+        }
+
+        final long expirationTick = timer.deadline / tickNanos;
+        timer.remainingRounds = (expirationTick - tick) / wheel.length;
+        // timers that are already due go to the current bucket.
+        final long targetTick = Math.max(expirationTick, tick);
+        wheel[(int) (targetTick & mask)].add(timer);
+      }
+    }
+
+    private void expire(final Bucket bucket, final long now) {
+      Timer timer = bucket.head;
+      while (timer != null) {
+        final Timer next = timer.next;
+        if (timer.remainingRounds <= 0 && timer.deadline <= now) {
+          bucket.remove(timer);
+          if (timer.expire()) {
+            HashedWheelScheduler.this.run(timer);
+          }
+        } else if (timer.state != Timer.PENDING) {
+          bucket.remove(timer);
+        } else {
+          timer.remainingRounds--;
+        }
+
+        timer = next;
+      }
+    }
+  }
+
+  private static final class Timer implements CancellationToken, Runnable {
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private static final AtomicIntegerFieldUpdater<Timer> STATE =
+        AtomicIntegerFieldUpdater.newUpdater(Timer.class, "state");
+
+    private final HashedWheelScheduler scheduler;
+    private final Runnable task;
+    private final long deadline;
+    private volatile int state;
+
+    // owned by the worker thread.
+    private long remainingRounds;
+    private Bucket bucket;
+    private Timer prev;
+    private Timer next;
+
+    private Timer(final HashedWheelScheduler scheduler, final Runnable task, final long deadline) {
+      this.scheduler = scheduler;
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterrupt) {
+      if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+        return false;
+      }
+
+      // let the worker unlink the timer, the buckets are only touched by the worker thread.
+      scheduler.cancelled.add(this);
+      return true;
+    }
+
+    private boolean expire() {
+      return STATE.compareAndSet(this, PENDING, EXPIRED);
+    }
+
+    @Override
+    public void run() {
+      try {
+        task.run();
+      } catch (final Throwable error) {
+        logger.warn("error while running a timer task", error);
+      }
+    }
+  }
+
+  // a doubly linked list of timers, only accessed by the worker thread.
+  private static final class Bucket {
+    private Timer head;
+    private Timer tail;
+
+    private void add(final Timer timer) {
+      timer.bucket = this;
+      if (head == null) {
+        head = tail = timer;
+      } else {
+        tail.next = timer;
+        timer.prev = tail;
+        tail = timer;
+      }
+    }
+
+    private void remove(final Timer timer) {
+      if (timer.bucket != this) {
+        return;
+      }
+
+      if (timer.prev != null) {
+        timer.prev.next = timer.next;
+      } else {
+        head = timer.next;
+      }
+
+      if (timer.next != null) {
+        timer.next.prev = timer.prev;
+      } else {
+        tail = timer.prev;
+      }
+
+      timer.prev = null;
+      timer.next = null;
+      timer.bucket = null;
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package com.outbrain.ob1k.concurrent;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * a {@link RingBufferSlidingWindow} of primitive longs, e.g. latencies, that doesn't box the samples.
+ */
+public class LongSlidingWindow extends RingBuffer {
+  private final AtomicLongArray values;
+
+  public LongSlidingWindow(final int capacity) {
+    super(capacity);
+    this.values = new AtomicLongArray(capacity);
+  }
+
+  public void offer(final long value) {
+    final long sequence = claim();
+    if (sequence < 0) {
+      return;
+    }
+
+    values.set(index(sequence), value);
+    publish(sequence);
+  }
+
+  /**
+   * @return a consistent snapshot of the window, from the oldest value to the newest
+   */
+  public long[] snapshot() {
+    final long tail = tail();
+    final long[] snapshot = new long[(int) (tail - head(tail))];
+    int size = 0;
+    for (long sequence = head(tail); sequence < tail; sequence++) {
+      if (isPublished(sequence)) {
+        final long value = values.get(index(sequence));
+        if (isPublished(sequence)) {
+          snapshot[size++] = value;
+        }
+      }
+    }
+
+    return size == snapshot.length ? snapshot : Arrays.copyOf(snapshot, size);
+  }
+}
@@ -0,0 +1,83 @@
+package com.outbrain.ob1k.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * the sequencing of the lock-free ring buffer sliding windows, the subclasses hold the elements.
+ *
+ * every offered element claims the next sequence and is written into the slot of sequence % capacity,
+ * overwriting the element one lap older. each slot records which sequence it holds so that readers can take
+ * a consistent snapshot without locking: an element is read only if its slot held its sequence both before
+ * and after reading it, elements that are still being written or that were overwritten meanwhile are skipped.
+ *
+ * writers never wait for each other. a writer that finds an older element still being written into its slot,
+ * which only happens when more than capacity offers are in flight at once, takes the slot over and the older
+ * element is dropped when its writer publishes. a writer gives up if a newer element already took the slot,
+ * since its own element would have been overwritten anyway. an overtaken writer may still store its element
+ * after the newer one, in which case the slot holds that one lap older element instead; fine for the samples
+ * of a window, which is all they are used for.
+ */
+abstract class RingBuffer {
+  protected final int capacity;
+  private final AtomicLong tail = new AtomicLong();
+  // the sequence + 1 of the element in each slot, negated while the element is being written.
+  private final AtomicLongArray sequences;
+
+  protected RingBuffer(final int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+
+    this.capacity = capacity;
+    this.sequences = new AtomicLongArray(capacity);
+  }
+
+  /**
+   * claims the slot for the next element, publish() must follow once the element is written.
+   *
+   * @return the sequence of the new element, or -1 if it is already out of the window and should be dropped
+   */
+  protected final long claim() {
+    final long sequence = tail.getAndIncrement();
+    final int index = index(sequence);
+    while (true) {
+      final long current = sequences.get(index);
+      if (Math.abs(current) > sequence + 1) {
+        return -1;
+      }
+
+      if (sequences.compareAndSet(index, current, -(sequence + 1))) {
+        return sequence;
+      }
+    }
+  }
+
+  /**
+   * makes the element readable, unless a newer element took over its slot while it was being written.
+   */
+  protected final void publish(final long sequence) {
+    sequences.compareAndSet(index(sequence), -(sequence + 1), sequence + 1);
+  }
+
+  protected final boolean isPublished(final long sequence) {
+    return sequences.get(index(sequence)) == sequence + 1;
+  }
+
+  protected final int index(final long sequence) {
+    return (int) (sequence % capacity);
+  }
+
+  // the sequence following the last claimed one.
+  protected final long tail() {
+    return tail.get();
+  }
+
+  protected final long head(final long tail) {
+    return Math.max(tail - capacity, 0);
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+}
@@ -0,0 +1,72 @@
+package com.outbrain.ob1k.concurrent;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * holds the last N offered elements in a fixed size lock-free ring buffer.
+ *
+ * unlike {@link ConcurrentSlidingWindow} offering doesn't allocate and never exceeds the capacity,
+ * and iterating goes over a consistent snapshot of the window, from the oldest element to the newest.
+ * elements that are still being offered while the snapshot is taken are not part of it.
+ */
+public class RingBufferSlidingWindow<T> extends RingBuffer implements Iterable<T> {
+  private final AtomicReferenceArray<T> elements;
+
+  public RingBufferSlidingWindow(final int capacity) {
+    super(capacity);
+    this.elements = new AtomicReferenceArray<>(capacity);
+  }
+
+  public void offer(final T element) {
+    final long sequence = claim();
+    if (sequence < 0) {
+      return;
+    }
+
+    elements.set(index(sequence), element);
+    publish(sequence);
+  }
+
+  @SuppressWarnings("unchecked")
+  public List<T> snapshot() {
+    final long tail = tail();
+    final Object[] snapshot = new Object[(int) (tail - head(tail))];
+    int size = 0;
+    for (long sequence = head(tail); sequence < tail; sequence++) {
+      if (isPublished(sequence)) {
+        final T element = elements.get(index(sequence));
+        if (isPublished(sequence)) {
+          snapshot[size++] = element;
+        }
+      }
+    }
+
+    return Collections.unmodifiableList((List<T>) Arrays.asList(Arrays.copyOf(snapshot, size)));
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return snapshot().iterator();
+  }
+
+  /**
+   * @return the newest element, or null if the window is empty
+   */
+  public T peekLast() {
+    final long tail = tail();
+    for (long sequence = tail - 1; sequence >= head(tail); sequence--) {
+      if (isPublished(sequence)) {
+        final T element = elements.get(index(sequence));
+        if (isPublished(sequence)) {
+          return element;
+        }
+      }
+    }
+
+    return null;
+  }
+}
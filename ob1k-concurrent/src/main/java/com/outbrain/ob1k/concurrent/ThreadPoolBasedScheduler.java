@@ -1,7 +1,7 @@
 package com.outbrain.ob1k.concurrent;
 
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
@@ -14,11 +14,13 @@ public class ThreadPoolBasedScheduler implements Scheduler {
   private final ScheduledExecutorService scheduledThreadPool;
 
   public ThreadPoolBasedScheduler(final int numOfThreads,String threadNamePrefix) {
-    this.scheduledThreadPool = Executors.newScheduledThreadPool(numOfThreads,
-      new PrefixBasedThreadFactory(threadNamePrefix));
+    this(numOfThreads, new PrefixBasedThreadFactory(threadNamePrefix));
   }
   public ThreadPoolBasedScheduler(final int numOfThreads,ThreadFactory threadFactory) {
-    this.scheduledThreadPool = Executors.newScheduledThreadPool(numOfThreads,threadFactory);
+    final ScheduledThreadPoolExecutor threadPool = new ScheduledThreadPoolExecutor(numOfThreads, threadFactory);
+    // most timers are timeouts that get cancelled, don't keep them in the queue until they expire.
+    threadPool.setRemoveOnCancelPolicy(true);
+    this.scheduledThreadPool = threadPool;
   }
 
   @Override
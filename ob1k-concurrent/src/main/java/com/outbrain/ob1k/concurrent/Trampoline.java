@@ -0,0 +1,170 @@
+package com.outbrain.ob1k.concurrent;
+
+import com.outbrain.ob1k.concurrent.config.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+
+/**
+ * a per thread run queue for continuations that are executed inline(i.e. without an executor).
+ *
+ * continuations run directly on the calling thread as long as the nesting depth of inline continuations
+ * is below a threshold(ob1k.trampoline.maxDepth). once the threshold is reached further continuations are
+ * queued and executed iteratively by the outermost continuation on its way out, so long synchronous chains
+ * and recursive future flows run in constant stack space instead of overflowing it.
+ *
+ * the futures implementations run their executor-less continuations through it, and it is public so that
+ * executors which run tasks on the calling thread(e.g. an event loop executor) can share the same run queue.
+ * a task that throws never fails its caller: the error is logged, whether the task ran inline or was queued,
+ * so the same continuation behaves the same regardless of the stack depth it happened to run at.
+ */
+public final class Trampoline {
+  private static final int MAX_DEPTH = Configuration.getTrampolineMaxDepth();
+
+  private static final ThreadLocal<Trampoline> CURRENT = new ThreadLocal<Trampoline>() {
+    @Override
+    protected Trampoline initialValue() {
+      return new Trampoline();
+    }
+  };
+
+  private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+  private int depth;
+
+  private Trampoline() {}
+
+  /**
+   * runs the task on the current thread, either immediately or, if too many inline continuations are
+   * already on the stack, right after the outermost one returns.
+   * errors thrown by the task are logged and not propagated.
+   *
+   * @param task the continuation to run.
+   */
+  public static void execute(final Runnable task) {
+    final Trampoline trampoline = CURRENT.get();
+    if (!trampoline.enter()) {
+      trampoline.pending.addLast(task);
+      return;
+    }
+
+    try {
+      runSafely(task);
+    } finally {
+      trampoline.exit();
+    }
+  }
+
+  /**
+   * wraps a consumer so that the values delivered to it are handed over through the trampoline.
+   *
+   * @param consumer the consumer to protect
+   * @param <T> the consumed type
+   * @return a consumer that delivers through the trampoline
+   */
+  public static <T> Consumer<T> trampolined(final Consumer<T> consumer) {
+    if (consumer instanceof TrampolinedConsumer) {
+      return consumer;
+    }
+
+    return new TrampolinedConsumer<>(consumer);
+  }
+
+  /**
+   * reserves a slot for running a continuation inline on the current thread, for callers that
+   * want to run their continuation directly instead of wrapping it in a task.
+   *
+   * @return the current thread's trampoline, to be released with {@link #exit()} once the continuation returns,
+   * or null if the continuation should be deferred instead of running inline.
+   */
+  public static Trampoline tryEnter() {
+    final Trampoline trampoline = CURRENT.get();
+    return trampoline.enter() ? trampoline : null;
+  }
+
+  /**
+   * runs all the continuations queued on the current thread.
+   * must be called before blocking on a result from within a continuation, otherwise the
+   * continuations that produce that result might be waiting in the queue behind the blocked one.
+   */
+  public static void flush() {
+    final Trampoline trampoline = CURRENT.get();
+    if (!trampoline.pending.isEmpty()) {
+      trampoline.drain();
+    }
+  }
+
+  private boolean enter() {
+    if (depth >= MAX_DEPTH) {
+      return false;
+    }
+
+    depth++;
+    return true;
+  }
+
+  /**
+   * releases a slot reserved by {@link #tryEnter()}.
+   */
+  public void exit() {
+    depth--;
+    if (depth == 0 && !pending.isEmpty()) {
+      drain();
+    }
+  }
+
+  private void drain() {
+    depth++;
+    try {
+      Runnable task;
+      while ((task = pending.pollFirst()) != null) {
+        runSafely(task);
+      }
+    } finally {
+      depth--;
+    }
+  }
+
+  private static void runSafely(final Runnable task) {
+    try {
+      task.run();
+    } catch (final Throwable error) {
+      Log.logger.warn("error while running a continuation", error);
+    }
+  }
+
+  // loaded on the first error, so that running the first continuation doesn't initialize the logging backend.
+  private static final class Log {
+    private static final Logger logger = LoggerFactory.getLogger(Trampoline.class);
+  }
+
+  private static final class TrampolinedConsumer<T> implements Consumer<T> {
+    private final Consumer<T> inner;
+
+    private TrampolinedConsumer(final Consumer<T> inner) {
+      this.inner = inner;
+    }
+
+    @Override
+    public void consume(final Try<T> result) {
+      final Trampoline trampoline = CURRENT.get();
+      if (!trampoline.enter()) {
+        trampoline.pending.addLast(new Runnable() {
+          @Override
+          public void run() {
+            inner.consume(result);
+          }
+        });
+        return;
+      }
+
+      try {
+        inner.consume(result);
+      } catch (final Throwable error) {
+        Log.logger.warn("error while running a continuation", error);
+      } finally {
+        trampoline.exit();
+      }
+    }
+  }
+}
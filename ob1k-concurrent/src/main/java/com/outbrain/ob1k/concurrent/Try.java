@@ -18,7 +18,21 @@ public abstract class Try<T> {
   public abstract <U> Try<U> flatMap(Function<? super T, Try<U>> func);
   public abstract Try<T> recover(Function<Throwable, T> func);
 
+  private static final Try<?> NULL = new Success<>(null);
+  private static final Try<?> TRUE = new Success<>(Boolean.TRUE);
+  private static final Try<?> FALSE = new Success<>(Boolean.FALSE);
+
+  @SuppressWarnings("unchecked")
   public static <T> Try<T> fromValue(final T value) {
+    // the common immutable values are shared instead of wrapped over and over again.
+    if (value == null) {
+      return (Try<T>) NULL;
+    }
+
+    if (value instanceof Boolean) {
+      return (Try<T>) ((Boolean) value ? TRUE : FALSE);
+    }
+
     return new Success<>(value);
   }
 
@@ -51,7 +65,7 @@ public abstract class Try<T> {
     @Override
     public <U> Try<U> map(final Function<? super T,? extends U> func) {
       try {
-        return new Success<>(func.apply(value));
+        return Try.<U>fromValue(func.apply(value));
       } catch (final Exception e) {
         return new Failure<>(e);
       }
@@ -102,12 +116,18 @@ public abstract class Try<T> {
 
     @Override
     public <U> Try<U> map(final Function<? super T,? extends U> func) {
-      return new Failure<>(this.getError());
+      return cast();
     }
 
     @Override
     public <U> Try<U> flatMap(final Function<? super T, Try<U>> func) {
-      return new Failure<>(this.getError());
+      return cast();
+    }
+
+    // a failure carries no value so it can be shared by any result type.
+    @SuppressWarnings("unchecked")
+    private <U> Try<U> cast() {
+      return (Try<U>) this;
     }
 
     @Override
@@ -0,0 +1,83 @@
+package com.outbrain.ob1k.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * access to virtual threads on JVMs that support them(java 21+), while still compiling against java 8.
+ *
+ * a virtual thread per task executor suits blocking tasks(jdbc, file IO, legacy clients) since a blocked
+ * virtual thread doesn't hold an OS thread, so there is no need to size a pool for the worst case.
+ */
+public final class VirtualThreads {
+  private static final Method OF_VIRTUAL;
+  private static final Method NAME;
+  private static final Method FACTORY;
+  private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+  static {
+    Method ofVirtual = null;
+    Method name = null;
+    Method factory = null;
+    Method newThreadPerTaskExecutor = null;
+    try {
+      ofVirtual = Thread.class.getMethod("ofVirtual");
+      final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+      name = builder.getMethod("name", String.class, long.class);
+      factory = builder.getMethod("factory");
+      newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+
+      // the methods exist as a preview on java 19-20, where they throw unless preview features are enabled.
+      newExecutor(ofVirtual, name, factory, newThreadPerTaskExecutor, "ob1k-probe").shutdown();
+    } catch (final Throwable e) {
+      // not supported by this JVM.
+      ofVirtual = null;
+      name = null;
+      factory = null;
+      newThreadPerTaskExecutor = null;
+    }
+
+    OF_VIRTUAL = ofVirtual;
+    NAME = name;
+    FACTORY = factory;
+    NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+  }
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * @return whether virtual threads can be created, i.e. the JVM has them and they are not a disabled preview.
+   */
+  public static boolean isSupported() {
+    return OF_VIRTUAL != null;
+  }
+
+  /**
+   * @param threadNamePrefix the prefix of the threads' names, followed by a running number
+   * @return an executor starting a new virtual thread for each task
+   * @throws UnsupportedOperationException if the JVM doesn't support virtual threads
+   */
+  public static ExecutorService newVirtualThreadPerTaskExecutor(final String threadNamePrefix) {
+    if (!isSupported()) {
+      throw new UnsupportedOperationException("virtual threads are not supported by java " +
+          System.getProperty("java.version"));
+    }
+
+    try {
+      return newExecutor(OF_VIRTUAL, NAME, FACTORY, NEW_THREAD_PER_TASK_EXECUTOR, threadNamePrefix);
+    } catch (final Exception e) {
+      throw new UnsupportedOperationException("can't create a virtual thread executor", e);
+    }
+  }
+
+  private static ExecutorService newExecutor(final Method ofVirtual, final Method name, final Method factory,
+                                             final Method newThreadPerTaskExecutor, final String threadNamePrefix)
+      throws Exception {
+    final Object builder = name.invoke(ofVirtual.invoke(null), threadNamePrefix + "-virtual-thread-", 0L);
+    final ThreadFactory threadFactory = (ThreadFactory) factory.invoke(builder);
+    return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+  }
+}
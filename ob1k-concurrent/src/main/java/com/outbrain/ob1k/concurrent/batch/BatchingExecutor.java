@@ -0,0 +1,263 @@
+package com.outbrain.ob1k.concurrent.batch;
+
+import com.google.common.base.Function;
+import com.outbrain.ob1k.concurrent.CancellationToken;
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.Consumer;
+import com.outbrain.ob1k.concurrent.Scheduler;
+import com.outbrain.ob1k.concurrent.Try;
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * merges concurrent single key calls into bulk calls.
+ *
+ * keys requested within a window are collected into a batch that is sent to the bulk function once the window
+ * ends or the batch is full, whichever comes first. every key appears once in the bulk call no matter how many
+ * callers asked for it, and every caller gets its own future that completes with the value of its key, null if
+ * the bulk result has no value for it, or the error of the bulk call.
+ * cancelling the future of a caller doesn't affect the batch or the other callers of the same key.
+ * a batch whose window ended is dispatched on the executor rather than on the scheduler's thread, so a slow bulk
+ * function or slow continuations of the callers don't hold up the timers of the process.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class BatchingExecutor<K, V> {
+  private final Function<Set<K>, ComposableFuture<Map<K, V>>> bulk;
+  private final int maxBatchSize;
+  private final long maxDelayNanos;
+  private final Scheduler scheduler;
+  private final Executor executor;
+
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong keys = new AtomicLong();
+
+  // the batch collecting keys, guarded by this.
+  private Batch pending;
+
+  private BatchingExecutor(final Builder<K, V> builder) {
+    this.bulk = builder.bulk;
+    this.maxBatchSize = builder.maxBatchSize;
+    this.maxDelayNanos = builder.maxDelayNanos;
+    this.scheduler = builder.scheduler == null ? ComposableFutures.getScheduler() : builder.scheduler;
+    this.executor = builder.executor == null ? ComposableFutures.getExecutor() : builder.executor;
+  }
+
+  /**
+   * @param bulk fetches the values of a set of keys, keys without a value may be left out of the result.
+   */
+  public static <K, V> Builder<K, V> builder(final Function<Set<K>, ComposableFuture<Map<K, V>>> bulk) {
+    return new Builder<>(bulk);
+  }
+
+  /**
+   * adds the key to the current batch.
+   *
+   * @return the value of the key once the batch completes.
+   */
+  public ComposableFuture<V> get(final K key) {
+    requests.incrementAndGet();
+    final ComposablePromise<V> result = ComposableFutures.newPromise();
+    final Batch full;
+    synchronized (this) {
+      if (pending == null) {
+        pending = new Batch();
+        if (maxBatchSize > 1) {
+          pending.timer = scheduler.schedule(pending, maxDelayNanos, TimeUnit.NANOSECONDS);
+        }
+      }
+
+      pending.add(key, result);
+      if (pending.callers.size() < maxBatchSize) {
+        return result.future();
+      }
+
+      full = pending;
+      pending = null;
+    }
+
+    if (full.timer != null) {
+      full.timer.cancel(false);
+    }
+
+    full.dispatch();
+    return result.future();
+  }
+
+  /**
+   * @return the number of bulk calls made so far.
+   */
+  public long getBatches() {
+    return batches.get();
+  }
+
+  /**
+   * @return the number of single key calls made so far.
+   */
+  public long getRequests() {
+    return requests.get();
+  }
+
+  /**
+   * @return the number of keys sent in bulk calls so far, lower than the requests when keys were deduplicated.
+   */
+  public long getKeys() {
+    return keys.get();
+  }
+
+  /**
+   * the keys collected in a window along with the callers waiting for each of them.
+   */
+  private final class Batch implements Runnable {
+    private final Map<K, List<ComposablePromise<V>>> callers = new LinkedHashMap<>();
+    private CancellationToken timer;
+
+    private void add(final K key, final ComposablePromise<V> caller) {
+      List<ComposablePromise<V>> keyCallers = callers.get(key);
+      if (keyCallers == null) {
+        keyCallers = new ArrayList<>(1);
+        callers.put(key, keyCallers);
+      }
+
+      keyCallers.add(caller);
+    }
+
+    // the window ended.
+    @Override
+    public void run() {
+      synchronized (BatchingExecutor.this) {
+        if (pending != this) {
+          // dispatched when filled up.
+          return;
+        }
+
+        pending = null;
+      }
+
+      try {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            dispatch();
+          }
+        });
+      } catch (final RejectedExecutionException e) {
+        fail(e);
+      }
+    }
+
+    private void dispatch() {
+      batches.incrementAndGet();
+      keys.addAndGet(callers.size());
+
+      final ComposableFuture<Map<K, V>> values;
+      try {
+        values = bulk.apply(Collections.unmodifiableSet(callers.keySet()));
+      } catch (final RuntimeException e) {
+        fail(e);
+        return;
+      }
+
+      if (values == null) {
+        complete(Collections.<K, V>emptyMap());
+        return;
+      }
+
+      values.consume(new Consumer<Map<K, V>>() {
+        @Override
+        public void consume(final Try<Map<K, V>> result) {
+          if (!result.isSuccess()) {
+            fail(result.getError());
+          } else if (result.getValue() == null) {
+            complete(Collections.<K, V>emptyMap());
+          } else {
+            complete(result.getValue());
+          }
+        }
+      });
+    }
+
+    private void complete(final Map<K, V> values) {
+      for (final Map.Entry<K, List<ComposablePromise<V>>> entry : callers.entrySet()) {
+        final V value = values.get(entry.getKey());
+        for (final ComposablePromise<V> caller : entry.getValue()) {
+          caller.set(value);
+        }
+      }
+    }
+
+    private void fail(final Throwable error) {
+      for (final List<ComposablePromise<V>> keyCallers : callers.values()) {
+        for (final ComposablePromise<V> caller : keyCallers) {
+          caller.setException(error);
+        }
+      }
+    }
+  }
+
+  public static class Builder<K, V> {
+    private final Function<Set<K>, ComposableFuture<Map<K, V>>> bulk;
+    private int maxBatchSize = 100;
+    private long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(2);
+    private Scheduler scheduler;
+    private Executor executor;
+
+    private Builder(final Function<Set<K>, ComposableFuture<Map<K, V>>> bulk) {
+      this.bulk = bulk;
+    }
+
+    /**
+     * the number of distinct keys that dispatches a batch without waiting for the window to end.
+     */
+    public Builder<K, V> setMaxBatchSize(final int maxBatchSize) {
+      if (maxBatchSize < 1) {
+        throw new IllegalArgumentException("max batch size must be positive, got " + maxBatchSize);
+      }
+
+      this.maxBatchSize = maxBatchSize;
+      return this;
+    }
+
+    /**
+     * the window in which keys are collected, i.e. the longest a call waits before its batch is dispatched.
+     */
+    public Builder<K, V> setMaxDelay(final long maxDelay, final TimeUnit unit) {
+      if (maxDelay <= 0) {
+        throw new IllegalArgumentException("max delay must be positive, got " + maxDelay + " " + unit);
+      }
+
+      this.maxDelayNanos = unit.toNanos(maxDelay);
+      return this;
+    }
+
+    public Builder<K, V> setScheduler(final Scheduler scheduler) {
+      this.scheduler = scheduler;
+      return this;
+    }
+
+    /**
+     * the executor batches are dispatched on once their window ends, the futures' executor by default.
+     */
+    public Builder<K, V> setExecutor(final Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    public BatchingExecutor<K, V> build() {
+      return new BatchingExecutor<>(this);
+    }
+  }
+}
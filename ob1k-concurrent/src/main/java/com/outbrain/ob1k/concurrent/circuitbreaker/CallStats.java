@@ -0,0 +1,110 @@
+package com.outbrain.ob1k.concurrent.circuitbreaker;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * counts calls, failures and slow calls over a sliding time window, split into a ring of time buckets.
+ *
+ * a bucket belongs to a single period of time and is replaced(by a CAS) by the first call of a newer period
+ * that maps to the same slot, so recording a call never locks and old periods expire without a cleaner.
+ * a call racing with the replacement of its bucket may be lost, the stats are an estimate.
+ */
+class CallStats {
+  private final long startNanos = System.nanoTime();
+  private final long bucketNanos;
+  private final AtomicReferenceArray<Bucket> buckets;
+
+  CallStats(final long windowNanos, final int bucketCount) {
+    this.bucketNanos = Math.max(windowNanos / bucketCount, 1);
+    this.buckets = new AtomicReferenceArray<>(bucketCount);
+  }
+
+  void record(final long nowNanos, final boolean failure, final boolean slow) {
+    final Bucket bucket = bucket(period(nowNanos));
+    if (bucket == null) {
+      return;
+    }
+
+    bucket.calls.incrementAndGet();
+    if (failure) {
+      bucket.failures.incrementAndGet();
+    }
+
+    if (slow) {
+      bucket.slowCalls.incrementAndGet();
+    }
+  }
+
+  private long period(final long nowNanos) {
+    return (nowNanos - startNanos) / bucketNanos;
+  }
+
+  private Bucket bucket(final long period) {
+    final int index = (int) (period % buckets.length());
+    while (true) {
+      final Bucket current = buckets.get(index);
+      if (current != null && current.period == period) {
+        return current;
+      }
+
+      if (current != null && current.period > period) {
+        // a very late call, its period is gone.
+        return null;
+      }
+
+      final Bucket next = new Bucket(period);
+      if (buckets.compareAndSet(index, current, next)) {
+        return next;
+      }
+    }
+  }
+
+  Snapshot snapshot(final long nowNanos) {
+    final long oldest = period(nowNanos) - buckets.length() + 1;
+    int calls = 0;
+    int failures = 0;
+    int slowCalls = 0;
+    for (int i = 0; i < buckets.length(); i++) {
+      final Bucket bucket = buckets.get(i);
+      if (bucket != null && bucket.period >= oldest) {
+        calls += bucket.calls.get();
+        failures += bucket.failures.get();
+        slowCalls += bucket.slowCalls.get();
+      }
+    }
+
+    return new Snapshot(calls, failures, slowCalls);
+  }
+
+  private static final class Bucket {
+    private final long period;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger slowCalls = new AtomicInteger();
+
+    private Bucket(final long period) {
+      this.period = period;
+    }
+  }
+
+  static final class Snapshot {
+    final int calls;
+    final int failures;
+    final int slowCalls;
+
+    private Snapshot(final int calls, final int failures, final int slowCalls) {
+      this.calls = calls;
+      this.failures = failures;
+      this.slowCalls = slowCalls;
+    }
+
+    double failureRate() {
+      return calls == 0 ? 0 : 100.0 * failures / calls;
+    }
+
+    double slowCallRate() {
+      return calls == 0 ? 0 : 100.0 * slowCalls / calls;
+    }
+  }
+}
@@ -0,0 +1,293 @@
+package com.outbrain.ob1k.concurrent.circuitbreaker;
+
+import com.google.common.base.Predicate;
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.Consumer;
+import com.outbrain.ob1k.concurrent.Try;
+import com.outbrain.ob1k.concurrent.handlers.FutureAction;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * stops calling a failing target for a while, instead of adding load to it while it is down.
+ *
+ * while closed, every call is recorded in a sliding time window. once the window holds enough calls and either
+ * the failure rate or the slow call rate crosses its threshold the circuit opens, and calls fail right away with
+ * a {@link CircuitOpenException} without being executed. after the open duration the circuit is half open:
+ * a few trial calls are let through, if all of them succeed the circuit closes with a fresh window, and if
+ * one of them fails it opens again.
+ *
+ * the state is an immutable object replaced by CAS, no call ever takes a lock.
+ */
+public class CircuitBreaker {
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final String name;
+  private final long windowNanos;
+  private final int windowBuckets;
+  private final int minimumCalls;
+  private final double failureRateThreshold;
+  private final double slowCallRateThreshold;
+  private final long slowCallNanos;
+  private final long openNanos;
+  private final int halfOpenCalls;
+  private final Predicate<Throwable> failurePredicate;
+
+  private final AtomicReference<Circuit> circuit;
+
+  private CircuitBreaker(final String name, final Builder builder) {
+    this.name = name;
+    this.windowNanos = builder.windowNanos;
+    this.windowBuckets = builder.windowBuckets;
+    this.minimumCalls = builder.minimumCalls;
+    this.failureRateThreshold = builder.failureRateThreshold;
+    this.slowCallRateThreshold = builder.slowCallRateThreshold;
+    this.slowCallNanos = builder.slowCallNanos;
+    this.openNanos = builder.openNanos;
+    this.halfOpenCalls = builder.halfOpenCalls;
+    this.failurePredicate = builder.failurePredicate;
+    this.circuit = new AtomicReference<>(closed());
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * executes the action if the circuit allows it.
+   *
+   * @return the result of the action, or a {@link CircuitOpenException} if the circuit is open
+   */
+  public <T> ComposableFuture<T> execute(final FutureAction<T> action) {
+    final Circuit current = acquire();
+    if (current == null) {
+      return ComposableFutures.fromError(new CircuitOpenException("circuit " + name + " is open"));
+    }
+
+    final long start = System.nanoTime();
+    final ComposableFuture<T> result;
+    try {
+      result = action.execute();
+    } catch (final Exception e) {
+      onComplete(current, start, e);
+      return ComposableFutures.fromError(e);
+    }
+
+    result.consume(new Consumer<T>() {
+      @Override
+      public void consume(final Try<T> res) {
+        onComplete(current, start, res.isSuccess() ? null : res.getError());
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * @return the circuit the call was admitted to, or null if the call is rejected.
+   */
+  private Circuit acquire() {
+    while (true) {
+      final Circuit current = circuit.get();
+      switch (current.state) {
+        case CLOSED:
+          return current;
+
+        case OPEN:
+          if (System.nanoTime() - current.sinceNanos < openNanos) {
+            return null;
+          }
+
+          circuit.compareAndSet(current, halfOpen());
+          break;
+
+        default:
+          // half open, only a few trial calls pass.
+          while (true) {
+            final int permits = current.permits.get();
+            if (permits == 0) {
+              return null;
+            }
+
+            if (current.permits.compareAndSet(permits, permits - 1)) {
+              return current;
+            }
+          }
+      }
+    }
+  }
+
+  private void onComplete(final Circuit admittedTo, final long startNanos, final Throwable error) {
+    if (error instanceof CancellationException) {
+      // says nothing about the target, but a trial call must give its permit back.
+      if (admittedTo.state == State.HALF_OPEN) {
+        admittedTo.permits.incrementAndGet();
+      }
+
+      return;
+    }
+
+    final long now = System.nanoTime();
+    final boolean failure = error != null && failurePredicate.apply(error);
+    if (admittedTo.state == State.CLOSED) {
+      admittedTo.stats.record(now, failure, now - startNanos >= slowCallNanos);
+      if (shouldOpen(admittedTo.stats.snapshot(now))) {
+        circuit.compareAndSet(admittedTo, open(now));
+      }
+    } else if (admittedTo.state == State.HALF_OPEN) {
+      if (failure || now - startNanos >= slowCallNanos) {
+        circuit.compareAndSet(admittedTo, open(now));
+      } else if (admittedTo.successes.incrementAndGet() == halfOpenCalls) {
+        circuit.compareAndSet(admittedTo, closed());
+      }
+    }
+  }
+
+  private boolean shouldOpen(final CallStats.Snapshot snapshot) {
+    return snapshot.calls >= minimumCalls &&
+        (snapshot.failureRate() >= failureRateThreshold || snapshot.slowCallRate() >= slowCallRateThreshold);
+  }
+
+  private Circuit closed() {
+    return new Circuit(State.CLOSED, System.nanoTime(), new CallStats(windowNanos, windowBuckets), 0);
+  }
+
+  private Circuit open(final long nowNanos) {
+    return new Circuit(State.OPEN, nowNanos, null, 0);
+  }
+
+  private Circuit halfOpen() {
+    return new Circuit(State.HALF_OPEN, System.nanoTime(), null, halfOpenCalls);
+  }
+
+  public State getState() {
+    final Circuit current = circuit.get();
+    if (current.state == State.OPEN && System.nanoTime() - current.sinceNanos >= openNanos) {
+      // turns half open on the next call.
+      return State.HALF_OPEN;
+    }
+
+    return current.state;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * a state of the circuit along with the counters used while in that state.
+   */
+  private static final class Circuit {
+    private final State state;
+    private final long sinceNanos;
+    private final CallStats stats;
+    private final AtomicInteger permits;
+    private final AtomicInteger successes = new AtomicInteger();
+
+    private Circuit(final State state, final long sinceNanos, final CallStats stats, final int permits) {
+      this.state = state;
+      this.sinceNanos = sinceNanos;
+      this.stats = stats;
+      this.permits = new AtomicInteger(permits);
+    }
+  }
+
+  public static class Builder {
+    private long windowNanos = TimeUnit.SECONDS.toNanos(10);
+    private int windowBuckets = 10;
+    private int minimumCalls = 20;
+    private double failureRateThreshold = 50;
+    private double slowCallRateThreshold = 100;
+    private long slowCallNanos = TimeUnit.SECONDS.toNanos(60);
+    private long openNanos = TimeUnit.SECONDS.toNanos(5);
+    private int halfOpenCalls = 3;
+    private Predicate<Throwable> failurePredicate = new Predicate<Throwable>() {
+      @Override
+      public boolean apply(final Throwable error) {
+        return true;
+      }
+    };
+
+    private Builder() {
+    }
+
+    /**
+     * the time window the failure and slow call rates are computed over, split into the given number of buckets.
+     */
+    public Builder setWindow(final long duration, final TimeUnit unit, final int buckets) {
+      if (duration <= 0 || buckets < 1) {
+        throw new IllegalArgumentException("invalid window: " + duration + " " + unit + ", " + buckets + " buckets");
+      }
+
+      this.windowNanos = unit.toNanos(duration);
+      this.windowBuckets = buckets;
+      return this;
+    }
+
+    /**
+     * the number of calls in the window below which the circuit never opens.
+     */
+    public Builder setMinimumCalls(final int minimumCalls) {
+      this.minimumCalls = minimumCalls;
+      return this;
+    }
+
+    /**
+     * the percentage of failed calls that opens the circuit.
+     */
+    public Builder setFailureRateThreshold(final double percent) {
+      this.failureRateThreshold = percent;
+      return this;
+    }
+
+    /**
+     * the percentage of slow calls that opens the circuit, and how long a call takes to be considered slow.
+     */
+    public Builder setSlowCallThreshold(final double percent, final long duration, final TimeUnit unit) {
+      this.slowCallRateThreshold = percent;
+      this.slowCallNanos = unit.toNanos(duration);
+      return this;
+    }
+
+    /**
+     * how long the circuit stays open before trial calls are let through.
+     */
+    public Builder setOpenDuration(final long duration, final TimeUnit unit) {
+      this.openNanos = unit.toNanos(duration);
+      return this;
+    }
+
+    /**
+     * the number of successful trial calls that close the circuit.
+     */
+    public Builder setHalfOpenCalls(final int halfOpenCalls) {
+      if (halfOpenCalls < 1) {
+        throw new IllegalArgumentException("halfOpenCalls must be positive: " + halfOpenCalls);
+      }
+
+      this.halfOpenCalls = halfOpenCalls;
+      return this;
+    }
+
+    /**
+     * decides which errors count as failures, e.g. to ignore client errors. all of them by default.
+     */
+    public Builder setFailurePredicate(final Predicate<Throwable> failurePredicate) {
+      this.failurePredicate = failurePredicate;
+      return this;
+    }
+
+    /**
+     * @param name the name of the breaker, appears in its errors
+     */
+    public CircuitBreaker build(final String name) {
+      return new CircuitBreaker(name, this);
+    }
+  }
+}
@@ -0,0 +1,16 @@
+package com.outbrain.ob1k.concurrent.circuitbreaker;
+
+/**
+ * the error of a future whose action was not executed because the circuit breaker is open.
+ */
+public class CircuitOpenException extends RuntimeException {
+  public CircuitOpenException(final String message) {
+    super(message);
+  }
+
+  // thrown on every call while the circuit is open, the stack trace isn't worth the cost.
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
@@ -1,367 +1,364 @@
 package com.outbrain.ob1k.concurrent.combiners;
 
 import com.outbrain.ob1k.concurrent.*;
-import com.outbrain.ob1k.concurrent.handlers.FutureSuccessHandler;
-import com.outbrain.ob1k.concurrent.handlers.SuccessHandler;
+import com.outbrain.ob1k.concurrent.eager.EagerComposableFuture;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import static com.outbrain.ob1k.concurrent.ComposableFutures.fromError;
 import static com.outbrain.ob1k.concurrent.ComposableFutures.fromValue;
-import static com.outbrain.ob1k.concurrent.ComposableFutures.schedule;
 
 /**
  * combines two or more futures into one.
+ * the results are gathered by index into preallocated slots(see {@link SlotCombiner}), without intermediate
+ * maps or containers.
  *
  * @author aronen on 9/2/14.
  */
 public class Combiner {
 
   public static <T> ComposableFuture<T> any(final Iterable<ComposableFuture<T>> elements) {
-    return ComposableFutures.build(new Producer<T>() {
+    return ComposableFutures.buildCancellable(new CancellableProducer<T>() {
       @Override
-      public void produce(final Consumer<T> consumer) {
+      public CancellationToken produce(final Consumer<T> consumer) {
         final AtomicBoolean done = new AtomicBoolean();
+        // the futures may be shared with other callers, the losers are only let go of.
+        final List<CancellationToken> dependencies = new ArrayList<>();
+        for (final ComposableFuture<T> future : elements) {
+          dependencies.add(EagerComposableFuture.dependencyOn(future));
+        }
+
+        final CancellationToken cancelAll = new CancellationToken() {
+          @Override
+          public boolean cancel(final boolean mayInterrupt) {
+            boolean cancelled = false;
+            for (final CancellationToken dependency : dependencies) {
+              cancelled |= dependency.cancel(mayInterrupt);
+            }
+
+            return cancelled;
+          }
+        };
+
         for (final ComposableFuture<T> future : elements) {
           future.consume(new Consumer<T>() {
             @Override
             public void consume(final Try<T> result) {
               if (done.compareAndSet(false, true)) {
                 consumer.consume(result);
+                // the rest of the futures lost the race, no need to keep them running.
+                cancelAll.cancel(false);
               }
             }
           });
         }
+
+        return cancelAll;
       }
     });
   }
 
   public static <T> ComposableFuture<List<T>> all(final boolean failOnError, final Iterable<ComposableFuture<T>> elements) {
-    final Map<Integer, ComposableFuture<T>> elementsMap = new HashMap<>();
-    int index = 0;
-    for (final ComposableFuture<T> element : elements) {
-      elementsMap.put(index++, element);
-    }
+    final List<ComposableFuture<T>> futures = elements instanceof List ?
+        (List<ComposableFuture<T>>) elements : toList(elements);
 
-    return all(failOnError, elementsMap).continueOnSuccess(new SuccessHandler<Map<Integer, T>, List<T>>() {
+    return new SlotCombiner<List<T>>(futures.toArray(new ComposableFuture<?>[futures.size()]),
+        futures.size(), futures.size(), failOnError, false) {
       @Override
-      public List<T> handle(final Map<Integer, T> result) {
-        return new ArrayList<>(result.values());
+      protected ComposableFuture<List<T>> collect() {
+        final List<T> result = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+          final T value = value(i);
+          if (value != null) {
+            result.add(value);
+          }
+        }
+
+        return fromValue(result);
       }
-    });
+    }.start(null, null);
   }
 
   public static <K, T> ComposableFuture<Map<K, T>> all(final boolean failOnError, final Map<K, ComposableFuture<T>> elements) {
-    return first(elements, elements.size(), failOnError, null, null);
-  }
-
-  private static class Status {
-    final int total;
-    final int minSuccessful;
-
-    final int results;
-    final int successfulResults;
-    final boolean finished;
-
-    private Status(final int total, final int minSuccessful,
-                   final int results, final int successfulResults,
-                   final boolean finished) {
-      this.total = total;
-      this.minSuccessful = minSuccessful;
-      this.results = results;
-      this.successfulResults = successfulResults;
-      this.finished = finished;
-    }
-
-    boolean isDone() {
-      return finished || results == total || successfulResults >= minSuccessful;
-    }
-  }
-
-  private static class KeyValue<K, V> {
-    final K key;
-    final V value;
-
-    private KeyValue(final K key, final V value) {
-      this.key = key;
-      this.value = value;
-    }
+    return gather(elements, elements.size(), elements.size(), failOnError, false, null, null);
   }
 
+  /**
+   * completes once numOfSuccess of the futures succeeded, or as soon as that is no longer possible because too
+   * many of them failed, or when the timeout expires. the futures still running are cancelled.
+   */
   public static <K, T> ComposableFuture<Map<K, T>> first(final Map<K, ComposableFuture<T>> elements, final int numOfSuccess,
                                                          final boolean failOnError, final Long timeout, final TimeUnit timeUnit) {
+    return gather(elements, numOfSuccess, elements.size() - numOfSuccess, failOnError, true, timeout, timeUnit);
+  }
 
-    if (elements.isEmpty()) {
-      final Map<K, T> empty = new HashMap<>();
-      return fromValue(empty);
+  @SuppressWarnings("unchecked")
+  private static <K, T> ComposableFuture<Map<K, T>> gather(final Map<K, ComposableFuture<T>> elements,
+                                                           final int minSuccessful, final int maxFailures,
+                                                           final boolean failOnError, final boolean cancelRest,
+                                                           final Long timeout, final TimeUnit timeUnit) {
+    final int size = elements.size();
+    final Object[] keys = new Object[size];
+    final ComposableFuture<?>[] futures = new ComposableFuture<?>[size];
+    int index = 0;
+    for (final Map.Entry<K, ComposableFuture<T>> element : elements.entrySet()) {
+      keys[index] = element.getKey();
+      futures[index] = element.getValue();
+      index++;
     }
 
-    return ComposableFutures.build(new Producer<Map<K, T>>() {
+    return new SlotCombiner<Map<K, T>>(futures, minSuccessful, maxFailures, failOnError, cancelRest) {
       @Override
-      public void produce(final Consumer<Map<K, T>> consumer) {
-        final AtomicReferenceArray<KeyValue<K, T>> results = new AtomicReferenceArray<>(elements.size());
-        final AtomicReference<Status> status = new AtomicReference<>(new Status(elements.size(), numOfSuccess, 0, 0, false));
-        int counter = 0;
-
-        if (timeout != null) {
-          schedule(new Callable<Object>() {
-            @Override
-            public Object call() throws Exception {
-              while (true) {
-                final Status currentStatus = status.get();
-                if (currentStatus.isDone())
-                  break;
-
-                final Status newStatus = new Status(currentStatus.total, currentStatus.minSuccessful,
-                    currentStatus.results, currentStatus.successfulResults, true);
-
-                final boolean success = status.compareAndSet(currentStatus, newStatus);
-                if (success) {
-                  consumer.consume(Try.fromValue(collectResults(results)));
-                  break;
-                }
-              }
-              return null;
-            }
-          }, timeout, timeUnit);
+      protected ComposableFuture<Map<K, T>> collect() {
+        final Map<K, T> result = new HashMap<>();
+        for (int i = 0; i < size(); i++) {
+          final T value = value(i);
+          if (value != null) {
+            result.put((K) keys[i], value);
+          }
         }
 
-        for (final Map.Entry<K, ComposableFuture<T>> element : elements.entrySet()) {
-          final ComposableFuture<T> future = element.getValue();
-          final K key = element.getKey();
-          final int index = counter;
-          counter++;
-
-          future.consume(new Consumer<T>() {
-            @Override
-            public void consume(final Try<T> result) {
-              if (result.isSuccess()) {
-                final T element = result.getValue();
-                results.set(index, new KeyValue<>(key, element));
-
-                while (true) {
-                  final Status currentStatus = status.get();
-                  if (currentStatus.isDone())
-                    break;
-
-                  final Status newStatus = new Status(currentStatus.total, currentStatus.minSuccessful,
-                      currentStatus.results + 1, currentStatus.successfulResults + 1, false);
-
-                  final boolean success = status.compareAndSet(currentStatus, newStatus);
-                  if (success) {
-                    if (newStatus.isDone()) {
-                      consumer.consume(Try.fromValue(collectResults(results)));
-                    }
-                    break;
-                  }
-                }
-
-              } else {
-                final Throwable error = result.getError();
-                while (true) {
-                  final Status currentStatus = status.get();
-                  if (currentStatus.isDone())
-                    break;
-
-                  final Status newStatus = new Status(currentStatus.total, currentStatus.minSuccessful,
-                      currentStatus.results + 1, currentStatus.successfulResults, failOnError);
-
-                  final boolean success = status.compareAndSet(currentStatus, newStatus);
-                  if (success) {
-                    if (failOnError) {
-                      consumer.consume(Try.<Map<K, T>>fromError(error));
-                    } else {
-                      if (newStatus.isDone()) {
-                        consumer.consume(Try.fromValue(collectResults(results)));
-                      }
-                    }
-                    break;
-                  }
-                }
-              }
-            }
-          });
-        }
+        return fromValue(result);
       }
-    });
+    }.start(timeout, timeUnit);
   }
 
-  private static <K, T> Map<K, T> collectResults(final AtomicReferenceArray<KeyValue<K, T>> elements) {
-    final Map<K, T> result = new HashMap<>();
-    for (int i=0; i< elements.length(); i++) {
-      final KeyValue<K, T> element = elements.get(i);
-      if (element != null && element.value != null) {
-        result.put(element.key, element.value);
-      }
+  private static <T> List<T> toList(final Iterable<T> elements) {
+    final List<T> list = new ArrayList<>();
+    for (final T element : elements) {
+      list.add(element);
     }
 
-    return result;
+    return list;
   }
 
-  public static <T1, T2, R> ComposableFuture<R> combine(final ComposableFuture<T1> left, final ComposableFuture<T2> right, final BiFunction<T1, T2, R> combiner) {
-    final ComposableFuture<BiContainer<T1, T2>> upliftLeft = left.continueOnSuccess(new SuccessHandler<T1, BiContainer<T1, T2>>() {
-      @Override
-      public BiContainer<T1, T2> handle(final T1 result) {
-        return new BiContainer<>(result, null);
-      }
-    });
-
-    final ComposableFuture<BiContainer<T1, T2>> upliftRight = right.continueOnSuccess(new SuccessHandler<T2, BiContainer<T1, T2>>() {
-      @Override
-      public BiContainer<T1, T2> handle(final T2 result) {
-        return new BiContainer<>(null, result);
-      }
-    });
-
-    final HashMap<String, ComposableFuture<BiContainer<T1, T2>>> elements = new HashMap<>();
-    final String leftKey = "left";
-    final String rightKey = "right";
-    elements.put(leftKey, upliftLeft);
-    elements.put(rightKey, upliftRight);
+  /**
+   * builds the combined value out of the slots of all the futures.
+   */
+  private interface Combination<R> {
+    ComposableFuture<R> apply(SlotCombiner<R> slots) throws ExecutionException;
+  }
 
-    return all(true, elements).continueOnSuccess(new SuccessHandler<Map<String, BiContainer<T1, T2>>, R>() {
+  private static <R> ComposableFuture<R> combine(final Combination<R> combination, final ComposableFuture<?>... futures) {
+    return new SlotCombiner<R>(futures, futures.length, 0, true, false) {
       @Override
-      public R handle(final Map<String, BiContainer<T1, T2>> result) throws ExecutionException {
-        final BiContainer<T1, T2> leftContainer = result.get(leftKey);
-        final BiContainer<T1, T2> rightContainer = result.get(rightKey);
-        return combiner.apply(leftContainer.left, rightContainer.right);
+      protected ComposableFuture<R> collect() {
+        try {
+          return combination.apply(this);
+        } catch (final ExecutionException e) {
+          return fromError(e.getCause() != null ? e.getCause() : e);
+        }
       }
-    });
+    }.start(null, null);
   }
 
-  public static <T1, T2, R> ComposableFuture<R> combine(final ComposableFuture<T1> left, final ComposableFuture<T2> right, final FutureBiFunction<T1, T2, R> combiner) {
-    final ComposableFuture<BiContainer<T1, T2>> upliftLeft = left.continueOnSuccess(new SuccessHandler<T1, BiContainer<T1, T2>>() {
+  public static <T1, T2, R> ComposableFuture<R> combine(final ComposableFuture<T1> left,
+                                                        final ComposableFuture<T2> right,
+                                                        final BiFunction<T1, T2, R> combiner) {
+    return combine(new Combination<R>() {
       @Override
-      public BiContainer<T1, T2> handle(final T1 result) {
-        return new BiContainer<>(result, null);
+      public ComposableFuture<R> apply(final SlotCombiner<R> slots) throws ExecutionException {
+        return fromValue(combiner.apply(slots.<T1>value(0), slots.<T2>value(1)));
       }
-    });
+    }, left, right);
+  }
 
-    final ComposableFuture<BiContainer<T1, T2>> upliftRight = right.continueOnSuccess(new SuccessHandler<T2, BiContainer<T1, T2>>() {
+  public static <T1, T2, R> ComposableFuture<R> combine(final ComposableFuture<T1> left,
+                                                        final ComposableFuture<T2> right,
+                                                        final FutureBiFunction<T1, T2, R> combiner) {
+    return combine(new Combination<R>() {
       @Override
-      public BiContainer<T1, T2> handle(final T2 result) {
-        return new BiContainer<>(null, result);
+      public ComposableFuture<R> apply(final SlotCombiner<R> slots) throws ExecutionException {
+        return combiner.apply(slots.<T1>value(0), slots.<T2>value(1));
       }
-    });
-
-    final HashMap<String, ComposableFuture<BiContainer<T1, T2>>> elements = new HashMap<>();
-    final String leftKey = "left";
-    final String rightKey = "right";
-    elements.put(leftKey, upliftLeft);
-    elements.put(rightKey, upliftRight);
+    }, left, right);
+  }
 
-    return all(true, elements).continueOnSuccess(new FutureSuccessHandler<Map<String, BiContainer<T1, T2>>, R>() {
+  public static <T1, T2, T3, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                            final ComposableFuture<T2> second,
+                                                            final ComposableFuture<T3> third,
+                                                            final TriFunction<T1, T2, T3, R> combiner) {
+    return combine(new Combination<R>() {
       @Override
-      public ComposableFuture<R> handle(final Map<String, BiContainer<T1, T2>> result) {
-        final BiContainer<T1, T2> leftContainer = result.get(leftKey);
-        final BiContainer<T1, T2> rightContainer = result.get(rightKey);
-        return combiner.apply(leftContainer.left, rightContainer.right);
+      public ComposableFuture<R> apply(final SlotCombiner<R> slots) throws ExecutionException {
+        return fromValue(combiner.apply(slots.<T1>value(0), slots.<T2>value(1), slots.<T3>value(2)));
       }
-    });
+    }, first, second, third);
   }
 
   public static <T1, T2, T3, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
                                                             final ComposableFuture<T2> second,
                                                             final ComposableFuture<T3> third,
-                                                            final TriFunction<T1, T2, T3, R> combiner) {
-
-    final ComposableFuture<TriContainer<T1, T2, T3>> upliftFirst = first.continueOnSuccess(new SuccessHandler<T1, TriContainer<T1, T2, T3>>() {
+                                                            final FutureTriFunction<T1, T2, T3, R> combiner) {
+    return combine(new Combination<R>() {
       @Override
-      public TriContainer<T1, T2, T3> handle(final T1 result) {
-        return new TriContainer<>(result, null, null);
+      public ComposableFuture<R> apply(final SlotCombiner<R> slots) throws ExecutionException {
+        return combiner.apply(slots.<T1>value(0), slots.<T2>value(1), slots.<T3>value(2));
       }
-    });
+    }, first, second, third);
+  }
 
-    final ComposableFuture<TriContainer<T1, T2, T3>> upliftSecond = second.continueOnSuccess(new SuccessHandler<T2, TriContainer<T1, T2, T3>>() {
+  public static <T1, T2, T3, T4, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                final ComposableFuture<T2> second,
+                                                                final ComposableFuture<T3> third,
+                                                                final ComposableFuture<T4> fourth,
+                                                                final QuadFunction<T1, T2, T3, T4, R> combiner) {
+    return combine(new Combination<R>() {
       @Override
-      public TriContainer<T1, T2, T3> handle(final T2 result) {
-        return new TriContainer<>(null, result, null);
+      public ComposableFuture<R> apply(final SlotCombiner<R> slots) throws ExecutionException {
+        return fromValue(combiner.apply(slots.<T1>value(0), slots.<T2>value(1), slots.<T3>value(2), slots.<T4>value(3)));
       }
-    });
+    }, first, second, third, fourth);
+  }
 
-    final ComposableFuture<TriContainer<T1, T2, T3>> upliftThird = third.continueOnSuccess(new SuccessHandler<T3, TriContainer<T1, T2, T3>>() {
+  public static <T1, T2, T3, T4, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                final ComposableFuture<T2> second,
+                                                                final ComposableFuture<T3> third,
+                                                                final ComposableFuture<T4> fourth,
+                                                                final FutureQuadFunction<T1, T2, T3, T4, R> combiner) {
+    return combine(new Combination<R>() {
       @Override
-      public TriContainer<T1, T2, T3> handle(final T3 result) {
-        return new TriContainer<>(null, null, result);
+      public ComposableFuture<R> apply(final SlotCombiner<R> slots) throws ExecutionException {
+        return combiner.apply(slots.<T1>value(0), slots.<T2>value(1), slots.<T3>value(2), slots.<T4>value(3));
       }
-    });
-
-    final HashMap<String, ComposableFuture<TriContainer<T1, T2, T3>>> elements = new HashMap<>();
-    final String firstKey = "first";
-    final String secondKey = "second";
-    final String thirdKey = "third";
-
-    elements.put(firstKey, upliftFirst);
-    elements.put(secondKey, upliftSecond);
-    elements.put(thirdKey, upliftThird);
+    }, first, second, third, fourth);
+  }
 
-    return all(true, elements).continueOnSuccess(new SuccessHandler<Map<String, TriContainer<T1, T2, T3>>, R>() {
+  public static <T1, T2, T3, T4, T5, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                    final ComposableFuture<T2> second,
+                                                                    final ComposableFuture<T3> third,
+                                                                    final ComposableFuture<T4> fourth,
+                                                                    final ComposableFuture<T5> fifth,
+                                                                    final PentaFunction<T1, T2, T3, T4, T5, R> combiner) {
+    return combine(new Combination<R>() {
       @Override
-      public R handle(final Map<String, TriContainer<T1, T2, T3>> result) throws ExecutionException {
-        final TriContainer<T1, T2, T3> firstContainer = result.get(firstKey);
-        final TriContainer<T1, T2, T3> secondContainer = result.get(secondKey);
-        final TriContainer<T1, T2, T3> thirdContainer = result.get(thirdKey);
-
-        return combiner.apply(firstContainer.first, secondContainer.second, thirdContainer.third);
+      public ComposableFuture<R> apply(final SlotCombiner<R> slots) throws ExecutionException {
+        return fromValue(combiner.apply(slots.<T1>value(0), slots.<T2>value(1), slots.<T3>value(2), slots.<T4>value(3),
+            slots.<T5>value(4)));
       }
-    });
-
+    }, first, second, third, fourth, fifth);
   }
 
-  public static <T1, T2, T3, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
-                                                            final ComposableFuture<T2> second,
-                                                            final ComposableFuture<T3> third,
-                                                            final FutureTriFunction<T1, T2, T3, R> combiner) {
-
-    final ComposableFuture<TriContainer<T1, T2, T3>> upliftFirst = first.continueOnSuccess(new SuccessHandler<T1, TriContainer<T1, T2, T3>>() {
+  public static <T1, T2, T3, T4, T5, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                    final ComposableFuture<T2> second,
+                                                                    final ComposableFuture<T3> third,
+                                                                    final ComposableFuture<T4> fourth,
+                                                                    final ComposableFuture<T5> fifth,
+                                                                    final FuturePentaFunction<T1, T2, T3, T4, T5, R> combiner) {
+    return combine(new Combination<R>() {
       @Override
-      public TriContainer<T1, T2, T3> handle(final T1 result) {
-        return new TriContainer<>(result, null, null);
+      public ComposableFuture<R> apply(final SlotCombiner<R> slots) throws ExecutionException {
+        return combiner.apply(slots.<T1>value(0), slots.<T2>value(1), slots.<T3>value(2), slots.<T4>value(3),
+            slots.<T5>value(4));
       }
-    });
+    }, first, second, third, fourth, fifth);
+  }
 
-    final ComposableFuture<TriContainer<T1, T2, T3>> upliftSecond = second.continueOnSuccess(new SuccessHandler<T2, TriContainer<T1, T2, T3>>() {
+  public static <T1, T2, T3, T4, T5, T6, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                        final ComposableFuture<T2> second,
+                                                                        final ComposableFuture<T3> third,
+                                                                        final ComposableFuture<T4> fourth,
+                                                                        final ComposableFuture<T5> fifth,
+                                                                        final ComposableFuture<T6> sixth,
+                                                                        final HexaFunction<T1, T2, T3, T4, T5, T6, R> combiner) {
+    return combine(new Combination<R>() {
       @Override
-      public TriContainer<T1, T2, T3> handle(final T2 result) {
-        return new TriContainer<>(null, result, null);
+      public ComposableFuture<R> apply(final SlotCombiner<R> slots) throws ExecutionException {
+        return fromValue(combiner.apply(slots.<T1>value(0), slots.<T2>value(1), slots.<T3>value(2), slots.<T4>value(3),
+            slots.<T5>value(4), slots.<T6>value(5)));
       }
-    });
+    }, first, second, third, fourth, fifth, sixth);
+  }
 
-    final ComposableFuture<TriContainer<T1, T2, T3>> upliftThird = third.continueOnSuccess(new SuccessHandler<T3, TriContainer<T1, T2, T3>>() {
+  public static <T1, T2, T3, T4, T5, T6, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                        final ComposableFuture<T2> second,
+                                                                        final ComposableFuture<T3> third,
+                                                                        final ComposableFuture<T4> fourth,
+                                                                        final ComposableFuture<T5> fifth,
+                                                                        final ComposableFuture<T6> sixth,
+                                                                        final FutureHexaFunction<T1, T2, T3, T4, T5, T6, R> combiner) {
+    return combine(new Combination<R>() {
       @Override
-      public TriContainer<T1, T2, T3> handle(final T3 result) {
-        return new TriContainer<>(null, null, result);
+      public ComposableFuture<R> apply(final SlotCombiner<R> slots) throws ExecutionException {
+        return combiner.apply(slots.<T1>value(0), slots.<T2>value(1), slots.<T3>value(2), slots.<T4>value(3),
+            slots.<T5>value(4), slots.<T6>value(5));
       }
-    });
-
-    final HashMap<String, ComposableFuture<TriContainer<T1, T2, T3>>> elements = new HashMap<>();
-    final String firstKey = "first";
-    final String secondKey = "second";
-    final String thirdKey = "third";
-
-    elements.put(firstKey, upliftFirst);
-    elements.put(secondKey, upliftSecond);
-    elements.put(thirdKey, upliftThird);
+    }, first, second, third, fourth, fifth, sixth);
+  }
 
-    return all(true, elements).continueOnSuccess(new FutureSuccessHandler<Map<String, TriContainer<T1, T2, T3>>, R>() {
+  public static <T1, T2, T3, T4, T5, T6, T7, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                            final ComposableFuture<T2> second,
+                                                                            final ComposableFuture<T3> third,
+                                                                            final ComposableFuture<T4> fourth,
+                                                                            final ComposableFuture<T5> fifth,
+                                                                            final ComposableFuture<T6> sixth,
+                                                                            final ComposableFuture<T7> seventh,
+                                                                            final HeptaFunction<T1, T2, T3, T4, T5, T6, T7, R> combiner) {
+    return combine(new Combination<R>() {
       @Override
-      public ComposableFuture<R> handle(final Map<String, TriContainer<T1, T2, T3>> result) {
-        final TriContainer<T1, T2, T3> firstContainer = result.get(firstKey);
-        final TriContainer<T1, T2, T3> secondContainer = result.get(secondKey);
-        final TriContainer<T1, T2, T3> thirdContainer = result.get(thirdKey);
+      public ComposableFuture<R> apply(final SlotCombiner<R> slots) throws ExecutionException {
+        return fromValue(combiner.apply(slots.<T1>value(0), slots.<T2>value(1), slots.<T3>value(2), slots.<T4>value(3),
+            slots.<T5>value(4), slots.<T6>value(5), slots.<T7>value(6)));
+      }
+    }, first, second, third, fourth, fifth, sixth, seventh);
+  }
 
-        return combiner.apply(firstContainer.first, secondContainer.second, thirdContainer.third);
+  public static <T1, T2, T3, T4, T5, T6, T7, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                            final ComposableFuture<T2> second,
+                                                                            final ComposableFuture<T3> third,
+                                                                            final ComposableFuture<T4> fourth,
+                                                                            final ComposableFuture<T5> fifth,
+                                                                            final ComposableFuture<T6> sixth,
+                                                                            final ComposableFuture<T7> seventh,
+                                                                            final FutureHeptaFunction<T1, T2, T3, T4, T5, T6, T7, R> combiner) {
+    return combine(new Combination<R>() {
+      @Override
+      public ComposableFuture<R> apply(final SlotCombiner<R> slots) throws ExecutionException {
+        return combiner.apply(slots.<T1>value(0), slots.<T2>value(1), slots.<T3>value(2), slots.<T4>value(3),
+            slots.<T5>value(4), slots.<T6>value(5), slots.<T7>value(6));
       }
-    });
+    }, first, second, third, fourth, fifth, sixth, seventh);
+  }
 
+  public static <T1, T2, T3, T4, T5, T6, T7, T8, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                                final ComposableFuture<T2> second,
+                                                                                final ComposableFuture<T3> third,
+                                                                                final ComposableFuture<T4> fourth,
+                                                                                final ComposableFuture<T5> fifth,
+                                                                                final ComposableFuture<T6> sixth,
+                                                                                final ComposableFuture<T7> seventh,
+                                                                                final ComposableFuture<T8> eighth,
+                                                                                final OctaFunction<T1, T2, T3, T4, T5, T6, T7, T8, R> combiner) {
+    return combine(new Combination<R>() {
+      @Override
+      public ComposableFuture<R> apply(final SlotCombiner<R> slots) throws ExecutionException {
+        return fromValue(combiner.apply(slots.<T1>value(0), slots.<T2>value(1), slots.<T3>value(2), slots.<T4>value(3),
+            slots.<T5>value(4), slots.<T6>value(5), slots.<T7>value(6), slots.<T8>value(7)));
+      }
+    }, first, second, third, fourth, fifth, sixth, seventh, eighth);
   }
 
+  public static <T1, T2, T3, T4, T5, T6, T7, T8, R> ComposableFuture<R> combine(final ComposableFuture<T1> first,
+                                                                                final ComposableFuture<T2> second,
+                                                                                final ComposableFuture<T3> third,
+                                                                                final ComposableFuture<T4> fourth,
+                                                                                final ComposableFuture<T5> fifth,
+                                                                                final ComposableFuture<T6> sixth,
+                                                                                final ComposableFuture<T7> seventh,
+                                                                                final ComposableFuture<T8> eighth,
+                                                                                final FutureOctaFunction<T1, T2, T3, T4, T5, T6, T7, T8, R> combiner) {
+    return combine(new Combination<R>() {
+      @Override
+      public ComposableFuture<R> apply(final SlotCombiner<R> slots) throws ExecutionException {
+        return combiner.apply(slots.<T1>value(0), slots.<T2>value(1), slots.<T3>value(2), slots.<T4>value(3),
+            slots.<T5>value(4), slots.<T6>value(5), slots.<T7>value(6), slots.<T8>value(7));
+      }
+    }, first, second, third, fourth, fifth, sixth, seventh, eighth);
+  }
 }
@@ -0,0 +1,10 @@
+package com.outbrain.ob1k.concurrent.combiners;
+
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+
+/**
+ * same as a HexaFunction but allows for a long running computation to be returned.
+ */
+public interface FutureHexaFunction<T1, T2, T3, T4, T5, T6, R> {
+  ComposableFuture<R> apply(T1 first, T2 second, T3 third, T4 fourth, T5 fifth, T6 sixth);
+}
@@ -0,0 +1,10 @@
+package com.outbrain.ob1k.concurrent.combiners;
+
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+
+/**
+ * same as a QuadFunction but allows for a long running computation to be returned.
+ */
+public interface FutureQuadFunction<T1, T2, T3, T4, R> {
+  ComposableFuture<R> apply(T1 first, T2 second, T3 third, T4 fourth);
+}
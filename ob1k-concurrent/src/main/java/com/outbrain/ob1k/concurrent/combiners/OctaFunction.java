@@ -0,0 +1,10 @@
+package com.outbrain.ob1k.concurrent.combiners;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * a generic eight parameter method representation
+ */
+public interface OctaFunction<T1, T2, T3, T4, T5, T6, T7, T8, R> {
+  R apply(T1 first, T2 second, T3 third, T4 fourth, T5 fifth, T6 sixth, T7 seventh, T8 eighth) throws ExecutionException;
+}
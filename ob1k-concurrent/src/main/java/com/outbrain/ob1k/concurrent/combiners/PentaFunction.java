@@ -0,0 +1,10 @@
+package com.outbrain.ob1k.concurrent.combiners;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * a generic five parameter method representation
+ */
+public interface PentaFunction<T1, T2, T3, T4, T5, R> {
+  R apply(T1 first, T2 second, T3 third, T4 fourth, T5 fifth) throws ExecutionException;
+}
@@ -0,0 +1,10 @@
+package com.outbrain.ob1k.concurrent.combiners;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * a generic four parameter method representation
+ */
+public interface QuadFunction<T1, T2, T3, T4, R> {
+  R apply(T1 first, T2 second, T3 third, T4 fourth) throws ExecutionException;
+}
@@ -0,0 +1,212 @@
+package com.outbrain.ob1k.concurrent.combiners;
+
+import com.outbrain.ob1k.concurrent.CancellationToken;
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.Consumer;
+import com.outbrain.ob1k.concurrent.Try;
+import com.outbrain.ob1k.concurrent.eager.EagerComposableFuture;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * gathers the results of many futures into a preallocated array of slots, one slot per future by its index,
+ * and counts the successes and failures instead of rebuilding a status object on every result.
+ *
+ * the combined future completes once enough successes arrived, once there are more failures than allowed
+ * (the first one if failOnError), once all the futures completed or when the timeout expires, whatever comes
+ * first. the futures belong to the caller and are left running, unless cancelRest was asked for: then the futures
+ * that are still running at that point are let go of, and so are all of them if the combined future is cancelled.
+ * a future that is let go of is only cancelled once nobody else depends on it(see
+ * {@link EagerComposableFuture#dependencyOn}).
+ */
+abstract class SlotCombiner<R> implements CancellationToken {
+  // marks a successful null result, an empty slot is a future that didn't succeed(yet).
+  private static final Object NULL = new Object();
+
+  private final ComposableFuture<?>[] futures;
+  // the dependencies on the futures, only taken if the rest are cancelled.
+  private final CancellationToken[] dependencies;
+  private final AtomicReferenceArray<Object> slots;
+  private final int minSuccessful;
+  private final int maxFailures;
+  private final boolean failOnError;
+  private final boolean cancelRest;
+
+  private final AtomicInteger successes = new AtomicInteger();
+  private final AtomicInteger failures = new AtomicInteger();
+  private final AtomicBoolean done = new AtomicBoolean();
+  private final EagerComposableFuture<R> result = new EagerComposableFuture<>();
+  private volatile CancellationToken timer;
+
+  /**
+   * @param futures       the futures to gather
+   * @param minSuccessful the number of successes that completes the combined future
+   * @param maxFailures   the number of failures tolerated, one more completes the combined future
+   * @param failOnError   whether the first failure fails the combined future
+   * @param cancelRest    whether the futures still running are cancelled once the combined future completes
+   */
+  SlotCombiner(final ComposableFuture<?>[] futures, final int minSuccessful, final int maxFailures,
+               final boolean failOnError, final boolean cancelRest) {
+    this.futures = futures;
+    this.slots = new AtomicReferenceArray<>(futures.length);
+    this.minSuccessful = Math.min(minSuccessful, futures.length);
+    this.maxFailures = maxFailures;
+    this.failOnError = failOnError;
+    this.cancelRest = cancelRest;
+    this.dependencies = new CancellationToken[cancelRest ? futures.length : 0];
+    for (int i = 0; i < dependencies.length; i++) {
+      dependencies[i] = EagerComposableFuture.dependencyOn(futures[i]);
+    }
+  }
+
+  /**
+   * builds the value of the combined future out of the slots, called once.
+   */
+  protected abstract ComposableFuture<R> collect();
+
+  protected final int size() {
+    return slots.length();
+  }
+
+  protected final boolean hasValue(final int index) {
+    return slots.get(index) != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  protected final <T> T value(final int index) {
+    final Object value = slots.get(index);
+    return value == NULL ? null : (T) value;
+  }
+
+  @SuppressWarnings("unchecked")
+  final ComposableFuture<R> start(final Long timeout, final TimeUnit unit) {
+    result.setCancellationToken(this);
+    if (futures.length == 0) {
+      finish();
+      return result;
+    }
+
+    for (int i = 0; i < futures.length; i++) {
+      ((ComposableFuture<Object>) futures[i]).consume(new Slot(i));
+    }
+
+    if (timeout != null && !done.get()) {
+      timer = ComposableFutures.getScheduler().schedule(new Runnable() {
+        @Override
+        public void run() {
+          finish();
+        }
+      }, timeout, unit);
+
+      if (done.get()) {
+        timer.cancel(false);
+      }
+    }
+
+    return result;
+  }
+
+  private void onSuccess(final int index, final Object value) {
+    slots.set(index, value == null ? NULL : value);
+    final int succeeded = successes.incrementAndGet();
+    if (succeeded >= minSuccessful || succeeded + failures.get() == futures.length) {
+      finish();
+    }
+  }
+
+  private void onFailure(final Throwable error) {
+    final int failed = failures.incrementAndGet();
+    if (failOnError) {
+      fail(error);
+    } else if (failed > maxFailures || successes.get() + failed == futures.length) {
+      finish();
+    }
+  }
+
+  private void finish() {
+    if (!done.compareAndSet(false, true)) {
+      return;
+    }
+
+    stopRest();
+    final ComposableFuture<R> value;
+    try {
+      value = collect();
+    } catch (final Exception e) {
+      result.setException(e);
+      return;
+    }
+
+    value.consume(new Consumer<R>() {
+      @Override
+      public void consume(final Try<R> res) {
+        if (res.isSuccess()) {
+          result.set(res.getValue());
+        } else {
+          result.setException(res.getError());
+        }
+      }
+    });
+  }
+
+  private void fail(final Throwable error) {
+    if (done.compareAndSet(false, true)) {
+      stopRest();
+      result.setException(error);
+    }
+  }
+
+  private void stopRest() {
+    final CancellationToken timer = this.timer;
+    if (timer != null) {
+      timer.cancel(false);
+    }
+
+    if (cancelRest && successes.get() + failures.get() < futures.length) {
+      for (final CancellationToken dependency : dependencies) {
+        dependency.cancel(false);
+      }
+    }
+  }
+
+  @Override
+  public boolean cancel(final boolean mayInterrupt) {
+    done.set(true);
+    final CancellationToken timer = this.timer;
+    if (timer != null) {
+      timer.cancel(false);
+    }
+
+    if (!cancelRest) {
+      return false;
+    }
+
+    boolean cancelled = false;
+    for (final CancellationToken dependency : dependencies) {
+      cancelled |= dependency.cancel(mayInterrupt);
+    }
+
+    return cancelled;
+  }
+
+  private final class Slot implements Consumer<Object> {
+    private final int index;
+
+    private Slot(final int index) {
+      this.index = index;
+    }
+
+    @Override
+    public void consume(final Try<Object> res) {
+      if (res.isSuccess()) {
+        onSuccess(index, res.getValue());
+      } else {
+        onFailure(res.getError());
+      }
+    }
+  }
+}
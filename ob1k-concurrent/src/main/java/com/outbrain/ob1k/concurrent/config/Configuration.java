@@ -18,8 +18,16 @@ public class Configuration {
 
   public static final String OB1K_THREAD_POOL_CORE_SIZE = "ob1k.threadPool.coreSize";
   public static final String OB1K_THREAD_POOL_MAX_SIZE = "ob1k.threadPool.maxSize";
+  public static final String OB1K_EXECUTOR_TYPE = "ob1k.executor.type";
   public static final String OB1K_SCHEDULER_CORE_SIZE = "ob1k.scheduler.coreSize";
+  public static final String OB1K_SCHEDULER_TYPE = "ob1k.scheduler.type";
+  public static final String OB1K_SCHEDULER_TICK_MS = "ob1k.scheduler.tickMs";
+  public static final String OB1K_SCHEDULER_WHEEL_SIZE = "ob1k.scheduler.wheelSize";
   public static final String OB1K_DEFAULT_LAZY = "ob1k.default.lazy";
+  public static final String OB1K_TRAMPOLINE_MAX_DEPTH = "ob1k.trampoline.maxDepth";
+  public static final String OB1K_INSTRUMENTATION_ENABLED = "ob1k.instrumentation.enabled";
+  public static final String OB1K_INSTRUMENTATION_SLOW_TASK_MS = "ob1k.instrumentation.slowTaskMs";
+  public static final String OB1K_INSTRUMENTATION_STACK_SAMPLE_RATE = "ob1k.instrumentation.stackSampleRate";
 
   static {
     configuration = new HashMap<>();
@@ -46,13 +54,49 @@ public class Configuration {
       configuration.put(OB1K_THREAD_POOL_MAX_SIZE, "100");
     }
 
+    // either "threadPool" or "virtualThreads", the latter falls back to a thread pool on JVMs without virtual threads.
+    if (!configuration.containsKey(OB1K_EXECUTOR_TYPE)) {
+      configuration.put(OB1K_EXECUTOR_TYPE, "threadPool");
+    }
+
     if (!configuration.containsKey(OB1K_SCHEDULER_CORE_SIZE)) {
       configuration.put(OB1K_SCHEDULER_CORE_SIZE, "10");
     }
 
+    // either "threadPool" or "hashedWheel".
+    if (!configuration.containsKey(OB1K_SCHEDULER_TYPE)) {
+      configuration.put(OB1K_SCHEDULER_TYPE, "threadPool");
+    }
+
+    if (!configuration.containsKey(OB1K_SCHEDULER_TICK_MS)) {
+      configuration.put(OB1K_SCHEDULER_TICK_MS, "10");
+    }
+
+    if (!configuration.containsKey(OB1K_SCHEDULER_WHEEL_SIZE)) {
+      configuration.put(OB1K_SCHEDULER_WHEEL_SIZE, "512");
+    }
+
     if (!configuration.containsKey(OB1K_DEFAULT_LAZY)) {
       configuration.put(OB1K_DEFAULT_LAZY, "false");
     }
+
+    if (!configuration.containsKey(OB1K_TRAMPOLINE_MAX_DEPTH)) {
+      configuration.put(OB1K_TRAMPOLINE_MAX_DEPTH, "32");
+    }
+
+    // wraps the default executors and scheduler with ones that measure their tasks.
+    if (!configuration.containsKey(OB1K_INSTRUMENTATION_ENABLED)) {
+      configuration.put(OB1K_INSTRUMENTATION_ENABLED, "false");
+    }
+
+    if (!configuration.containsKey(OB1K_INSTRUMENTATION_SLOW_TASK_MS)) {
+      configuration.put(OB1K_INSTRUMENTATION_SLOW_TASK_MS, "100");
+    }
+
+    // one in how many tasks captures the stack that submitted it, to be logged if the task is slow. 0 disables it.
+    if (!configuration.containsKey(OB1K_INSTRUMENTATION_STACK_SAMPLE_RATE)) {
+      configuration.put(OB1K_INSTRUMENTATION_STACK_SAMPLE_RATE, "0");
+    }
   }
 
   public static String getProperty(final String key) {
@@ -67,11 +111,43 @@ public class Configuration {
     return Integer.parseInt(configuration.get(OB1K_THREAD_POOL_MAX_SIZE));
   }
 
+  public static String getExecutorType() {
+    return configuration.get(OB1K_EXECUTOR_TYPE);
+  }
+
   public static int getSchedulerCoreSize() {
     return Integer.parseInt(configuration.get(OB1K_SCHEDULER_CORE_SIZE));
   }
 
+  public static String getSchedulerType() {
+    return configuration.get(OB1K_SCHEDULER_TYPE);
+  }
+
+  public static long getSchedulerTickMs() {
+    return Long.parseLong(configuration.get(OB1K_SCHEDULER_TICK_MS));
+  }
+
+  public static int getSchedulerWheelSize() {
+    return Integer.parseInt(configuration.get(OB1K_SCHEDULER_WHEEL_SIZE));
+  }
+
   public static boolean isDefaultLazy() {
     return Boolean.parseBoolean(configuration.get(OB1K_DEFAULT_LAZY));
   }
+
+  public static int getTrampolineMaxDepth() {
+    return Integer.parseInt(configuration.get(OB1K_TRAMPOLINE_MAX_DEPTH));
+  }
+
+  public static boolean isInstrumentationEnabled() {
+    return Boolean.parseBoolean(configuration.get(OB1K_INSTRUMENTATION_ENABLED));
+  }
+
+  public static long getInstrumentationSlowTaskMs() {
+    return Long.parseLong(configuration.get(OB1K_INSTRUMENTATION_SLOW_TASK_MS));
+  }
+
+  public static int getInstrumentationStackSampleRate() {
+    return Integer.parseInt(configuration.get(OB1K_INSTRUMENTATION_STACK_SAMPLE_RATE));
+  }
 }
@@ -0,0 +1,322 @@
+package com.outbrain.ob1k.concurrent.eager;
+
+import com.google.common.base.Function;
+import com.outbrain.ob1k.concurrent.*;
+import com.outbrain.ob1k.concurrent.handlers.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * an immutable future holding an already known result.
+ *
+ * since the result never changes there is no need for atomics or a handlers list, continuations are applied
+ * directly to the result(through the thread's {@link Trampoline}) and the results of the common values
+ * (null, true, false and the empty list) are shared.
+ * once the trampoline is full the continuations are handed over to a regular eager future so they are
+ * queued exactly as continuations of any other completed future.
+ */
+public final class CompletedComposableFuture<T> implements ComposableFuture<T> {
+  private static final Logger logger = LoggerFactory.getLogger(CompletedComposableFuture.class);
+
+  private static final CompletedComposableFuture<?> NULL = new CompletedComposableFuture<>(Try.fromValue(null));
+  private static final CompletedComposableFuture<?> TRUE = new CompletedComposableFuture<>(Try.fromValue(Boolean.TRUE));
+  private static final CompletedComposableFuture<?> FALSE = new CompletedComposableFuture<>(Try.fromValue(Boolean.FALSE));
+  private static final CompletedComposableFuture<?> EMPTY_LIST =
+      new CompletedComposableFuture<>(Try.fromValue(Collections.emptyList()));
+
+  private final Try<T> result;
+
+  private CompletedComposableFuture(final Try<T> result) {
+    this.result = result;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <T> ComposableFuture<T> fromValue(final T value) {
+    if (value == null) {
+      return (ComposableFuture<T>) NULL;
+    }
+
+    if (value instanceof Boolean) {
+      return (ComposableFuture<T>) ((Boolean) value ? TRUE : FALSE);
+    }
+
+    if (value == Collections.EMPTY_LIST) {
+      return (ComposableFuture<T>) EMPTY_LIST;
+    }
+
+    return new CompletedComposableFuture<>(Try.fromValue(value));
+  }
+
+  public static <T> ComposableFuture<T> fromError(final Throwable error) {
+    return new CompletedComposableFuture<>(Try.<T>fromError(error));
+  }
+
+  public static <T> ComposableFuture<T> fromTry(final Try<T> result) {
+    return new CompletedComposableFuture<>(result);
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <T> ComposableFuture<List<T>> emptyList() {
+    return (ComposableFuture<List<T>>) EMPTY_LIST;
+  }
+
+  @Override
+  public <R> ComposableFuture<R> continueWith(final FutureResultHandler<T, R> handler) {
+    final Trampoline trampoline = Trampoline.tryEnter();
+    if (trampoline == null) {
+      return deferred().continueWith(handler);
+    }
+
+    try {
+      return flatten(handler.handle(result));
+    } catch (final Exception e) {
+      return fromError(e);
+    } finally {
+      trampoline.exit();
+    }
+  }
+
+  @Override
+  public <R> ComposableFuture<R> continueWith(final ResultHandler<T, R> handler) {
+    final Trampoline trampoline = Trampoline.tryEnter();
+    if (trampoline == null) {
+      return deferred().continueWith(handler);
+    }
+
+    try {
+      return fromValue(handler.handle(result));
+    } catch (final Exception e) {
+      return fromError(e);
+    } finally {
+      trampoline.exit();
+    }
+  }
+
+  @Override
+  public <R> ComposableFuture<R> continueOnSuccess(final FutureSuccessHandler<? super T, R> handler) {
+    if (!result.isSuccess()) {
+      return cast();
+    }
+
+    final Trampoline trampoline = Trampoline.tryEnter();
+    if (trampoline == null) {
+      return deferred().continueOnSuccess(handler);
+    }
+
+    try {
+      return flatten(handler.handle(result.getValue()));
+    } catch (final Exception e) {
+      return fromError(e);
+    } finally {
+      trampoline.exit();
+    }
+  }
+
+  @Override
+  public <R> ComposableFuture<R> continueOnSuccess(final SuccessHandler<? super T, ? extends R> handler) {
+    if (!result.isSuccess()) {
+      return cast();
+    }
+
+    final Trampoline trampoline = Trampoline.tryEnter();
+    if (trampoline == null) {
+      return deferred().continueOnSuccess(handler);
+    }
+
+    try {
+      return fromValue(handler.handle(result.getValue()));
+    } catch (final ExecutionException e) {
+      return fromError(e.getCause() != null ? e.getCause() : e);
+    } catch (final Exception e) {
+      return fromError(e);
+    } finally {
+      trampoline.exit();
+    }
+  }
+
+  @Override
+  public ComposableFuture<T> continueOnError(final FutureErrorHandler<T> handler) {
+    if (result.isSuccess()) {
+      return this;
+    }
+
+    final Trampoline trampoline = Trampoline.tryEnter();
+    if (trampoline == null) {
+      return deferred().continueOnError(handler);
+    }
+
+    try {
+      return flatten(handler.handle(result.getError()));
+    } catch (final Exception e) {
+      return fromError(e);
+    } finally {
+      trampoline.exit();
+    }
+  }
+
+  @Override
+  public ComposableFuture<T> continueOnError(final ErrorHandler<? extends T> handler) {
+    if (result.isSuccess()) {
+      return this;
+    }
+
+    final Trampoline trampoline = Trampoline.tryEnter();
+    if (trampoline == null) {
+      return deferred().continueOnError(handler);
+    }
+
+    try {
+      return fromValue(handler.handle(result.getError()));
+    } catch (final ExecutionException e) {
+      return fromError(e.getCause() != null ? e.getCause() : e);
+    } catch (final Exception e) {
+      return fromError(e);
+    } finally {
+      trampoline.exit();
+    }
+  }
+
+  @Override
+  public void consume(final Consumer<T> consumer) {
+    final Trampoline trampoline = Trampoline.tryEnter();
+    if (trampoline == null) {
+      deferred().consume(consumer);
+      return;
+    }
+
+    try {
+      consumer.consume(result);
+    } catch (final Throwable error) {
+      logger.warn("error while handling future callbacks", error);
+    } finally {
+      trampoline.exit();
+    }
+  }
+
+  @Override
+  public <R> ComposableFuture<R> transform(final Function<? super T, ? extends R> function) {
+    return continueOnSuccess(new SuccessHandler<T, R>() {
+      @Override
+      public R handle(final T result) {
+        return function.apply(result);
+      }
+    });
+  }
+
+  @Override
+  public T get() throws ExecutionException {
+    if (result.isSuccess()) {
+      return result.getValue();
+    }
+
+    throw new ExecutionException(result.getError());
+  }
+
+  @Override
+  public T get(final long timeout, final TimeUnit unit) throws ExecutionException {
+    return get();
+  }
+
+  @Override
+  public ComposableFuture<T> materialize() {
+    return this;
+  }
+
+  // a completed future can never time out, no need to arm a timer.
+  @Override
+  public ComposableFuture<T> withTimeout(final long duration, final TimeUnit unit) {
+    return this;
+  }
+
+  @Override
+  public ComposableFuture<T> withTimeout(final Scheduler scheduler, final long timeout, final TimeUnit unit) {
+    return this;
+  }
+
+  @Override
+  public ComposableFuture<T> withTimeout(final long duration, final TimeUnit unit, final String taskDescription) {
+    return this;
+  }
+
+  @Override
+  public ComposableFuture<T> withTimeout(final Scheduler scheduler, final long timeout, final TimeUnit unit,
+                                         final String taskDescription) {
+    return this;
+  }
+
+  @Override
+  public ComposableFuture<T> withTimeout(final long duration, final TimeUnit unit, final boolean cancelOnTimeout) {
+    return this;
+  }
+
+  @Override
+  public ComposableFuture<T> withTimeout(final Scheduler scheduler, final long timeout, final TimeUnit unit,
+                                         final String taskDescription, final boolean cancelOnTimeout) {
+    return this;
+  }
+
+  @Override
+  public ComposableFuture<T> withDeadline(final long deadlineNanoTime) {
+    return this;
+  }
+
+  @Override
+  public boolean cancel(final boolean mayInterrupt) {
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return "CompletedComposableFuture(" + result + ")";
+  }
+
+  // a failure carries no value so it can be shared by any continuation type.
+  @SuppressWarnings("unchecked")
+  private <R> ComposableFuture<R> cast() {
+    return (ComposableFuture<R>) this;
+  }
+
+  // a completed future returned by a handler is the continuation's result as is. any other future may be shared with
+  // other callers, so it is wrapped and cancelling the continuation only lets go of it.
+  private static <R> ComposableFuture<R> flatten(final ComposableFuture<R> next) {
+    if (next == null) {
+      return fromValue(null);
+    }
+
+    final ComposableFuture<R> materialized = next.materialize();
+    if (materialized instanceof CompletedComposableFuture) {
+      return materialized;
+    }
+
+    final EagerComposableFuture<R> future = new EagerComposableFuture<>();
+    future.setCancellationToken(EagerComposableFuture.dependencyOn(materialized));
+    materialized.consume(new Consumer<R>() {
+      @Override
+      public void consume(final Try<R> result) {
+        if (result.isSuccess()) {
+          future.set(result.getValue());
+        } else {
+          future.setException(result.getError());
+        }
+      }
+    });
+
+    return future;
+  }
+
+  private ComposableFuture<T> deferred() {
+    final EagerComposableFuture<T> future = new EagerComposableFuture<>();
+    if (result.isSuccess()) {
+      future.set(result.getValue());
+    } else {
+      future.setException(result.getError());
+    }
+
+    return future;
+  }
+}
@@ -1,5 +1,6 @@
 package com.outbrain.ob1k.concurrent.eager;
 
+import com.outbrain.ob1k.concurrent.CancellationToken;
 import com.outbrain.ob1k.concurrent.ComposableFuture;
 
 /**
@@ -28,6 +29,15 @@ public interface ComposablePromise<T> {
    */
   void setException(Throwable error);
 
+  /**
+   * sets the token that cancels the computation producing the value of this promise.
+   * the token is cancelled if the future is cancelled before a value(or an error) is set, or right away
+   * if it was already cancelled. a new token replaces the previous one.
+   *
+   * @param token the cancellation token of the current computation.
+   */
+  void setCancellationToken(CancellationToken token);
+
   /**
    * returns the corresponding future(always the same one)
    *
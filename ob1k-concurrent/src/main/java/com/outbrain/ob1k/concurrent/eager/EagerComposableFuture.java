@@ -3,14 +3,17 @@ package com.outbrain.ob1k.concurrent.eager;
 import com.google.common.base.Function;
 import com.outbrain.ob1k.concurrent.*;
 import com.outbrain.ob1k.concurrent.handlers.*;
+import com.outbrain.ob1k.concurrent.hedge.HedgePolicy;
 import com.outbrain.ob1k.concurrent.Producer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -24,6 +27,10 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
   private final Executor threadPool;
   private final HandlersList handlers;
   private final AtomicReference<Try<T>> value = new AtomicReference<>();
+  // cancels the computation this future waits for, released once the future completes.
+  private volatile CancellationToken cancellationToken;
+  // the futures continued from this one that still wait for it, see addDependent().
+  private final AtomicInteger dependents = new AtomicInteger();
 
   public EagerComposableFuture() {
     threadPool = null;
@@ -38,6 +45,7 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
   @Override
   public void set(final T result) {
     if (value.compareAndSet(null, Try.fromValue(result))) {
+      cancellationToken = null;
       done();
     }
   }
@@ -45,10 +53,91 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
   @Override
   public void setException(final Throwable t) {
     if (value.compareAndSet(null, Try.<T>fromError(t))) {
+      cancellationToken = null;
       done();
     }
   }
 
+  @Override
+  public void setCancellationToken(final CancellationToken token) {
+    cancellationToken = token;
+    final Try<T> currentValue = value.get();
+    if (currentValue != null) {
+      // completed in the meantime, either the token is no longer needed or it missed the cancellation.
+      cancellationToken = null;
+      if (isCancellation(currentValue)) {
+        cancel(token, false);
+      }
+    }
+  }
+
+  @Override
+  public boolean cancel(final boolean mayInterrupt) {
+    if (!value.compareAndSet(null, Try.<T>fromError(new CancellationException("future was cancelled")))) {
+      return false;
+    }
+
+    final CancellationToken token = cancellationToken;
+    cancellationToken = null;
+    if (token != null) {
+      cancel(token, mayInterrupt);
+    }
+
+    done();
+    return true;
+  }
+
+  /**
+   * registers a future continued from this one. cancelling the returned token lets go of this future, and once
+   * all of the futures continued from it let go nobody waits for its result anymore, so it is cancelled as well.
+   * plain consumers don't hold it, they only observe the result.
+   */
+  private CancellationToken addDependent() {
+    dependents.incrementAndGet();
+    return new CancellationToken() {
+      private final AtomicBoolean released = new AtomicBoolean();
+
+      @Override
+      public boolean cancel(final boolean mayInterrupt) {
+        if (!released.compareAndSet(false, true) || dependents.decrementAndGet() != 0) {
+          return false;
+        }
+
+        return EagerComposableFuture.this.cancel(mayInterrupt);
+      }
+    };
+  }
+
+  /**
+   * registers a dependent on a future the caller doesn't own, e.g. the future returned by a handler or one of the
+   * futures raced by collectFirst(). cancelling the returned token lets go of that future the same way a continuation
+   * lets go of its source, so a future shared by several callers(a loading future of a cache, a deduplicated call)
+   * is only cancelled once none of them waits for it anymore.
+   *
+   * @param future the future to depend on
+   * @return the token releasing the dependency
+   */
+  public static CancellationToken dependencyOn(final ComposableFuture<?> future) {
+    if (future instanceof EagerComposableFuture) {
+      return ((EagerComposableFuture<?>) future).addDependent();
+    }
+
+    // completed futures can't be cancelled and lazy ones hold no computation of their own.
+    return future;
+  }
+
+  private static boolean isCancellation(final Try<?> result) {
+    return !result.isSuccess() && result.getError() instanceof CancellationException;
+  }
+
+  private static void cancel(final CancellationToken token, final boolean mayInterrupt) {
+    try {
+      token.cancel(mayInterrupt);
+    } catch (final Throwable error) {
+      logger.warn("error while cancelling a computation", error);
+    }
+  }
+
   @Override
   public ComposableFuture<T> future() {
     return this;
@@ -66,6 +155,26 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
     return result;
   }
 
+  public static <T> ComposableFuture<T> buildCancellable(final CancellableProducer<T> producer) {
+    final EagerComposableFuture<T> future = new EagerComposableFuture<>();
+    final CancellationToken token = producer.produce(new Consumer<T>() {
+      @Override
+      public void consume(final Try<T> result) {
+        if (result.isSuccess()) {
+          future.set(result.getValue());
+        } else {
+          future.setException(result.getError());
+        }
+      }
+    });
+
+    if (token != null) {
+      future.setCancellationToken(token);
+    }
+
+    return future;
+  }
+
   public static <T> ComposableFuture<T> build(final Producer<T> producer) {
     final EagerComposableFuture<T> future = new EagerComposableFuture<>();
     producer.produce(new Consumer<T>() {
@@ -90,13 +199,17 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
         new EagerComposableFuture<T>(executor) :
         new EagerComposableFuture<T>();
 
+    final AsyncContext context = AsyncContext.current();
     executor.execute(new Runnable() {
       @Override
       public void run() {
+        final AsyncContext previous = context.attach();
         try {
           future.set(task.call());
         } catch (final Exception e) {
           future.setException(e);
+        } finally {
+          AsyncContext.restore(previous);
         }
       }
     });
@@ -106,16 +219,20 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
 
   public static <T> ComposableFuture<T> schedule(final Scheduler scheduler, final Callable<T> task, final long delay, final TimeUnit unit) {
     final EagerComposableFuture<T> res = new EagerComposableFuture<>();
-    scheduler.schedule(new Runnable() {
+    final AsyncContext context = AsyncContext.current();
+    res.setCancellationToken(scheduler.schedule(new Runnable() {
       @Override
       public void run() {
+        final AsyncContext previous = context.attach();
         try {
           res.set(task.call());
         } catch (final Exception e) {
           res.setException(e);
+        } finally {
+          AsyncContext.restore(previous);
         }
       }
-    }, delay, unit);
+    }, delay, unit));
 
     return res;
   }
@@ -126,20 +243,14 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
     final ComposableFuture<T> first = action.execute();
     final AtomicBoolean done = new AtomicBoolean();
 
-    first.consume(new Consumer<T>() {
-      @Override
-      public void consume(final Try<T> result) {
-        done.compareAndSet(false, true);
-      }
-    });
-
     final EagerComposableFuture<T> second = new EagerComposableFuture<>();
-    scheduler.schedule(new Runnable() {
+    final CancellationToken dispatchTimer = scheduler.schedule(new Runnable() {
       @Override
       public void run() {
         if (done.compareAndSet(false, true)) {
           try {
             final ComposableFuture<T> innerSecond = action.execute();
+            second.setCancellationToken(dependencyOn(innerSecond));
             innerSecond.consume(new Consumer<T>() {
               @Override
               public void consume(final Try<T> result) {
@@ -156,10 +267,133 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
         }
       }
     }, duration, unit);
+    // cancelling the second dispatch before it was sent just drops the timer.
+    second.setCancellationToken(dispatchTimer);
+
+    first.consume(new Consumer<T>() {
+      @Override
+      public void consume(final Try<T> result) {
+        if (done.compareAndSet(false, true)) {
+          dispatchTimer.cancel(false);
+        }
+      }
+    });
 
+    // whichever dispatch completes first cancels the other one.
     return collectFirst(Arrays.asList(first, second));
   }
 
+  /**
+   * executes the action and sends hedges(more executions of the action) as long as the policy allows and
+   * no result arrived yet. the first result wins and cancels the rest of the attempts.
+   */
+  public static <T> ComposableFuture<T> hedge(final FutureAction<T> action, final HedgePolicy policy,
+                                              final Scheduler scheduler) {
+    final long startTime = System.nanoTime();
+    final EagerComposableFuture<T> result = new EagerComposableFuture<>();
+    // the attempts and the pending hedge timer, all cancelled once there is a result.
+    final Queue<CancellationToken> attempts = new ConcurrentLinkedQueue<>();
+    final CancellationToken cancelAll = new CancellationToken() {
+      @Override
+      public boolean cancel(final boolean mayInterrupt) {
+        boolean cancelled = false;
+        CancellationToken attempt;
+        while ((attempt = attempts.poll()) != null) {
+          cancelled |= attempt.cancel(mayInterrupt);
+        }
+
+        return cancelled;
+      }
+    };
+
+    result.consume(new Consumer<T>() {
+      @Override
+      public void consume(final Try<T> res) {
+        cancelAll.cancel(false);
+      }
+    });
+
+    // the policy learns the latency of the primary attempt alone, the hedged latency is cut short by the hedges and
+    // would pull the percentile down. a primary that lost to a hedge is known to take at least as long as it ran,
+    // which is never below the hedge delay.
+    final ComposableFuture<T> primary = sendAttempt(action, result, attempts);
+    primary.consume(new Consumer<T>() {
+      @Override
+      public void consume(final Try<T> res) {
+        final long latency = System.nanoTime() - startTime;
+        if (!isCancellation(res)) {
+          policy.onComplete(latency, res.isSuccess());
+        } else {
+          final Try<T> winner = result.value.get();
+          if (winner != null && !isCancellation(winner)) {
+            policy.onComplete(latency, winner.isSuccess());
+          }
+        }
+      }
+    });
+
+    scheduleHedge(1, action, policy, scheduler, result, attempts);
+    return result;
+  }
+
+  private static <T> ComposableFuture<T> sendAttempt(final FutureAction<T> action, final EagerComposableFuture<T> result,
+                                      final Queue<CancellationToken> attempts) {
+    ComposableFuture<T> attempt;
+    try {
+      attempt = action.execute();
+    } catch (final Exception e) {
+      attempt = fromError(e);
+    }
+
+    final CancellationToken dependency = dependencyOn(attempt);
+    attempts.add(dependency);
+    attempt.consume(new Consumer<T>() {
+      @Override
+      public void consume(final Try<T> res) {
+        if (res.isSuccess()) {
+          result.set(res.getValue());
+        } else {
+          result.setException(res.getError());
+        }
+      }
+    });
+
+    if (result.value.get() != null) {
+      // completed while the attempt was added, nobody else is going to cancel it.
+      attempts.remove(dependency);
+      dependency.cancel(false);
+    }
+
+    return attempt;
+  }
+
+  private static <T> void scheduleHedge(final int hedge, final FutureAction<T> action, final HedgePolicy policy,
+                                        final Scheduler scheduler, final EagerComposableFuture<T> result,
+                                        final Queue<CancellationToken> attempts) {
+    final long delay = policy.getHedgeDelayNanos(hedge);
+    if (delay < 0 || result.value.get() != null) {
+      return;
+    }
+
+    final CancellationToken timer = scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        if (result.value.get() != null || !policy.tryAcquireHedge()) {
+          return;
+        }
+
+        sendAttempt(action, result, attempts);
+        scheduleHedge(hedge + 1, action, policy, scheduler, result, attempts);
+      }
+    }, delay, TimeUnit.NANOSECONDS);
+
+    attempts.add(timer);
+    if (result.value.get() != null) {
+      attempts.remove(timer);
+      timer.cancel(false);
+    }
+  }
+
   public static <T> ComposableFuture<T> collectFirst(final List<ComposableFuture<T>> futures) {
     final int size = futures.size();
     if (size == 0) {
@@ -168,6 +402,24 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
 
     final EagerComposableFuture<T> res = new EagerComposableFuture<>();
     final AtomicBoolean done = new AtomicBoolean();
+    // the futures may be shared with other callers, the losers are only let go of.
+    final CancellationToken[] dependencies = new CancellationToken[size];
+    for (int i = 0; i < size; i++) {
+      dependencies[i] = dependencyOn(futures.get(i));
+    }
+
+    final CancellationToken cancelAll = new CancellationToken() {
+      @Override
+      public boolean cancel(final boolean mayInterrupt) {
+        boolean cancelled = false;
+        for (final CancellationToken dependency : dependencies) {
+          cancelled |= dependency.cancel(mayInterrupt);
+        }
+
+        return cancelled;
+      }
+    };
+    res.setCancellationToken(cancelAll);
 
     for (final ComposableFuture<T> future : futures) {
       future.consume(new Consumer<T>() {
@@ -179,6 +431,9 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
             } else {
               res.setException(result.getError());
             }
+
+            // the rest of the futures lost the race, no need to keep them running.
+            cancelAll.cancel(false);
           }
         }
       });
@@ -194,6 +449,7 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
   @Override
   public <R> ComposableFuture<R> continueWith(final FutureResultHandler<T, R> handler) {
     final EagerComposableFuture<R> future = new EagerComposableFuture<>(threadPool);
+    future.setCancellationToken(addDependent());
     this.consume(new Consumer<T>() {
       @Override
       public void consume(final Try<T> res) {
@@ -202,6 +458,7 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
           if (nextResult == null) {
             future.set(null);
           } else {
+            future.setCancellationToken(dependencyOn(nextResult));
             nextResult.consume(new Consumer<R>() {
               @Override
               public void consume(final Try<R> result) {
@@ -226,6 +483,7 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
   @Override
   public <R> ComposableFuture<R> continueWith(final ResultHandler<T, R> handler) {
     final EagerComposableFuture<R> result = new EagerComposableFuture<>(threadPool);
+    result.setCancellationToken(addDependent());
     this.consume(new Consumer<T>() {
       @Override
       public void consume(final Try<T> res) {
@@ -243,6 +501,7 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
   @Override
   public <R> ComposableFuture<R> continueOnSuccess(final FutureSuccessHandler<? super T, R> handler) {
     final EagerComposableFuture<R> future = new EagerComposableFuture<>(threadPool);
+    future.setCancellationToken(addDependent());
     this.consume(new Consumer<T>() {
       @Override
       public void consume(final Try<T> result) {
@@ -252,6 +511,7 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
             if (res == null) {
               future.set(null);
             } else {
+              future.setCancellationToken(dependencyOn(res));
               res.consume(new Consumer<R>() {
                 @Override
                 public void consume(final Try<R> result) {
@@ -279,6 +539,7 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
   @Override
   public <R> ComposableFuture<R> continueOnSuccess(final SuccessHandler<? super T, ? extends R> handler) {
     final EagerComposableFuture<R> future = new EagerComposableFuture<>(threadPool);
+    future.setCancellationToken(addDependent());
     this.consume(new Consumer<T>() {
       @Override
       public void consume(final Try<T> result) {
@@ -302,6 +563,7 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
   @Override
   public ComposableFuture<T> continueOnError(final FutureErrorHandler<T> handler) {
     final EagerComposableFuture<T> future = new EagerComposableFuture<>(threadPool);
+    future.setCancellationToken(addDependent());
     this.consume(new Consumer<T>() {
       @Override
       public void consume(final Try<T> result) {
@@ -313,6 +575,7 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
             if (res == null) {
               future.set(null);
             } else {
+              future.setCancellationToken(dependencyOn(res));
               res.consume(new Consumer<T>() {
                 @Override
                 public void consume(final Try<T> result) {
@@ -338,6 +601,7 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
   @Override
   public ComposableFuture<T> continueOnError(final ErrorHandler<? extends T> handler) {
     final EagerComposableFuture<T> future = new EagerComposableFuture<>(threadPool);
+    future.setCancellationToken(addDependent());
     this.consume(new Consumer<T>() {
       @Override
       public void consume(final Try<T> result) {
@@ -380,21 +644,44 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
 
   @Override
   public ComposableFuture<T> withTimeout(final Scheduler scheduler, final long timeout, final TimeUnit unit, final String taskDescription) {
-    final ComposablePromise<T> deadline = new EagerComposableFuture<>();
+    return withTimeout(scheduler, timeout, unit, taskDescription, false);
+  }
+
+  @Override
+  public ComposableFuture<T> withTimeout(final Scheduler scheduler, final long timeout, final TimeUnit unit,
+                                         final String taskDescription, final boolean cancelOnTimeout) {
+    if (value.get() != null) {
+      // already completed, no need to arm a timer.
+      return this;
+    }
+
+    // the first to complete wins, the result is set at most once.
+    final EagerComposableFuture<T> result = new EagerComposableFuture<>();
+    result.setCancellationToken(cancelOnTimeout ? this : addDependent());
+
     final CancellationToken cancellationToken =  scheduler.schedule(new Runnable() {
       @Override
       public void run() {
-        deadline.setException(new TimeoutException("Timeout occurred on task ('" + taskDescription + "' " + timeout + " " + unit + ")"));
+        result.setException(new TimeoutException("Timeout occurred on task ('" + taskDescription + "' " + timeout + " " + unit + ")"));
+        if (cancelOnTimeout) {
+          // the caller owns this future and nobody else waits for it.
+          EagerComposableFuture.this.cancel(false);
+        }
       }
     }, timeout, unit);
 
     this.consume(new Consumer<T>() {
       @Override
-      public void consume(final Try<T> result) {
+      public void consume(final Try<T> res) {
         cancellationToken.cancel(false);
+        if (res.isSuccess()) {
+          result.set(res.getValue());
+        } else {
+          result.setException(res.getError());
+        }
       }
     });
-    return collectFirst(Arrays.asList(this, deadline.future()));
+    return result;
   }
 
   @Override
@@ -402,6 +689,16 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
     return withTimeout(ComposableFutures.getScheduler(), duration, unit);
   }
 
+  @Override
+  public ComposableFuture<T> withTimeout(final long duration, final TimeUnit unit, final boolean cancelOnTimeout) {
+    return withTimeout(ComposableFutures.getScheduler(), duration, unit, "unspecified task", cancelOnTimeout);
+  }
+
+  @Override
+  public ComposableFuture<T> withDeadline(final long deadlineNanoTime) {
+    return withTimeout(Math.max(0, deadlineNanoTime - System.nanoTime()), TimeUnit.NANOSECONDS, "deadline");
+  }
+
   @Override
   public ComposableFuture<T> withTimeout(final Scheduler scheduler, final long timeout, final TimeUnit unit) {
     return withTimeout(scheduler, timeout, unit, "unspecified task");
@@ -421,6 +718,8 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
         latch.countDown();
       }
     });
+    // the result may depend on continuations queued behind the current one on this thread.
+    Trampoline.flush();
 
     latch.await();
     final Try<T> currentValue = this.value.get();
@@ -440,6 +739,8 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
         latch.countDown();
       }
     });
+    // the result may depend on continuations queued behind the current one on this thread.
+    Trampoline.flush();
 
     if (latch.await(timeout, unit)) {
       final Try<T> currentValue = this.value.get();
@@ -456,19 +757,25 @@ public final class EagerComposableFuture<T> implements ComposableFuture<T>, Comp
   private static class ConsumerAction<T> implements Runnable {
     final Consumer<T> inner;
     final EagerComposableFuture<T> current;
+    // the context of the registering thread, attached while the consumer runs.
+    final AsyncContext context;
 
     private ConsumerAction(final Consumer<T> inner, final EagerComposableFuture<T> current) {
       this.inner = inner;
       this.current = current;
+      this.context = AsyncContext.current();
     }
 
     @Override
     public void run() {
+      final AsyncContext previous = context.attach();
       try {
         final Try<T> currentValue = current.value.get();
         inner.consume(currentValue);
       } catch (final Throwable error) {
         logger.warn("error while handling future callbacks", error);
+      } finally {
+        AsyncContext.restore(previous);
       }
     }
   }
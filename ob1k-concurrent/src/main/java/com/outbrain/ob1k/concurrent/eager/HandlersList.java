@@ -1,64 +1,103 @@
 package com.outbrain.ob1k.concurrent.eager;
 
-import java.util.ArrayList;
-import java.util.List;
+import com.outbrain.ob1k.concurrent.Trampoline;
+
 import java.util.concurrent.Executor;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
+ * a lock free list of handlers waiting for a future to complete.
+ *
+ * handlers are pushed in front of a linked chain (a Treiber stack) so registration never copies the existing handlers.
+ * the first handler is kept inline without any node allocation since most futures only have a single continuation.
+ * once executed, the chain is reversed so handlers run in registration order, and any handler added afterwards
+ * is executed immediately.
+ * handlers that run without an executor go through the thread's {@link Trampoline} so completing long chains
+ * does not grow the stack.
+ *
  * User: aronen
  * Date: 6/17/13
  * Time: 6:42 PM
  */
 public class HandlersList {
-  private final AtomicReference<List<Runnable>> handlers;
+  private static final Object EXECUTED = new Object();
 
-  public HandlersList() {
-    this.handlers = new AtomicReference<List<Runnable>>(new ArrayList<Runnable>());
-  }
+  private static final AtomicReferenceFieldUpdater<HandlersList, Object> STATE =
+      AtomicReferenceFieldUpdater.newUpdater(HandlersList.class, Object.class, "state");
+
+  // null when empty, a Runnable for a single handler, a Node for two or more handlers(newest first)
+  // or EXECUTED once the handlers were executed.
+  private volatile Object state;
 
   public void addHandler(final Runnable handler, final Executor executor) {
+    Node node = null;
     while (true) {
-      final List<Runnable> list = handlers.get();
-      if (list == null) {
-        if (executor != null) {
-          executor.execute(handler);
-        } else {
-          handler.run();
-        }
+      final Object current = state;
+      if (current == EXECUTED) {
+        run(handler, executor);
         return;
       }
 
-      final List<Runnable> newList = new ArrayList<>(list);
-      newList.add(handler);
+      final Object next;
+      if (current == null) {
+        next = handler;
+      } else {
+        if (node == null) {
+          node = new Node(handler);
+        }
+        node.next = current;
+        next = node;
+      }
 
-      final boolean success = handlers.compareAndSet(list, newList);
-      if (success) {
+      if (STATE.compareAndSet(this, current, next)) {
         return;
       }
     }
   }
 
   public void execute(final Executor executor) {
-    while (true) {
-      final List<Runnable> list = handlers.get();
-      if (list == null) {
-        return;
-      }
+    final Object current = STATE.getAndSet(this, EXECUTED);
+    if (current == null || current == EXECUTED) {
+      return;
+    }
 
-      final boolean success = handlers.compareAndSet(list, null);
-      if (success) {
-        for (final Runnable task : list) {
-          if (executor != null) {
-            executor.execute(task);
-          } else {
-            task.run();
-          }
-        }
-        return;
-      }
+    if (!(current instanceof Node)) {
+      run((Runnable) current, executor);
+      return;
+    }
+
+    // the chain is owned exclusively by this thread now, reverse it in place to restore the registration order.
+    Node reversed = null;
+    Object cursor = current;
+    while (cursor instanceof Node) {
+      final Node node = (Node) cursor;
+      cursor = node.next;
+      node.next = reversed;
+      reversed = node;
+    }
+
+    // the end of the chain is always the first, inlined, handler.
+    run((Runnable) cursor, executor);
+    for (Node node = reversed; node != null; node = (Node) node.next) {
+      run(node.handler, executor);
     }
   }
 
+  private static void run(final Runnable task, final Executor executor) {
+    if (executor != null) {
+      executor.execute(task);
+    } else {
+      Trampoline.execute(task);
+    }
+  }
+
+  private static final class Node {
+    final Runnable handler;
+    // either the previously registered Node or the first registered Runnable.
+    Object next;
 
+    private Node(final Runnable handler) {
+      this.handler = handler;
+    }
+  }
 }
@@ -0,0 +1,56 @@
+package com.outbrain.ob1k.concurrent.hedge;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * caps the extra load caused by hedging to a percentage of the requests.
+ *
+ * every completed request deposits maxExtraLoadPercent / 100 of a hedge into the budget and every hedge
+ * withdraws a whole one, so on average no more than that percentage of hedges is sent, no matter how slow
+ * the backend gets. the balance is capped so a quiet period doesn't allow an unbounded burst of hedges later.
+ */
+public class HedgeBudget {
+  // balances are kept in thousandths of a hedge.
+  private static final long HEDGE = 1000;
+
+  private final long deposit;
+  private final long maxBalance;
+  private final AtomicLong balance;
+
+  /**
+   * @param maxExtraLoadPercent the max percentage of hedges out of all requests
+   * @param maxBurst            the max number of hedges that can be sent in a row
+   */
+  public HedgeBudget(final double maxExtraLoadPercent, final int maxBurst) {
+    if (maxExtraLoadPercent < 0 || maxBurst < 1) {
+      throw new IllegalArgumentException("invalid hedge budget: " + maxExtraLoadPercent + "%, burst " + maxBurst);
+    }
+
+    this.deposit = Math.round(maxExtraLoadPercent * HEDGE / 100);
+    this.maxBalance = maxBurst * HEDGE;
+    this.balance = new AtomicLong(maxBalance);
+  }
+
+  public void deposit() {
+    while (true) {
+      final long current = balance.get();
+      final long next = Math.min(current + deposit, maxBalance);
+      if (current == next || balance.compareAndSet(current, next)) {
+        return;
+      }
+    }
+  }
+
+  public boolean tryWithdraw() {
+    while (true) {
+      final long current = balance.get();
+      if (current < HEDGE) {
+        return false;
+      }
+
+      if (balance.compareAndSet(current, current - HEDGE)) {
+        return true;
+      }
+    }
+  }
+}
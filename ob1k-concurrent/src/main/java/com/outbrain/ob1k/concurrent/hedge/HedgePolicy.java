@@ -0,0 +1,31 @@
+package com.outbrain.ob1k.concurrent.hedge;
+
+/**
+ * decides when to send hedges, i.e. extra attempts of a request that didn't complete in time.
+ *
+ * @see com.outbrain.ob1k.concurrent.ComposableFutures#hedge
+ */
+public interface HedgePolicy {
+
+  /**
+   * @param hedge the number of the hedge, starting from 1
+   * @return the delay in nanoseconds from the previous attempt before sending the hedge, or a negative value
+   * to stop hedging
+   */
+  long getHedgeDelayNanos(int hedge);
+
+  /**
+   * called right before a hedge is sent.
+   *
+   * @return false if the hedge should not be sent, e.g. when the hedging budget is exhausted
+   */
+  boolean tryAcquireHedge();
+
+  /**
+   * called once for every hedged request with the latency of its first attempt.
+   *
+   * @param latencyNanos the latency of the first attempt, or the time it ran if a hedge completed first
+   * @param success whether the first attempt succeeded, or the hedge if one completed first
+   */
+  void onComplete(long latencyNanos, boolean success);
+}
@@ -0,0 +1,103 @@
+package com.outbrain.ob1k.concurrent.hedge;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * a lock-free latency histogram with a bounded relative error, in the spirit of HdrHistogram.
+ *
+ * latencies are recorded in microseconds into log-linear buckets: every power of two is split into 8 linear
+ * sub-buckets, so a percentile is off by no more than 12.5%, which is plenty for picking a hedging delay.
+ * recording is a single atomic increment and the whole histogram takes a few KBs.
+ *
+ * the histogram tracks the recent latencies: once windowSize values are recorded the window is rolled and
+ * percentiles are taken from the last full window together with the current one.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // latencies above ~25 days are recorded as the max.
+  private static final int MAX_EXPONENT = 41;
+  private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+  private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+  private final long windowSize;
+  private final AtomicReference<Window> current = new AtomicReference<>(new Window());
+  private volatile Window previous = new Window();
+
+  public LatencyHistogram(final long windowSize) {
+    if (windowSize < 1) {
+      throw new IllegalArgumentException("windowSize must be positive: " + windowSize);
+    }
+
+    this.windowSize = windowSize;
+  }
+
+  public void record(final long latency, final TimeUnit unit) {
+    final long micros = Math.min(Math.max(unit.toMicros(latency), 0), MAX_VALUE);
+    final Window window = current.get();
+    window.counts.incrementAndGet(index(micros));
+    if (window.total.incrementAndGet() == windowSize) {
+      previous = window;
+      current.compareAndSet(window, new Window());
+    }
+  }
+
+  /**
+   * @param percentile the percentile, between 0 and 100
+   * @param unit the unit of the result
+   * @return the latency at the percentile(rounded up to its bucket), or -1 if nothing was recorded
+   */
+  public long getPercentile(final double percentile, final TimeUnit unit) {
+    final Window last = previous;
+    final Window window = current.get();
+    final long total = last.total.get() + window.total.get();
+    if (total == 0) {
+      return -1;
+    }
+
+    final long target = Math.max((long) Math.ceil(percentile / 100 * total), 1);
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += last.counts.get(i) + window.counts.get(i);
+      if (count >= target) {
+        return unit.convert(highestValue(i), TimeUnit.MICROSECONDS);
+      }
+    }
+
+    // recorded concurrently with the scan.
+    return unit.convert(MAX_VALUE, TimeUnit.MICROSECONDS);
+  }
+
+  public long getCount() {
+    return previous.total.get() + current.get().total.get();
+  }
+
+  static int index(final long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+
+    final int exponent = 63 - Long.numberOfLeadingZeros(value);
+    final int shift = exponent - SUB_BUCKET_BITS;
+    final int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return (shift + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long highestValue(final int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+
+    final int shift = index / SUB_BUCKETS - 1;
+    final long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  private static final class Window {
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+  }
+}
@@ -0,0 +1,74 @@
+package com.outbrain.ob1k.concurrent.hedge;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * an adaptive hedging policy: a hedge is sent once a request takes longer than the observed latency percentile,
+ * e.g. the p95, so only the slowest requests are hedged whatever the current latency of the backend is.
+ *
+ * the extra load is capped by a {@link HedgeBudget}. until enough latencies are recorded the initial delay is used.
+ */
+public class PercentileHedgePolicy implements HedgePolicy {
+  private static final int MIN_SAMPLES = 100;
+  private static final int REFRESH_INTERVAL = 64;
+
+  private final double percentile;
+  private final int maxHedges;
+  private final long minDelayNanos;
+  private final LatencyHistogram histogram;
+  private final HedgeBudget budget;
+  private final AtomicInteger completions = new AtomicInteger();
+  private volatile long delayNanos;
+
+  /**
+   * @param percentile          the latency percentile to hedge at, e.g. 95
+   * @param maxHedges           the max number of hedges per request
+   * @param maxExtraLoadPercent the max percentage of hedges out of all requests
+   * @param initialDelay        the delay to use until enough latencies are recorded
+   * @param minDelay            the shortest delay to ever hedge at
+   * @param unit                the unit of the delays
+   */
+  public PercentileHedgePolicy(final double percentile, final int maxHedges, final double maxExtraLoadPercent,
+                               final long initialDelay, final long minDelay, final TimeUnit unit) {
+    if (percentile <= 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+    }
+
+    this.percentile = percentile;
+    this.maxHedges = maxHedges;
+    this.minDelayNanos = unit.toNanos(minDelay);
+    this.delayNanos = Math.max(unit.toNanos(initialDelay), minDelayNanos);
+    this.histogram = new LatencyHistogram(10000);
+    this.budget = new HedgeBudget(maxExtraLoadPercent, Math.max(maxHedges, 10));
+  }
+
+  @Override
+  public long getHedgeDelayNanos(final int hedge) {
+    return hedge <= maxHedges ? delayNanos : -1;
+  }
+
+  @Override
+  public boolean tryAcquireHedge() {
+    return budget.tryWithdraw();
+  }
+
+  @Override
+  public void onComplete(final long latencyNanos, final boolean success) {
+    budget.deposit();
+    if (!success) {
+      // failures tend to be fast and would drag the percentile down.
+      return;
+    }
+
+    histogram.record(latencyNanos, TimeUnit.NANOSECONDS);
+    // the percentile is recomputed every few completions rather than on every request.
+    if (completions.incrementAndGet() % REFRESH_INTERVAL == 0 && histogram.getCount() >= MIN_SAMPLES) {
+      delayNanos = Math.max(histogram.getPercentile(percentile, TimeUnit.NANOSECONDS), minDelayNanos);
+    }
+  }
+
+  public long getCurrentDelay(final TimeUnit unit) {
+    return unit.convert(delayNanos, TimeUnit.NANOSECONDS);
+  }
+}
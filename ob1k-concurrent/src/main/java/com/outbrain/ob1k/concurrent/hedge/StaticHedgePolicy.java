@@ -0,0 +1,30 @@
+package com.outbrain.ob1k.concurrent.hedge;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * sends up to maxHedges hedges, each one after a fixed delay from the previous attempt.
+ */
+public class StaticHedgePolicy implements HedgePolicy {
+  private final long delayNanos;
+  private final int maxHedges;
+
+  public StaticHedgePolicy(final long delay, final TimeUnit unit, final int maxHedges) {
+    this.delayNanos = unit.toNanos(delay);
+    this.maxHedges = maxHedges;
+  }
+
+  @Override
+  public long getHedgeDelayNanos(final int hedge) {
+    return hedge <= maxHedges ? delayNanos : -1;
+  }
+
+  @Override
+  public boolean tryAcquireHedge() {
+    return true;
+  }
+
+  @Override
+  public void onComplete(final long latencyNanos, final boolean success) {
+  }
+}
@@ -6,7 +6,6 @@ import com.outbrain.ob1k.concurrent.*;
 import com.outbrain.ob1k.concurrent.handlers.*;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -77,13 +76,17 @@ public final class LazyComposableFuture<T> implements ComposableFuture<T> {
         return new LazyComposableFuture<>(new Producer<T>() {
             @Override
             public void produce(final Consumer<T> consumer) {
+                final AsyncContext context = AsyncContext.current();
                 executor.execute(new Runnable() {
                     @Override
                     public void run() {
+                        final AsyncContext previous = context.attach();
                         try {
                             consumer.consume(new Try.Success<>(task.call()));
                         } catch (final Exception e) {
                             consumer.consume(Try.<T>fromError(e));
+                        } finally {
+                            AsyncContext.restore(previous);
                         }
                     }
                 });
@@ -95,13 +98,17 @@ public final class LazyComposableFuture<T> implements ComposableFuture<T> {
         return new LazyComposableFuture<>(new Producer<T>() {
             @Override
             public void produce(final Consumer<T> consumer) {
+                final AsyncContext context = AsyncContext.current();
                 scheduler.schedule(new Runnable() {
                     @Override
                     public void run() {
+                        final AsyncContext previous = context.attach();
                         try {
                             consumer.consume(new Try.Success<>(task.call()));
                         } catch (final Exception e) {
                             consumer.consume(Try.<T>fromError(e));
+                        } finally {
+                            AsyncContext.restore(previous);
                         }
                     }
                 }, delay, timeUnit);
@@ -174,15 +181,14 @@ public final class LazyComposableFuture<T> implements ComposableFuture<T> {
 
     @Override
     public void consume(final Consumer<T> consumer) {
+        // both the activation of the producer and the delivery of its result are trampolined
+        // since a chain of lazy futures activates and delivers through nested consumers.
+        final Runnable produce = new Activation<>(producer, Trampoline.trampolined(consumer));
+
         if (executor != null) {
-            executor.execute(new Runnable() {
-                @Override
-                public void run() {
-                    producer.produce(consumer);
-                }
-            });
+            executor.execute(produce);
         } else {
-            producer.produce(consumer);
+            Trampoline.execute(produce);
         }
     }
 
@@ -321,19 +327,32 @@ public final class LazyComposableFuture<T> implements ComposableFuture<T> {
 
     @Override
     public LazyComposableFuture<T> withTimeout(final Scheduler scheduler, final long timeout, final TimeUnit unit, final String taskDescription) {
-        final LazyComposableFuture<T> deadline = new LazyComposableFuture<>(new Producer<T>() {
+        final LazyComposableFuture<T> outer = this;
+        return new LazyComposableFuture<>(new Producer<T>() {
             @Override
             public void produce(final Consumer<T> consumer) {
-                scheduler.schedule(new Runnable() {
+                final AtomicBoolean done = new AtomicBoolean();
+                final CancellationToken cancellationToken = scheduler.schedule(new Runnable() {
                     @Override
                     public void run() {
-                        consumer.consume(Try.<T>fromError(new TimeoutException("Timeout occurred on task ('" + taskDescription + "' " + timeout + " " + unit + ")")));
+                        if (done.compareAndSet(false, true)) {
+                            consumer.consume(Try.<T>fromError(new TimeoutException("Timeout occurred on task ('" + taskDescription + "' " + timeout + " " + unit + ")")));
+                        }
                     }
                 }, timeout, unit);
+
+                outer.consume(new Consumer<T>() {
+                    @Override
+                    public void consume(final Try<T> result) {
+                        if (done.compareAndSet(false, true)) {
+                            // the timer is no longer needed, release it instead of letting it expire.
+                            cancellationToken.cancel(false);
+                            consumer.consume(result);
+                        }
+                    }
+                });
             }
         });
-
-        return collectFirst(Arrays.<ComposableFuture<T>>asList(this, deadline));
     }
 
     @Override
@@ -351,6 +370,31 @@ public final class LazyComposableFuture<T> implements ComposableFuture<T> {
         return withTimeout(ComposableFutures.getScheduler(), timeout, unit);
     }
 
+    // a lazy future has no computation of its own to cancel, the activation just stops waiting for it.
+    @Override
+    public LazyComposableFuture<T> withTimeout(final long timeout, final TimeUnit unit, final boolean cancelOnTimeout) {
+        return withTimeout(timeout, unit);
+    }
+
+    @Override
+    public LazyComposableFuture<T> withTimeout(final Scheduler scheduler, final long timeout, final TimeUnit unit,
+                                               final String taskDescription, final boolean cancelOnTimeout) {
+        return withTimeout(scheduler, timeout, unit, taskDescription);
+    }
+
+    @Override
+    public LazyComposableFuture<T> withDeadline(final long deadlineNanoTime) {
+        final LazyComposableFuture<T> outer = this;
+        return new LazyComposableFuture<>(new Producer<T>() {
+            @Override
+            public void produce(final Consumer<T> consumer) {
+                // the remaining time is taken on every activation.
+                final long remaining = Math.max(0, deadlineNanoTime - System.nanoTime());
+                outer.withTimeout(remaining, TimeUnit.NANOSECONDS, "deadline").consume(consumer);
+            }
+        });
+    }
+
     @Override
     public <R> ComposableFuture<R> continueWith(final ResultHandler<T, R> handler) {
         final LazyComposableFuture<T> outer = this;
@@ -415,6 +459,15 @@ public final class LazyComposableFuture<T> implements ComposableFuture<T> {
         });
     }
 
+    /**
+     * a lazy future holds no computation of its own, each consumption activates the producer afresh.
+     * to cancel a computation materialize the future and cancel the result.
+     */
+    @Override
+    public boolean cancel(final boolean mayInterrupt) {
+        return false;
+    }
+
     @Override
     public ComposableFuture<T> materialize() {
         return ComposableFutures.buildEager(producer);
@@ -466,6 +519,7 @@ public final class LazyComposableFuture<T> implements ComposableFuture<T> {
                 latch.countDown();
             }
         });
+        Trampoline.flush();
 
         latch.await();
         final Try<T> res = box.get();
@@ -489,6 +543,7 @@ public final class LazyComposableFuture<T> implements ComposableFuture<T> {
                 latch.countDown();
             }
         });
+        Trampoline.flush();
 
         if (latch.await(timeout, unit)) {
             final Try<T> res = box.get();
@@ -501,4 +556,48 @@ public final class LazyComposableFuture<T> implements ComposableFuture<T> {
             throw new TimeoutException("Timeout occurred while waiting for value (" + timeout + unit + ")");
         }
     }
+
+    /**
+     * activates the producer and delivers its result, both within the context of the consuming thread.
+     * a producer that throws instead of delivering fails the consumer with the thrown error, and only the
+     * first result reaches the consumer, so a producer that delivers and then throws isn't reported twice.
+     */
+    private static final class Activation<T> implements Runnable, Consumer<T> {
+        private final Producer<T> producer;
+        private final Consumer<T> consumer;
+        private final AsyncContext context;
+        private final AtomicBoolean delivered = new AtomicBoolean();
+
+        private Activation(final Producer<T> producer, final Consumer<T> consumer) {
+            this.producer = producer;
+            this.consumer = consumer;
+            this.context = AsyncContext.current();
+        }
+
+        @Override
+        public void run() {
+            final AsyncContext previous = context.attach();
+            try {
+                producer.produce(this);
+            } catch (final Exception e) {
+                consume(Try.<T>fromError(e));
+            } finally {
+                AsyncContext.restore(previous);
+            }
+        }
+
+        @Override
+        public void consume(final Try<T> result) {
+            if (!delivered.compareAndSet(false, true)) {
+                return;
+            }
+
+            final AsyncContext previous = context.attach();
+            try {
+                consumer.consume(result);
+            } finally {
+                AsyncContext.restore(previous);
+            }
+        }
+    }
 }
@@ -0,0 +1,277 @@
+package com.outbrain.ob1k.concurrent.limiter;
+
+import com.outbrain.ob1k.concurrent.CancellationToken;
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.Consumer;
+import com.outbrain.ob1k.concurrent.Try;
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import com.outbrain.ob1k.concurrent.handlers.FutureAction;
+
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * limits the number of actions in flight, adapting the limit to the latency observed(TCP Vegas style).
+ *
+ * the latency of every action is compared to the lowest latency seen so far, which approximates the latency
+ * without queueing: limit * (1 - minLatency / latency) estimates how many of the in flight actions are queued
+ * at the destination. the limit grows while that estimate is below alpha, shrinks when it is above beta and
+ * is cut by the backoff ratio on a timeout or a rejection. the limit is only raised when it is actually used,
+ * so a lightly loaded caller doesn't accumulate a limit it never tested.
+ *
+ * actions above the limit wait in a queue of up to maxQueueSize and run as soon as others complete, no thread
+ * waits for them. beyond that they are rejected with a {@link LimitExceededException}.
+ */
+public class ConcurrencyLimiter implements FutureLimiter {
+  private static final double ALPHA = 3;
+  private static final double BETA = 6;
+  private static final double BACKOFF_RATIO = 0.9;
+  // the lowest latency is forgotten once in a while so that a permanent change of the destination is noticed.
+  private static final int MIN_LATENCY_RESET_INTERVAL = 1000;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final int maxQueueSize;
+
+  // the bits of the current limit as a double.
+  private final AtomicLong limit;
+  private final AtomicLong minLatencyNanos = new AtomicLong(Long.MAX_VALUE);
+  private final AtomicInteger samples = new AtomicInteger();
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private final Queue<QueuedAction<?>> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final AtomicInteger wip = new AtomicInteger();
+
+  public ConcurrencyLimiter(final int initialLimit, final int maxQueueSize) {
+    this(initialLimit, 1, Math.max(initialLimit, 1000), maxQueueSize);
+  }
+
+  public ConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit, final int maxQueueSize) {
+    if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit || maxQueueSize < 0) {
+      throw new IllegalArgumentException("invalid limits: initial " + initialLimit + ", min " + minLimit +
+          ", max " + maxLimit + ", queue " + maxQueueSize);
+    }
+
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.maxQueueSize = maxQueueSize;
+    this.limit = new AtomicLong(Double.doubleToLongBits(initialLimit));
+  }
+
+  /**
+   * takes a slot if the limit wasn't reached, it must be given back with {@link #release(long, boolean)}.
+   */
+  public boolean tryAcquire() {
+    while (true) {
+      final int current = inFlight.get();
+      if (current >= getLimit()) {
+        return false;
+      }
+
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * gives back a slot taken by {@link #tryAcquire()} and updates the limit.
+   *
+   * @param latencyNanos the time the action took
+   * @param dropped      whether the action timed out or was rejected by the destination
+   */
+  public void release(final long latencyNanos, final boolean dropped) {
+    update(latencyNanos, dropped);
+    inFlight.decrementAndGet();
+    drain();
+  }
+
+  @Override
+  public <T> ComposableFuture<T> execute(final FutureAction<T> action) {
+    // actions that are already queued go first.
+    if (queueDepth.get() == 0 && tryAcquire()) {
+      return run(action);
+    }
+
+    if (queueDepth.incrementAndGet() > maxQueueSize) {
+      queueDepth.decrementAndGet();
+      return Limiters.reject("concurrency limit exceeded");
+    }
+
+    final QueuedAction<T> queued = new QueuedAction<>(action);
+    queued.promise.setCancellationToken(queued);
+    queue.add(queued);
+    // slots may have been released before the action was queued.
+    drain();
+    return queued.promise.future();
+  }
+
+  private <T> ComposableFuture<T> run(final FutureAction<T> action) {
+    final long start = System.nanoTime();
+    final ComposableFuture<T> result = Limiters.execute(action);
+    result.consume(new Consumer<T>() {
+      @Override
+      public void consume(final Try<T> result) {
+        if (!result.isSuccess() && result.getError() instanceof CancellationException) {
+          // says nothing about the destination.
+          inFlight.decrementAndGet();
+          drain();
+        } else {
+          release(System.nanoTime() - start, !result.isSuccess() && isDrop(result.getError()));
+        }
+      }
+    });
+
+    return result;
+  }
+
+  private static boolean isDrop(final Throwable error) {
+    return error instanceof TimeoutException || error instanceof LimitExceededException;
+  }
+
+  /**
+   * runs queued actions while there are free slots.
+   * entered by one thread at a time so that actions completing synchronously don't recurse into it.
+   */
+  private void drain() {
+    if (wip.getAndIncrement() != 0) {
+      return;
+    }
+
+    int missed = 1;
+    do {
+      while (!queue.isEmpty() && tryAcquire()) {
+        final QueuedAction<?> queued = queue.poll();
+        if (queued == null || !queued.take()) {
+          // cancelled while waiting.
+          inFlight.decrementAndGet();
+          continue;
+        }
+
+        queueDepth.decrementAndGet();
+        queued.run();
+      }
+
+      missed = wip.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  private void update(final long latencyNanos, final boolean dropped) {
+    final long minLatency = updateMinLatency(latencyNanos);
+    while (true) {
+      final long currentBits = limit.get();
+      final double current = Double.longBitsToDouble(currentBits);
+      final double next;
+      if (dropped) {
+        next = current * BACKOFF_RATIO;
+      } else {
+        final double queued = current * (1 - (double) minLatency / Math.max(latencyNanos, 1));
+        if (queued < ALPHA) {
+          // only grow a limit that is in use.
+          next = inFlight.get() * 2 >= current ? current + Math.max(Math.log10(current), 1) / current : current;
+        } else if (queued > BETA) {
+          next = current - Math.max(Math.log10(current), 1) / current;
+        } else {
+          return;
+        }
+      }
+
+      final double bounded = Math.min(Math.max(next, minLimit), maxLimit);
+      if (bounded == current || limit.compareAndSet(currentBits, Double.doubleToLongBits(bounded))) {
+        return;
+      }
+    }
+  }
+
+  private long updateMinLatency(final long latencyNanos) {
+    if (samples.incrementAndGet() % MIN_LATENCY_RESET_INTERVAL == 0) {
+      minLatencyNanos.set(latencyNanos);
+      return latencyNanos;
+    }
+
+    while (true) {
+      final long current = minLatencyNanos.get();
+      if (latencyNanos >= current) {
+        return current;
+      }
+
+      if (minLatencyNanos.compareAndSet(current, latencyNanos)) {
+        return latencyNanos;
+      }
+    }
+  }
+
+  /**
+   * @return the current number of actions allowed in flight
+   */
+  public int getLimit() {
+    return (int) Double.longBitsToDouble(limit.get());
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  /**
+   * @return the lowest latency observed recently, or -1 if nothing completed yet
+   */
+  public long getMinLatency(final TimeUnit unit) {
+    final long minLatency = minLatencyNanos.get();
+    return minLatency == Long.MAX_VALUE ? -1 : unit.convert(minLatency, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * an action waiting for a slot, either the drain takes it or the future is cancelled before that.
+   */
+  private final class QueuedAction<T> extends AtomicBoolean implements CancellationToken {
+    private final FutureAction<T> action;
+    private final ComposablePromise<T> promise = ComposableFutures.newPromise();
+
+    private QueuedAction(final FutureAction<T> action) {
+      this.action = action;
+    }
+
+    private boolean take() {
+      return compareAndSet(false, true);
+    }
+
+    private void run() {
+      final ComposableFuture<T> result = ConcurrencyLimiter.this.run(action);
+      promise.setCancellationToken(result);
+      result.consume(new Consumer<T>() {
+        @Override
+        public void consume(final Try<T> result) {
+          if (result.isSuccess()) {
+            promise.set(result.getValue());
+          } else {
+            promise.setException(result.getError());
+          }
+        }
+      });
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterrupt) {
+      if (!take()) {
+        return false;
+      }
+
+      queueDepth.decrementAndGet();
+      queue.remove(this);
+      return true;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package com.outbrain.ob1k.concurrent.limiter;
+
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.handlers.FutureAction;
+
+/**
+ * limits the execution of future based actions without blocking the caller.
+ * an action that can't run right away is either queued, to be executed later by another thread, or rejected
+ * with a {@link LimitExceededException}.
+ */
+public interface FutureLimiter {
+  <T> ComposableFuture<T> execute(FutureAction<T> action);
+
+  /**
+   * @return the number of actions waiting to be executed
+   */
+  int getQueueDepth();
+}
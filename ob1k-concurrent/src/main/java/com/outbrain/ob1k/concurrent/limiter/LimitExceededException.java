@@ -0,0 +1,16 @@
+package com.outbrain.ob1k.concurrent.limiter;
+
+/**
+ * the error of a future whose action was rejected by a {@link FutureLimiter}.
+ */
+public class LimitExceededException extends RuntimeException {
+  public LimitExceededException(final String message) {
+    super(message);
+  }
+
+  // rejections are a form of flow control, the stack trace isn't worth the cost.
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
@@ -0,0 +1,26 @@
+package com.outbrain.ob1k.concurrent.limiter;
+
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.handlers.FutureAction;
+
+/**
+ * helpers shared by the limiters.
+ */
+final class Limiters {
+  private Limiters() {
+  }
+
+  static <T> ComposableFuture<T> execute(final FutureAction<T> action) {
+    try {
+      final ComposableFuture<T> result = action.execute();
+      return result == null ? ComposableFutures.<T>fromNull() : result;
+    } catch (final Exception e) {
+      return ComposableFutures.fromError(e);
+    }
+  }
+
+  static <T> ComposableFuture<T> reject(final String message) {
+    return ComposableFutures.fromError(new LimitExceededException(message));
+  }
+}
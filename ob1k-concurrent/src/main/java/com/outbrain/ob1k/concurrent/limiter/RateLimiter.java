@@ -0,0 +1,181 @@
+package com.outbrain.ob1k.concurrent.limiter;
+
+import com.outbrain.ob1k.concurrent.CancellationToken;
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.Consumer;
+import com.outbrain.ob1k.concurrent.Scheduler;
+import com.outbrain.ob1k.concurrent.Try;
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import com.outbrain.ob1k.concurrent.handlers.FutureAction;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * a non-blocking token bucket rate limiter.
+ *
+ * permits are added at a constant rate and up to burst of them can be accumulated. the bucket is kept as the
+ * theoretical arrival time of the next request(the GCRA form of a token bucket), so acquiring a permit is a
+ * single CAS.
+ * an action that comes too early is scheduled for the time its permit will be available, as long as that is
+ * within maxDelay and no more than maxQueueSize actions are already waiting, otherwise it is rejected.
+ */
+public class RateLimiter implements FutureLimiter {
+  private final long intervalNanos;
+  private final long burstToleranceNanos;
+  private final long maxDelayNanos;
+  private final int maxQueueSize;
+  private final Scheduler scheduler;
+
+  private final AtomicLong theoreticalArrivalTime;
+  private final AtomicInteger queueDepth = new AtomicInteger();
+
+  public RateLimiter(final double permitsPerSecond, final int burst) {
+    this(permitsPerSecond, burst, 0, TimeUnit.MILLISECONDS, 0, ComposableFutures.getScheduler());
+  }
+
+  /**
+   * @param permitsPerSecond the rate at which permits are added
+   * @param burst            the max number of permits that can be accumulated
+   * @param maxDelay         the longest an action may wait for its permit
+   * @param unit             the unit of maxDelay
+   * @param maxQueueSize     the max number of actions waiting for their permits
+   * @param scheduler        runs the delayed actions
+   */
+  public RateLimiter(final double permitsPerSecond, final int burst, final long maxDelay, final TimeUnit unit,
+                     final int maxQueueSize, final Scheduler scheduler) {
+    if (permitsPerSecond <= 0 || burst < 1) {
+      throw new IllegalArgumentException("invalid rate: " + permitsPerSecond + "/s, burst " + burst);
+    }
+
+    this.intervalNanos = Math.max((long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond), 1);
+    this.burstToleranceNanos = (burst - 1) * intervalNanos;
+    this.maxDelayNanos = unit.toNanos(maxDelay);
+    this.maxQueueSize = maxQueueSize;
+    this.scheduler = scheduler;
+    this.theoreticalArrivalTime = new AtomicLong(System.nanoTime() - burstToleranceNanos - intervalNanos);
+  }
+
+  /**
+   * takes a permit if one is available right now.
+   */
+  public boolean tryAcquire() {
+    return reserve(0) == 0;
+  }
+
+  @Override
+  public <T> ComposableFuture<T> execute(final FutureAction<T> action) {
+    // permits are reserved in arrival order, so a full queue only leaves room for immediate permits.
+    // the place in the queue is taken up front so that concurrent callers can't overfill it.
+    final boolean queued = queueDepth.incrementAndGet() <= maxQueueSize;
+    if (!queued) {
+      queueDepth.decrementAndGet();
+    }
+
+    final long delay = reserve(queued ? maxDelayNanos : 0);
+    if (queued && delay <= 0) {
+      queueDepth.decrementAndGet();
+    }
+
+    if (delay < 0) {
+      return Limiters.reject("rate limit exceeded");
+    }
+
+    if (delay == 0) {
+      return Limiters.execute(action);
+    }
+
+    return delay(action, delay);
+  }
+
+  private <T> ComposableFuture<T> delay(final FutureAction<T> action, final long delayNanos) {
+    final ComposablePromise<T> promise = ComposableFutures.newPromise();
+    final DelayedAction<T> delayed = new DelayedAction<>(action, promise);
+    promise.setCancellationToken(delayed);
+    delayed.timer = scheduler.schedule(delayed, delayNanos, TimeUnit.NANOSECONDS);
+    return promise.future();
+  }
+
+  /**
+   * @return the delay in nanoseconds until the reserved permit is available, or -1 if it is more than maxDelay
+   * away and no permit was reserved.
+   */
+  private long reserve(final long maxDelay) {
+    while (true) {
+      final long now = System.nanoTime();
+      final long current = theoreticalArrivalTime.get();
+      final long arrival = Math.max(current, now);
+      final long delay = Math.max(arrival - now - burstToleranceNanos, 0);
+      if (delay > maxDelay) {
+        return -1;
+      }
+
+      if (theoreticalArrivalTime.compareAndSet(current, arrival + intervalNanos)) {
+        return delay;
+      }
+    }
+  }
+
+  /**
+   * an action waiting for its permit, either the timer runs it or the future is cancelled before that.
+   * the permit is not given back on cancellation, the rate is kept even when waiters give up.
+   */
+  private final class DelayedAction<T> extends AtomicBoolean implements Runnable, CancellationToken {
+    private final FutureAction<T> action;
+    private final ComposablePromise<T> promise;
+    private volatile CancellationToken timer;
+
+    private DelayedAction(final FutureAction<T> action, final ComposablePromise<T> promise) {
+      this.action = action;
+      this.promise = promise;
+    }
+
+    @Override
+    public void run() {
+      if (!compareAndSet(false, true)) {
+        return;
+      }
+
+      queueDepth.decrementAndGet();
+      final ComposableFuture<T> result = Limiters.execute(action);
+      promise.setCancellationToken(result);
+      result.consume(new Consumer<T>() {
+        @Override
+        public void consume(final Try<T> result) {
+          if (result.isSuccess()) {
+            promise.set(result.getValue());
+          } else {
+            promise.setException(result.getError());
+          }
+        }
+      });
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterrupt) {
+      if (!compareAndSet(false, true)) {
+        return false;
+      }
+
+      queueDepth.decrementAndGet();
+      final CancellationToken timer = this.timer;
+      if (timer != null) {
+        timer.cancel(false);
+      }
+
+      return true;
+    }
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  public double getPermitsPerSecond() {
+    return (double) TimeUnit.SECONDS.toNanos(1) / intervalNanos;
+  }
+}
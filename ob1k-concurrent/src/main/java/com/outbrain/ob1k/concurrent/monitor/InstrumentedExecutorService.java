@@ -0,0 +1,61 @@
+package com.outbrain.ob1k.concurrent.monitor;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * an executor that measures the saturation of the executor it wraps: pending and active tasks, rejections,
+ * and the time tasks wait in the queue and take to run.
+ */
+public class InstrumentedExecutorService extends AbstractExecutorService {
+  private final ExecutorService delegate;
+  private final TaskStats stats;
+
+  public InstrumentedExecutorService(final ExecutorService delegate, final TaskStats stats) {
+    this.delegate = delegate;
+    this.stats = stats;
+  }
+
+  @Override
+  public void execute(final Runnable task) {
+    stats.onSubmit();
+    try {
+      delegate.execute(new MonitoredTask(task, stats, System.nanoTime()));
+    } catch (final RejectedExecutionException e) {
+      stats.onReject();
+      throw e;
+    }
+  }
+
+  public TaskStats getStats() {
+    return stats;
+  }
+
+  @Override
+  public void shutdown() {
+    delegate.shutdown();
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    return delegate.shutdownNow();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return delegate.isShutdown();
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return delegate.isTerminated();
+  }
+
+  @Override
+  public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+    return delegate.awaitTermination(timeout, unit);
+  }
+}
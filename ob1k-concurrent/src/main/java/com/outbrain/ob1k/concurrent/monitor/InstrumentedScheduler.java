@@ -0,0 +1,44 @@
+package com.outbrain.ob1k.concurrent.monitor;
+
+import com.outbrain.ob1k.concurrent.CancellationToken;
+import com.outbrain.ob1k.concurrent.Scheduler;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a scheduler that measures the timers of the scheduler it wraps: pending and running timers,
+ * how late timers fire compared to their scheduled time, and how long they take to run.
+ */
+public class InstrumentedScheduler implements Scheduler {
+  private final Scheduler delegate;
+  private final TaskStats stats;
+
+  public InstrumentedScheduler(final Scheduler delegate, final TaskStats stats) {
+    this.delegate = delegate;
+    this.stats = stats;
+  }
+
+  @Override
+  public CancellationToken schedule(final Runnable task, final long delay, final TimeUnit timeUnit) {
+    final MonitoredTask monitoredTask = new MonitoredTask(task, stats, System.nanoTime() + timeUnit.toNanos(delay));
+    stats.onSubmit();
+    try {
+      monitoredTask.setTimer(delegate.schedule(monitoredTask, delay, timeUnit));
+    } catch (final RejectedExecutionException e) {
+      stats.onReject();
+      throw e;
+    }
+
+    return monitoredTask;
+  }
+
+  public TaskStats getStats() {
+    return stats;
+  }
+
+  @Override
+  public void shutdown() {
+    delegate.shutdown();
+  }
+}
@@ -0,0 +1,67 @@
+package com.outbrain.ob1k.concurrent.monitor;
+
+import com.outbrain.ob1k.concurrent.CancellationToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * a task that reports its queue latency and execution time.
+ * the flag marks the task as started or cancelled, whichever comes first.
+ */
+class MonitoredTask extends AtomicBoolean implements Runnable, CancellationToken {
+  private static final Logger logger = LoggerFactory.getLogger(MonitoredTask.class);
+
+  private final Runnable task;
+  private final TaskStats stats;
+  // when the task was expected to start.
+  private final long dueNanos;
+  private final Throwable submission;
+  private volatile CancellationToken timer;
+
+  MonitoredTask(final Runnable task, final TaskStats stats, final long dueNanos) {
+    this.task = task;
+    this.stats = stats;
+    this.dueNanos = dueNanos;
+    this.submission = stats.sampleStack();
+  }
+
+  void setTimer(final CancellationToken timer) {
+    this.timer = timer;
+  }
+
+  @Override
+  public void run() {
+    if (!compareAndSet(false, true)) {
+      return;
+    }
+
+    final long start = System.nanoTime();
+    stats.onStart(start - dueNanos);
+    try {
+      task.run();
+    } finally {
+      final long executionNanos = System.nanoTime() - start;
+      if (stats.onComplete(executionNanos) && submission != null) {
+        logger.warn("slow task ran for " + TimeUnit.NANOSECONDS.toMillis(executionNanos) + "ms", submission);
+      }
+    }
+  }
+
+  @Override
+  public boolean cancel(final boolean mayInterrupt) {
+    if (!compareAndSet(false, true)) {
+      return false;
+    }
+
+    stats.onCancel();
+    final CancellationToken currentTimer = timer;
+    if (currentTimer != null) {
+      currentTimer.cancel(mayInterrupt);
+    }
+
+    return true;
+  }
+}
@@ -0,0 +1,123 @@
+package com.outbrain.ob1k.concurrent.monitor;
+
+import com.outbrain.ob1k.concurrent.config.Configuration;
+import com.outbrain.ob1k.concurrent.hedge.LatencyHistogram;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * the statistics of the tasks of an instrumented executor or scheduler.
+ *
+ * the queue latency is the time from submission(or from the scheduled time for a timer) until the task starts.
+ * tasks running longer than the slow task threshold are counted, and one in stackSampleRate tasks captures the stack
+ * that submitted it so it can be logged if it turns out to be slow.
+ */
+public class TaskStats {
+  private static final int HISTOGRAM_WINDOW = 10000;
+
+  private final AtomicLong submitted = new AtomicLong();
+  private final AtomicLong started = new AtomicLong();
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong cancelled = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong slow = new AtomicLong();
+  private final LatencyHistogram queueLatency = new LatencyHistogram(HISTOGRAM_WINDOW);
+  private final LatencyHistogram executionTime = new LatencyHistogram(HISTOGRAM_WINDOW);
+
+  private final long slowTaskNanos;
+  private final int stackSampleRate;
+
+  /**
+   * @param slowTaskThreshold the execution time of a slow task, zero disables the detection of slow tasks.
+   * @param stackSampleRate one in how many tasks captures its submission stack, zero disables the sampling.
+   */
+  public TaskStats(final long slowTaskThreshold, final TimeUnit unit, final int stackSampleRate) {
+    this.slowTaskNanos = unit.toNanos(slowTaskThreshold);
+    this.stackSampleRate = stackSampleRate;
+  }
+
+  public static TaskStats fromConfiguration() {
+    return new TaskStats(Configuration.getInstrumentationSlowTaskMs(), TimeUnit.MILLISECONDS,
+        Configuration.getInstrumentationStackSampleRate());
+  }
+
+  Throwable sampleStack() {
+    if (stackSampleRate <= 0 || slowTaskNanos <= 0 || ThreadLocalRandom.current().nextInt(stackSampleRate) != 0) {
+      return null;
+    }
+
+    return new Throwable("submitted at");
+  }
+
+  void onSubmit() {
+    submitted.incrementAndGet();
+  }
+
+  void onReject() {
+    submitted.decrementAndGet();
+    rejected.incrementAndGet();
+  }
+
+  void onCancel() {
+    cancelled.incrementAndGet();
+  }
+
+  void onStart(final long queueLatencyNanos) {
+    started.incrementAndGet();
+    queueLatency.record(Math.max(0, queueLatencyNanos), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @return true if the task was slow.
+   */
+  boolean onComplete(final long executionNanos) {
+    completed.incrementAndGet();
+    executionTime.record(executionNanos, TimeUnit.NANOSECONDS);
+    if (slowTaskNanos > 0 && executionNanos > slowTaskNanos) {
+      slow.incrementAndGet();
+      return true;
+    }
+
+    return false;
+  }
+
+  public long getSubmitted() {
+    return submitted.get();
+  }
+
+  public long getCompleted() {
+    return completed.get();
+  }
+
+  public long getRejected() {
+    return rejected.get();
+  }
+
+  public long getSlow() {
+    return slow.get();
+  }
+
+  /**
+   * @return the number of tasks waiting to start.
+   */
+  public long getPending() {
+    return submitted.get() - started.get() - cancelled.get();
+  }
+
+  /**
+   * @return the number of tasks running right now.
+   */
+  public long getActive() {
+    return started.get() - completed.get();
+  }
+
+  public long getQueueLatencyPercentile(final double percentile, final TimeUnit unit) {
+    return queueLatency.getPercentile(percentile, unit);
+  }
+
+  public long getExecutionTimePercentile(final double percentile, final TimeUnit unit) {
+    return executionTime.getPercentile(percentile, unit);
+  }
+}
@@ -0,0 +1,84 @@
+package com.outbrain.ob1k.concurrent.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * caps retries to a percentage of the requests, so that a failing target doesn't get a multiple of its usual load.
+ *
+ * every request deposits maxRetryPercent / 100 of a retry into the budget and every retry withdraws a whole one.
+ * the balance is capped, so a quiet period allows a burst of minRetries at most. sharing a budget between
+ * policies, e.g. all the clients of a service, caps their retries together.
+ */
+public class RetryBudget {
+  // balances are kept in thousandths of a retry.
+  private static final long RETRY = 1000;
+
+  private final long deposit;
+  private final long maxBalance;
+  private final AtomicLong balance;
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong exhausted = new AtomicLong();
+
+  /**
+   * @param maxRetryPercent the max percentage of retries out of all requests
+   * @param minRetries      the number of retries allowed in a row regardless of the number of requests
+   */
+  public RetryBudget(final double maxRetryPercent, final int minRetries) {
+    if (maxRetryPercent < 0 || minRetries < 0) {
+      throw new IllegalArgumentException("invalid retry budget: " + maxRetryPercent + "%, min " + minRetries);
+    }
+
+    this.deposit = Math.round(maxRetryPercent * RETRY / 100);
+    this.maxBalance = Math.max(minRetries * RETRY, RETRY);
+    this.balance = new AtomicLong(minRetries * RETRY);
+  }
+
+  public void deposit() {
+    requests.incrementAndGet();
+    while (true) {
+      final long current = balance.get();
+      final long next = Math.min(current + deposit, maxBalance);
+      if (current == next || balance.compareAndSet(current, next)) {
+        return;
+      }
+    }
+  }
+
+  public boolean tryWithdraw() {
+    while (true) {
+      final long current = balance.get();
+      if (current < RETRY) {
+        exhausted.incrementAndGet();
+        return false;
+      }
+
+      if (balance.compareAndSet(current, current - RETRY)) {
+        retries.incrementAndGet();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * @return the number of requests(first attempts) so far
+   */
+  public long getRequests() {
+    return requests.get();
+  }
+
+  /**
+   * @return the number of retries allowed so far
+   */
+  public long getRetries() {
+    return retries.get();
+  }
+
+  /**
+   * @return the number of retries denied because the budget was exhausted
+   */
+  public long getExhausted() {
+    return exhausted.get();
+  }
+}
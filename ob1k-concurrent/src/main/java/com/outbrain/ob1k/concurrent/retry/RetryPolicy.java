@@ -0,0 +1,228 @@
+package com.outbrain.ob1k.concurrent.retry;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.outbrain.ob1k.concurrent.CancellationToken;
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.Consumer;
+import com.outbrain.ob1k.concurrent.Scheduler;
+import com.outbrain.ob1k.concurrent.Try;
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import com.outbrain.ob1k.concurrent.handlers.FutureAction;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * retries a failed action after a backoff delay.
+ *
+ * the delays grow exponentially with decorrelated jitter: each delay is random between the base delay and three
+ * times the previous one, capped by the max delay. the randomness spreads the retries of many callers that
+ * failed together instead of having them hit the target again at the same moment.
+ * only errors accepted by the retry predicate are retried, and every retry is taken out of a {@link RetryBudget}.
+ * the next attempt is scheduled on the scheduler rather than chained to the previous one, so the stack doesn't
+ * grow with the number of attempts and no thread waits during the backoff.
+ */
+public class RetryPolicy {
+  private final int maxRetries;
+  private final long baseDelayNanos;
+  private final long maxDelayNanos;
+  private final long attemptTimeoutNanos;
+  private final Predicate<Throwable> retryOn;
+  private final RetryBudget budget;
+  private final Scheduler scheduler;
+
+  private RetryPolicy(final Builder builder) {
+    this.maxRetries = builder.maxRetries;
+    this.baseDelayNanos = builder.baseDelayNanos;
+    this.maxDelayNanos = builder.maxDelayNanos;
+    this.attemptTimeoutNanos = builder.attemptTimeoutNanos;
+    this.retryOn = builder.retryOn;
+    this.budget = builder.budget == null ? new RetryBudget(10, 10) : builder.budget;
+    this.scheduler = builder.scheduler == null ? ComposableFutures.getScheduler() : builder.scheduler;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * executes the action, retrying it according to the policy.
+   *
+   * @return the result of the first successful attempt, or the error of the last one
+   */
+  public <T> ComposableFuture<T> execute(final FutureAction<T> action) {
+    budget.deposit();
+    final ComposablePromise<T> result = ComposableFutures.newPromise();
+    new Execution<>(action, result).attempt(0, 0);
+    return result.future();
+  }
+
+  /**
+   * @return the delay before the next retry, random between the base delay and three times the previous delay
+   */
+  long nextDelayNanos(final long previousDelayNanos) {
+    final long upper = Math.min(Math.max(previousDelayNanos, baseDelayNanos) * 3, maxDelayNanos);
+    if (upper <= baseDelayNanos) {
+      return Math.min(baseDelayNanos, maxDelayNanos);
+    }
+
+    return ThreadLocalRandom.current().nextLong(baseDelayNanos, upper + 1);
+  }
+
+  public RetryBudget getBudget() {
+    return budget;
+  }
+
+  /**
+   * a single execution of an action and its retries.
+   */
+  private final class Execution<T> {
+    private final FutureAction<T> action;
+    private final ComposablePromise<T> result;
+
+    private Execution(final FutureAction<T> action, final ComposablePromise<T> result) {
+      this.action = action;
+      this.result = result;
+    }
+
+    private void attempt(final int retry, final long delayNanos) {
+      ComposableFuture<T> attempt;
+      try {
+        attempt = action.execute();
+      } catch (final Exception e) {
+        attempt = ComposableFutures.fromError(e);
+      }
+
+      if (attemptTimeoutNanos > 0) {
+        // the attempt belongs to the retry alone, a timed out one is cancelled.
+        attempt = attempt.withTimeout(scheduler, attemptTimeoutNanos, TimeUnit.NANOSECONDS, "retry attempt", true);
+      }
+
+      result.setCancellationToken(attempt);
+      attempt.consume(new Consumer<T>() {
+        @Override
+        public void consume(final Try<T> res) {
+          if (res.isSuccess()) {
+            result.set(res.getValue());
+          } else if (shouldRetry(retry, res.getError())) {
+            scheduleRetry(retry + 1, nextDelayNanos(delayNanos));
+          } else {
+            result.setException(res.getError());
+          }
+        }
+      });
+    }
+
+    private boolean shouldRetry(final int retry, final Throwable error) {
+      if (retry >= maxRetries || error instanceof CancellationException || !retryOn.apply(error)) {
+        return false;
+      }
+
+      return budget.tryWithdraw();
+    }
+
+    private void scheduleRetry(final int retry, final long delayNanos) {
+      final Retry next = new Retry(retry, delayNanos);
+      // replaced by the next attempt once it starts.
+      result.setCancellationToken(next);
+      next.timer = scheduler.schedule(next, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * a retry waiting for its backoff delay to pass.
+     */
+    private final class Retry implements Runnable, CancellationToken {
+      private final int retry;
+      private final long delayNanos;
+      private volatile boolean cancelled;
+      private volatile CancellationToken timer;
+
+      private Retry(final int retry, final long delayNanos) {
+        this.retry = retry;
+        this.delayNanos = delayNanos;
+      }
+
+      @Override
+      public void run() {
+        if (!cancelled) {
+          attempt(retry, delayNanos);
+        }
+      }
+
+      @Override
+      public boolean cancel(final boolean mayInterrupt) {
+        cancelled = true;
+        final CancellationToken timer = this.timer;
+        return timer == null || timer.cancel(mayInterrupt);
+      }
+    }
+  }
+
+  public static class Builder {
+    private int maxRetries = 3;
+    private long baseDelayNanos = TimeUnit.MILLISECONDS.toNanos(10);
+    private long maxDelayNanos = TimeUnit.SECONDS.toNanos(1);
+    private long attemptTimeoutNanos = 0;
+    private Predicate<Throwable> retryOn = Predicates.alwaysTrue();
+    private RetryBudget budget;
+    private Scheduler scheduler;
+
+    private Builder() {
+    }
+
+    public Builder setMaxRetries(final int maxRetries) {
+      this.maxRetries = maxRetries;
+      return this;
+    }
+
+    /**
+     * the range of the delays between attempts, a zero base delay retries right away.
+     */
+    public Builder setBackoff(final long baseDelay, final long maxDelay, final TimeUnit unit) {
+      if (baseDelay < 0 || maxDelay < baseDelay) {
+        throw new IllegalArgumentException("invalid backoff: " + baseDelay + " - " + maxDelay + " " + unit);
+      }
+
+      this.baseDelayNanos = unit.toNanos(baseDelay);
+      this.maxDelayNanos = unit.toNanos(maxDelay);
+      return this;
+    }
+
+    /**
+     * caps the time of every attempt, a timed out attempt is retried like any other failure.
+     */
+    public Builder setAttemptTimeout(final long timeout, final TimeUnit unit) {
+      this.attemptTimeoutNanos = unit.toNanos(timeout);
+      return this;
+    }
+
+    /**
+     * decides which errors are retried. all of them by default.
+     */
+    public Builder setRetryOn(final Predicate<Throwable> retryOn) {
+      this.retryOn = retryOn;
+      return this;
+    }
+
+    /**
+     * the budget of the retries, may be shared by many policies. by default every policy has its own budget
+     * of 10% of the requests.
+     */
+    public Builder setBudget(final RetryBudget budget) {
+      this.budget = budget;
+      return this;
+    }
+
+    public Builder setScheduler(final Scheduler scheduler) {
+      this.scheduler = scheduler;
+      return this;
+    }
+
+    public RetryPolicy build() {
+      return new RetryPolicy(this);
+    }
+  }
+}
@@ -0,0 +1,324 @@
+package com.outbrain.ob1k.concurrent.scope;
+
+import com.outbrain.ob1k.concurrent.CancellationToken;
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.Consumer;
+import com.outbrain.ob1k.concurrent.Scheduler;
+import com.outbrain.ob1k.concurrent.Try;
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import com.outbrain.ob1k.concurrent.eager.EagerComposableFuture;
+import com.outbrain.ob1k.concurrent.handlers.FutureAction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * tracks the futures forked in the course of a single unit of work(e.g. a request fanning out to other services)
+ * so that they share its lifetime: none of them outlives the scope.
+ *
+ * the scope fails when its deadline passes, when it is closed, or, with the FAIL_FAST policy, when any of its
+ * futures fails. a failed scope cancels all of its running futures and child
+ * scopes and refuses to fork new ones. with COLLECT_ALL the failures of the futures are only collected and
+ * reported by {@link #join()} once all of them completed.
+ */
+public class FutureScope implements CancellationToken, AutoCloseable {
+  public enum FailurePolicy {
+    /**
+     * the first failure fails the scope and cancels the rest of the futures.
+     */
+    FAIL_FAST,
+    /**
+     * futures run to completion, join() fails with the first failure with the others suppressed.
+     */
+    COLLECT_ALL
+  }
+
+  private final FailurePolicy policy;
+  private final FutureScope parent;
+  private final long deadlineNanos;
+  private final CancellationToken timer;
+
+  private final Set<CancellationToken> running = Collections.newSetFromMap(new ConcurrentHashMap<CancellationToken, Boolean>());
+  private final AtomicInteger pending = new AtomicInteger();
+  private final Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+  private final Queue<ComposablePromise<Void>> joiners = new ConcurrentLinkedQueue<>();
+
+  public FutureScope(final FailurePolicy policy) {
+    this(policy, null, 0, null);
+  }
+
+  /**
+   * @param deadline the time the scope has until it fails with a {@link TimeoutException}
+   */
+  public FutureScope(final FailurePolicy policy, final long deadline, final TimeUnit unit) {
+    this(policy, deadline, unit, ComposableFutures.getScheduler());
+  }
+
+  public FutureScope(final FailurePolicy policy, final long deadline, final TimeUnit unit, final Scheduler scheduler) {
+    this(policy, null, unit.toNanos(deadline), scheduler);
+  }
+
+  private FutureScope(final FailurePolicy policy, final FutureScope parent, final long deadlineNanos,
+                      final Scheduler scheduler) {
+    this.policy = policy;
+    this.parent = parent;
+    if (scheduler == null) {
+      this.deadlineNanos = 0;
+      this.timer = null;
+    } else {
+      this.deadlineNanos = System.nanoTime() + deadlineNanos;
+      this.timer = scheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          fail(new TimeoutException("scope deadline exceeded"));
+        }
+      }, deadlineNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * executes the action as part of the scope.
+   *
+   * @return the future of the action, or the failure of the scope without executing the action if it already failed
+   */
+  public <T> ComposableFuture<T> fork(final FutureAction<T> action) {
+    final Throwable scopeFailure = failure();
+    if (scopeFailure != null) {
+      return ComposableFutures.fromError(scopeFailure);
+    }
+
+    ComposableFuture<T> future;
+    try {
+      future = action.execute();
+    } catch (final Exception e) {
+      future = ComposableFutures.fromError(e);
+    }
+
+    return track(future);
+  }
+
+  /**
+   * makes an already running future part of the scope, it is cancelled right away if the scope already failed.
+   * the scope holds the future like a continuation does(see {@link EagerComposableFuture#dependencyOn}), so a future
+   * that others wait for as well is only cancelled once they let go of it too.
+   */
+  public <T> ComposableFuture<T> track(final ComposableFuture<T> future) {
+    if (pending.incrementAndGet() == 1 && parent != null) {
+      // a child scope is held by its parent only while it has running futures.
+      parent.adopt(this);
+    }
+
+    final CancellationToken dependency = EagerComposableFuture.dependencyOn(future);
+    running.add(dependency);
+    if (failure.get() != null) {
+      // failed in the meantime, whoever failed it may have missed this one.
+      running.remove(dependency);
+      dependency.cancel(false);
+    }
+
+    future.consume(new Consumer<T>() {
+      @Override
+      public void consume(final Try<T> result) {
+        running.remove(dependency);
+        if (!result.isSuccess() && !(result.getError() instanceof CancellationException)) {
+          onFailure(result.getError());
+        }
+
+        if (pending.decrementAndGet() == 0) {
+          if (parent != null) {
+            parent.running.remove(FutureScope.this);
+            if (pending.get() != 0) {
+              // forked again in the meantime.
+              parent.adopt(FutureScope.this);
+            }
+          }
+
+          completeJoiners();
+        }
+      }
+    });
+
+    return future;
+  }
+
+  /**
+   * creates a scope that is cancelled along with this one, e.g. to fail fast on a subset of the futures.
+   * it has the deadline of this scope.
+   */
+  public FutureScope newScope(final FailurePolicy policy) {
+    return newScope(policy, getRemaining(TimeUnit.NANOSECONDS));
+  }
+
+  /**
+   * like {@link #newScope(FailurePolicy)}, with a deadline of its own; the earlier of it and this scope's applies.
+   */
+  public FutureScope newScope(final FailurePolicy policy, final long deadline, final TimeUnit unit) {
+    final long remaining = getRemaining(TimeUnit.NANOSECONDS);
+    final long deadlineNanos = unit.toNanos(deadline);
+    return newScope(policy, remaining < 0 ? deadlineNanos : Math.min(deadlineNanos, remaining));
+  }
+
+  private FutureScope newScope(final FailurePolicy policy, final long deadlineNanos) {
+    final FutureScope child = deadlineNanos < 0 ?
+        new FutureScope(policy, this, 0, null) :
+        new FutureScope(policy, this, deadlineNanos, ComposableFutures.getScheduler());
+
+    final Throwable scopeFailure = failure();
+    if (scopeFailure != null) {
+      child.fail(scopeFailure);
+    }
+
+    return child;
+  }
+
+  /**
+   * @return a future that completes once all the futures of the scope completed, or fails as soon as the scope fails.
+   */
+  public ComposableFuture<Void> join() {
+    final ComposablePromise<Void> joiner = ComposableFutures.newPromise();
+    joiners.add(joiner);
+    if (pending.get() == 0 || failure() != null) {
+      completeJoiners();
+    }
+
+    return joiner.future();
+  }
+
+  /**
+   * cancels the futures of the scope that are still running, after which it refuses to fork new ones.
+   */
+  @Override
+  public void close() {
+    fail(new CancellationException("scope was closed"));
+  }
+
+  @Override
+  public boolean cancel(final boolean mayInterrupt) {
+    return fail(new CancellationException("scope was cancelled"));
+  }
+
+  /**
+   * @return the time left until the deadline, or -1 if the scope has no deadline
+   */
+  public long getRemaining(final TimeUnit unit) {
+    if (timer == null) {
+      return -1;
+    }
+
+    return unit.convert(Math.max(deadlineNanos - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @return the failures of the futures so far
+   */
+  public List<Throwable> getFailures() {
+    return new ArrayList<>(failures);
+  }
+
+  public boolean isFailed() {
+    return failure() != null;
+  }
+
+  public int getPending() {
+    return pending.get();
+  }
+
+  private void adopt(final FutureScope child) {
+    running.add(child);
+    final Throwable scopeFailure = failure();
+    if (scopeFailure != null) {
+      running.remove(child);
+      child.fail(scopeFailure);
+    }
+  }
+
+  /**
+   * an idle child isn't held by its parent, it picks up the failure of the parent when it's next used.
+   */
+  private Throwable failure() {
+    if (failure.get() == null && parent != null) {
+      final Throwable parentFailure = parent.failure();
+      if (parentFailure != null) {
+        fail(parentFailure);
+      }
+    }
+
+    return failure.get();
+  }
+
+  private void onFailure(final Throwable error) {
+    failures.add(error);
+    if (policy == FailurePolicy.FAIL_FAST) {
+      fail(error);
+    }
+  }
+
+  private boolean fail(final Throwable error) {
+    if (!failure.compareAndSet(null, error)) {
+      return false;
+    }
+
+    if (timer != null) {
+      timer.cancel(false);
+    }
+
+    if (parent != null) {
+      parent.running.remove(this);
+    }
+
+    for (final CancellationToken future : running) {
+      running.remove(future);
+      future.cancel(false);
+    }
+
+    completeJoiners();
+    return true;
+  }
+
+  private void completeJoiners() {
+    final Throwable scopeFailure = failure.get();
+    if (scopeFailure == null && pending.get() != 0) {
+      return;
+    }
+
+    final Throwable error = scopeFailure != null ? scopeFailure : collectFailures();
+    ComposablePromise<Void> joiner;
+    while ((joiner = joiners.poll()) != null) {
+      if (error == null) {
+        joiner.set(null);
+      } else {
+        joiner.setException(error);
+      }
+    }
+  }
+
+  private Throwable collectFailures() {
+    final Throwable first = failures.peek();
+    if (first == null) {
+      return null;
+    }
+
+    // joiners may be completed more than once, as more futures are forked after a join.
+    final List<Throwable> suppressed = Arrays.asList(first.getSuppressed());
+    for (final Throwable other : failures) {
+      if (other != first && !suppressed.contains(other)) {
+        first.addSuppressed(other);
+      }
+    }
+
+    return first;
+  }
+}
@@ -1,8 +1,6 @@
 package com.outbrain.ob1k.concurrent.stream;
 
-import com.outbrain.ob1k.concurrent.ComposableFuture;
-import com.outbrain.ob1k.concurrent.Consumer;
-import com.outbrain.ob1k.concurrent.Try;
+import com.google.common.base.Suppliers;
 import com.outbrain.ob1k.concurrent.handlers.FutureProvider;
 import rx.Observable;
 import rx.Subscriber;
@@ -11,45 +9,18 @@ import rx.Subscriber;
  * Created by aronen on 11/9/14.
  *
  * creates a stream from a future provider.
- * each time a future provides the value, the next future is generated.
+ * each time a future provides the value, the next future is generated,
+ * as long as the subscriber requested more values.
  */
 public class FutureProviderToStreamHandler<T> implements Observable.OnSubscribe<T> {
-  private final FutureProvider<T> provider;
-  volatile Subscriber<? super T> subscriber;
+  private final PullingFutureStreamHandler<T> handler;
 
   public FutureProviderToStreamHandler(final FutureProvider<T> provider) {
-    this.provider = provider;
+    this.handler = new PullingFutureStreamHandler<>(Suppliers.ofInstance(provider), 1, true, true);
   }
 
   @Override
   public void call(final Subscriber<? super T> subscriber) {
-    this.subscriber = subscriber;
-    final boolean next = provider.moveNext();
-    if (next) {
-      final ComposableFuture<T> nextFuture = provider.current();
-      handleNextFuture(nextFuture);
-    } else {
-      subscriber.onCompleted();
-    }
+    handler.call(subscriber);
   }
-
-  private void handleNextFuture(final ComposableFuture<T> nextFuture) {
-    nextFuture.consume(new Consumer<T>() {
-      @Override
-      public void consume(final Try<T> result) {
-        if (result.isSuccess()) {
-          subscriber.onNext(result.getValue());
-          final boolean next = provider.moveNext();
-          if (next) {
-            handleNextFuture(provider.current());
-          } else {
-            subscriber.onCompleted();
-          }
-        } else {
-          subscriber.onError(result.getError());
-        }
-      }
-    });
- }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,269 @@
+package com.outbrain.ob1k.concurrent.stream;
+
+import com.outbrain.ob1k.concurrent.CancellationToken;
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.Consumer;
+import com.outbrain.ob1k.concurrent.Try;
+import com.outbrain.ob1k.concurrent.eager.EagerComposableFuture;
+import rx.Producer;
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * a sliding window of futures feeding a subscriber, bounded by both the window size and the subscriber's demand.
+ *
+ * a new future is pulled from the subclass only when a value was requested beyond the ones already on their way and
+ * the window has room for it, and its value is emitted either in the order of the futures or in the order they
+ * complete. all the work is done inside drain() which is entered by one thread at a time, whoever signals a change
+ * (a request, a completed future, a failure or a cancellation) either enters it or marks it to run again.
+ * cancelling or failing the window lets go of the pending futures.
+ */
+abstract class FutureWindow<T> implements Producer {
+  private final Subscriber<? super T> child;
+  private final int maxConcurrency;
+  private final boolean ordered;
+  private final boolean failOnError;
+
+  private final AtomicLong requested = new AtomicLong();
+  private final AtomicInteger wip = new AtomicInteger();
+  private volatile boolean cancelled;
+  private volatile Throwable error;
+
+  // completed slots, used when the values are emitted in completion order.
+  private final Queue<Slot<T>> completed = new ConcurrentLinkedQueue<>();
+
+  // owned by the thread in drain().
+  private final ArrayDeque<Slot<T>> pendingInOrder = new ArrayDeque<>();
+  private final Set<Slot<T>> pending = Collections.newSetFromMap(new IdentityHashMap<Slot<T>, Boolean>());
+
+  /**
+   * @param child          the subscriber the values are emitted to
+   * @param maxConcurrency the maximal number of pending futures
+   * @param ordered        whether the values are emitted in the order of the futures or in the order they complete
+   * @param failOnError    whether a failed future ends the stream, otherwise its failure is skipped
+   */
+  FutureWindow(final Subscriber<? super T> child, final int maxConcurrency, final boolean ordered,
+               final boolean failOnError) {
+    this.child = child;
+    this.maxConcurrency = maxConcurrency;
+    this.ordered = ordered;
+    this.failOnError = failOnError;
+  }
+
+  /**
+   * called from within drain() when there is room for another future.
+   *
+   * @return the next future, or null if there is none to pull right now.
+   */
+  protected abstract ComposableFuture<T> pull() throws Exception;
+
+  /**
+   * called from within drain() once nothing is pending.
+   *
+   * @return whether no more futures will ever be pulled, which completes the stream.
+   */
+  protected abstract boolean isExhausted();
+
+  /**
+   * called from within drain() after the window was filled, with the number of futures pending.
+   */
+  protected void onDrained(final int pendingCount) {}
+
+  /**
+   * called from within drain() once the stream ended, either completed, failed or cancelled.
+   */
+  protected void onTerminated() {}
+
+  @Override
+  public void request(final long n) {
+    if (n < 0) {
+      throw new IllegalArgumentException("n >= 0 required but it was " + n);
+    }
+
+    if (n == 0) {
+      return;
+    }
+
+    while (true) {
+      final long current = requested.get();
+      final long next = current + n < 0 ? Long.MAX_VALUE : current + n;
+      if (requested.compareAndSet(current, next)) {
+        break;
+      }
+    }
+
+    drain();
+  }
+
+  final void cancel() {
+    cancelled = true;
+    drain();
+  }
+
+  /**
+   * ends the stream with the given error, e.g. when the upstream of the futures failed.
+   */
+  final void fail(final Throwable error) {
+    this.error = error;
+    drain();
+  }
+
+  final void drain() {
+    if (wip.getAndIncrement() != 0) {
+      return;
+    }
+
+    int missed = 1;
+    do {
+      if (cancelled) {
+        cancelPending();
+        return;
+      }
+
+      if (error != null) {
+        terminate(error);
+        return;
+      }
+
+      long demand = requested.get();
+      long emitted = 0;
+      while (emitted != demand) {
+        final Slot<T> slot = pollCompleted();
+        if (slot == null) {
+          break;
+        }
+
+        final Try<T> result = slot.result;
+        if (result.isSuccess()) {
+          emitted++;
+          try {
+            child.onNext(result.getValue());
+          } catch (final Throwable error) {
+            Exceptions.throwIfFatal(error);
+            terminate(error);
+            return;
+          }
+        } else if (failOnError) {
+          terminate(result.getError());
+          return;
+        }
+
+        if (cancelled) {
+          cancelPending();
+          return;
+        }
+      }
+
+      if (emitted != 0 && demand != Long.MAX_VALUE) {
+        demand = requested.addAndGet(-emitted);
+      }
+
+      // only pull futures whose values were already asked for.
+      while (pending.size() < maxConcurrency && pending.size() < demand) {
+        final ComposableFuture<T> future;
+        try {
+          future = pull();
+        } catch (final Throwable error) {
+          Exceptions.throwIfFatal(error);
+          terminate(error);
+          return;
+        }
+
+        if (future == null) {
+          break;
+        }
+
+        final Slot<T> slot = new Slot<>(this, future);
+        pending.add(slot);
+        if (ordered) {
+          pendingInOrder.add(slot);
+        }
+
+        // may complete right away and come back here through drain() as a missed signal.
+        future.consume(slot);
+      }
+
+      if (pending.isEmpty() && isExhausted()) {
+        onTerminated();
+        child.onCompleted();
+        return;
+      }
+
+      onDrained(pending.size());
+      missed = wip.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  private Slot<T> pollCompleted() {
+    final Slot<T> slot;
+    if (ordered) {
+      final Slot<T> head = pendingInOrder.peek();
+      if (head == null || head.result == null) {
+        return null;
+      }
+
+      slot = pendingInOrder.poll();
+    } else {
+      slot = completed.poll();
+      if (slot == null) {
+        return null;
+      }
+    }
+
+    pending.remove(slot);
+    return slot;
+  }
+
+  private void terminate(final Throwable error) {
+    cancelPending();
+    child.onError(error);
+  }
+
+  // leaves wip untouched so no further drain will run.
+  private void cancelPending() {
+    onTerminated();
+    for (final Iterator<Slot<T>> iterator = pending.iterator(); iterator.hasNext(); ) {
+      iterator.next().dependency.cancel(false);
+      iterator.remove();
+    }
+
+    pendingInOrder.clear();
+    completed.clear();
+  }
+
+  private void onCompleted(final Slot<T> slot) {
+    if (!ordered) {
+      completed.add(slot);
+    }
+
+    drain();
+  }
+
+  private static final class Slot<T> implements Consumer<T> {
+    private final FutureWindow<T> owner;
+    // the future may be shared with other callers, it is only let go of.
+    private final CancellationToken dependency;
+    private volatile Try<T> result;
+
+    private Slot(final FutureWindow<T> owner, final ComposableFuture<T> future) {
+      this.owner = owner;
+      this.dependency = EagerComposableFuture.dependencyOn(future);
+    }
+
+    @Override
+    public void consume(final Try<T> result) {
+      this.result = result;
+      owner.onCompleted(this);
+    }
+  }
+}
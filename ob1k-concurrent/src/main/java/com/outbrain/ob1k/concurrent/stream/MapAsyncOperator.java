@@ -0,0 +1,140 @@
+package com.outbrain.ob1k.concurrent.stream;
+
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.handlers.FutureSuccessHandler;
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * maps every element of a stream into a future and emits the results, keeping up to parallelism futures
+ * in flight as a sliding window: a new element is mapped as soon as a previous result is emitted rather than
+ * after a whole batch is done.
+ *
+ * elements are requested from the source only when there is room in the window, so neither the input nor
+ * the output is held in memory beyond the window, as long as the source honors backpressure(a source that
+ * doesn't is buffered). results are emitted either in the order of the elements or in the order they complete.
+ * an error, either from the source or from one of the futures, ends the stream and lets go of the pending futures.
+ * a handler that returns null maps its element to a null result.
+ */
+public class MapAsyncOperator<T, R> implements Observable.Operator<R, T> {
+  private static final Object NULL = new Object();
+
+  private final FutureSuccessHandler<? super T, R> handler;
+  private final int parallelism;
+  private final boolean ordered;
+
+  public MapAsyncOperator(final FutureSuccessHandler<? super T, R> handler, final int parallelism, final boolean ordered) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+    }
+
+    this.handler = handler;
+    this.parallelism = parallelism;
+    this.ordered = ordered;
+  }
+
+  @Override
+  public Subscriber<? super T> call(final Subscriber<? super R> child) {
+    final Window<T, R> window = new Window<>(child, handler, parallelism, ordered);
+    child.add(window.source);
+    child.add(Subscriptions.create(new Action0() {
+      @Override
+      public void call() {
+        window.cancel();
+      }
+    }));
+    child.setProducer(window);
+    return window.source;
+  }
+
+  private static final class Window<T, R> extends FutureWindow<R> {
+    private final FutureSuccessHandler<? super T, R> handler;
+    private final int parallelism;
+    private final Source source = new Source();
+
+    private volatile boolean sourceDone;
+    private final Queue<Object> inputs = new ConcurrentLinkedQueue<>();
+
+    // owned by the thread in drain().
+    private long requestedFromSource;
+    private long receivedFromSource;
+
+    private Window(final Subscriber<? super R> child, final FutureSuccessHandler<? super T, R> handler,
+                   final int parallelism, final boolean ordered) {
+      super(child, parallelism, ordered, true);
+      this.handler = handler;
+      this.parallelism = parallelism;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected ComposableFuture<R> pull() throws Exception {
+      final Object input = inputs.poll();
+      if (input == null) {
+        return null;
+      }
+
+      receivedFromSource++;
+      final ComposableFuture<R> future = handler.handle(input == NULL ? null : (T) input);
+      return future == null ? ComposableFutures.<R>fromNull() : future;
+    }
+
+    @Override
+    protected boolean isExhausted() {
+      return sourceDone && inputs.isEmpty();
+    }
+
+    @Override
+    protected void onDrained(final int pendingCount) {
+      // top up the source so that pending futures, buffered elements and requested elements fill the window.
+      final long outstanding = requestedFromSource - receivedFromSource;
+      final long room = parallelism - pendingCount - outstanding;
+      if (!sourceDone && room > 0) {
+        requestedFromSource += room;
+        source.requestMore(room);
+      }
+    }
+
+    @Override
+    protected void onTerminated() {
+      source.unsubscribe();
+      inputs.clear();
+    }
+
+    private final class Source extends Subscriber<T> {
+      @Override
+      public void onStart() {
+        // nothing is requested until the window is drained for the first time.
+        request(0);
+      }
+
+      @Override
+      public void onNext(final T element) {
+        inputs.add(element == null ? NULL : element);
+        drain();
+      }
+
+      @Override
+      public void onCompleted() {
+        sourceDone = true;
+        drain();
+      }
+
+      @Override
+      public void onError(final Throwable error) {
+        sourceDone = true;
+        fail(error);
+      }
+
+      private void requestMore(final long n) {
+        request(n);
+      }
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package com.outbrain.ob1k.concurrent.stream;
+
+import com.google.common.base.Supplier;
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.handlers.FutureProvider;
+import rx.Observable;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * creates a stream from a future provider that respects the demand of the subscriber.
+ *
+ * the next future is only pulled from the provider when the subscriber requested more values than the ones
+ * already on their way, and no more than maxConcurrency futures are pending at any time, so a slow subscriber
+ * slows down the production instead of having the results buffered in memory.
+ * the values are emitted either in the order of the futures or in the order they complete.
+ * unsubscribing lets go of the pending futures and stops pulling new ones.
+ *
+ * every subscription gets its own provider from the supplier.
+ */
+public class PullingFutureStreamHandler<T> implements Observable.OnSubscribe<T> {
+  private final Supplier<? extends FutureProvider<T>> providers;
+  private final int maxConcurrency;
+  private final boolean ordered;
+  private final boolean failOnError;
+
+  public PullingFutureStreamHandler(final Supplier<? extends FutureProvider<T>> providers, final int maxConcurrency,
+                                    final boolean ordered, final boolean failOnError) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+    }
+
+    this.providers = providers;
+    this.maxConcurrency = maxConcurrency;
+    this.ordered = ordered;
+    this.failOnError = failOnError;
+  }
+
+  @Override
+  public void call(final Subscriber<? super T> subscriber) {
+    final Subscription<T> subscription = new Subscription<>(subscriber, providers.get(), maxConcurrency, ordered, failOnError);
+    subscriber.add(Subscriptions.create(new Action0() {
+      @Override
+      public void call() {
+        subscription.cancel();
+      }
+    }));
+    subscriber.setProducer(subscription);
+  }
+
+  /**
+   * the state of a single subscription, pulling its futures from the provider.
+   */
+  private static final class Subscription<T> extends FutureWindow<T> {
+    private final FutureProvider<T> provider;
+    private boolean exhausted;
+
+    private Subscription(final Subscriber<? super T> child, final FutureProvider<T> provider, final int maxConcurrency,
+                         final boolean ordered, final boolean failOnError) {
+      super(child, maxConcurrency, ordered, failOnError);
+      this.provider = provider;
+    }
+
+    @Override
+    protected ComposableFuture<T> pull() {
+      if (exhausted || !provider.moveNext()) {
+        exhausted = true;
+        return null;
+      }
+
+      final ComposableFuture<T> future = provider.current();
+      return future == null ? ComposableFutures.<T>fromNull() : future;
+    }
+
+    @Override
+    protected boolean isExhausted() {
+      return exhausted;
+    }
+  }
+}
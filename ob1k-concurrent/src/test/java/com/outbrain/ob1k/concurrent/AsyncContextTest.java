@@ -0,0 +1,156 @@
+package com.outbrain.ob1k.concurrent;
+
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import com.outbrain.ob1k.concurrent.handlers.SuccessHandler;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncContextTest {
+  private static final AsyncContext.Key<String> TRACE_ID = AsyncContext.Key.named("traceId");
+  private static final AsyncContext.Key<Integer> ATTEMPT = AsyncContext.Key.named("attempt");
+
+  @Test
+  public void testImmutableUpdates() {
+    final AsyncContext first = AsyncContext.EMPTY.with(TRACE_ID, "a");
+    final AsyncContext second = first.with(ATTEMPT, 1).with(TRACE_ID, "b");
+
+    Assert.assertTrue(AsyncContext.EMPTY.isEmpty());
+    Assert.assertEquals("a", first.get(TRACE_ID));
+    Assert.assertNull(first.get(ATTEMPT));
+    Assert.assertEquals("b", second.get(TRACE_ID));
+    Assert.assertEquals(1, second.get(ATTEMPT).intValue());
+
+    final AsyncContext third = second.without(TRACE_ID);
+    Assert.assertNull(third.get(TRACE_ID));
+    Assert.assertEquals(1, third.get(ATTEMPT).intValue());
+    Assert.assertSame(AsyncContext.EMPTY, third.with(ATTEMPT, null));
+  }
+
+  @Test
+  public void testContextFollowsEagerContinuations() throws Exception {
+    final ComposablePromise<String> promise = ComposableFutures.newPromise();
+    final ComposableFuture<String> traced = AsyncContext.EMPTY.with(TRACE_ID, "request-1").call(new Callable<ComposableFuture<String>>() {
+      @Override
+      public ComposableFuture<String> call() {
+        return promise.future().continueOnSuccess(new SuccessHandler<String, String>() {
+          @Override
+          public String handle(final String result) {
+            return result + ":" + AsyncContext.current().get(TRACE_ID);
+          }
+        });
+      }
+    });
+
+    Assert.assertTrue(AsyncContext.current().isEmpty());
+
+    // completed from a thread running in another context.
+    final Thread completer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        AsyncContext.EMPTY.with(TRACE_ID, "request-2").run(new Runnable() {
+          @Override
+          public void run() {
+            promise.set("value");
+            Assert.assertEquals("request-2", AsyncContext.current().get(TRACE_ID));
+          }
+        });
+      }
+    });
+    completer.start();
+    completer.join();
+
+    Assert.assertEquals("value:request-1", traced.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testEmptyContextIsRestoredInContinuations() throws Exception {
+    final ComposablePromise<String> promise = ComposableFutures.newPromise();
+    final ComposableFuture<String> untraced = promise.future().continueOnSuccess(new SuccessHandler<String, String>() {
+      @Override
+      public String handle(final String result) {
+        return String.valueOf(AsyncContext.current().get(TRACE_ID));
+      }
+    });
+
+    AsyncContext.EMPTY.with(TRACE_ID, "other").run(new Runnable() {
+      @Override
+      public void run() {
+        promise.set("value");
+      }
+    });
+
+    Assert.assertEquals("null", untraced.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testContextFollowsSubmittedAndLazyTasks() throws Exception {
+    final Callable<String> readTrace = new Callable<String>() {
+      @Override
+      public String call() {
+        return AsyncContext.current().get(TRACE_ID);
+      }
+    };
+
+    final AsyncContext context = AsyncContext.EMPTY.with(TRACE_ID, "request-3");
+    final ComposableFuture<String> submitted = context.call(new Callable<ComposableFuture<String>>() {
+      @Override
+      public ComposableFuture<String> call() {
+        return ComposableFutures.submit(readTrace);
+      }
+    });
+    Assert.assertEquals("request-3", submitted.get(1, TimeUnit.SECONDS));
+
+    final ComposableFuture<String> lazy = ComposableFutures.submitLazy(false, readTrace).continueOnSuccess(new SuccessHandler<String, String>() {
+      @Override
+      public String handle(final String result) {
+        return result + ":" + AsyncContext.current().get(TRACE_ID);
+      }
+    });
+    final String consumed = context.call(new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        return lazy.get(1, TimeUnit.SECONDS);
+      }
+    });
+    Assert.assertEquals("request-3:request-3", consumed);
+  }
+
+  @Test
+  public void testMdcSnapshotFollowsContinuations() throws Exception {
+    final ComposablePromise<String> promise = ComposableFutures.newPromise();
+    MDC.put("requestId", "request-4");
+    final ComposableFuture<String> logged;
+    try {
+      logged = AsyncContext.current().withMdc().call(new Callable<ComposableFuture<String>>() {
+        @Override
+        public ComposableFuture<String> call() {
+          return promise.future().continueOnSuccess(new SuccessHandler<String, String>() {
+            @Override
+            public String handle(final String result) {
+              return result + ":" + MDC.get("requestId");
+            }
+          });
+        }
+      });
+    } finally {
+      MDC.clear();
+    }
+
+    final Thread completer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        promise.set("value");
+        Assert.assertNull(MDC.get("requestId"));
+      }
+    });
+    completer.start();
+    completer.join();
+
+    Assert.assertEquals("value:request-4", logged.get(1, TimeUnit.SECONDS));
+    Assert.assertNull(MDC.get("requestId"));
+  }
+}
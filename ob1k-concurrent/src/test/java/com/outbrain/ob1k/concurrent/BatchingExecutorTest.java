@@ -0,0 +1,128 @@
+package com.outbrain.ob1k.concurrent;
+
+import com.google.common.base.Function;
+import com.outbrain.ob1k.concurrent.batch.BatchingExecutor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class BatchingExecutorTest {
+
+  @Test
+  public void testKeysInWindowAreMergedAndDeduplicated() throws Exception {
+    final List<Set<Integer>> calls = new CopyOnWriteArrayList<>();
+    final BatchingExecutor<Integer, String> executor = BatchingExecutor.builder(new Function<Set<Integer>, ComposableFuture<Map<Integer, String>>>() {
+      @Override
+      public ComposableFuture<Map<Integer, String>> apply(final Set<Integer> keys) {
+        calls.add(new HashSet<>(keys));
+        final Map<Integer, String> values = new HashMap<>();
+        for (final Integer key : keys) {
+          if (key != 3) {
+            values.put(key, "v" + key);
+          }
+        }
+
+        return ComposableFutures.fromValue(values);
+      }
+    }).setMaxDelay(20, TimeUnit.MILLISECONDS).build();
+
+    final ComposableFuture<String> first = executor.get(1);
+    final ComposableFuture<String> second = executor.get(2);
+    final ComposableFuture<String> duplicate = executor.get(1);
+    final ComposableFuture<String> missing = executor.get(3);
+
+    Assert.assertEquals("v1", first.get(1, TimeUnit.SECONDS));
+    Assert.assertEquals("v2", second.get(1, TimeUnit.SECONDS));
+    Assert.assertEquals("v1", duplicate.get(1, TimeUnit.SECONDS));
+    Assert.assertNull(missing.get(1, TimeUnit.SECONDS));
+
+    Assert.assertEquals(1, calls.size());
+    Assert.assertEquals(new HashSet<>(Arrays.asList(1, 2, 3)), calls.get(0));
+    Assert.assertEquals(4, executor.getRequests());
+    Assert.assertEquals(3, executor.getKeys());
+  }
+
+  @Test
+  public void testFullBatchIsDispatchedRightAway() throws Exception {
+    final List<Set<Integer>> calls = new CopyOnWriteArrayList<>();
+    final BatchingExecutor<Integer, Integer> executor = BatchingExecutor.builder(new Function<Set<Integer>, ComposableFuture<Map<Integer, Integer>>>() {
+      @Override
+      public ComposableFuture<Map<Integer, Integer>> apply(final Set<Integer> keys) {
+        calls.add(new HashSet<>(keys));
+        final Map<Integer, Integer> values = new HashMap<>();
+        for (final Integer key : keys) {
+          values.put(key, key * 10);
+        }
+
+        return ComposableFutures.fromValue(values);
+      }
+    }).setMaxBatchSize(2).setMaxDelay(1, TimeUnit.HOURS).build();
+
+    final ComposableFuture<Integer> first = executor.get(1);
+    final ComposableFuture<Integer> duplicate = executor.get(1);
+    final ComposableFuture<Integer> second = executor.get(2);
+
+    Assert.assertEquals(10, first.get(1, TimeUnit.SECONDS).intValue());
+    Assert.assertEquals(10, duplicate.get(1, TimeUnit.SECONDS).intValue());
+    Assert.assertEquals(20, second.get(1, TimeUnit.SECONDS).intValue());
+    Assert.assertEquals(1, calls.size());
+    Assert.assertEquals(1, executor.getBatches());
+  }
+
+  @Test
+  public void testBulkErrorFailsEveryCaller() throws Exception {
+    final BatchingExecutor<String, String> executor = BatchingExecutor.builder(new Function<Set<String>, ComposableFuture<Map<String, String>>>() {
+      @Override
+      public ComposableFuture<Map<String, String>> apply(final Set<String> keys) {
+        return ComposableFutures.fromError(new IllegalStateException("bulk failed"));
+      }
+    }).setMaxDelay(5, TimeUnit.MILLISECONDS).build();
+
+    final ComposableFuture<String> first = executor.get("a");
+    final ComposableFuture<String> second = executor.get("b");
+    assertFailed(first);
+    assertFailed(second);
+  }
+
+  @Test
+  public void testWindowedBatchIsDispatchedOffTheSchedulerThread() throws Exception {
+    final List<String> threads = new CopyOnWriteArrayList<>();
+    final ExecutorService executor = Executors.newSingleThreadExecutor(new PrefixBasedThreadFactory("batch-dispatcher"));
+    try {
+      final BatchingExecutor<Integer, Integer> batching = BatchingExecutor.builder(new Function<Set<Integer>, ComposableFuture<Map<Integer, Integer>>>() {
+        @Override
+        public ComposableFuture<Map<Integer, Integer>> apply(final Set<Integer> keys) {
+          threads.add(Thread.currentThread().getName());
+          return ComposableFutures.fromValue(Collections.singletonMap(1, 10));
+        }
+      }).setMaxDelay(5, TimeUnit.MILLISECONDS).setExecutor(executor).build();
+
+      Assert.assertEquals(10, batching.get(1).get(1, TimeUnit.SECONDS).intValue());
+      Assert.assertEquals(1, threads.size());
+      Assert.assertTrue(threads.get(0), threads.get(0).startsWith("batch-dispatcher"));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static void assertFailed(final ComposableFuture<?> future) throws Exception {
+    try {
+      future.get(1, TimeUnit.SECONDS);
+      Assert.fail("should have failed");
+    } catch (final ExecutionException e) {
+      Assert.assertEquals("bulk failed", e.getCause().getMessage());
+    }
+  }
+}
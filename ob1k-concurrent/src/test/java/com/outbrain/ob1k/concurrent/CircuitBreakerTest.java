@@ -0,0 +1,159 @@
+package com.outbrain.ob1k.concurrent;
+
+import com.google.common.base.Predicate;
+import com.outbrain.ob1k.concurrent.circuitbreaker.CircuitBreaker;
+import com.outbrain.ob1k.concurrent.circuitbreaker.CircuitOpenException;
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import com.outbrain.ob1k.concurrent.handlers.FutureAction;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CircuitBreakerTest {
+
+  @Test
+  public void testOpensOnFailureRateAndRecovers() throws Exception {
+    final CircuitBreaker breaker = CircuitBreaker.builder()
+        .setMinimumCalls(10)
+        .setFailureRateThreshold(50)
+        .setOpenDuration(50, TimeUnit.MILLISECONDS)
+        .setHalfOpenCalls(2)
+        .build("test");
+
+    final AtomicBoolean failing = new AtomicBoolean(true);
+    final AtomicInteger executions = new AtomicInteger();
+    final FutureAction<String> action = ComposableFutures.withCircuitBreaker(breaker, new FutureAction<String>() {
+      @Override
+      public ComposableFuture<String> execute() {
+        executions.incrementAndGet();
+        return failing.get() ?
+            ComposableFutures.<String>fromError(new RuntimeException("down")) :
+            ComposableFutures.fromValue("up");
+      }
+    });
+
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+      assertFails(action.execute(), RuntimeException.class);
+    }
+
+    Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    assertFails(action.execute(), CircuitOpenException.class);
+    Assert.assertEquals(10, executions.get());
+
+    // a failed trial call opens it again.
+    Thread.sleep(60);
+    Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    assertFails(action.execute(), RuntimeException.class);
+    Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    Thread.sleep(60);
+    failing.set(false);
+    Assert.assertEquals("up", action.execute().get());
+    Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    Assert.assertEquals("up", action.execute().get());
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  public void testHalfOpenLimitsTrialCalls() throws Exception {
+    final CircuitBreaker breaker = CircuitBreaker.builder()
+        .setMinimumCalls(1)
+        .setOpenDuration(10, TimeUnit.MILLISECONDS)
+        .setHalfOpenCalls(1)
+        .build("trial");
+
+    assertFails(breaker.execute(failingAction()), RuntimeException.class);
+    Thread.sleep(20);
+
+    final ComposablePromise<String> trial = ComposableFutures.newPromise();
+    final ComposableFuture<String> trialResult = breaker.execute(new FutureAction<String>() {
+      @Override
+      public ComposableFuture<String> execute() {
+        return trial.future();
+      }
+    });
+
+    // the only trial call is still running.
+    assertFails(breaker.execute(failingAction()), CircuitOpenException.class);
+
+    trial.set("ok");
+    Assert.assertEquals("ok", trialResult.get());
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  public void testSlowCallsAndIgnoredErrors() throws Exception {
+    final CircuitBreaker breaker = CircuitBreaker.builder()
+        .setMinimumCalls(2)
+        .setSlowCallThreshold(50, 10, TimeUnit.MILLISECONDS)
+        .setFailurePredicate(new Predicate<Throwable>() {
+          @Override
+          public boolean apply(final Throwable error) {
+            return !(error instanceof IllegalArgumentException);
+          }
+        })
+        .build("slow");
+
+    for (int i = 0; i < 5; i++) {
+      assertFails(breaker.execute(new FutureAction<String>() {
+        @Override
+        public ComposableFuture<String> execute() {
+          return ComposableFutures.fromError(new IllegalArgumentException("bad request"));
+        }
+      }), IllegalArgumentException.class);
+    }
+
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+    final FutureAction<String> slowAction = new FutureAction<String>() {
+      @Override
+      public ComposableFuture<String> execute() {
+        return ComposableFutures.schedule(new Callable<String>() {
+          @Override
+          public String call() {
+            return "slow";
+          }
+        }, 20, TimeUnit.MILLISECONDS);
+      }
+    };
+
+    for (int i = 0; i < 2; i++) {
+      Assert.assertEquals("slow", breaker.execute(slowAction).get());
+    }
+
+    // 2 out of 7 calls were slow, under the 50% threshold.
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+    // 5 out of 10.
+    for (int i = 0; i < 3; i++) {
+      breaker.execute(slowAction).get();
+    }
+
+    Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+  }
+
+  private static FutureAction<String> failingAction() {
+    return new FutureAction<String>() {
+      @Override
+      public ComposableFuture<String> execute() {
+        return ComposableFutures.fromError(new RuntimeException("down"));
+      }
+    };
+  }
+
+  private static void assertFails(final ComposableFuture<?> future, final Class<? extends Throwable> errorType)
+      throws InterruptedException {
+    try {
+      future.get();
+      Assert.fail("should have failed");
+    } catch (final ExecutionException e) {
+      Assert.assertTrue(String.valueOf(e.getCause()), errorType.isInstance(e.getCause()));
+    }
+  }
+}
@@ -2,13 +2,18 @@ package com.outbrain.ob1k.concurrent;
 
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.outbrain.ob1k.concurrent.combiners.BiFunction;
+import com.outbrain.ob1k.concurrent.combiners.FutureQuadFunction;
+import com.outbrain.ob1k.concurrent.combiners.OctaFunction;
 import com.outbrain.ob1k.concurrent.combiners.TriFunction;
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
 import com.outbrain.ob1k.concurrent.eager.EagerComposableFuture;
 import com.outbrain.ob1k.concurrent.handlers.*;
 import org.junit.Assert;
@@ -544,6 +549,107 @@ public class ComposableFutureTest {
             Assert.assertTrue("should fail fast", (t2 - t1) < 50);
         }
     }
+
+    @Test
+    public void testAllAndCombineLeaveTheFuturesOfTheCallerRunning() throws Exception {
+        final ComposablePromise<String> pending = newPromise();
+        final ComposableFuture<List<String>> failed = all(true, Arrays.asList(pending.future(),
+            ComposableFutures.<String>fromError(new RuntimeException("failed"))));
+        try {
+            failed.get();
+            Assert.fail("should fail");
+        } catch (final ExecutionException e) {
+            Assert.assertEquals("failed", e.getCause().getMessage());
+        }
+
+        final ComposableFuture<String> combined = combine(pending.future(), ComposableFutures.<Integer>fromError(
+            new RuntimeException("failed")), new BiFunction<String, Integer, String>() {
+            @Override
+            public String apply(final String left, final Integer right) {
+                return left + right;
+            }
+        });
+        Assert.assertFalse(combined.cancel(false));
+
+        pending.set("still running");
+        Assert.assertEquals("still running", pending.future().get());
+    }
+
+    @Test
+    public void testFirstShortCircuitsAndCancelsTheRest() throws Exception {
+        final Map<String, ComposablePromise<String>> promises = new LinkedHashMap<>();
+        final Map<String, ComposableFuture<String>> elements = new LinkedHashMap<>();
+        for (final String key : Arrays.asList("a", "b", "c", "d")) {
+            final ComposablePromise<String> promise = newPromise();
+            promises.put(key, promise);
+            elements.put(key, promise.future());
+        }
+
+        final ComposableFuture<Map<String, String>> enough = first(elements, 2);
+        promises.get("a").set("a");
+        promises.get("c").set("c");
+        Assert.assertEquals(2, enough.get().size());
+        assertCancelled(promises.get("b").future());
+        assertCancelled(promises.get("d").future());
+
+        // 2 out of 3 can't succeed once 2 failed.
+        final List<ComposablePromise<String>> failing = Arrays.asList(
+            ComposableFutures.<String>newPromise(), ComposableFutures.<String>newPromise(), ComposableFutures.<String>newPromise());
+        final Map<String, ComposableFuture<String>> failingElements = new HashMap<>();
+        for (int i = 0; i < failing.size(); i++) {
+            failingElements.put("f" + i, failing.get(i).future());
+        }
+
+        final ComposableFuture<Map<String, String>> notEnough = first(failingElements, 2);
+        failing.get(0).setException(new RuntimeException("failed"));
+        failing.get(1).setException(new RuntimeException("failed"));
+        Assert.assertTrue(notEnough.get().isEmpty());
+        assertCancelled(failing.get(2).future());
+    }
+
+    @Test
+    public void testCombineEight() throws Exception {
+        final ComposablePromise<Integer> late = newPromise();
+        final ComposableFuture<String> combined = combine(fromValue(1), fromValue("2"), fromValue(3L), fromValue(4.0),
+            fromValue('5'), ComposableFutures.<String>fromValue(null), late.future(), fromValue(true),
+            new OctaFunction<Integer, String, Long, Double, Character, String, Integer, Boolean, String>() {
+                @Override
+                public String apply(final Integer first, final String second, final Long third, final Double fourth,
+                                    final Character fifth, final String sixth, final Integer seventh, final Boolean eighth) {
+                    return "" + first + second + third + fourth + fifth + sixth + seventh + eighth;
+                }
+            });
+
+        final AtomicInteger completions = new AtomicInteger();
+        combined.consume(new Consumer<String>() {
+            @Override
+            public void consume(final Try<String> result) {
+                completions.incrementAndGet();
+            }
+        });
+
+        Assert.assertEquals(0, completions.get());
+        late.set(7);
+        Assert.assertEquals("1234.05null7true", combined.get());
+
+        final ComposableFuture<Integer> failed = combine(fromValue(1), fromValue(2), fromValue(3),
+            ComposableFutures.<Integer>fromError(new RuntimeException("bad fourth")),
+            new FutureQuadFunction<Integer, Integer, Integer, Integer, Integer>() {
+                @Override
+                public ComposableFuture<Integer> apply(final Integer first, final Integer second, final Integer third,
+                                                       final Integer fourth) {
+                    return fromValue(first + second + third + fourth);
+                }
+            });
+
+        try {
+            failed.get();
+            Assert.fail("should fail");
+        } catch (final ExecutionException e) {
+            Assert.assertEquals("bad fourth", e.getCause().getMessage());
+        }
+    }
+
     class PassThroughCount {
         final CountDownLatch waitersLatch;
         final CountDownLatch passersLatch;
@@ -633,4 +739,500 @@ public class ComposableFutureTest {
         effectiveValue.get(); // this should throw an exception
     }
 
+    @Test
+    public void testHandlersRunInRegistrationOrder() throws Exception {
+        final EagerComposableFuture<String> promise = new EagerComposableFuture<>();
+        final List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final int index = i;
+            promise.consume(new Consumer<String>() {
+                @Override
+                public void consume(final Try<String> result) {
+                    order.add(index);
+                }
+            });
+        }
+
+        Assert.assertTrue(order.isEmpty());
+        promise.set("done");
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4), order);
+
+        promise.consume(new Consumer<String>() {
+            @Override
+            public void consume(final Try<String> result) {
+                order.add(5);
+            }
+        });
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), order);
+    }
+
+    @Test
+    public void testConcurrentHandlerRegistration() throws Exception {
+        final int THREADS = 8;
+        final int HANDLERS = 10000;
+        final EagerComposableFuture<String> promise = new EagerComposableFuture<>();
+        final AtomicInteger executed = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            final Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < HANDLERS; j++) {
+                        promise.consume(new Consumer<String>() {
+                            @Override
+                            public void consume(final Try<String> result) {
+                                executed.incrementAndGet();
+                            }
+                        });
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+
+        start.countDown();
+        promise.set("done");
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(THREADS * HANDLERS, executed.get());
+    }
+
+    @Test
+    public void testDeepPendingChain() throws Exception {
+        final int DEPTH = 100000;
+        final EagerComposableFuture<Integer> promise = new EagerComposableFuture<>();
+        ComposableFuture<Integer> chain = promise;
+        for (int i = 0; i < DEPTH; i++) {
+            chain = chain.continueOnSuccess(new SuccessHandler<Integer, Integer>() {
+                @Override
+                public Integer handle(final Integer result) {
+                    return result + 1;
+                }
+            });
+        }
+
+        promise.set(0);
+        Assert.assertEquals(DEPTH, (int) chain.get());
+    }
+
+    @Test
+    public void testInlineBatchOfMillion() throws Exception {
+        final int SIZE = 1000000;
+        final List<Integer> nums = new ArrayList<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            nums.add(i);
+        }
+
+        final FutureSuccessHandler<Integer, Integer> producer = new FutureSuccessHandler<Integer, Integer>() {
+            @Override
+            public ComposableFuture<Integer> handle(final Integer result) {
+                return fromValue(result);
+            }
+        };
+
+        final List<Integer> ordered = batch(nums, 10, producer).get();
+        Assert.assertEquals(nums, ordered);
+
+        final List<Integer> unordered = batchUnordered(nums, 4, producer).get();
+        Assert.assertEquals(SIZE, unordered.size());
+    }
+
+    @Test
+    public void testDeepRecursiveColdStream() throws Exception {
+        final int REPEATS = 100000;
+        final AtomicInteger counter = new AtomicInteger();
+        final Observable<Integer> stream = toColdObservable(new RecursiveFutureProvider<Integer>() {
+            @Override
+            public ComposableFuture<Integer> provide() {
+                return fromValue(counter.incrementAndGet());
+            }
+
+            @Override
+            public Predicate<Integer> createStopCriteria() {
+                return new Predicate<Integer>() {
+                    @Override
+                    public boolean apply(final Integer value) {
+                        return value >= REPEATS;
+                    }
+                };
+            }
+        });
+
+        Assert.assertEquals(REPEATS, (int) stream.count().toBlocking().single());
+    }
+
+    @Test
+    public void testCompletedFutures() throws Exception {
+        Assert.assertSame(fromNull(), fromValue(null));
+        Assert.assertSame(fromValue(true), fromValue(Boolean.TRUE));
+        Assert.assertSame(fromValue(false), fromValue(Boolean.FALSE));
+        Assert.assertSame(fromEmptyList(), fromValue(Collections.emptyList()));
+
+        final ComposableFuture<String> value = fromValue("value");
+        Assert.assertSame(value, value.withTimeout(1, TimeUnit.MILLISECONDS));
+        Assert.assertSame(value, value.continueOnError(new ErrorHandler<String>() {
+            @Override
+            public String handle(final Throwable error) {
+                return "recovered";
+            }
+        }));
+        Assert.assertEquals("value!", value.transform(new com.google.common.base.Function<String, String>() {
+            @Override
+            public String apply(final String result) {
+                return result + "!";
+            }
+        }).get());
+
+        final ComposableFuture<String> error = fromError(new RuntimeException("failed"));
+        Assert.assertEquals("recovered", error.continueOnError(new ErrorHandler<String>() {
+            @Override
+            public String handle(final Throwable e) {
+                return "recovered";
+            }
+        }).get());
+
+        try {
+            error.continueOnSuccess(new SuccessHandler<String, Integer>() {
+                @Override
+                public Integer handle(final String result) {
+                    return result.length();
+                }
+            }).get();
+            Assert.fail("should have failed");
+        } catch (final ExecutionException e) {
+            Assert.assertEquals("failed", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testDeepRecursiveCompletedFutures() throws Exception {
+        final int REPEATS = 100000;
+        final AtomicInteger counter = new AtomicInteger();
+        final ComposableFuture<Integer> future = recursive(new Supplier<ComposableFuture<Integer>>() {
+            @Override
+            public ComposableFuture<Integer> get() {
+                return fromValue(counter.incrementAndGet());
+            }
+        }, input -> input >= REPEATS);
+
+        Assert.assertEquals(REPEATS, (int) future.get());
+    }
+
+    @Test
+    public void testCancelPropagatesUpstreamToTheOnlyConsumer() throws Exception {
+        final AtomicInteger producerCancellations = new AtomicInteger();
+        final ComposablePromise<String> source = newPromise();
+        source.setCancellationToken(new CancellationToken() {
+            @Override
+            public boolean cancel(final boolean mayInterrupt) {
+                producerCancellations.incrementAndGet();
+                return true;
+            }
+        });
+
+        final ComposablePromise<Integer> inner = newPromise();
+        final ComposableFuture<String> exclaimed = source.future().continueOnSuccess(new SuccessHandler<String, String>() {
+            @Override
+            public String handle(final String result) {
+                return result + "!";
+            }
+        });
+        final ComposableFuture<Integer> chain = exclaimed.continueOnSuccess(new FutureSuccessHandler<String, Integer>() {
+            @Override
+            public ComposableFuture<Integer> handle(final String result) {
+                return inner.future();
+            }
+        });
+
+        Assert.assertTrue(chain.cancel(true));
+        Assert.assertFalse(chain.cancel(true));
+        assertCancelled(chain);
+
+        // nothing else waits for the futures the chain was continued from, the producer is cancelled.
+        assertCancelled(exclaimed);
+        assertCancelled(source.future());
+        Assert.assertEquals(1, producerCancellations.get());
+
+        // once the handler was called, its future is the one that belongs to the chain.
+        final ComposablePromise<String> completed = newPromise();
+        final ComposableFuture<Integer> handled = completed.future().continueOnSuccess(new FutureSuccessHandler<String, Integer>() {
+            @Override
+            public ComposableFuture<Integer> handle(final String result) {
+                return inner.future();
+            }
+        });
+        completed.set("value");
+        Assert.assertTrue(handled.cancel(false));
+        assertCancelled(inner.future());
+        Assert.assertEquals("value", completed.future().get());
+        Assert.assertFalse(fromValue("done").cancel(true));
+    }
+
+    @Test
+    public void testCancelLeavesSourcesOtherContinuationsWaitFor() throws Exception {
+        final AtomicInteger producerCancellations = new AtomicInteger();
+        final ComposablePromise<String> shared = newPromise();
+        shared.setCancellationToken(new CancellationToken() {
+            @Override
+            public boolean cancel(final boolean mayInterrupt) {
+                producerCancellations.incrementAndGet();
+                return true;
+            }
+        });
+
+        final SuccessHandler<String, String> exclaim = new SuccessHandler<String, String>() {
+            @Override
+            public String handle(final String result) {
+                return result + "!";
+            }
+        };
+        final ComposableFuture<String> first = shared.future().continueOnSuccess(exclaim);
+        final ComposableFuture<String> second = shared.future().continueOnSuccess(exclaim);
+        final ComposableFuture<String> third = shared.future().withTimeout(1, TimeUnit.MINUTES);
+
+        Assert.assertTrue(first.cancel(false));
+        Assert.assertTrue(third.cancel(false));
+        Assert.assertEquals(0, producerCancellations.get());
+
+        // the last one to let go cancels the source.
+        Assert.assertTrue(second.cancel(false));
+        Assert.assertEquals(1, producerCancellations.get());
+        assertCancelled(shared.future());
+    }
+
+    @Test
+    public void testCancelLeavesFuturesReturnedToOtherChains() throws Exception {
+        // e.g. an in-flight call that is handed to every caller asking for the same key.
+        final ComposablePromise<String> shared = newPromise();
+        final FutureSuccessHandler<String, String> load = new FutureSuccessHandler<String, String>() {
+            @Override
+            public ComposableFuture<String> handle(final String key) {
+                return shared.future();
+            }
+        };
+
+        final ComposablePromise<String> pending = newPromise();
+        final ComposableFuture<String> first = fromValue("key").continueOnSuccess(load);
+        final ComposableFuture<String> second = pending.future().continueOnSuccess(load);
+        final ComposableFuture<String> third = any(shared.future(), ComposableFutures.<String>newPromise().future());
+        pending.set("key");
+
+        Assert.assertNotSame(shared.future(), first);
+        Assert.assertTrue(first.cancel(false));
+        Assert.assertTrue(third.cancel(false));
+        assertCancelled(first);
+
+        shared.set("loaded");
+        Assert.assertEquals("loaded", second.get());
+        Assert.assertEquals("loaded", shared.future().get());
+    }
+
+    @Test
+    public void testTimeoutAndAnyCancelLosers() throws Exception {
+        final ComposablePromise<String> slow = newPromise();
+        try {
+            slow.future().withTimeout(10, TimeUnit.MILLISECONDS, true).get();
+            Assert.fail("should have timed out");
+        } catch (final ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        assertCancelled(slow.future());
+
+        final ComposablePromise<String> winner = newPromise();
+        final ComposablePromise<String> loser = newPromise();
+        final ComposableFuture<String> first = any(winner.future(), loser.future());
+        winner.set("winner");
+        Assert.assertEquals("winner", first.get());
+        assertCancelled(loser.future());
+    }
+
+    @Test
+    public void testTimeoutOfOneCallerLeavesSharedSourceAlone() throws Exception {
+        // e.g. a cached value that is being loaded, and handed to every caller that asks for it meanwhile.
+        final ComposablePromise<String> shared = newPromise();
+        final ErrorHandler<String> fallback = new ErrorHandler<String>() {
+            @Override
+            public String handle(final Throwable error) {
+                return "fallback";
+            }
+        };
+
+        final ComposableFuture<String> impatient = shared.future().continueOnError(fallback).withTimeout(50, TimeUnit.MILLISECONDS);
+        final ComposableFuture<String> patient = shared.future().continueOnError(fallback);
+        try {
+            impatient.get();
+            Assert.fail("should have timed out");
+        } catch (final ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        Assert.assertFalse(impatient.cancel(false));
+        shared.set("loaded");
+        Assert.assertEquals("loaded", shared.future().get());
+        Assert.assertEquals("loaded", patient.get());
+    }
+
+    @Test
+    public void testPullingStreamBoundsConcurrencyAndCancelsOnUnsubscribe() throws Exception {
+        final List<ComposablePromise<Integer>> provided = new ArrayList<>();
+        final Observable<Integer> stream = toObservable(new FutureProvider<Integer>() {
+            @Override
+            public boolean moveNext() {
+                provided.add(ComposableFutures.<Integer>newPromise());
+                return true;
+            }
+
+            @Override
+            public ComposableFuture<Integer> current() {
+                return provided.get(provided.size() - 1).future();
+            }
+        }, 2, true);
+
+        final List<Integer> values = new ArrayList<>();
+        final rx.Subscription subscription = stream.subscribe(new rx.functions.Action1<Integer>() {
+            @Override
+            public void call(final Integer value) {
+                values.add(value);
+            }
+        });
+
+        Assert.assertEquals(2, provided.size());
+
+        // the stream is ordered, the second value waits for the first one.
+        provided.get(1).set(1);
+        Assert.assertTrue(values.isEmpty());
+        Assert.assertEquals(2, provided.size());
+
+        provided.get(0).set(0);
+        Assert.assertEquals(Arrays.asList(0, 1), values);
+        Assert.assertEquals(4, provided.size());
+
+        subscription.unsubscribe();
+        assertCancelled(provided.get(2).future());
+        assertCancelled(provided.get(3).future());
+        Assert.assertEquals(4, provided.size());
+    }
+
+    @Test
+    public void testMapAsyncSlidingWindow() throws Exception {
+        final List<ComposablePromise<Integer>> started = new ArrayList<>();
+        final Iterator<Integer> elements = Arrays.asList(0, 1, 2, 3, 4).iterator();
+        final List<Integer> results = new ArrayList<>();
+        mapAsync(elements, 2, true, new FutureSuccessHandler<Integer, Integer>() {
+            @Override
+            public ComposableFuture<Integer> handle(final Integer element) {
+                final ComposablePromise<Integer> promise = newPromise();
+                started.add(promise);
+                return promise.future();
+            }
+        }).subscribe(new rx.functions.Action1<Integer>() {
+            @Override
+            public void call(final Integer result) {
+                results.add(result);
+            }
+        });
+
+        Assert.assertEquals(2, started.size());
+
+        // unlike batch, a single completion is enough to start the next element.
+        started.get(0).set(0);
+        Assert.assertEquals(3, started.size());
+        Assert.assertEquals(Collections.singletonList(0), results);
+
+        started.get(2).set(2);
+        Assert.assertEquals(3, started.size());
+        Assert.assertEquals(Collections.singletonList(0), results);
+
+        started.get(1).set(1);
+        Assert.assertEquals(5, started.size());
+        Assert.assertEquals(Arrays.asList(0, 1, 2), results);
+    }
+
+    @Test
+    public void testMapAsyncOverObservable() throws Exception {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final Observable<Integer> results = mapAsync(Observable.range(0, 1000), 8, true,
+            new FutureSuccessHandler<Integer, Integer>() {
+                @Override
+                public ComposableFuture<Integer> handle(final Integer element) {
+                    final int current = inFlight.incrementAndGet();
+                    while (true) {
+                        final int max = maxInFlight.get();
+                        if (current <= max || maxInFlight.compareAndSet(max, current)) {
+                            break;
+                        }
+                    }
+
+                    return submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call() throws Exception {
+                            inFlight.decrementAndGet();
+                            return element * 2;
+                        }
+                    });
+                }
+            });
+
+        final List<Integer> list = results.toList().toBlocking().single();
+        Assert.assertEquals(1000, list.size());
+        for (int i = 0; i < list.size(); i++) {
+            Assert.assertEquals(i * 2, list.get(i).intValue());
+        }
+
+        Assert.assertTrue("max in flight: " + maxInFlight.get(), maxInFlight.get() <= 8);
+    }
+
+    @Test
+    public void testMapAsyncMapsNullFuturesToNullResults() throws Exception {
+        final FutureSuccessHandler<Integer, Integer> evensOnly = new FutureSuccessHandler<Integer, Integer>() {
+            @Override
+            public ComposableFuture<Integer> handle(final Integer element) {
+                return element % 2 == 0 ? fromValue(element) : null;
+            }
+        };
+
+        final List<Integer> expected = Arrays.asList(0, null, 2, null);
+        Assert.assertEquals(expected, mapAsync(Observable.range(0, 4), 2, true, evensOnly).toList().toBlocking().single());
+        Assert.assertEquals(expected, mapAsync(Arrays.asList(0, 1, 2, 3).iterator(), 2, true, evensOnly).toList().toBlocking().single());
+    }
+
+    @Test
+    public void testSubmitBlocking() throws Exception {
+        final ComposableFuture<String> result = submitBlocking(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                Thread.sleep(10);
+                return Thread.currentThread().getName();
+            }
+        });
+
+        final String threadName = result.get();
+        if (VirtualThreads.isSupported()) {
+            Assert.assertTrue(threadName, threadName.startsWith("ob1k-blocking-virtual-thread-"));
+        } else {
+            Assert.assertSame(getExecutor(), getBlockingExecutor());
+            Assert.assertTrue(threadName, threadName.startsWith("ob1k-main"));
+        }
+    }
+
+    private static void assertCancelled(final ComposableFuture<?> future) throws InterruptedException {
+        try {
+            future.get();
+            Assert.fail("should have been cancelled");
+        } catch (final ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof CancellationException);
+        }
+    }
 }
@@ -0,0 +1,64 @@
+package com.outbrain.ob1k.concurrent;
+
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class DeadlineTest {
+
+  @Test
+  public void testRemainingBudget() throws Exception {
+    final Deadline deadline = Deadline.after(100, TimeUnit.MILLISECONDS);
+    Assert.assertFalse(deadline.isExpired());
+    Assert.assertTrue(deadline.remaining(TimeUnit.MILLISECONDS) <= 100);
+
+    final Deadline passed = Deadline.at(System.nanoTime() - 1);
+    Assert.assertTrue(passed.isExpired());
+    Assert.assertEquals(0, passed.remaining(TimeUnit.NANOSECONDS));
+    Assert.assertSame(passed, deadline.earliest(passed));
+    Assert.assertSame(passed, passed.earliest(deadline));
+    Assert.assertSame(deadline, deadline.earliest(null));
+  }
+
+  @Test
+  public void testAttachKeepsTheEarliestDeadline() {
+    final Deadline outer = Deadline.after(50, TimeUnit.MILLISECONDS);
+    final Deadline inner = Deadline.after(1, TimeUnit.HOURS);
+
+    final AsyncContext previous = outer.attach();
+    try {
+      final AsyncContext nested = inner.attach();
+      Assert.assertSame(outer, Deadline.current());
+      AsyncContext.restore(nested);
+    } finally {
+      AsyncContext.restore(previous);
+    }
+
+    Assert.assertNull(Deadline.current());
+  }
+
+  @Test
+  public void testWithDeadline() throws Exception {
+    final ComposablePromise<String> slow = ComposableFutures.newPromise();
+    final ComposableFuture<String> capped = slow.future().withDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20));
+    try {
+      capped.get(1, TimeUnit.SECONDS);
+      Assert.fail("should have timed out");
+    } catch (final ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof TimeoutException);
+    }
+
+    final ComposableFuture<String> lazy = ComposableFutures.submitLazy(false, new Callable<String>() {
+      @Override
+      public String call() {
+        return "fast";
+      }
+    }).withDeadline(System.nanoTime() + TimeUnit.SECONDS.toNanos(1));
+    Assert.assertEquals("fast", lazy.get(1, TimeUnit.SECONDS));
+  }
+}
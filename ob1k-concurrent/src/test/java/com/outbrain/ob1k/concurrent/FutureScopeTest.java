@@ -0,0 +1,185 @@
+package com.outbrain.ob1k.concurrent;
+
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import com.outbrain.ob1k.concurrent.handlers.FutureAction;
+import com.outbrain.ob1k.concurrent.handlers.SuccessHandler;
+import com.outbrain.ob1k.concurrent.scope.FutureScope;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FutureScopeTest {
+
+  @Test
+  public void testFailFastCancelsSiblings() throws Exception {
+    final FutureScope scope = new FutureScope(FutureScope.FailurePolicy.FAIL_FAST);
+    final ComposablePromise<String> slow = ComposableFutures.newPromise();
+    final ComposableFuture<String> sibling = scope.fork(action(slow));
+    final ComposablePromise<String> failing = ComposableFutures.newPromise();
+    scope.fork(action(failing));
+
+    final ComposableFuture<Void> join = scope.join();
+    failing.setException(new RuntimeException("failed"));
+
+    assertFails(join, RuntimeException.class);
+    assertFails(sibling, CancellationException.class);
+    Assert.assertTrue(scope.isFailed());
+
+    // a failed scope doesn't execute new actions.
+    final AtomicInteger executions = new AtomicInteger();
+    assertFails(scope.fork(new FutureAction<String>() {
+      @Override
+      public ComposableFuture<String> execute() {
+        executions.incrementAndGet();
+        return ComposableFutures.fromValue("late");
+      }
+    }), RuntimeException.class);
+    Assert.assertEquals(0, executions.get());
+  }
+
+  @Test
+  public void testCollectAllWaitsForEveryFuture() throws Exception {
+    final FutureScope scope = new FutureScope(FutureScope.FailurePolicy.COLLECT_ALL);
+    final ComposablePromise<String> first = ComposableFutures.newPromise();
+    final ComposablePromise<String> second = ComposableFutures.newPromise();
+    final ComposablePromise<String> third = ComposableFutures.newPromise();
+    scope.fork(action(first));
+    scope.fork(action(second));
+    final ComposableFuture<String> survivor = scope.fork(action(third));
+
+    final ComposableFuture<Void> join = scope.join();
+    first.setException(new IllegalStateException("first"));
+    second.setException(new IllegalArgumentException("second"));
+    Assert.assertEquals(1, scope.getPending());
+    Assert.assertFalse(scope.isFailed());
+
+    third.set("third");
+    Assert.assertEquals("third", survivor.get());
+    try {
+      join.get();
+      Assert.fail("should have failed");
+    } catch (final ExecutionException e) {
+      Assert.assertEquals("first", e.getCause().getMessage());
+      Assert.assertEquals(1, e.getCause().getSuppressed().length);
+    }
+
+    Assert.assertEquals(2, scope.getFailures().size());
+  }
+
+  @Test
+  public void testDeadlineAndClose() throws Exception {
+    final FutureScope scope = new FutureScope(FutureScope.FailurePolicy.COLLECT_ALL, 30, TimeUnit.MILLISECONDS);
+    final ComposablePromise<String> straggler = ComposableFutures.newPromise();
+    final ComposableFuture<String> tracked = scope.fork(action(straggler));
+
+    // child scopes inherit the deadline.
+    final FutureScope child = scope.newScope(FutureScope.FailurePolicy.FAIL_FAST);
+    Assert.assertTrue(child.getRemaining(TimeUnit.MILLISECONDS) <= 30);
+    final ComposablePromise<String> childStraggler = ComposableFutures.newPromise();
+    final ComposableFuture<String> childTracked = child.fork(action(childStraggler));
+
+    assertFails(scope.join(), TimeoutException.class);
+    assertFails(tracked, CancellationException.class);
+    assertFails(childTracked, CancellationException.class);
+    Assert.assertTrue(child.isFailed());
+
+    final FutureScope closed = new FutureScope(FutureScope.FailurePolicy.FAIL_FAST);
+    final ComposablePromise<String> running = ComposableFutures.newPromise();
+    final ComposableFuture<String> closedTracked = closed.fork(action(running));
+    closed.close();
+    assertFails(closedTracked, CancellationException.class);
+    Assert.assertEquals(0, closed.getPending());
+  }
+
+  @Test
+  public void testChildDeadlineIsTheEarlierOne() throws Exception {
+    final FutureScope unbounded = new FutureScope(FutureScope.FailurePolicy.COLLECT_ALL);
+    Assert.assertEquals(-1, unbounded.newScope(FutureScope.FailurePolicy.FAIL_FAST).getRemaining(TimeUnit.MILLISECONDS));
+
+    final FutureScope child = unbounded.newScope(FutureScope.FailurePolicy.FAIL_FAST, 30, TimeUnit.MILLISECONDS);
+    Assert.assertTrue(child.getRemaining(TimeUnit.MILLISECONDS) <= 30);
+    final ComposablePromise<String> straggler = ComposableFutures.newPromise();
+    final ComposableFuture<String> tracked = child.fork(action(straggler));
+    assertFails(child.join(), TimeoutException.class);
+    assertFails(tracked, CancellationException.class);
+    Assert.assertFalse(unbounded.isFailed());
+
+    final FutureScope bounded = new FutureScope(FutureScope.FailurePolicy.COLLECT_ALL, 30, TimeUnit.MILLISECONDS);
+    final FutureScope longer = bounded.newScope(FutureScope.FailurePolicy.FAIL_FAST, 1, TimeUnit.HOURS);
+    Assert.assertTrue(longer.getRemaining(TimeUnit.MILLISECONDS) <= 30);
+    bounded.close();
+  }
+
+  @Test
+  public void testIdleChildFollowsTheParent() throws Exception {
+    final FutureScope scope = new FutureScope(FutureScope.FailurePolicy.COLLECT_ALL);
+    final FutureScope child = scope.newScope(FutureScope.FailurePolicy.FAIL_FAST);
+    final ComposablePromise<String> done = ComposableFutures.newPromise();
+    child.fork(action(done));
+    done.set("done");
+    child.join().get();
+
+    // the parent let go of the child once its futures completed, it still learns that the parent failed.
+    scope.close();
+    Assert.assertTrue(child.isFailed());
+    final AtomicInteger executions = new AtomicInteger();
+    assertFails(child.fork(new FutureAction<String>() {
+      @Override
+      public ComposableFuture<String> execute() {
+        executions.incrementAndGet();
+        return ComposableFutures.fromValue("late");
+      }
+    }), CancellationException.class);
+    Assert.assertEquals(0, executions.get());
+
+    // a busy child is cancelled right away.
+    final FutureScope other = new FutureScope(FutureScope.FailurePolicy.COLLECT_ALL);
+    final FutureScope busy = other.newScope(FutureScope.FailurePolicy.COLLECT_ALL);
+    final ComposableFuture<String> running = busy.fork(action(ComposableFutures.<String>newPromise()));
+    other.close();
+    assertFails(running, CancellationException.class);
+  }
+
+  @Test
+  public void testClosingLetsGoOfSharedFutures() throws Exception {
+    final ComposablePromise<String> shared = ComposableFutures.newPromise();
+    final ComposableFuture<String> other = shared.future().continueOnSuccess(new SuccessHandler<String, String>() {
+      @Override
+      public String handle(final String value) {
+        return value;
+      }
+    });
+
+    final FutureScope scope = new FutureScope(FutureScope.FailurePolicy.COLLECT_ALL);
+    scope.track(shared.future());
+    scope.close();
+
+    // another continuation still waits for the future, so the scope only let go of it.
+    shared.set("shared");
+    Assert.assertEquals("shared", other.get(1, TimeUnit.SECONDS));
+  }
+
+  private static FutureAction<String> action(final ComposablePromise<String> promise) {
+    return new FutureAction<String>() {
+      @Override
+      public ComposableFuture<String> execute() {
+        return promise.future();
+      }
+    };
+  }
+
+  private static void assertFails(final ComposableFuture<?> future, final Class<? extends Throwable> errorType)
+      throws InterruptedException {
+    try {
+      future.get();
+      Assert.fail("should have failed");
+    } catch (final ExecutionException e) {
+      Assert.assertTrue(String.valueOf(e.getCause()), errorType.isInstance(e.getCause()));
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package com.outbrain.ob1k.concurrent;
+
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import com.outbrain.ob1k.concurrent.lazy.LazyComposableFuture;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HashedWheelSchedulerTest {
+
+  private Scheduler scheduler;
+
+  @Before
+  public void setup() {
+    // a small wheel so the tests also cover timers that outlive a full round.
+    scheduler = new HashedWheelScheduler(5, TimeUnit.MILLISECONDS, 8, "test-wheel");
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.shutdown();
+  }
+
+  @Test
+  public void testScheduledTasksRun() throws InterruptedException {
+    final int TASKS = 1000;
+    final CountDownLatch latch = new CountDownLatch(TASKS);
+    final long start = System.nanoTime();
+    for (int i = 0; i < TASKS; i++) {
+      scheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          latch.countDown();
+        }
+      }, i % 100, TimeUnit.MILLISECONDS);
+    }
+
+    Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(99));
+  }
+
+  @Test
+  public void testTaskDoesNotRunBeforeDeadline() throws InterruptedException {
+    final CountDownLatch latch = new CountDownLatch(1);
+    final long start = System.nanoTime();
+    scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        latch.countDown();
+      }
+    }, 200, TimeUnit.MILLISECONDS);
+
+    Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+  }
+
+  @Test
+  public void testCancelledTasksDoNotRun() throws InterruptedException {
+    final AtomicInteger executed = new AtomicInteger();
+    final Runnable task = new Runnable() {
+      @Override
+      public void run() {
+        executed.incrementAndGet();
+      }
+    };
+
+    final CancellationToken cancelled = scheduler.schedule(task, 50, TimeUnit.MILLISECONDS);
+    final CountDownLatch latch = new CountDownLatch(1);
+    scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        latch.countDown();
+      }
+    }, 100, TimeUnit.MILLISECONDS);
+
+    Assert.assertTrue(cancelled.cancel(false));
+    Assert.assertFalse(cancelled.cancel(false));
+    Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(0, executed.get());
+  }
+
+  @Test
+  public void testWithTimeout() throws Exception {
+    final ComposablePromise<String> slow = ComposableFutures.newPromise();
+    try {
+      slow.future().withTimeout(scheduler, 50, TimeUnit.MILLISECONDS).get();
+      Assert.fail("should have timed out");
+    } catch (final ExecutionException e) {
+      Assert.assertEquals(TimeoutException.class, e.getCause().getClass());
+    }
+
+    final ComposablePromise<String> fast = ComposableFutures.newPromise();
+    final ComposableFuture<String> guarded = fast.future().withTimeout(scheduler, 50, TimeUnit.MILLISECONDS);
+    fast.set("fast");
+    Assert.assertEquals("fast", guarded.get());
+  }
+
+  @Test
+  public void testTimerCancelledWhenFutureCompletesFirst() throws Exception {
+    final AtomicInteger cancelled = new AtomicInteger();
+    final Scheduler counting = new Scheduler() {
+      @Override
+      public CancellationToken schedule(final Runnable task, final long delay, final TimeUnit timeUnit) {
+        final CancellationToken token = scheduler.schedule(task, delay, timeUnit);
+        return new CancellationToken() {
+          @Override
+          public boolean cancel(final boolean mayInterrupt) {
+            cancelled.incrementAndGet();
+            return token.cancel(mayInterrupt);
+          }
+        };
+      }
+
+      @Override
+      public void shutdown() {
+      }
+    };
+
+    final ComposablePromise<String> eager = ComposableFutures.newPromise();
+    final ComposableFuture<String> eagerGuarded = eager.future().withTimeout(counting, 1, TimeUnit.MINUTES);
+    eager.set("eager");
+    Assert.assertEquals("eager", eagerGuarded.get());
+    Assert.assertEquals(1, cancelled.get());
+
+    final ComposableFuture<String> lazy = LazyComposableFuture.fromValue("lazy").withTimeout(counting, 1, TimeUnit.MINUTES);
+    Assert.assertEquals("lazy", lazy.get());
+    Assert.assertEquals(2, cancelled.get());
+  }
+
+  @Test(expected = RejectedExecutionException.class)
+  public void testScheduleAfterShutdown() {
+    scheduler.shutdown();
+    scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+      }
+    }, 1, TimeUnit.MILLISECONDS);
+  }
+}
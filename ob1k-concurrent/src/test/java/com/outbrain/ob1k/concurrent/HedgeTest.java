@@ -0,0 +1,164 @@
+package com.outbrain.ob1k.concurrent;
+
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import com.outbrain.ob1k.concurrent.handlers.FutureAction;
+import com.outbrain.ob1k.concurrent.hedge.HedgeBudget;
+import com.outbrain.ob1k.concurrent.hedge.LatencyHistogram;
+import com.outbrain.ob1k.concurrent.hedge.PercentileHedgePolicy;
+import com.outbrain.ob1k.concurrent.hedge.StaticHedgePolicy;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HedgeTest {
+
+  @Test
+  public void testHedgeWinnerCancelsOtherAttempts() throws Exception {
+    final List<ComposablePromise<Integer>> attempts = new CopyOnWriteArrayList<>();
+    final ComposableFuture<Integer> result = ComposableFutures.hedge(new FutureAction<Integer>() {
+      @Override
+      public ComposableFuture<Integer> execute() {
+        final ComposablePromise<Integer> attempt = ComposableFutures.newPromise();
+        attempts.add(attempt);
+        if (attempts.size() == 3) {
+          attempt.set(3);
+        }
+
+        return attempt.future();
+      }
+    }, new StaticHedgePolicy(20, TimeUnit.MILLISECONDS, 5));
+
+    Assert.assertEquals(3, result.get(5, TimeUnit.SECONDS).intValue());
+    assertCancelled(attempts.get(0).future());
+    assertCancelled(attempts.get(1).future());
+
+    // no more hedges after the result.
+    Thread.sleep(100);
+    Assert.assertEquals(3, attempts.size());
+  }
+
+  @Test
+  public void testNoHedgeForFastResults() throws Exception {
+    final List<ComposableFuture<String>> attempts = new CopyOnWriteArrayList<>();
+    final ComposableFuture<String> result = ComposableFutures.hedge(new FutureAction<String>() {
+      @Override
+      public ComposableFuture<String> execute() {
+        final ComposableFuture<String> attempt = ComposableFutures.fromValue("fast");
+        attempts.add(attempt);
+        return attempt;
+      }
+    }, new StaticHedgePolicy(10, TimeUnit.MILLISECONDS, 3));
+
+    Assert.assertEquals("fast", result.get());
+    Thread.sleep(50);
+    Assert.assertEquals(1, attempts.size());
+  }
+
+  @Test
+  public void testHedgeBudget() {
+    final HedgeBudget budget = new HedgeBudget(10, 2);
+    Assert.assertTrue(budget.tryWithdraw());
+    Assert.assertTrue(budget.tryWithdraw());
+    Assert.assertFalse(budget.tryWithdraw());
+
+    // 10% extra load: a hedge per 10 requests.
+    for (int i = 0; i < 9; i++) {
+      budget.deposit();
+      Assert.assertFalse(budget.tryWithdraw());
+    }
+
+    budget.deposit();
+    Assert.assertTrue(budget.tryWithdraw());
+  }
+
+  @Test
+  public void testLatencyHistogramPercentiles() {
+    final LatencyHistogram histogram = new LatencyHistogram(1000);
+    Assert.assertEquals(-1, histogram.getPercentile(50, TimeUnit.MILLISECONDS));
+
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i, TimeUnit.MILLISECONDS);
+    }
+
+    assertWithinBucket(500, histogram.getPercentile(50, TimeUnit.MILLISECONDS));
+    assertWithinBucket(950, histogram.getPercentile(95, TimeUnit.MILLISECONDS));
+    assertWithinBucket(1000, histogram.getPercentile(100, TimeUnit.MILLISECONDS));
+
+    // a full window later the old latencies are forgotten.
+    for (int i = 0; i < 2000; i++) {
+      histogram.record(10, TimeUnit.MILLISECONDS);
+    }
+
+    assertWithinBucket(10, histogram.getPercentile(95, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testPercentileHedgePolicyAdapts() {
+    final PercentileHedgePolicy policy = new PercentileHedgePolicy(95, 1, 5, 100, 1, TimeUnit.MILLISECONDS);
+    Assert.assertEquals(100, policy.getCurrentDelay(TimeUnit.MILLISECONDS));
+    Assert.assertEquals(-1, policy.getHedgeDelayNanos(2));
+
+    for (int i = 1; i <= 1000; i++) {
+      policy.onComplete(TimeUnit.MILLISECONDS.toNanos(i % 100 + 1), true);
+    }
+
+    assertWithinBucket(95, policy.getCurrentDelay(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testHedgeDelayIsStableUnderAFixedLatency() throws Exception {
+    // one in ten attempts is slow, so the p95 of an attempt is the slow latency.
+    final long slowMs = 20;
+    final PercentileHedgePolicy policy = new PercentileHedgePolicy(95, 1, 100, slowMs, 1, TimeUnit.MILLISECONDS);
+    final AtomicInteger attempts = new AtomicInteger();
+    final FutureAction<Integer> action = new FutureAction<Integer>() {
+      @Override
+      public ComposableFuture<Integer> execute() {
+        final ComposablePromise<Integer> attempt = ComposableFutures.newPromise();
+        final long latencyMs = attempts.incrementAndGet() % 10 == 0 ? slowMs : 1;
+        ComposableFutures.getScheduler().schedule(new Runnable() {
+          @Override
+          public void run() {
+            attempt.set(1);
+          }
+        }, latencyMs, TimeUnit.MILLISECONDS);
+        return attempt.future();
+      }
+    };
+
+    // enough requests for the delay to be recomputed many times over.
+    for (int batch = 0; batch < 10; batch++) {
+      final List<ComposableFuture<Integer>> results = new ArrayList<>();
+      for (int i = 0; i < 128; i++) {
+        results.add(ComposableFutures.hedge(action, policy));
+      }
+
+      ComposableFutures.all(results).get(5, TimeUnit.SECONDS);
+    }
+
+    // the hedges cut the slow requests short, which doesn't drag the delay towards the minimum.
+    final long delay = policy.getCurrentDelay(TimeUnit.MILLISECONDS);
+    Assert.assertTrue("delay drifted to " + delay, delay >= slowMs);
+  }
+
+  private static void assertWithinBucket(final long expected, final long actual) {
+    Assert.assertTrue("expected ~" + expected + " but got " + actual,
+        actual >= expected && actual <= expected * 1.125 + 1);
+  }
+
+  private static void assertCancelled(final ComposableFuture<?> future) throws InterruptedException {
+    try {
+      future.get();
+      Assert.fail("should have been cancelled");
+    } catch (final ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof CancellationException);
+    }
+  }
+}
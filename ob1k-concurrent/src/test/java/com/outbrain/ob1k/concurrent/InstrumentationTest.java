@@ -0,0 +1,103 @@
+package com.outbrain.ob1k.concurrent;
+
+import com.outbrain.ob1k.concurrent.monitor.InstrumentedExecutorService;
+import com.outbrain.ob1k.concurrent.monitor.InstrumentedScheduler;
+import com.outbrain.ob1k.concurrent.monitor.TaskStats;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class InstrumentationTest {
+
+  @Test
+  public void testExecutorSaturation() throws Exception {
+    final ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1));
+    final InstrumentedExecutorService executor = new InstrumentedExecutorService(pool, new TaskStats(10, TimeUnit.MILLISECONDS, 1));
+    final TaskStats stats = executor.getStats();
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch running = new CountDownLatch(1);
+
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        running.countDown();
+        try {
+          release.await();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    running.await();
+
+    final CountDownLatch queuedDone = new CountDownLatch(1);
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        queuedDone.countDown();
+      }
+    });
+
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+        }
+      });
+      Assert.fail("the pool should have been full");
+    } catch (final RejectedExecutionException e) {
+      // expected.
+    }
+
+    Assert.assertEquals(1, stats.getActive());
+    Assert.assertEquals(1, stats.getPending());
+    Assert.assertEquals(1, stats.getRejected());
+
+    Thread.sleep(20);
+    release.countDown();
+    queuedDone.await();
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.SECONDS);
+
+    Assert.assertEquals(2, stats.getCompleted());
+    Assert.assertEquals(0, stats.getPending());
+    Assert.assertEquals(1, stats.getSlow());
+    Assert.assertTrue(stats.getQueueLatencyPercentile(100, TimeUnit.MILLISECONDS) >= 20);
+  }
+
+  @Test
+  public void testSchedulerTimers() throws Exception {
+    final InstrumentedScheduler scheduler = new InstrumentedScheduler(new ThreadPoolBasedScheduler(1,
+        new PrefixBasedThreadFactory("instrumented-test").withDaemonThreads()), new TaskStats(0, TimeUnit.MILLISECONDS, 0));
+    final TaskStats stats = scheduler.getStats();
+
+    final CountDownLatch fired = new CountDownLatch(1);
+    scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        fired.countDown();
+      }
+    }, 10, TimeUnit.MILLISECONDS);
+
+    final CancellationToken cancelled = scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        Assert.fail("should have been cancelled");
+      }
+    }, 1, TimeUnit.HOURS);
+    Assert.assertEquals(2, stats.getPending());
+
+    Assert.assertTrue(cancelled.cancel(false));
+    Assert.assertTrue(fired.await(1, TimeUnit.SECONDS));
+    Thread.sleep(10);
+
+    Assert.assertEquals(0, stats.getPending());
+    Assert.assertEquals(1, stats.getCompleted());
+    scheduler.shutdown();
+  }
+}
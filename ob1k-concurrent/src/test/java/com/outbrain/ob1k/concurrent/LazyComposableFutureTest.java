@@ -77,6 +77,43 @@ public class LazyComposableFutureTest {
     Assert.assertEquals(producerCounter.get(), 2);
   }
 
+  @Test
+  public void testThrowingProducerFailsTheFuture() throws InterruptedException, TimeoutException {
+    final ComposableFuture<String> res = LazyComposableFuture.build(new Producer<String>() {
+      @Override
+      public void produce(final Consumer<String> consumer) {
+        throw new IllegalStateException("broken producer");
+      }
+    });
+
+    try {
+      res.get(1, TimeUnit.SECONDS);
+      Assert.fail("should get an exception");
+    } catch (final ExecutionException e) {
+      Assert.assertEquals(IllegalStateException.class, e.getCause().getClass());
+    }
+
+    // a producer that delivers and then throws reports its value only.
+    final AtomicInteger deliveries = new AtomicInteger();
+    final ComposableFuture<String> delivered = LazyComposableFuture.build(new Producer<String>() {
+      @Override
+      public void produce(final Consumer<String> consumer) {
+        consumer.consume(Try.fromValue("value"));
+        throw new IllegalStateException("broken producer");
+      }
+    });
+
+    delivered.consume(new Consumer<String>() {
+      @Override
+      public void consume(final Try<String> result) {
+        deliveries.incrementAndGet();
+        Assert.assertTrue(result.isSuccess());
+      }
+    });
+
+    Assert.assertEquals(1, deliveries.get());
+  }
+
   @Test
   public void testContinueOnSuccess() throws ExecutionException, InterruptedException {
     final ComposableFuture<String> res = LazyComposableFuture.fromValue("one").continueOnSuccess(new SuccessHandler<String, String>() {
@@ -382,9 +419,84 @@ public class LazyComposableFutureTest {
       }
     });
 
-    stringObservable.toBlocking().first();
-    stringObservable.toBlocking().first();
+    stringObservable.toBlocking().last();
+    stringObservable.toBlocking().last();
 
     Assert.assertTrue("counter of evaluations should be 10", counter.get() == repeats * 2);
   }
+
+  @Test
+  public void testColdStreamHonorsDemand() {
+    final AtomicInteger evaluations = new AtomicInteger();
+    final List<ComposableFuture<Integer>> futures = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      final int value = i;
+      futures.add(LazyComposableFuture.apply(new Supplier<Integer>() {
+        @Override
+        public Integer get() {
+          evaluations.incrementAndGet();
+          return value;
+        }
+      }));
+    }
+
+    final List<Integer> values = new ArrayList<>();
+    final AtomicBoolean completed = new AtomicBoolean();
+    final class PullingSubscriber extends rx.Subscriber<Integer> {
+      @Override
+      public void onStart() {
+        request(3);
+      }
+
+      @Override
+      public void onNext(final Integer value) {
+        values.add(value);
+      }
+
+      @Override
+      public void onCompleted() {
+        completed.set(true);
+      }
+
+      @Override
+      public void onError(final Throwable error) {
+        Assert.fail(error.toString());
+      }
+
+      void more(final long n) {
+        request(n);
+      }
+    }
+
+    final PullingSubscriber subscriber = new PullingSubscriber();
+    ComposableFutures.toColdObservable(futures, true, 2).subscribe(subscriber);
+    Assert.assertEquals(3, values.size());
+    Assert.assertEquals(3, evaluations.get());
+
+    subscriber.more(4);
+    Assert.assertEquals(7, values.size());
+    Assert.assertEquals(7, evaluations.get());
+    Assert.assertFalse(completed.get());
+
+    subscriber.more(Long.MAX_VALUE);
+    Assert.assertEquals(10, values.size());
+    Assert.assertTrue(completed.get());
+  }
+
+  @Test
+  public void testDeepChain() throws ExecutionException, InterruptedException {
+    final int depth = 100000;
+    ComposableFuture<Integer> chain = LazyComposableFuture.fromValue(0);
+    for (int i = 0; i < depth; i++) {
+      chain = chain.continueOnSuccess(new FutureSuccessHandler<Integer, Integer>() {
+        @Override
+        public ComposableFuture<Integer> handle(final Integer result) {
+          return LazyComposableFuture.fromValue(result + 1);
+        }
+      });
+    }
+
+    Assert.assertEquals(depth, (int) chain.get());
+    Assert.assertEquals(depth, (int) chain.materialize().get());
+  }
 }
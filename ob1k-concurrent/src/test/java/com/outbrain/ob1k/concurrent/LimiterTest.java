@@ -0,0 +1,261 @@
+package com.outbrain.ob1k.concurrent;
+
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import com.outbrain.ob1k.concurrent.handlers.FutureAction;
+import com.outbrain.ob1k.concurrent.limiter.ConcurrencyLimiter;
+import com.outbrain.ob1k.concurrent.limiter.LimitExceededException;
+import com.outbrain.ob1k.concurrent.limiter.RateLimiter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LimiterTest {
+
+  @Test
+  public void testRateLimiterBurstThenReject() throws Exception {
+    final RateLimiter limiter = new RateLimiter(1, 3);
+    final FutureAction<String> action = ComposableFutures.limit(limiter, constant("ok"));
+
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals("ok", action.execute().get());
+    }
+
+    assertRejected(action.execute());
+    Assert.assertFalse(limiter.tryAcquire());
+  }
+
+  @Test
+  public void testRateLimiterDelaysWithinMaxDelay() throws Exception {
+    final RateLimiter limiter = new RateLimiter(20, 1, 1, TimeUnit.SECONDS, 2, ComposableFutures.getScheduler());
+    final long start = System.nanoTime();
+    final List<ComposableFuture<String>> results = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      results.add(limiter.execute(constant("ok")));
+    }
+
+    Assert.assertEquals(2, limiter.getQueueDepth());
+    // the queue is full.
+    assertRejected(limiter.execute(constant("ok")));
+
+    for (final ComposableFuture<String> result : results) {
+      Assert.assertEquals("ok", result.get(5, TimeUnit.SECONDS));
+    }
+
+    // one interval of 50ms per delayed action.
+    Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(95));
+    Assert.assertEquals(0, limiter.getQueueDepth());
+  }
+
+  @Test
+  public void testRateLimiterQueueIsBoundedUnderContention() throws Exception {
+    final RateLimiter limiter = new RateLimiter(1, 1, 1, TimeUnit.HOURS, 2, ComposableFutures.getScheduler());
+    final int callers = 16;
+    final CyclicBarrier barrier = new CyclicBarrier(callers);
+    final List<ComposableFuture<String>> results = Collections.synchronizedList(new ArrayList<ComposableFuture<String>>());
+    final List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < callers; i++) {
+      final Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            barrier.await();
+          } catch (final Exception e) {
+            throw new RuntimeException(e);
+          }
+          results.add(limiter.execute(constant("ok")));
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+
+    for (final Thread thread : threads) {
+      thread.join();
+    }
+
+    // one caller got the burst permit, two wait for theirs and the rest are rejected.
+    Assert.assertEquals(2, limiter.getQueueDepth());
+    int executed = 0;
+    int rejected = 0;
+    final List<ComposableFuture<String>> queued = new ArrayList<>();
+    for (final ComposableFuture<String> result : results) {
+      try {
+        result.get(10, TimeUnit.MILLISECONDS);
+        executed++;
+      } catch (final ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof LimitExceededException);
+        rejected++;
+      } catch (final TimeoutException e) {
+        queued.add(result);
+      }
+    }
+
+    Assert.assertEquals(1, executed);
+    Assert.assertEquals(2, queued.size());
+    Assert.assertEquals(callers - 3, rejected);
+
+    for (final ComposableFuture<String> result : queued) {
+      result.cancel(false);
+    }
+    Assert.assertEquals(0, limiter.getQueueDepth());
+  }
+
+  @Test
+  public void testConcurrencyLimiterQueuesAndRejects() throws Exception {
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 2, 1);
+    final List<ComposablePromise<Integer>> started = new ArrayList<>();
+    final FutureAction<Integer> action = ComposableFutures.limit(limiter, new FutureAction<Integer>() {
+      @Override
+      public ComposableFuture<Integer> execute() {
+        final ComposablePromise<Integer> promise = ComposableFutures.newPromise();
+        started.add(promise);
+        return promise.future();
+      }
+    });
+
+    final ComposableFuture<Integer> first = action.execute();
+    final ComposableFuture<Integer> second = action.execute();
+    final ComposableFuture<Integer> queued = action.execute();
+    assertRejected(action.execute());
+
+    Assert.assertEquals(2, started.size());
+    Assert.assertEquals(2, limiter.getInFlight());
+    Assert.assertEquals(1, limiter.getQueueDepth());
+
+    started.get(0).set(1);
+    Assert.assertEquals(1, first.get().intValue());
+    // the queued action took the released slot.
+    Assert.assertEquals(3, started.size());
+    Assert.assertEquals(0, limiter.getQueueDepth());
+
+    started.get(1).set(2);
+    started.get(2).set(3);
+    Assert.assertEquals(2, second.get().intValue());
+    Assert.assertEquals(3, queued.get().intValue());
+    Assert.assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  public void testConcurrencyLimiterSkipsCancelledActions() throws Exception {
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 10);
+    final AtomicInteger executions = new AtomicInteger();
+    final ComposablePromise<String> blocker = ComposableFutures.newPromise();
+    final ComposableFuture<String> first = limiter.execute(new FutureAction<String>() {
+      @Override
+      public ComposableFuture<String> execute() {
+        executions.incrementAndGet();
+        return blocker.future();
+      }
+    });
+
+    final ComposableFuture<String> cancelled = limiter.execute(new FutureAction<String>() {
+      @Override
+      public ComposableFuture<String> execute() {
+        executions.incrementAndGet();
+        return ComposableFutures.fromValue("cancelled");
+      }
+    });
+
+    Assert.assertEquals(1, limiter.getQueueDepth());
+    Assert.assertTrue(cancelled.cancel(false));
+    Assert.assertEquals(0, limiter.getQueueDepth());
+
+    blocker.set("first");
+    Assert.assertEquals("first", first.get());
+    Assert.assertEquals(1, executions.get());
+    Assert.assertEquals(0, limiter.getInFlight());
+  }
+
+  @Test
+  public void testConcurrencyLimiterAdapts() throws Exception {
+    final ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100, 0);
+    final long fast = TimeUnit.MILLISECONDS.toNanos(10);
+
+    // latency stays at the minimum while the limit is in use, so it grows.
+    for (int i = 0; i < 200; i++) {
+      fill(limiter);
+      releaseAll(limiter, fast, false);
+    }
+
+    final int grown = limiter.getLimit();
+    Assert.assertTrue("limit should grow: " + grown, grown > 10);
+
+    // latency doubles, most of the in flight actions are queued at the destination.
+    final ConcurrencyLimiter congested = new ConcurrencyLimiter(50, 1, 100, 0);
+    congested.tryAcquire();
+    congested.release(fast, false);
+    for (int i = 0; i < 5; i++) {
+      fill(congested);
+      releaseAll(congested, fast * 2, false);
+    }
+
+    final int shrunk = congested.getLimit();
+    Assert.assertTrue("limit should shrink: " + shrunk, shrunk < 50);
+
+    // drops cut the limit quickly.
+    for (int i = 0; i < 5; i++) {
+      fill(congested);
+      releaseAll(congested, fast, true);
+    }
+
+    Assert.assertTrue(congested.getLimit() < shrunk / 2);
+
+    // a timed out action is a drop.
+    final ConcurrencyLimiter timeouts = new ConcurrencyLimiter(10, 1, 100, 0);
+    for (int i = 0; i < 10; i++) {
+      final ComposableFuture<String> result = timeouts.execute(new FutureAction<String>() {
+        @Override
+        public ComposableFuture<String> execute() {
+          return ComposableFutures.fromError(new TimeoutException());
+        }
+      });
+
+      try {
+        result.get();
+        Assert.fail("should have failed");
+      } catch (final ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof TimeoutException);
+      }
+    }
+
+    Assert.assertEquals(3, timeouts.getLimit());
+  }
+
+  private static void fill(final ConcurrencyLimiter limiter) {
+    while (limiter.tryAcquire()) {
+      // take every free slot.
+    }
+  }
+
+  private static void releaseAll(final ConcurrencyLimiter limiter, final long latencyNanos, final boolean dropped) {
+    while (limiter.getInFlight() > 0) {
+      limiter.release(latencyNanos, dropped);
+    }
+  }
+
+  private static FutureAction<String> constant(final String value) {
+    return new FutureAction<String>() {
+      @Override
+      public ComposableFuture<String> execute() {
+        return ComposableFutures.fromValue(value);
+      }
+    };
+  }
+
+  private static void assertRejected(final ComposableFuture<?> future) throws InterruptedException {
+    try {
+      future.get();
+      Assert.fail("should have been rejected");
+    } catch (final ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof LimitExceededException);
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.outbrain.ob1k.concurrent;
+
+import com.google.common.base.Predicate;
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import com.outbrain.ob1k.concurrent.handlers.FutureAction;
+import com.outbrain.ob1k.concurrent.retry.RetryBudget;
+import com.outbrain.ob1k.concurrent.retry.RetryPolicy;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RetryPolicyTest {
+
+  @Test
+  public void testRetriesWithBackoff() throws Exception {
+    final RetryPolicy policy = RetryPolicy.builder()
+        .setMaxRetries(3)
+        .setBackoff(10, 100, TimeUnit.MILLISECONDS)
+        .build();
+
+    final List<Long> attemptTimes = new CopyOnWriteArrayList<>();
+    final ComposableFuture<String> result = ComposableFutures.retry(new FutureAction<String>() {
+      @Override
+      public ComposableFuture<String> execute() {
+        attemptTimes.add(System.nanoTime());
+        return attemptTimes.size() < 3 ?
+            ComposableFutures.<String>fromError(new RuntimeException("failed")) :
+            ComposableFutures.fromValue("ok");
+      }
+    }, policy);
+
+    Assert.assertEquals("ok", result.get(5, TimeUnit.SECONDS));
+    Assert.assertEquals(3, attemptTimes.size());
+    for (int i = 1; i < attemptTimes.size(); i++) {
+      Assert.assertTrue(attemptTimes.get(i) - attemptTimes.get(i - 1) >= TimeUnit.MILLISECONDS.toNanos(9));
+    }
+
+    Assert.assertEquals(1, policy.getBudget().getRequests());
+    Assert.assertEquals(2, policy.getBudget().getRetries());
+  }
+
+  @Test
+  public void testGivesUpOnNonRetryableErrors() throws Exception {
+    final AtomicInteger attempts = new AtomicInteger();
+    final RetryPolicy policy = RetryPolicy.builder()
+        .setBackoff(1, 10, TimeUnit.MILLISECONDS)
+        .setRetryOn(new Predicate<Throwable>() {
+          @Override
+          public boolean apply(final Throwable error) {
+            return !(error instanceof IllegalArgumentException);
+          }
+        })
+        .build();
+
+    assertFails(policy.execute(new FutureAction<String>() {
+      @Override
+      public ComposableFuture<String> execute() {
+        attempts.incrementAndGet();
+        return ComposableFutures.fromError(new IllegalArgumentException("bad request"));
+      }
+    }), IllegalArgumentException.class);
+
+    Assert.assertEquals(1, attempts.get());
+
+    // the last error is returned once the retries are used up.
+    attempts.set(0);
+    assertFails(policy.execute(new FutureAction<String>() {
+      @Override
+      public ComposableFuture<String> execute() {
+        attempts.incrementAndGet();
+        return ComposableFutures.fromError(new IllegalStateException("down"));
+      }
+    }), IllegalStateException.class);
+
+    Assert.assertEquals(4, attempts.get());
+  }
+
+  @Test
+  public void testRetryBudgetCapsRetries() throws Exception {
+    // no retries beyond the first one until 10 more requests are made.
+    final RetryBudget budget = new RetryBudget(10, 1);
+    final RetryPolicy policy = RetryPolicy.builder()
+        .setMaxRetries(5)
+        .setBackoff(0, 0, TimeUnit.MILLISECONDS)
+        .setBudget(budget)
+        .build();
+
+    final AtomicInteger attempts = new AtomicInteger();
+    final FutureAction<String> failing = new FutureAction<String>() {
+      @Override
+      public ComposableFuture<String> execute() {
+        attempts.incrementAndGet();
+        return ComposableFutures.fromError(new RuntimeException("down"));
+      }
+    };
+
+    assertFails(policy.execute(failing), RuntimeException.class);
+    Assert.assertEquals(2, attempts.get());
+    assertFails(policy.execute(failing), RuntimeException.class);
+    Assert.assertEquals(3, attempts.get());
+
+    Assert.assertEquals(2, budget.getRequests());
+    Assert.assertEquals(1, budget.getRetries());
+    Assert.assertEquals(2, budget.getExhausted());
+  }
+
+  @Test
+  public void testCancelDuringBackoff() throws Exception {
+    final RetryPolicy policy = RetryPolicy.builder()
+        .setBackoff(50, 50, TimeUnit.MILLISECONDS)
+        .build();
+
+    final AtomicInteger attempts = new AtomicInteger();
+    final ComposablePromise<String> first = ComposableFutures.newPromise();
+    final ComposableFuture<String> result = policy.execute(new FutureAction<String>() {
+      @Override
+      public ComposableFuture<String> execute() {
+        attempts.incrementAndGet();
+        return first.future();
+      }
+    });
+
+    first.setException(new RuntimeException("failed"));
+    Assert.assertTrue(result.cancel(false));
+    Thread.sleep(100);
+    Assert.assertEquals(1, attempts.get());
+    assertFails(result, CancellationException.class);
+  }
+
+  private static void assertFails(final ComposableFuture<?> future, final Class<? extends Throwable> errorType)
+      throws InterruptedException {
+    try {
+      future.get();
+      Assert.fail("should have failed");
+    } catch (final ExecutionException e) {
+      Assert.assertTrue(String.valueOf(e.getCause()), errorType.isInstance(e.getCause()));
+    }
+  }
+}
@@ -4,6 +4,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
@@ -94,6 +95,127 @@ public class SlidingWindowTest {
 
   }
 
+  @Test
+  public void testRingBufferNonConcurrent() {
+    final RingBufferSlidingWindow<String> window = new RingBufferSlidingWindow<>(3);
+    Assert.assertNull(window.peekLast());
+    window.offer("1");
+    window.offer("2");
+    Assert.assertEquals(Arrays.asList("1", "2"), window.snapshot());
+
+    window.offer("3");
+    window.offer("4");
+    Assert.assertEquals(Arrays.asList("2", "3", "4"), window.snapshot());
+    Assert.assertEquals("4", window.peekLast());
+
+    final List<String> results = new ArrayList<>();
+    for (final String element : window) {
+      results.add(element);
+    }
+
+    Assert.assertEquals(Arrays.asList("2", "3", "4"), results);
+  }
+
+  @Test
+  public void testRingBufferConcurrent() throws InterruptedException {
+    final int WRITERS = 8;
+    final int OFFERS = 100000;
+    final int CAPACITY = 16;
+    final LongSlidingWindow window = new LongSlidingWindow(CAPACITY);
+    final AtomicBoolean failed = new AtomicBoolean();
+    final List<Thread> writers = new ArrayList<>();
+    for (int i = 0; i < WRITERS; i++) {
+      final long writer = i;
+      final Thread thread = new Thread() {
+        @Override
+        public void run() {
+          for (long j = 0; j < OFFERS; j++) {
+            // every writer offers increasing values, tagged by the writer.
+            window.offer(j * WRITERS + writer);
+          }
+        }
+      };
+      writers.add(thread);
+      thread.start();
+    }
+
+    final Thread reader = new Thread() {
+      @Override
+      public void run() {
+        while (!failed.get() && writersAlive(writers)) {
+          final long[] snapshot = window.snapshot();
+          if (snapshot.length > CAPACITY || !increasingPerWriter(snapshot, WRITERS)) {
+            failed.set(true);
+          }
+        }
+      }
+    };
+    reader.start();
+
+    for (final Thread writer : writers) {
+      writer.join();
+    }
+
+    reader.join();
+    Assert.assertFalse(failed.get());
+    Assert.assertEquals(CAPACITY, window.snapshot().length);
+  }
+
+  @Test
+  public void testPrimitiveWindows() {
+    final LongSlidingWindow longs = new LongSlidingWindow(2);
+    Assert.assertEquals(0, longs.snapshot().length);
+    longs.offer(1);
+    longs.offer(2);
+    longs.offer(3);
+    Assert.assertArrayEquals(new long[] {2, 3}, longs.snapshot());
+
+    final DoubleSlidingWindow doubles = new DoubleSlidingWindow(2);
+    doubles.offer(1.5);
+    doubles.offer(-0.25);
+    doubles.offer(Double.NaN);
+    Assert.assertArrayEquals(new double[] {-0.25, Double.NaN}, doubles.snapshot(), 0);
+  }
+
+  @Test
+  public void testOvertakenWriterIsDropped() {
+    final RingBuffer buffer = new RingBuffer(1) {};
+    final long older = buffer.claim();
+    // the older element is still being written, the newer one takes its slot over instead of waiting.
+    final long newer = buffer.claim();
+    Assert.assertEquals(1, newer);
+
+    buffer.publish(newer);
+    buffer.publish(older);
+    Assert.assertTrue(buffer.isPublished(newer));
+    Assert.assertFalse(buffer.isPublished(older));
+  }
+
+  private static boolean writersAlive(final List<Thread> writers) {
+    for (final Thread writer : writers) {
+      if (writer.isAlive()) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private static boolean increasingPerWriter(final long[] snapshot, final int writers) {
+    final long[] last = new long[writers];
+    Arrays.fill(last, -1);
+    for (final long value : snapshot) {
+      final int writer = (int) (value % writers);
+      if (value <= last[writer]) {
+        return false;
+      }
+
+      last[writer] = value;
+    }
+
+    return true;
+  }
+
   private static class Updater extends Thread {
     private final ConcurrentSlidingWindow<String> window;
     private final AtomicBoolean active;
@@ -12,6 +12,9 @@ import com.outbrain.ob1k.common.filters.ServiceFilter;
 import com.outbrain.ob1k.common.filters.StreamFilter;
 import com.outbrain.ob1k.common.marshalling.RequestMarshallerRegistry;
 import com.outbrain.ob1k.common.marshalling.TypeHelper;
+import com.outbrain.ob1k.concurrent.hedge.HedgePolicy;
+import com.outbrain.ob1k.concurrent.hedge.PercentileHedgePolicy;
+import com.outbrain.ob1k.concurrent.retry.RetryPolicy;
 import com.outbrain.ob1k.http.HttpClient;
 import com.outbrain.ob1k.http.common.ContentType;
 import com.outbrain.swinfra.metrics.api.MetricFactory;
@@ -39,6 +42,8 @@ public class ClientBuilder<T extends Service> {
   private TargetProvider targetProvider = new EmptyTargetProvider();
   private ContentType clientType = ContentType.JSON;
   private DoubleDispatchStrategy doubleDispatchStrategy;
+  private HedgePolicy hedgePolicy;
+  private RetryPolicy retryPolicy;
 
   public ClientBuilder(final Class<T> type) {
     this.type = type;
@@ -152,6 +157,24 @@ public class ClientBuilder<T extends Service> {
     return this;
   }
 
+  /**
+   * hedges the calls of async endpoints according to the policy, e.g. a {@link PercentileHedgePolicy}.
+   * replaces double dispatch when both are configured.
+   */
+  public ClientBuilder<T> withHedging(final HedgePolicy hedgePolicy) {
+    this.hedgePolicy = hedgePolicy;
+    return this;
+  }
+
+  /**
+   * retries failed calls of async endpoints with backoff according to the policy.
+   * clients built with the same policy share its retry budget.
+   */
+  public ClientBuilder<T> withRetryPolicy(final RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+    return this;
+  }
+
   public ClientBuilder<T> bindEndpoint(final String methodName, final HttpRequestMethodType requestMethodType,
                                        final String path, final ServiceFilter... filters) {
     final List<? extends ServiceFilter> serviceFilters;
@@ -210,7 +233,7 @@ public class ClientBuilder<T extends Service> {
 
         if (isAsyncMethod(method)) {
           final List<AsyncFilter> filters = mergeFilters(AsyncFilter.class, asyncFilters, endpointDescriptor.filters);
-          clientEndpoint = new AsyncClientEndpoint(httpClient, registry, endpoint, filters.toArray(new AsyncFilter[filters.size()]), doubleDispatchStrategy);
+          clientEndpoint = new AsyncClientEndpoint(httpClient, registry, endpoint, filters.toArray(new AsyncFilter[filters.size()]), doubleDispatchStrategy, hedgePolicy, retryPolicy);
         } else if (isStreamingMethod(method)) {
           final List<StreamFilter> filters = mergeFilters(StreamFilter.class, streamFilters, endpointDescriptor.filters);
           clientEndpoint = new StreamClientEndpoint(httpClient, registry, endpoint, filters.toArray(new StreamFilter[filters.size()]));
@@ -7,12 +7,17 @@ import com.outbrain.ob1k.client.ctx.AsyncClientRequestContext;
 import com.outbrain.ob1k.client.ctx.DefaultAsyncClientRequestContext;
 import com.outbrain.ob1k.client.targets.TargetProvider;
 import com.outbrain.ob1k.common.concurrent.ComposableFutureHelper;
+import com.outbrain.ob1k.common.concurrent.DeadlineHeader;
+import com.outbrain.ob1k.concurrent.AsyncContext;
 import com.outbrain.ob1k.concurrent.ComposableFuture;
 import com.outbrain.ob1k.common.filters.AsyncFilter;
 import com.outbrain.ob1k.common.marshalling.RequestMarshaller;
 import com.outbrain.ob1k.common.marshalling.RequestMarshallerRegistry;
 import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.Deadline;
 import com.outbrain.ob1k.concurrent.handlers.FutureAction;
+import com.outbrain.ob1k.concurrent.hedge.HedgePolicy;
+import com.outbrain.ob1k.concurrent.retry.RetryPolicy;
 import com.outbrain.ob1k.http.HttpClient;
 import com.outbrain.ob1k.http.RequestBuilder;
 import com.outbrain.ob1k.http.Response;
@@ -22,7 +27,9 @@ import org.apache.commons.codec.EncoderException;
 import java.io.IOException;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Handle the async invocation chain of filters and remote target on the client side
@@ -32,6 +39,8 @@ import java.util.concurrent.TimeUnit;
 public class AsyncClientEndpoint extends AbstractClientEndpoint {
 
   private final AsyncFilter[] filters;
+  private final HedgePolicy hedgePolicy;
+  private final RetryPolicy retryPolicy;
   private final MarshallingStrategy marshallingStrategy = new MarshallingStrategy() {
     @Override
     @SuppressWarnings("unchecked")
@@ -48,9 +57,24 @@ public class AsyncClientEndpoint extends AbstractClientEndpoint {
   public AsyncClientEndpoint(final HttpClient httpClient, final RequestMarshallerRegistry marshallerRegistry,
                              final Endpoint endpoint, final AsyncFilter[] filters,
                              final DoubleDispatchStrategy doubleDispatchStrategy) {
+    this(httpClient, marshallerRegistry, endpoint, filters, doubleDispatchStrategy, null);
+  }
+
+  public AsyncClientEndpoint(final HttpClient httpClient, final RequestMarshallerRegistry marshallerRegistry,
+                             final Endpoint endpoint, final AsyncFilter[] filters,
+                             final DoubleDispatchStrategy doubleDispatchStrategy, final HedgePolicy hedgePolicy) {
+    this(httpClient, marshallerRegistry, endpoint, filters, doubleDispatchStrategy, hedgePolicy, null);
+  }
+
+  public AsyncClientEndpoint(final HttpClient httpClient, final RequestMarshallerRegistry marshallerRegistry,
+                             final Endpoint endpoint, final AsyncFilter[] filters,
+                             final DoubleDispatchStrategy doubleDispatchStrategy, final HedgePolicy hedgePolicy,
+                             final RetryPolicy retryPolicy) {
 
     super(httpClient, marshallerRegistry, endpoint, doubleDispatchStrategy);
     this.filters = filters;
+    this.hedgePolicy = hedgePolicy;
+    this.retryPolicy = retryPolicy;
   }
 
   @SuppressWarnings("unchecked")
@@ -71,6 +95,12 @@ public class AsyncClientEndpoint extends AbstractClientEndpoint {
         return fromError(e);
       }
 
+      // the downstream service gets what remains of the budget of this attempt.
+      final Deadline deadline = Deadline.current();
+      if (deadline != null) {
+        requestBuilder.addHeader(DeadlineHeader.NAME, DeadlineHeader.format(deadline));
+      }
+
       final Type responseType = extractResponseType();
 
       // If the client requested to get the response object
@@ -93,6 +123,8 @@ public class AsyncClientEndpoint extends AbstractClientEndpoint {
     private final AsyncClientEndpoint asyncClientEndpoint;
     private final Object[] params;
     private final DoubleDispatchStrategy doubleDispatchStrategy;
+    // retries and hedges are executed from timers, outside of the caller's context.
+    private final AsyncContext context = AsyncContext.current();
     private volatile String firstInvocationTarget;
 
     public InvokeAsyncAction(final TargetProvider targetProvider, final Object[] params, final DoubleDispatchStrategy doubleDispatchStrategy, final AsyncClientEndpoint asyncClientEndpoint) {
@@ -112,9 +144,20 @@ public class AsyncClientEndpoint extends AbstractClientEndpoint {
       }
       final DefaultAsyncClientRequestContext ctx = new DefaultAsyncClientRequestContext(remoteTarget, params, asyncClientEndpoint);
       final long startTime = System.currentTimeMillis();
-      final ComposableFuture<T> result = asyncClientEndpoint.invokeAsync(ctx);
+      final ComposableFuture<T> result;
+      final AsyncContext previous = context.attach();
+      try {
+        result = asyncClientEndpoint.invokeAsync(ctx);
+      } finally {
+        AsyncContext.restore(previous);
+      }
       if (doubleDispatchStrategy != null) {
-        result.consume((res) -> doubleDispatchStrategy.onComplete(res, startTime));
+        result.consume((res) -> {
+          // an attempt that lost to another one is cancelled, its duration says nothing about the target.
+          if (res.isSuccess() || !(res.getError() instanceof CancellationException)) {
+            doubleDispatchStrategy.onComplete(res, startTime);
+          }
+        });
       }
       return result;
     }
@@ -135,11 +178,42 @@ public class AsyncClientEndpoint extends AbstractClientEndpoint {
 
   @Override
   public Object invoke(final TargetProvider targetProvider, final Object[] params) throws Throwable {
+    final Deadline deadline = Deadline.current();
+    if (deadline != null && deadline.isExpired()) {
+      return fromError(new TimeoutException("deadline passed before calling " + endpoint.getMethod().getName()));
+    }
+
     final InvokeAsyncAction action = new InvokeAsyncAction(targetProvider, params, doubleDispatchStrategy, this);
-    if (doubleDispatchStrategy != null) {
+    final ComposableFuture<Object> result;
+    if (retryPolicy == null) {
+      result = dispatch(action);
+    } else {
+      // every retry is hedged or double dispatched on its own.
+      result = ComposableFutures.retry(new FutureAction<Object>() {
+        @Override
+        public ComposableFuture<Object> execute() {
+          return dispatch(action);
+        }
+      }, retryPolicy);
+    }
+
+    if (deadline == null) {
+      return result;
+    }
+
+    // the call is owned by this invocation, once the deadline passes it is cancelled.
+    return result.withTimeout(ComposableFutures.getScheduler(), deadline.remaining(TimeUnit.NANOSECONDS),
+        TimeUnit.NANOSECONDS, "deadline of " + endpoint.getMethod().getName(), true);
+  }
+
+  @SuppressWarnings("unchecked")
+  private ComposableFuture<Object> dispatch(final InvokeAsyncAction action) {
+    if (hedgePolicy != null) {
+      return ComposableFutures.hedge(action, hedgePolicy);
+    } else if (doubleDispatchStrategy != null) {
       return ComposableFutures.doubleDispatch(doubleDispatchStrategy.getDoubleDispatchIntervalMs(), TimeUnit.MILLISECONDS, action);
     } else {
       return action.execute();
     }
- }
+  }
 }
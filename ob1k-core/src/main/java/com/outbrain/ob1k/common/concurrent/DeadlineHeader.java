@@ -0,0 +1,37 @@
+package com.outbrain.ob1k.common.concurrent;
+
+import com.outbrain.ob1k.concurrent.Deadline;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * carries the deadline of a request from a client to the service it calls.
+ *
+ * the deadline is sent as the budget remaining in milliseconds rather than a point in time, since the clocks of
+ * different hosts are not in sync. the time spent on the wire is not deducted, so a deadline may only grow by the
+ * network latency on every hop.
+ */
+public final class DeadlineHeader {
+  public static final String NAME = "X-Ob1k-Deadline-Ms";
+
+  private DeadlineHeader() {}
+
+  public static String format(final Deadline deadline) {
+    return Long.toString(deadline.remaining(TimeUnit.MILLISECONDS));
+  }
+
+  /**
+   * @return the deadline sent in the header, or null if the header is missing or malformed.
+   */
+  public static Deadline parse(final String value) {
+    if (value == null || value.isEmpty()) {
+      return null;
+    }
+
+    try {
+      return Deadline.after(Long.parseLong(value.trim()), TimeUnit.MILLISECONDS);
+    } catch (final NumberFormatException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.outbrain.ob1k.common.concurrent;
+
+import com.outbrain.ob1k.concurrent.Trampoline;
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.util.concurrent.Executor;
+
+/**
+ * an executor bound to the event loop of a channel.
+ *
+ * tasks submitted from the event loop's own thread run right away(through the trampoline, so chains of them
+ * don't grow the stack) and tasks from any other thread are handed over to the event loop, so continuations of
+ * futures that complete on the channel's thread stay there instead of hopping to the global pool and back when
+ * they write to the channel.
+ * only non-blocking tasks may run on it, a blocked event loop stalls all of its channels.
+ */
+public class EventLoopExecutor implements Executor {
+  private final EventExecutor eventLoop;
+
+  public EventLoopExecutor(final EventExecutor eventLoop) {
+    this.eventLoop = eventLoop;
+  }
+
+  public static EventLoopExecutor forChannel(final Channel channel) {
+    return new EventLoopExecutor(channel.eventLoop());
+  }
+
+  @Override
+  public void execute(final Runnable task) {
+    if (eventLoop.inEventLoop()) {
+      Trampoline.execute(task);
+    } else {
+      eventLoop.execute(task);
+    }
+  }
+}
@@ -1,10 +1,14 @@
 package com.outbrain.ob1k.common.endpoints;
 
+import com.outbrain.ob1k.Request;
 import com.outbrain.ob1k.common.concurrent.ComposableFutureHelper;
+import io.netty.buffer.ByteBuf;
 import rx.Observable;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 
 /**
  * Created by hyadid on 2/28/16.
@@ -18,6 +22,22 @@ public class ServiceEndpointContract {
     return m.getReturnType() == Observable.class;
   }
 
+  /**
+   * a method declared as method(Request request, Observable&lt;ByteBuf&gt; body) is called as soon as the request
+   * headers arrive, and receives the request body as a stream of chunks instead of a fully buffered body.
+   */
+  public static boolean isBodyStreamingMethod(final Method m) {
+    final Class<?>[] parameterTypes = m.getParameterTypes();
+    if (parameterTypes.length != 2 || parameterTypes[0] != Request.class || parameterTypes[1] != Observable.class) {
+      return false;
+    }
+
+    // a raw or differently typed Observable is an ordinary parameter, unmarshalled from the body.
+    final Type bodyType = m.getGenericParameterTypes()[1];
+    return bodyType instanceof ParameterizedType &&
+        ((ParameterizedType) bodyType).getActualTypeArguments()[0] == ByteBuf.class;
+  }
+
   public static boolean isEndpoint(final Method method) {
     final int modifiers = method.getModifiers();
     return Modifier.isPublic(modifiers) && !Modifier.isStatic(modifiers);
@@ -0,0 +1,61 @@
+package com.outbrain.ob1k.common.filters;
+
+import com.outbrain.ob1k.AsyncRequestContext;
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.circuitbreaker.CircuitBreaker;
+import com.outbrain.ob1k.concurrent.handlers.FutureAction;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * passes requests through a circuit breaker, on the client side as well as on the server side.
+ *
+ * either a single breaker is shared by every endpoint the filter is attached to, or a breaker is created
+ * for each endpoint(service class and method) from the given builder, so that a failing endpoint doesn't
+ * cut the others off. attach it per endpoint with ClientBuilder.bindEndpoint() or the server's endpoint().
+ */
+public class CircuitBreakerFilter<T> implements AsyncFilter<T, AsyncRequestContext> {
+  private final CircuitBreaker breaker;
+  private final CircuitBreaker.Builder builder;
+  private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+  public CircuitBreakerFilter(final CircuitBreaker breaker) {
+    this.breaker = breaker;
+    this.builder = null;
+  }
+
+  /**
+   * @param builder builds a breaker per endpoint, named after the endpoint
+   */
+  public CircuitBreakerFilter(final CircuitBreaker.Builder builder) {
+    this.breaker = null;
+    this.builder = builder;
+  }
+
+  @Override
+  public ComposableFuture<T> handleAsync(final AsyncRequestContext ctx) {
+    return getBreaker(ctx).execute(new FutureAction<T>() {
+      @Override
+      public ComposableFuture<T> execute() {
+        return ctx.invokeAsync();
+      }
+    });
+  }
+
+  private CircuitBreaker getBreaker(final AsyncRequestContext ctx) {
+    if (breaker != null) {
+      return breaker;
+    }
+
+    final String name = ctx.getServiceClassName() + "." + ctx.getServiceMethodName();
+    final CircuitBreaker existing = breakers.get(name);
+    if (existing != null) {
+      return existing;
+    }
+
+    final CircuitBreaker created = builder.build(name);
+    final CircuitBreaker previous = breakers.putIfAbsent(name, created);
+    return previous == null ? created : previous;
+  }
+}
@@ -9,6 +9,7 @@ import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
@@ -20,7 +21,6 @@ import java.util.Map;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JavaType;
@@ -33,7 +33,9 @@ import com.outbrain.ob1k.http.common.ContentType;
 import com.outbrain.ob1k.http.marshalling.JacksonMarshallingStrategy;
 import com.outbrain.ob1k.http.marshalling.MarshallingStrategy;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.DefaultHttpContent;
 import io.netty.handler.codec.http.DefaultHttpResponse;
@@ -48,6 +50,10 @@ import io.netty.util.CharsetUtil;
  * @author aronen
  */
 public class JsonRequestMarshaller implements RequestMarshaller {
+  private static final byte[] ELEMENT_HEADER = ChunkHeader.ELEMENT_HEADER.getBytes(CharsetUtil.UTF_8);
+  private static final byte[] NEW_LINE = "\n".getBytes(CharsetUtil.UTF_8);
+  private static final byte[] HTML_NEW_LINE = "<br/>\n".getBytes(CharsetUtil.UTF_8);
+
   private final ObjectMapper mapper;
   private final JsonFactory factory;
   private final MarshallingStrategy marshallingStrategy;
@@ -105,25 +111,57 @@ public class JsonRequestMarshaller implements RequestMarshaller {
   public HttpContent marshallResponsePart(final Object res,
                                           final HttpResponseStatus status,
                                           final boolean rawStream) throws IOException {
-    final String content = rawStream ?
-      mapper.writeValueAsString(res) + "<br/>\n" :
-      ChunkHeader.ELEMENT_HEADER + mapper.writeValueAsString(res) + "\n";
+    return marshallResponsePart(res, status, rawStream, UnpooledByteBufAllocator.DEFAULT);
+  }
+
+  @Override
+  public HttpContent marshallResponsePart(final Object res,
+                                          final HttpResponseStatus status,
+                                          final boolean rawStream,
+                                          final ByteBufAllocator allocator) throws IOException {
+    final ByteBuf buf = allocator.buffer();
+    try {
+      if (!rawStream) {
+        buf.writeBytes(ELEMENT_HEADER);
+      }
+      writeValue(res, buf);
+      buf.writeBytes(rawStream ? HTML_NEW_LINE : NEW_LINE);
+    } catch (final IOException | RuntimeException e) {
+      buf.release();
+      throw e;
+    }
 
-    final ByteBuf buf = Unpooled.copiedBuffer(content, CharsetUtil.UTF_8);
     return new DefaultHttpContent(buf);
   }
 
   @Override
   public FullHttpResponse marshallResponse(final Object res,
-                                           final HttpResponseStatus status) throws JsonProcessingException {
-    final String content = mapper.writeValueAsString(res);
-    final ByteBuf buf = Unpooled.copiedBuffer(content, CharsetUtil.UTF_8);
-    final FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, status, buf);
+                                           final HttpResponseStatus status) throws IOException {
+    return marshallResponse(res, status, UnpooledByteBufAllocator.DEFAULT);
+  }
+
+  @Override
+  public FullHttpResponse marshallResponse(final Object res,
+                                           final HttpResponseStatus status,
+                                           final ByteBufAllocator allocator) throws IOException {
+    final ByteBuf buf = allocator.buffer();
+    try {
+      writeValue(res, buf);
+    } catch (final IOException | RuntimeException e) {
+      buf.release();
+      throw e;
+    }
 
+    final FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, status, buf);
     response.headers().set(CONTENT_TYPE, ContentType.JSON.responseEncoding());
     return response;
   }
 
+  // jackson encodes the value as UTF-8 right into the buffer, without an intermediate string.
+  private void writeValue(final Object value, final ByteBuf buf) throws IOException {
+    mapper.writeValue((OutputStream) new ByteBufOutputStream(buf), value);
+  }
+
   @Override
   public HttpResponse marshallResponseHeaders(final boolean rawStream) {
     final HttpResponse res = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
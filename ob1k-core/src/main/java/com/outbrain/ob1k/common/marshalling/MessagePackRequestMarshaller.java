@@ -7,7 +7,9 @@ import com.outbrain.ob1k.http.common.ContentType;
 import com.outbrain.ob1k.http.marshalling.MessagePackMarshallingStrategy;
 import com.outbrain.ob1k.http.marshalling.MarshallingStrategy;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.handler.codec.http.*;
 import io.netty.util.CharsetUtil;
 import org.msgpack.MessagePack;
@@ -183,8 +185,20 @@ public class MessagePackRequestMarshaller implements RequestMarshaller {
 
   @Override
   public FullHttpResponse marshallResponse(final Object res, final HttpResponseStatus status) throws IOException {
-    final byte[] content = msgPack.write(res);
-    final ByteBuf buf = Unpooled.copiedBuffer(content);
+    return marshallResponse(res, status, UnpooledByteBufAllocator.DEFAULT);
+  }
+
+  @Override
+  public FullHttpResponse marshallResponse(final Object res, final HttpResponseStatus status,
+                                           final ByteBufAllocator allocator) throws IOException {
+    final ByteBuf buf = allocator.buffer();
+    try {
+      msgPack.write(new ByteBufOutputStream(buf), res);
+    } catch (final IOException | RuntimeException e) {
+      buf.release();
+      throw e;
+    }
+
     final FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, status, buf);
 
     response.headers().set(CONTENT_TYPE, ContentType.MESSAGE_PACK.responseEncoding());
@@ -204,10 +218,23 @@ public class MessagePackRequestMarshaller implements RequestMarshaller {
 
   @Override
   public HttpContent marshallResponsePart(final Object res, final HttpResponseStatus status, final boolean rawStream) throws IOException {
-    final byte[] content = msgPack.write(res);
-    final ByteBuf buf = rawStream ?
-        Unpooled.copiedBuffer(content, HTML_NEW_LINE) :
-        Unpooled.copiedBuffer(HEADER, content, NEW_LINE);
+    return marshallResponsePart(res, status, rawStream, UnpooledByteBufAllocator.DEFAULT);
+  }
+
+  @Override
+  public HttpContent marshallResponsePart(final Object res, final HttpResponseStatus status, final boolean rawStream,
+                                          final ByteBufAllocator allocator) throws IOException {
+    final ByteBuf buf = allocator.buffer();
+    try {
+      if (!rawStream) {
+        buf.writeBytes(HEADER);
+      }
+      msgPack.write(new ByteBufOutputStream(buf), res);
+      buf.writeBytes(rawStream ? HTML_NEW_LINE : NEW_LINE);
+    } catch (final IOException | RuntimeException e) {
+      buf.release();
+      throw e;
+    }
 
     return new DefaultHttpContent(buf);
   }
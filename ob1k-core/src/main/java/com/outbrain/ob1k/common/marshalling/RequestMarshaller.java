@@ -2,6 +2,7 @@ package com.outbrain.ob1k.common.marshalling;
 
 import com.outbrain.ob1k.Request;
 import com.outbrain.ob1k.http.Response;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpResponse;
@@ -21,8 +22,27 @@ public interface RequestMarshaller {
   void registerTypes(Type... types);
   Object[] unmarshallRequestParams(Request request, Method method, String[] paramNames) throws IOException;
   FullHttpResponse marshallResponse(Object res, HttpResponseStatus status) throws IOException;
+
+  /**
+   * marshalls the response straight into a buffer of the allocator(usually the channel's pooled allocator).
+   * marshallers that don't support it fall back to {@link #marshallResponse(Object, HttpResponseStatus)}.
+   */
+  default FullHttpResponse marshallResponse(final Object res, final HttpResponseStatus status,
+                                            final ByteBufAllocator allocator) throws IOException {
+    return marshallResponse(res, status);
+  }
+
   HttpResponse marshallResponseHeaders(final boolean rawStream);
   HttpContent marshallResponsePart(Object res, HttpResponseStatus status, boolean rawStream) throws IOException;
+
+  /**
+   * like {@link #marshallResponse(Object, HttpResponseStatus, ByteBufAllocator)}, for a part of a streamed response.
+   */
+  default HttpContent marshallResponsePart(final Object res, final HttpResponseStatus status, final boolean rawStream,
+                                           final ByteBufAllocator allocator) throws IOException {
+    return marshallResponsePart(res, status, rawStream);
+  }
+
   byte[] marshallRequestParams(Object[] requestParams) throws IOException;
   <T> T unmarshallResponse(Response response, Type type) throws IOException;
   <T> T unmarshallStreamResponse(Response response, Type type) throws IOException;
@@ -0,0 +1,100 @@
+package com.outbrain.ob1k.common.metrics;
+
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.Scheduler;
+import com.outbrain.ob1k.concurrent.config.Configuration;
+import com.outbrain.ob1k.concurrent.monitor.InstrumentedExecutorService;
+import com.outbrain.ob1k.concurrent.monitor.InstrumentedScheduler;
+import com.outbrain.ob1k.concurrent.monitor.TaskStats;
+import com.outbrain.swinfra.metrics.api.Gauge;
+import com.outbrain.swinfra.metrics.api.MetricFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * register gauges on the saturation of the futures' executors and scheduler, when they are instrumented
+ * (see ob1k.instrumentation.enabled).
+ */
+public class ExecutorGaugeBuilder {
+  public static void registerExecutorGauges(final MetricFactory factory) {
+    // without instrumentation there is nothing to register, the executors are not created just to find it out.
+    if (factory == null || !Configuration.isInstrumentationEnabled()) {
+      return;
+    }
+
+    final ExecutorService executor = ComposableFutures.getExecutor();
+    final ExecutorService blockingExecutor = ComposableFutures.getBlockingExecutor();
+    final Scheduler scheduler = ComposableFutures.getScheduler();
+
+    if (executor instanceof InstrumentedExecutorService) {
+      registerTaskGauges(factory, ((InstrumentedExecutorService) executor).getStats(), "ob1k-main");
+    }
+
+    if (blockingExecutor != executor && blockingExecutor instanceof InstrumentedExecutorService) {
+      registerTaskGauges(factory, ((InstrumentedExecutorService) blockingExecutor).getStats(), "ob1k-blocking");
+    }
+
+    if (scheduler instanceof InstrumentedScheduler) {
+      registerTaskGauges(factory, ((InstrumentedScheduler) scheduler).getStats(), "ob1k-scheduler");
+    }
+  }
+
+  public static void registerTaskGauges(final MetricFactory factory, final TaskStats stats, final String executorName) {
+    if (factory == null || stats == null) {
+      return;
+    }
+
+    final String component = "Executor-" + executorName;
+    factory.registerGauge(component, "pending", new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return stats.getPending();
+      }
+    });
+
+    factory.registerGauge(component, "active", new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return stats.getActive();
+      }
+    });
+
+    factory.registerGauge(component, "completed", new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return stats.getCompleted();
+      }
+    });
+
+    factory.registerGauge(component, "rejected", new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return stats.getRejected();
+      }
+    });
+
+    factory.registerGauge(component, "slowTasks", new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return stats.getSlow();
+      }
+    });
+
+    for (final int percentile : new int[] {50, 99}) {
+      factory.registerGauge(component, "queueLatencyP" + percentile + "Micros", new Gauge<Long>() {
+        @Override
+        public Long getValue() {
+          return stats.getQueueLatencyPercentile(percentile, TimeUnit.MICROSECONDS);
+        }
+      });
+
+      factory.registerGauge(component, "executionTimeP" + percentile + "Micros", new Gauge<Long>() {
+        @Override
+        public Long getValue() {
+          return stats.getExecutionTimePercentile(percentile, TimeUnit.MICROSECONDS);
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package com.outbrain.ob1k.common.metrics;
+
+import com.outbrain.ob1k.concurrent.limiter.ConcurrencyLimiter;
+import com.outbrain.ob1k.concurrent.limiter.FutureLimiter;
+import com.outbrain.ob1k.concurrent.limiter.RateLimiter;
+import com.outbrain.swinfra.metrics.api.Gauge;
+import com.outbrain.swinfra.metrics.api.MetricFactory;
+
+/**
+ * register gauges on the queue depth of a limiter, and on the current limit and in flight actions of an
+ * adaptive concurrency limiter.
+ */
+public class LimiterGaugeBuilder {
+  public static void registerLimiterGauges(final MetricFactory factory, final FutureLimiter limiter, final String limiterName) {
+    if (factory == null || limiter == null) {
+      return;
+    }
+
+    final String component = "Limiter-" + limiterName;
+    factory.registerGauge(component, "queueDepth", new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return limiter.getQueueDepth();
+      }
+    });
+
+    if (limiter instanceof ConcurrencyLimiter) {
+      final ConcurrencyLimiter concurrencyLimiter = (ConcurrencyLimiter) limiter;
+      factory.registerGauge(component, "limit", new Gauge<Integer>() {
+        @Override
+        public Integer getValue() {
+          return concurrencyLimiter.getLimit();
+        }
+      });
+
+      factory.registerGauge(component, "inFlight", new Gauge<Integer>() {
+        @Override
+        public Integer getValue() {
+          return concurrencyLimiter.getInFlight();
+        }
+      });
+    } else if (limiter instanceof RateLimiter) {
+      final RateLimiter rateLimiter = (RateLimiter) limiter;
+      factory.registerGauge(component, "permitsPerSecond", new Gauge<Double>() {
+        @Override
+        public Double getValue() {
+          return rateLimiter.getPermitsPerSecond();
+        }
+      });
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package com.outbrain.ob1k.common.metrics;
+
+import com.outbrain.ob1k.concurrent.retry.RetryBudget;
+import com.outbrain.swinfra.metrics.api.Gauge;
+import com.outbrain.swinfra.metrics.api.MetricFactory;
+
+/**
+ * register gauges on the requests, the retries and the retries denied by an exhausted retry budget.
+ */
+public class RetryGaugeBuilder {
+  public static void registerBudgetGauges(final MetricFactory factory, final RetryBudget budget, final String budgetName) {
+    if (factory == null || budget == null) {
+      return;
+    }
+
+    final String component = "RetryBudget-" + budgetName;
+    factory.registerGauge(component, "requests", new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return budget.getRequests();
+      }
+    });
+
+    factory.registerGauge(component, "retries", new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return budget.getRetries();
+      }
+    });
+
+    factory.registerGauge(component, "exhausted", new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return budget.getExhausted();
+      }
+    });
+  }
+}
@@ -10,6 +10,10 @@ import rx.Observable;
  * result can be either single or a part of a stream.
  */
 public interface ResponseHandler {
+  /**
+   * @param response a future that belongs to the request alone, it is cancelled once the response is not needed
+   *                 anymore(e.g. the request timed out or the client went away).
+   */
   void handleAsyncResponse(ComposableFuture<Object> response);
   void handleStreamResponse(Observable<Object> response, boolean rawStream);
 }
@@ -9,6 +9,7 @@ import com.outbrain.ob1k.common.marshalling.RequestMarshallerRegistry;
 import com.outbrain.ob1k.server.Server;
 import com.outbrain.ob1k.server.StaticPathResolver;
 import com.outbrain.ob1k.server.netty.NettyServer;
+import com.outbrain.ob1k.server.netty.ServerTransport;
 import com.outbrain.ob1k.server.registry.ServiceRegistry;
 import com.outbrain.ob1k.server.registry.ServiceRegistryView;
 import com.outbrain.swinfra.metrics.api.MetricFactory;
@@ -54,6 +55,7 @@ public abstract class AbstractServerBuilder {
   private int threadPoolMinSize;
   private int threadPoolMaxSize;
   private MetricFactory metricFactory;
+  private ServerTransport transport = ServerTransport.DEFAULT;
   private final List<Server.Listener> listeners = new LinkedList<>();
   private final Deque<ServiceDescriptor> serviceDescriptors = new LinkedList<>();
   private final Set<String> staticFolders = new HashSet<>();
@@ -74,7 +76,7 @@ public abstract class AbstractServerBuilder {
     final StaticPathResolver staticResolver = new StaticPathResolver(contextPath, staticFolders, staticMappings, staticResources);
 
     final NettyServer server = new NettyServer(port, registry, marshallerRegistry, staticResolver,  activeChannels, contextPath,
-            appName, acceptKeepAlive, supportZip, metricFactory, maxContentLength, requestTimeoutMs);
+            appName, acceptKeepAlive, supportZip, metricFactory, maxContentLength, requestTimeoutMs, transport);
     server.addListeners(listeners);
     return server;
   }
@@ -148,6 +150,11 @@ public abstract class AbstractServerBuilder {
       metricFactory = metricFactoryToUse;
     }
 
+    @Override
+    public void setTransport(final ServerTransport transportToUse) {
+      transport = transportToUse;
+    }
+
     @Override
     public void addListener(final Server.Listener listener) {
       listeners.add(listener);
@@ -304,6 +311,11 @@ public abstract class AbstractServerBuilder {
       return metricFactory;
     }
 
+    @Override
+    public ServerTransport getTransport() {
+      return transport;
+    }
+
     @Override
     public List<Server.Listener> getListeners() {
       return unmodifiableList(listeners);
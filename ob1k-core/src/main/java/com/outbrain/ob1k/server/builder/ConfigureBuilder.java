@@ -68,6 +68,44 @@ public class ConfigureBuilder<B extends ConfigureBuilder<B>> {
     return self();
   }
 
+  /**
+   * use the native epoll transport on linux, falls back to NIO when it is not available.
+   */
+  public B useNativeTransport(final boolean nativeTransport) {
+    state.setTransport(state.getTransport().withNativeTransport(nativeTransport));
+    return self();
+  }
+
+  /**
+   * @param acceptors the number of threads accepting connections, more than one requires the native transport.
+   * @param workers the number of threads serving the connections, zero for netty's default.
+   */
+  public B configureEventLoops(final int acceptors, final int workers) {
+    state.setTransport(state.getTransport().withEventLoopThreads(acceptors, workers));
+    return self();
+  }
+
+  public B socketOptions(final int backlog, final int receiveBufferSize, final int sendBufferSize) {
+    state.setTransport(state.getTransport().withSocketOptions(backlog, receiveBufferSize, sendBufferSize));
+    return self();
+  }
+
+  /**
+   * TCP fast open with the given queue length, native transport only.
+   */
+  public B tcpFastOpen(final int queueLength) {
+    state.setTransport(state.getTransport().withTcpFastOpen(queueLength));
+    return self();
+  }
+
+  /**
+   * TCP quick ack on the accepted connections, native transport only.
+   */
+  public B tcpQuickAck(final boolean quickAck) {
+    state.setTransport(state.getTransport().withTcpQuickAck(quickAck));
+    return self();
+  }
+
   public B addListener(final Server.Listener listener) {
     state.addListener(listener);
     return self();
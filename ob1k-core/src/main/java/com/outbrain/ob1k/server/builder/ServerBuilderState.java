@@ -4,6 +4,7 @@ import com.outbrain.ob1k.HttpRequestMethodType;
 import com.outbrain.ob1k.Service;
 import com.outbrain.ob1k.common.filters.ServiceFilter;
 import com.outbrain.ob1k.server.Server;
+import com.outbrain.ob1k.server.netty.ServerTransport;
 import com.outbrain.ob1k.server.registry.ServiceRegistryView;
 import com.outbrain.swinfra.metrics.api.MetricFactory;
 
@@ -38,6 +39,8 @@ public interface ServerBuilderState {
 
   void setMetricFactory(final MetricFactory metricFactory);
 
+  void setTransport(final ServerTransport transport);
+
   void addListener(final Server.Listener listener);
 
   void addStaticFolder(final String folder);
@@ -80,6 +83,8 @@ public interface ServerBuilderState {
 
   MetricFactory getMetricFactory();
 
+  ServerTransport getTransport();
+
   List<Server.Listener> getListeners();
 
   Set<String> getStaticFolders();
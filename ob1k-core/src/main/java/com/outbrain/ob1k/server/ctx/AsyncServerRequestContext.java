@@ -1,6 +1,9 @@
 package com.outbrain.ob1k.server.ctx;
 
 import com.outbrain.ob1k.AsyncRequestContext;
+import com.outbrain.ob1k.concurrent.scope.FutureScope;
+
+import java.util.concurrent.Executor;
 
 /**
  * Created by aronen on 6/9/14.
@@ -9,4 +12,16 @@ import com.outbrain.ob1k.AsyncRequestContext;
  */
 public interface AsyncServerRequestContext extends ServerRequestContext, AsyncRequestContext {
   AsyncServerRequestContext nextPhase();
+
+  /**
+   * @return the scope of the request, futures forked in it are cancelled once the response is done or the
+   * client disconnects.
+   */
+  FutureScope getScope();
+
+  /**
+   * @return an executor for non-blocking continuations of the request, that keeps them on the thread of its
+   * connection when there is one.
+   */
+  Executor getEventLoopExecutor();
 }
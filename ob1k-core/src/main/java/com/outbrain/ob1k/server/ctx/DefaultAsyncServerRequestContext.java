@@ -2,25 +2,72 @@ package com.outbrain.ob1k.server.ctx;
 
 import com.outbrain.ob1k.Request;
 import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.scope.FutureScope;
+import com.outbrain.ob1k.server.netty.NettyRequest;
 import com.outbrain.ob1k.server.registry.endpoints.AsyncServerEndpoint;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * Created by aronen on 6/9/14.
  *
  * the actual async context for the server side call chain.
  */
 public class DefaultAsyncServerRequestContext extends AbstractServerRequestContext<AsyncServerEndpoint> implements AsyncServerRequestContext {
+  // stands in for the scope of a request that completed before anything asked for one.
+  private static final FutureScope CLOSED_SCOPE = new FutureScope(FutureScope.FailurePolicy.COLLECT_ALL);
+  static {
+    CLOSED_SCOPE.close();
+  }
+
+  // shared by all the phases of the request, created on first use since most requests never fork anything.
+  private final AtomicReference<FutureScope> scope;
+
   public DefaultAsyncServerRequestContext(final Request request, final AsyncServerEndpoint endpoint, final Object[] params) {
-    super(request, endpoint, params);
+    this(request, endpoint, params, 0, new AtomicReference<FutureScope>());
   }
 
-  private DefaultAsyncServerRequestContext(final Request request, final AsyncServerEndpoint endpoint, final Object[] params, final int executionIndex) {
+  private DefaultAsyncServerRequestContext(final Request request, final AsyncServerEndpoint endpoint, final Object[] params,
+                                           final int executionIndex, final AtomicReference<FutureScope> scope) {
     super(request, endpoint, params, executionIndex);
+    this.scope = scope;
   }
 
   @Override
   public AsyncServerRequestContext nextPhase() {
-    return new DefaultAsyncServerRequestContext(request, endpoint, params, executionIndex + 1);
+    return new DefaultAsyncServerRequestContext(request, endpoint, params, executionIndex + 1, scope);
+  }
+
+  @Override
+  public FutureScope getScope() {
+    final FutureScope current = scope.get();
+    if (current != null) {
+      return current;
+    }
+
+    final FutureScope created = new FutureScope(FutureScope.FailurePolicy.COLLECT_ALL);
+    return scope.compareAndSet(null, created) ? created : scope.get();
+  }
+
+  /**
+   * cancels whatever was forked in the scope of the request, once the response is done.
+   * a scope asked for later on is already closed.
+   */
+  public void closeScope() {
+    if (!scope.compareAndSet(null, CLOSED_SCOPE)) {
+      scope.get().close();
+    }
+  }
+
+  @Override
+  public Executor getEventLoopExecutor() {
+    if (request instanceof NettyRequest) {
+      return ((NettyRequest) request).getEventLoopExecutor();
+    }
+
+    return ComposableFutures.getExecutor();
   }
 
   @Override
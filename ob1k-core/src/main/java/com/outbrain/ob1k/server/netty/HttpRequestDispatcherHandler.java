@@ -10,8 +10,11 @@ import static io.netty.handler.codec.http.HttpResponseStatus.OK;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 
 import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+import com.outbrain.ob1k.common.concurrent.DeadlineHeader;
 import com.outbrain.ob1k.common.marshalling.ChunkHeader;
 import com.outbrain.ob1k.concurrent.*;
 import com.outbrain.ob1k.server.ResponseHandler;
@@ -37,7 +40,8 @@ import io.netty.channel.group.ChannelGroup;
 import io.netty.util.CharsetUtil;
 import rx.Observable;
 import rx.Subscriber;
-import rx.Subscription;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
 
 /**
  * User: aronen
@@ -47,6 +51,9 @@ import rx.Subscription;
 public class HttpRequestDispatcherHandler extends SimpleChannelInboundHandler<Object> {
   private static final Logger logger = LoggerFactory.getLogger(HttpRequestDispatcherHandler.class);
 
+  // the number of stream chunks that may be on their way to the socket, more are requested as they are written.
+  private static final int STREAM_WINDOW = 16;
+
   private final StaticPathResolver staticResolver;
 
   private final ServiceDispatcher dispatcher;
@@ -62,8 +69,9 @@ public class HttpRequestDispatcherHandler extends SimpleChannelInboundHandler<Ob
   private final Counter unexpectedErrors;
   private final long requestTimeoutMs;
 
-  private io.netty.handler.codec.http.HttpRequest request;
-  private Subscription subscription;
+  // the body of the request being read, while it is streamed to its endpoint.
+  private RequestBodyStream bodyStream;
+  private ResponseQueue responses;
 
   public HttpRequestDispatcherHandler(final String contextPath, final ServiceDispatcher dispatcher,
                                       final StaticPathResolver staticResolver, final RequestMarshallerRegistry marshallerRegistry,
@@ -96,84 +104,185 @@ public class HttpRequestDispatcherHandler extends SimpleChannelInboundHandler<Ob
     }
   }
 
+  @Override
+  public void handlerAdded(final ChannelHandlerContext ctx) {
+    responses = new ResponseQueue(ctx);
+  }
+
+  @Override
+  public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+    responses.readStarted();
+    super.channelRead(ctx, msg);
+  }
+
   @Override
   public void channelReadComplete(final io.netty.channel.ChannelHandlerContext ctx) {
-    ctx.flush();
+    responses.readCompleted();
   }
 
 
   @Override
   protected void channelRead0(final ChannelHandlerContext ctx, final Object msg) throws IOException {
-    if (msg instanceof HttpRequest) {
-      request = (HttpRequest) msg;
-
-      final String uri = request.getUri();
-      final QueryStringDecoder queryStringDecoder = new QueryStringDecoder(uri);
-      final String path = queryStringDecoder.path();
-      if (!path.startsWith(contextPath)) {
-        handleNotFound(uri, ctx);
-        return;
+    if (bodyStream != null && msg instanceof HttpContent) {
+      bodyStream.onContent(((HttpContent) msg).content());
+      if (msg instanceof LastHttpContent) {
+        bodyStream.onEnd();
+        bodyStream = null;
       }
+      return;
+    }
 
-      if (staticResolver.isStaticPath(uri)) {
-        ctx.fireChannelRead(msg);
-        return;
-      }
+    if (!(msg instanceof HttpRequest)) {
+      // content that belongs to no request being read, nothing waits for it.
+      return;
+    }
 
-      if (is100ContinueExpected(request)) {
-        ctx.writeAndFlush(new DefaultFullHttpResponse(HTTP_1_1, CONTINUE));
-      }
+    final HttpRequest request = (HttpRequest) msg;
+    final String uri = request.getUri();
+    final QueryStringDecoder queryStringDecoder = new QueryStringDecoder(uri);
+    final String path = queryStringDecoder.path();
+    if (!path.startsWith(contextPath)) {
+      handleNotFound(uri, responses.add(request), ctx);
+      return;
+    }
+
+    if (staticResolver.isStaticPath(uri)) {
+      handleStatic(request, ctx);
+      return;
+    }
+
+    // pipelined requests are served concurrently, their responses are written in the order of the requests.
+    final ResponseQueue.Slot slot = responses.add(request);
+    if (is100ContinueExpected(request)) {
+      slot.write(new DefaultFullHttpResponse(HTTP_1_1, CONTINUE));
     }
 
     if (msg instanceof LastHttpContent) {
-      final HttpContent req = (HttpContent) msg;
+      // the whole request was aggregated in front of this handler.
+      dispatch(ctx, slot, new NettyRequest(request, (HttpContent) msg, ctx.channel(), contextPath), null);
+      return;
+    }
 
-      try {
-        dispatcher.callServiceRequest(new NettyRequest(request, req, ctx.channel(), contextPath), new ResponseHandler() {
-          @Override
-          public void handleAsyncResponse(final ComposableFuture<Object> response) {
-            HttpRequestDispatcherHandler.this.handleAsyncResponse(ctx, response);
-          }
+    // the aggregator let the body through, the endpoint reads it while it arrives.
+    final RequestBodyStream stream = new RequestBodyStream(ctx.channel());
+    bodyStream = stream;
+    if (!dispatch(ctx, slot, new NettyRequest(request, stream.toObservable(), ctx.channel(), contextPath), stream)) {
+      stream.discard();
+    }
+  }
 
-          @Override
-          public void handleStreamResponse(final Observable<Object> response, final boolean rawStream) {
-            HttpRequestDispatcherHandler.this.handleStreamResponse(ctx, response, rawStream);
-          }
-        });
-      } catch (final IOException error) {
-        handleInternalError(error, request, ctx);
-      } catch (final Exception error) {
-        handleUnexpectedRequest(error, request, ctx);
+  /**
+   * reserves the place of the response to a request that is served by another handler.
+   */
+  ResponseQueue.Slot addResponse(final HttpRequest request, final ChannelHandlerContext writer) {
+    return responses.add(request, writer);
+  }
+
+  private void handleStatic(final HttpRequest request, final ChannelHandlerContext ctx) {
+    // static requests the static handler let through, their files are written in front of the compressor as well.
+    final ChannelHandlerContext staticCtx = ctx.pipeline().context(HttpStaticFileServerHandler.class);
+    final ResponseQueue.Slot staticSlot = responses.add(request, staticCtx);
+    try {
+      ((HttpStaticFileServerHandler) staticCtx.handler()).serve(request, staticSlot, ctx.channel());
+    } catch (final Exception error) {
+      handleInternalError(error, staticSlot, ctx);
+    }
+  }
+
+  /**
+   * @return false if the request was answered without calling the service.
+   */
+  private boolean dispatch(final ChannelHandlerContext ctx, final ResponseQueue.Slot slot,
+                           final NettyRequest nettyRequest, final RequestBodyStream stream) throws IOException {
+    // the caller's deadline, capped by the local request timeout.
+    Deadline deadline = DeadlineHeader.parse(slot.request.headers().get(DeadlineHeader.NAME));
+    if (requestTimeoutMs > 0) {
+      deadline = Deadline.after(requestTimeoutMs, TimeUnit.MILLISECONDS).earliest(deadline);
+    }
+
+    if (deadline != null && deadline.isExpired()) {
+      // the caller already gave up on the response, don't waste any work on it.
+      if (requestTimeoutErrors != null) {
+        requestTimeoutErrors.inc();
+      }
+      handleInternalError(new RequestTimeoutException("request arrived after its deadline."), slot, ctx);
+      return false;
+    }
+
+    // the service and every call it makes run within the deadline of the request.
+    final Deadline requestDeadline = deadline;
+    final AsyncContext previous = deadline != null ? deadline.attach() : null;
+    try {
+      dispatcher.callServiceRequest(nettyRequest, new ResponseHandler() {
+        @Override
+        public void handleAsyncResponse(final ComposableFuture<Object> response) {
+          HttpRequestDispatcherHandler.this.handleAsyncResponse(ctx, slot, response, requestDeadline, stream);
+        }
+
+        @Override
+        public void handleStreamResponse(final Observable<Object> response, final boolean rawStream) {
+          HttpRequestDispatcherHandler.this.handleStreamResponse(ctx, slot, response, rawStream, stream);
+        }
+      });
+    } catch (final IOException error) {
+      handleInternalError(error, slot, ctx);
+      return false;
+    } catch (final Exception error) {
+      handleUnexpectedRequest(error, slot, ctx);
+      return false;
+    } finally {
+      if (previous != null) {
+        AsyncContext.restore(previous);
       }
     }
+
+    return true;
   }
 
-  public void handleAsyncResponse(final ChannelHandlerContext ctx, final ComposableFuture<Object> response) {
+  private void handleAsyncResponse(final ChannelHandlerContext ctx, final ResponseQueue.Slot slot,
+                                   final ComposableFuture<Object> response, final Deadline deadline,
+                                   final RequestBodyStream stream) {
     final ComposableFuture<Object> finalResponse;
-    if (requestTimeoutMs > 0) {
-      final ComposableFuture<Object> timeout = ComposableFutures.build(new Producer<Object>() {
+    if (deadline != null) {
+      final ComposableFuture<Object> timeout = ComposableFutures.buildCancellable(new CancellableProducer<Object>() {
         @Override
-        public void produce(final Consumer<Object> consumer) {
-          ctx.channel().eventLoop().schedule(new Runnable() {
+        public CancellationToken produce(final Consumer<Object> consumer) {
+          final ScheduledFuture<?> timer = ctx.channel().eventLoop().schedule(new Runnable() {
             @Override
             public void run() {
               consumer.consume(Try.fromError(new RequestTimeoutException("calculating response took too long.")));
             }
-          }, requestTimeoutMs, TimeUnit.MILLISECONDS);
+          }, deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+
+          return new CancellationToken() {
+            @Override
+            public boolean cancel(final boolean mayInterrupt) {
+              return timer.cancel(mayInterrupt);
+            }
+          };
         }
       });
 
+      // the loser is cancelled: a timed out response cancels the request scope and a timely one drops the timer.
+      // the response is the request's own future, the one the service returned is never cancelled from here.
       finalResponse = ComposableFutures.any(response, timeout);
     } else {
       finalResponse = response;
     }
 
+    slot.pendingResponse = finalResponse;
     finalResponse.consume(new Consumer<Object>() {
       @Override
       public void consume(final Try<Object> result) {
+        slot.pendingResponse = null;
+        if (stream != null) {
+          // whatever the service didn't read of the body is not needed anymore.
+          stream.discard();
+        }
+
         try {
           if (result.isSuccess()) {
-            handleOK(result.getValue(), request, ctx);
+            handleOK(result.getValue(), slot, ctx);
           } else {
             final Throwable error = result.getError();
             if (error instanceof RequestTimeoutException) {
@@ -181,10 +290,10 @@ public class HttpRequestDispatcherHandler extends SimpleChannelInboundHandler<Ob
                 requestTimeoutErrors.inc();
               }
             }
-            handleInternalError(error, request, ctx);
+            handleInternalError(error, slot, ctx);
           }
         } catch (final IOException error) {
-          handleInternalError(error, request, ctx);
+          handleInternalError(error, slot, ctx);
         }
       }
     });
@@ -192,23 +301,39 @@ public class HttpRequestDispatcherHandler extends SimpleChannelInboundHandler<Ob
 
   }
 
-  public void handleStreamResponse(final ChannelHandlerContext ctx, final Observable<Object> response, final boolean rawStream) {
+  private void handleStreamResponse(final ChannelHandlerContext ctx, final ResponseQueue.Slot slot,
+                                    final Observable<Object> response, final boolean rawStream,
+                                    final RequestBodyStream stream) {
     // first send the packet containing the headers.
-    sendStreamHeaders(ctx, rawStream);
-    subscription = response.subscribe(new Subscriber<Object>() {
+    sendStreamHeaders(slot, rawStream);
+    slot.subscription = response.subscribe(new Subscriber<Object>() {
+      // pull the stream as fast as the client reads it, so a slow client doesn't pile up chunks in memory.
+      // streams that ignore backpressure keep pushing as before.
+      @Override
+      public void onStart() {
+        if (stream != null) {
+          // however the response ends, whatever the service didn't read of the body is not needed anymore.
+          add(Subscriptions.create(new Action0() {
+            @Override
+            public void call() {
+              stream.discard();
+            }
+          }));
+        }
+
+        request(STREAM_WINDOW);
+      }
+
       @Override
       public void onCompleted() {
-        final LastHttpContent chunk = new DefaultLastHttpContent();
-        final ChannelFuture channelFuture = ctx.writeAndFlush(chunk);
-        channelFuture.addListener(ChannelFutureListener.CLOSE);
+        writeLast(new DefaultLastHttpContent(), slot);
       }
 
       @Override
       public void onError(final Throwable e) {
         final String content = rawStream ? e.toString() : ChunkHeader.ERROR_HEADER + e.toString();
         final ByteBuf buf = Unpooled.copiedBuffer(content, CharsetUtil.UTF_8);
-        final LastHttpContent chunk = new DefaultLastHttpContent(buf);
-        ctx.writeAndFlush(chunk).addListener(ChannelFutureListener.CLOSE);
+        writeLast(new DefaultLastHttpContent(buf), slot);
       }
 
       @Override
@@ -219,7 +344,16 @@ public class HttpRequestDispatcherHandler extends SimpleChannelInboundHandler<Ob
         }
 
         try {
-          sendStreamChunk(object, ctx, rawStream);
+          sendStreamChunk(object, ctx, slot, rawStream).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(final ChannelFuture future) throws Exception {
+              if (future.isSuccess()) {
+                request(1);
+              } else {
+                unsubscribe();
+              }
+            }
+          });
         } catch (final IOException e) {
           unsubscribe();
           onError(e);
@@ -228,25 +362,24 @@ public class HttpRequestDispatcherHandler extends SimpleChannelInboundHandler<Ob
     });
   }
 
-  private ChannelFuture sendStreamChunk(final Object message, final ChannelHandlerContext ctx, final boolean rawStream) throws IOException {
-    final RequestMarshaller marshaller = getMarshaller(request);
-    final HttpContent chunk = marshaller.marshallResponsePart(message, OK, rawStream);
+  private ChannelFuture sendStreamChunk(final Object message, final ChannelHandlerContext ctx,
+                                        final ResponseQueue.Slot slot, final boolean rawStream) throws IOException {
+    final RequestMarshaller marshaller = getMarshaller(slot.request);
+    final HttpContent chunk = marshaller.marshallResponsePart(message, OK, rawStream, ctx.alloc());
 
-    return ctx.writeAndFlush(chunk);
+    return slot.write(chunk);
   }
 
-  private ChannelFuture sendStreamHeaders(final ChannelHandlerContext ctx, final boolean rawStream) {
-    final RequestMarshaller marshaller = getMarshaller(request);
+  private ChannelFuture sendStreamHeaders(final ResponseQueue.Slot slot, final boolean rawStream) {
+    final RequestMarshaller marshaller = getMarshaller(slot.request);
     final HttpResponse res = marshaller.marshallResponseHeaders(rawStream);
 
-    return ctx.writeAndFlush(res);
+    return slot.write(res);
   }
 
   @Override
   public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) throws Exception {
-    if (subscription != null) {
-      subscription.unsubscribe();
-    }
+    responses.close();
 
     if (unexpectedErrors != null) {
       unexpectedErrors.inc();
@@ -258,8 +391,12 @@ public class HttpRequestDispatcherHandler extends SimpleChannelInboundHandler<Ob
 
   @Override
   public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
-    if (subscription != null) {
-      subscription.unsubscribe();
+    // nobody is waiting for the responses that were not written yet, they are dropped and cancelled.
+    responses.close();
+
+    if (bodyStream != null) {
+      bodyStream.onError(new ClosedChannelException());
+      bodyStream = null;
     }
 
     super.channelInactive(ctx);
@@ -267,21 +404,19 @@ public class HttpRequestDispatcherHandler extends SimpleChannelInboundHandler<Ob
 
   @Override
   public void channelUnregistered(final ChannelHandlerContext ctx) throws Exception {
-    if (subscription != null) {
-      subscription.unsubscribe();
-    }
+    responses.close();
 
     super.channelUnregistered(ctx);
   }
 
-  private void handleInternalError(final Throwable error, final HttpRequest request, final ChannelHandlerContext ctx) {
+  private void handleInternalError(final Throwable error, final ResponseQueue.Slot slot, final ChannelHandlerContext ctx) {
     if (internalErrors != null) {
       internalErrors.inc();
     }
 
-    logger.warn("Internal error while processing URI: " + request.getUri(), error);
+    logger.warn("Internal error while processing URI: " + slot.request.getUri(), error);
     try {
-      handleResponse(error.toString(), INTERNAL_SERVER_ERROR, request, ctx);
+      handleResponse(error.toString(), INTERNAL_SERVER_ERROR, slot, ctx);
     } catch (final IOException e) {
       logger.warn("cant create a proper error message", e);
 
@@ -289,69 +424,78 @@ public class HttpRequestDispatcherHandler extends SimpleChannelInboundHandler<Ob
       final FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, INTERNAL_SERVER_ERROR, buf);
       response.headers().set(CONTENT_TYPE, ContentType.JSON.responseEncoding());
 
-      handleResponse(response, request, ctx);
+      handleResponse(response, slot, ctx);
     }
   }
 
-  private void handleOK(final Object res, final HttpRequest request, final ChannelHandlerContext ctx) throws IOException {
+  private void handleOK(final Object res, final ResponseQueue.Slot slot, final ChannelHandlerContext ctx) throws IOException {
     if (res instanceof NettyResponse) {
-      handleResponse((NettyResponse) res, request, ctx);
+      handleResponse((NettyResponse) res, slot, ctx);
     } else {
-      handleResponse(res, OK, request, ctx);
+      handleResponse(res, OK, slot, ctx);
     }
   }
 
-  private void handleResponse(final NettyResponse nettyResponse, final HttpRequest request, final ChannelHandlerContext ctx) throws IOException {
-    final RequestMarshaller marshaller = getMarshaller(request);
-    final FullHttpResponse response = nettyResponse.toFullHttpResponse(marshaller);
-    handleResponse(response, request, ctx);
+  private void handleResponse(final NettyResponse nettyResponse, final ResponseQueue.Slot slot, final ChannelHandlerContext ctx) throws IOException {
+    final RequestMarshaller marshaller = getMarshaller(slot.request);
+    final FullHttpResponse response = nettyResponse.toFullHttpResponse(marshaller, ctx.alloc());
+    handleResponse(response, slot, ctx);
   }
 
-  private void handleResponse(final FullHttpResponse response, final HttpRequest request, final ChannelHandlerContext ctx) {
-    final boolean keepAlive = isKeepAlive(request);
+  private void handleResponse(final FullHttpResponse response, final ResponseQueue.Slot slot, final ChannelHandlerContext ctx) {
+    final boolean keepAlive = isKeepAlive(slot.request);
     if (acceptKeepAlive && keepAlive) {
       response.headers().set(CONTENT_LENGTH, response.content().readableBytes());
       // Add keep alive header as per:
       // - http://www.w3.org/Protocols/HTTP/1.1/draft-ietf-http-v11-spec-01.html#Connection
       response.headers().set(CONNECTION, KEEP_ALIVE);
-      ctx.writeAndFlush(response);
-    } else {
-      ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    }
+
+    writeLast(response, slot);
+  }
+
+  /**
+   * writes the end of the response, and closes the connection unless it is kept alive for the next requests.
+   */
+  private void writeLast(final HttpObject message, final ResponseQueue.Slot slot) {
+    final ChannelFuture written = slot.writeLast(message);
+    if (!acceptKeepAlive || !isKeepAlive(slot.request)) {
+      written.addListener(ChannelFutureListener.CLOSE);
     }
   }
 
-  private void handleResponse(final Object message, final HttpResponseStatus status, final HttpRequest request, final ChannelHandlerContext ctx) throws IOException {
-    final RequestMarshaller marshaller = getMarshaller(request);
-    final FullHttpResponse response = marshaller.marshallResponse(message, status);
-    handleResponse(response, request, ctx);
+  private void handleResponse(final Object message, final HttpResponseStatus status, final ResponseQueue.Slot slot, final ChannelHandlerContext ctx) throws IOException {
+    final RequestMarshaller marshaller = getMarshaller(slot.request);
+    final FullHttpResponse response = marshaller.marshallResponse(message, status, ctx.alloc());
+    handleResponse(response, slot, ctx);
   }
 
   private RequestMarshaller getMarshaller(final HttpRequest request) {
     return marshallerRegistry.getMarshaller(request.headers().get(CONTENT_TYPE));
   }
 
-  private void handleUnexpectedRequest(final Exception error, final HttpRequest request, final ChannelHandlerContext ctx) throws IOException {
+  private void handleUnexpectedRequest(final Exception error, final ResponseQueue.Slot slot, final ChannelHandlerContext ctx) throws IOException {
     if (unexpectedErrors != null) {
       unexpectedErrors.inc();
     }
 
     if (error instanceof IllegalArgumentException) {
       // stack-trace not interesting, as the exception probably because of invocation failure
-      logger.info("The requested URI isn't supported: {}", request.getUri());
+      logger.info("The requested URI isn't supported: {}", slot.request.getUri());
       logger.debug("Invocation error: ", error);
     } else {
-      logger.info("The requested URI isn't supported: {}", request.getUri(), error);
+      logger.info("The requested URI isn't supported: {}", slot.request.getUri(), error);
     }
-    handleResponse(error.toString(), HttpResponseStatus.NOT_IMPLEMENTED, request, ctx);
+    handleResponse(error.toString(), HttpResponseStatus.NOT_IMPLEMENTED, slot, ctx);
   }
 
-  private void handleNotFound(final String uri, final ChannelHandlerContext ctx) throws IOException {
+  private void handleNotFound(final String uri, final ResponseQueue.Slot slot, final ChannelHandlerContext ctx) throws IOException {
     if (notFoundErrors != null) {
       notFoundErrors.inc();
     }
 
     logger.info("Requested URI was not found: {}", uri);
-    handleResponse(uri + " is not a valid request path", HttpResponseStatus.NOT_FOUND, request, ctx);
+    handleResponse(uri + " is not a valid request path", HttpResponseStatus.NOT_FOUND, slot, ctx);
   }
 
   @Override
@@ -4,6 +4,8 @@ import com.outbrain.ob1k.server.StaticPathResolver;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.*;
 import io.netty.handler.codec.http.*;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.stream.ChunkedStream;
 import io.netty.util.CharsetUtil;
 
 import javax.activation.MimetypesFileTypeMap;
@@ -69,6 +71,9 @@ import static io.netty.handler.codec.http.HttpVersion.*;
  * Date:               Tue, 01 Mar 2011 22:44:28 GMT
  *
  * </pre>
+ *
+ * the responses are written through the response queue of the {@link HttpRequestDispatcherHandler},
+ * in the order of the pipelined requests.
  */
 @Sharable
 public class HttpStaticFileServerHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
@@ -101,13 +106,22 @@ public class HttpStaticFileServerHandler extends SimpleChannelInboundHandler<Ful
 
   @Override
   public void channelRead0(final ChannelHandlerContext ctx, final FullHttpRequest request) throws Exception {
+    // written from here, the files skip the compressor behind this handler.
+    final ResponseQueue.Slot slot = ctx.pipeline().get(HttpRequestDispatcherHandler.class).addResponse(request, ctx);
+    serve(request, slot, ctx.channel());
+  }
+
+  /**
+   * writes the response to the request into its slot.
+   */
+  void serve(final HttpRequest request, final ResponseQueue.Slot slot, final Channel channel) throws Exception {
     if (!request.getDecoderResult().isSuccess()) {
-      sendError(ctx, BAD_REQUEST);
+      sendError(slot, BAD_REQUEST);
       return;
     }
 
     if (request.getMethod() != GET) {
-      sendError(ctx, METHOD_NOT_ALLOWED);
+      sendError(slot, METHOD_NOT_ALLOWED);
       return;
     }
 
@@ -119,7 +133,7 @@ public class HttpStaticFileServerHandler extends SimpleChannelInboundHandler<Ful
       // does not have milliseconds
       final long lastDownloadTime = dateFormatter.parse(ifModifiedSince).getTime();
       if (startupTime < lastDownloadTime) {
-        sendNotModified(ctx);
+        sendNotModified(slot);
         return;
       }
 
@@ -129,7 +143,7 @@ public class HttpStaticFileServerHandler extends SimpleChannelInboundHandler<Ful
     final String cleanUri = new QueryStringDecoder(request.getUri()).path();
     final URLConnection connection = getURLConnection(cleanUri);
     if (connection == null) {
-      sendError(ctx, NOT_FOUND);
+      sendError(slot, NOT_FOUND);
       return;
     }
 
@@ -137,7 +151,7 @@ public class HttpStaticFileServerHandler extends SimpleChannelInboundHandler<Ful
     try {
       stream = connection.getInputStream();
     } catch (final IOException e1) {
-      sendError(ctx, NOT_FOUND);
+      sendError(slot, NOT_FOUND);
       return;
     }
     final long fileLength = connection.getContentLength();
@@ -151,14 +165,20 @@ public class HttpStaticFileServerHandler extends SimpleChannelInboundHandler<Ful
     }
 
     // Write the initial line and the header.
-    ctx.write(response);
+    slot.write(response);
 
-    // Write the content.
-    final FileRegion region = new ResourceRegion(stream, fileLength);
-    ctx.write(region, ctx.newProgressivePromise());
+    final ChannelFuture lastContentFuture;
+    if (channel instanceof Http2StreamChannel) {
+      // an HTTP/2 stream carries frames rather than raw bytes, the content goes out in chunks ending the stream.
+      lastContentFuture = slot.writeLast(new HttpChunkedInput(new ChunkedStream(stream)));
+    } else {
+      // Write the content.
+      final FileRegion region = new ResourceRegion(stream, fileLength);
+      slot.write(region);
 
-    // Write the end marker
-    final ChannelFuture lastContentFuture = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+      // Write the end marker
+      lastContentFuture = slot.writeLast(LastHttpContent.EMPTY_LAST_CONTENT);
+    }
 
     // Decide whether to close the connection or not.
     if (!isKeepAlive(request)) {
@@ -181,27 +201,27 @@ public class HttpStaticFileServerHandler extends SimpleChannelInboundHandler<Ful
     }
   }
 
-  private static void sendError(final ChannelHandlerContext ctx, final HttpResponseStatus status) {
+  private static void sendError(final ResponseQueue.Slot slot, final HttpResponseStatus status) {
     final FullHttpResponse response = new DefaultFullHttpResponse(
         HTTP_1_1, status, Unpooled.copiedBuffer("Failure: " + status.toString() + "\r\n", CharsetUtil.UTF_8));
     response.headers().set(CONTENT_TYPE, "text/plain; charset=UTF-8");
 
     // Close the connection as soon as the error message is sent.
-    ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    slot.writeLast(response).addListener(ChannelFutureListener.CLOSE);
   }
 
   /**
    * When file timestamp is the same as what the browser is sending up, send a "304 Not Modified"
    *
-   * @param ctx
-   *            Context
+   * @param slot
+   *            the slot of the response
    */
-  private static void sendNotModified(final ChannelHandlerContext ctx) {
+  private static void sendNotModified(final ResponseQueue.Slot slot) {
     final FullHttpResponse response = new DefaultFullHttpResponse(HTTP_1_1, NOT_MODIFIED);
     setDateHeader(response);
 
     // Close the connection as soon as the error message is sent.
-    ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    slot.writeLast(response).addListener(ChannelFutureListener.CLOSE);
   }
 
   /**
@@ -3,6 +3,7 @@ package com.outbrain.ob1k.server.netty;
 import com.google.common.collect.Maps;
 import com.outbrain.ob1k.HttpRequestMethodType;
 import com.outbrain.ob1k.Request;
+import com.outbrain.ob1k.common.concurrent.EventLoopExecutor;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.channel.Channel;
@@ -11,8 +12,10 @@ import io.netty.handler.codec.http.CookieDecoder;
 import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.codec.http.QueryStringDecoder;
 import io.netty.util.CharsetUtil;
+import rx.Observable;
 
 import java.io.InputStream;
 import java.net.InetSocketAddress;
@@ -21,6 +24,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import static io.netty.handler.codec.http.HttpHeaders.Names.CONTENT_TYPE;
 
@@ -35,6 +39,7 @@ public class NettyRequest implements Request {
   private final Channel channel;
   private final QueryStringDecoder getQueryDecoder;
   private final HttpContent content;
+  private final Observable<ByteBuf> bodyStream;
   private final String contextPath;
   private final Map<String, String> pathParams;
   private QueryStringDecoder postQueryDecoder;
@@ -42,8 +47,21 @@ public class NettyRequest implements Request {
 
 
   public NettyRequest(final HttpRequest inner, final HttpContent content, final Channel channel, final String contextPath) {
+    this(inner, content, null, channel, contextPath);
+  }
+
+  /**
+   * a request whose body is still arriving, the content is empty and the body is read through the stream.
+   */
+  NettyRequest(final HttpRequest inner, final Observable<ByteBuf> bodyStream, final Channel channel, final String contextPath) {
+    this(inner, LastHttpContent.EMPTY_LAST_CONTENT, bodyStream, channel, contextPath);
+  }
+
+  private NettyRequest(final HttpRequest inner, final HttpContent content, final Observable<ByteBuf> bodyStream,
+                       final Channel channel, final String contextPath) {
     this.inner = inner;
     this.content = content;
+    this.bodyStream = bodyStream;
     this.channel = channel;
     this.getQueryDecoder = new QueryStringDecoder(inner.getUri());
     this.contextPath = contextPath;
@@ -101,6 +119,10 @@ public class NettyRequest implements Request {
 
   @Override
   public long getContentLength() {
+    if (bodyStream != null) {
+      return HttpHeaders.getContentLength(inner, -1);
+    }
+
     return content.content().readableBytes();
   }
 
@@ -119,6 +141,20 @@ public class NettyRequest implements Request {
     return new ByteBufInputStream(content.content());
   }
 
+  /**
+   * @return the body as a stream of chunks, a fully buffered body is a single chunk.
+   */
+  public Observable<ByteBuf> getRequestBodyStream() {
+    return bodyStream != null ? bodyStream : Observable.just(content.content());
+  }
+
+  /**
+   * @return an executor that runs tasks on the event loop of the request's channel.
+   */
+  public Executor getEventLoopExecutor() {
+    return EventLoopExecutor.forChannel(channel);
+  }
+
   @Override
   public InetSocketAddress getLocalAddress() {
     return (InetSocketAddress) channel.localAddress();
@@ -3,6 +3,7 @@ package com.outbrain.ob1k.server.netty;
 import com.outbrain.ob1k.Response;
 import com.outbrain.ob1k.common.marshalling.RequestMarshaller;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaders;
@@ -32,13 +33,13 @@ public class NettyResponse implements Response {
     this.message = message;
   }
 
-  FullHttpResponse toFullHttpResponse(final RequestMarshaller marshaller) throws IOException {
+  FullHttpResponse toFullHttpResponse(final RequestMarshaller marshaller, final ByteBufAllocator allocator) throws IOException {
     final FullHttpResponse response;
     if (null == rawContent && null == message) {
       response = new DefaultFullHttpResponse(HTTP_1_1, status);
     } else {
       response = rawContent == null ?
-              marshaller.marshallResponse(message, status) :
+              marshaller.marshallResponse(message, status, allocator) :
               new DefaultFullHttpResponse(HTTP_1_1, status, rawContent);
     }
 
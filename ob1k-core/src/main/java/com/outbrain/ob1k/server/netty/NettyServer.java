@@ -1,11 +1,13 @@
 package com.outbrain.ob1k.server.netty;
 
 import com.outbrain.ob1k.common.marshalling.RequestMarshallerRegistry;
+import com.outbrain.ob1k.common.metrics.ExecutorGaugeBuilder;
 import com.outbrain.ob1k.server.Server;
 import com.outbrain.ob1k.server.StaticPathResolver;
 import com.outbrain.ob1k.server.registry.ServiceRegistry;
 import com.outbrain.swinfra.metrics.api.MetricFactory;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
@@ -13,15 +15,26 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.HttpContentCompressor;
 import io.netty.handler.codec.http.HttpObjectAggregator;
-import io.netty.handler.codec.http.HttpRequestDecoder;
-import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.AsciiString;
 import io.netty.util.CharsetUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,7 +44,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -48,9 +63,14 @@ public class NettyServer implements Server {
   private final ChannelGroup activeChannels;
   private final long requestTimeoutMs;
   private volatile Channel channel;
+  // more server sockets bound to the same port, one per extra acceptor thread.
+  private final List<Channel> reusePortChannels = new ArrayList<>();
   private final StaticPathResolver staticResolver;
   private final ServiceDispatcher dispatcher;
-  private final EventLoopGroup nioGroup;
+  private final ServerTransport transport;
+  private final boolean epoll;
+  private final EventLoopGroup bossGroup;
+  private final EventLoopGroup workerGroup;
   private final String applicationName;
   private final boolean acceptKeepAlive;
   private final boolean supportZip;
@@ -63,6 +83,15 @@ public class NettyServer implements Server {
                      final ChannelGroup activeChannels, final String contextPath, final String applicationName,
                      final boolean acceptKeepAlive, final boolean supportZip, final MetricFactory metricFactory,
                      final int maxContentLength, final long requestTimeoutMs) {
+    this(port, registry, marshallerRegistry, staticResolver, activeChannels, contextPath, applicationName, acceptKeepAlive,
+        supportZip, metricFactory, maxContentLength, requestTimeoutMs, ServerTransport.DEFAULT);
+  }
+
+  public NettyServer(final int port, final ServiceRegistry registry, final RequestMarshallerRegistry marshallerRegistry,
+                     final StaticPathResolver staticResolver,
+                     final ChannelGroup activeChannels, final String contextPath, final String applicationName,
+                     final boolean acceptKeepAlive, final boolean supportZip, final MetricFactory metricFactory,
+                     final int maxContentLength, final long requestTimeoutMs, final ServerTransport transport) {
     System.setProperty("com.outbrain.web.context.path", contextPath);
     this.port = port;
     this.staticResolver = staticResolver;
@@ -71,7 +100,20 @@ public class NettyServer implements Server {
     this.applicationName = applicationName;
     this.marshallerRegistry = marshallerRegistry;
     this.dispatcher = new ServiceDispatcher(registry, marshallerRegistry);
-    this.nioGroup = new NioEventLoopGroup();
+    this.transport = transport;
+    this.epoll = transport.isNativeTransport() && Epoll.isAvailable();
+    if (transport.isNativeTransport() && !epoll) {
+      logger.warn("native epoll transport is not available, falling back to NIO", Epoll.unavailabilityCause());
+    }
+
+    if (epoll) {
+      this.bossGroup = new EpollEventLoopGroup(transport.getAcceptorThreads());
+      this.workerGroup = new EpollEventLoopGroup(transport.getWorkerThreads());
+    } else {
+      // a single server socket is accepted by a single thread.
+      this.bossGroup = new NioEventLoopGroup(1);
+      this.workerGroup = new NioEventLoopGroup(transport.getWorkerThreads());
+    }
     this.acceptKeepAlive = acceptKeepAlive;
     this.supportZip = supportZip;
     this.metricFactory = metricFactory;
@@ -85,20 +127,45 @@ public class NettyServer implements Server {
     logger.info("################## Starting OB1K server for module '{}' ##################", applicationName);
     try {
       final ServerBootstrap b = new ServerBootstrap();
-      b.option(ChannelOption.SO_BACKLOG, 1024);
-      b.option(ChannelOption.SO_RCVBUF, 64 * 1024);
-      b.option(ChannelOption.SO_SNDBUF, 64 * 1024);
+      b.option(ChannelOption.SO_BACKLOG, transport.getBacklog());
+      b.option(ChannelOption.SO_RCVBUF, transport.getReceiveBufferSize());
+      b.option(ChannelOption.SO_SNDBUF, transport.getSendBufferSize());
+      // responses are marshalled straight into buffers of the channel's allocator, pooling them saves
+      // allocating and zeroing a new buffer per response.
+      b.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+      b.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
       // it means that the max static file can be 1024*ResourceRegion.BUFFER_SIZE = 64Mb
       b.childOption(ChannelOption.WRITE_SPIN_COUNT, 1024);
       b.childOption(ChannelOption.TCP_NODELAY, true);
-      b.group(nioGroup)
-          .channel(NioServerSocketChannel.class)
+      b.group(bossGroup, workerGroup)
           .childHandler(new RPCServerInitializer(maxContentLength));
 
+      final int acceptors = epoll ? transport.getAcceptorThreads() : 1;
+      if (epoll) {
+        b.channel(EpollServerSocketChannel.class);
+        if (acceptors > 1) {
+          b.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+        if (transport.getTcpFastOpenQueueLength() > 0) {
+          b.option(EpollChannelOption.TCP_FASTOPEN, transport.getTcpFastOpenQueueLength());
+        }
+        if (transport.isTcpQuickAck()) {
+          b.childOption(EpollChannelOption.TCP_QUICKACK, true);
+        }
+      } else {
+        b.channel(NioServerSocketChannel.class);
+      }
+
       channel = b.bind(port).sync().channel();
+      // every bind registers the server socket on the next acceptor thread.
+      final int boundPort = ((InetSocketAddress) channel.localAddress()).getPort();
+      for (int i = 1; i < acceptors; i++) {
+        reusePortChannels.add(b.bind(boundPort).sync().channel());
+      }
       addShutdownhook();
       // TEMP disable till I get an answer to https://groups.google.com/d/topic/netty/uY4n1Wjmpvs/discussion
-//      NettyQueuesGaugeBuilder.registerQueueGauges(metricFactory, nioGroup, applicationName);
+//      NettyQueuesGaugeBuilder.registerQueueGauges(metricFactory, workerGroup, applicationName);
+      ExecutorGaugeBuilder.registerExecutorGauges(metricFactory);
 
       final InetSocketAddress address = (InetSocketAddress) channel.localAddress();
       onStarted();
@@ -160,11 +227,15 @@ public class NettyServer implements Server {
       @Override
       public void operationComplete(final ChannelFuture future) throws Exception {
         logger.info("################## Closing OB1K server threads for module '{}' ##################", applicationName);
-        nioGroup.shutdownGracefully();
+        bossGroup.shutdownGracefully();
+        workerGroup.shutdownGracefully();
       }
     });
 
     logger.info("################## Closing OB1K server socket for module '{}' ##################", applicationName);
+    for (final Channel reusePortChannel : reusePortChannels) {
+      reusePortChannel.close();
+    }
     channel.close();
   }
 
@@ -182,6 +253,15 @@ public class NettyServer implements Server {
     listeners.remove(listener);
   }
 
+  // the event loops the server runs on, for tests.
+  EventLoopGroup getBossGroup() {
+    return bossGroup;
+  }
+
+  EventLoopGroup getWorkerGroup() {
+    return workerGroup;
+  }
+
   private void onStarted() {
     logger.info("**************** Module '{}' Started ****************", applicationName);
     for (final Listener listener : listeners) {
@@ -199,6 +279,46 @@ public class NettyServer implements Server {
 
     private final HttpStaticFileServerHandler staticFileServerHandler = new HttpStaticFileServerHandler(staticResolver);
 
+    // every stream of an HTTP/2 connection carries a single request, it is served by the handlers of HTTP/1.1.
+    private final ChannelInitializer<Channel> http2StreamInitializer = new ChannelInitializer<Channel>() {
+      @Override
+      protected void initChannel(final Channel ch) throws Exception {
+        final ChannelPipeline p = ch.pipeline();
+        p.addLast("codec", new Http2StreamFrameToHttpObjectCodec(true));
+        addHttpHandlers(p);
+      }
+    };
+
+    // a client that starts with the HTTP/2 preface.
+    private final ChannelInitializer<Channel> priorKnowledgeInitializer = new ChannelInitializer<Channel>() {
+      @Override
+      protected void initChannel(final Channel ch) throws Exception {
+        removeHttpHandlers(ch.pipeline());
+        ch.pipeline().addLast(Http2FrameCodecBuilder.forServer().build(), new Http2MultiplexHandler(http2StreamInitializer));
+      }
+    };
+
+    // a client that asked to upgrade its HTTP/1.1 connection, the codecs are added by the upgrade itself.
+    private final ChannelInitializer<Channel> upgradeInitializer = new ChannelInitializer<Channel>() {
+      @Override
+      protected void initChannel(final Channel ch) throws Exception {
+        removeHttpHandlers(ch.pipeline());
+      }
+    };
+
+    private final HttpServerUpgradeHandler.UpgradeCodecFactory upgradeCodecFactory =
+        new HttpServerUpgradeHandler.UpgradeCodecFactory() {
+          @Override
+          public HttpServerUpgradeHandler.UpgradeCodec newUpgradeCodec(final CharSequence protocol) {
+            if (!AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)) {
+              return null;
+            }
+
+            return new Http2ServerUpgradeCodec(Http2FrameCodecBuilder.forServer().build(),
+                new Http2MultiplexHandler(http2StreamInitializer), upgradeInitializer);
+          }
+        };
+
     @Override
     public void initChannel(final SocketChannel ch) throws Exception {
       final ChannelPipeline p = ch.pipeline();
@@ -208,9 +328,18 @@ public class NettyServer implements Server {
       //engine.setUseClientMode(false);
       //p.addLast("ssl", new SslHandler(engine));
 
-      p.addLast("decoder", new HttpRequestDecoder(16384, 8192, 16384));
-      p.addLast("aggregator", new HttpObjectAggregator(maxContentLength));
-      p.addLast("encoder", new HttpResponseEncoder());
+      // connections speak HTTP/1.1 unless the client opens with the HTTP/2 preface or upgrades to h2c,
+      // then the HTTP/1.1 handlers make way for the HTTP/2 codec and each stream is served on a channel of its own.
+      final HttpServerCodec codec = new HttpServerCodec(16384, 8192, 16384);
+      p.addLast("h2c", new CleartextHttp2ServerUpgradeHandler(codec,
+          new HttpServerUpgradeHandler(codec, upgradeCodecFactory, maxContentLength), priorKnowledgeInitializer));
+      addHttpHandlers(p);
+    }
+
+    private void addHttpHandlers(final ChannelPipeline p) {
+      p.addLast("aggregator", dispatcher.hasBodyStreamingEndpoints() ?
+          new StreamingRequestAggregator(maxContentLength, dispatcher) :
+          new HttpObjectAggregator(maxContentLength));
 
       p.addLast("chunkedWriter", new ChunkedWriteHandler());
       p.addLast("static", staticFileServerHandler);
@@ -225,6 +354,14 @@ public class NettyServer implements Server {
           marshallerRegistry, activeChannels, acceptKeepAlive, metricFactory, requestTimeoutMs));
     }
 
+    private void removeHttpHandlers(final ChannelPipeline p) {
+      for (final String name : new String[] {"aggregator", "chunkedWriter", "static", "compressor", "handler"}) {
+        if (p.get(name) != null) {
+          p.remove(name);
+        }
+      }
+    }
+
   }
 
 }
@@ -0,0 +1,184 @@
+package com.outbrain.ob1k.server.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import rx.Observable;
+import rx.Producer;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.subscriptions.Subscriptions;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * the body of a request that is dispatched as soon as its headers arrive, handed to the endpoint chunk by chunk.
+ *
+ * the channel stops reading while the subscriber has no outstanding requests, so a slow consumer holds at most
+ * the chunks of a single read in memory, no matter how large the body is.
+ * each chunk is released once onNext returns, a subscriber that keeps it around has to retain it.
+ */
+class RequestBodyStream implements Observable.OnSubscribe<ByteBuf> {
+  private final Channel channel;
+
+  // the state is only accessed on the event loop of the channel.
+  private final Queue<ByteBuf> pending = new ArrayDeque<>();
+  private Subscriber<? super ByteBuf> subscriber;
+  private long requested;
+  private boolean ended;
+  private Throwable error;
+  private boolean done;
+  private boolean draining;
+
+  RequestBodyStream(final Channel channel) {
+    this.channel = channel;
+  }
+
+  Observable<ByteBuf> toObservable() {
+    return Observable.create(this);
+  }
+
+  @Override
+  public void call(final Subscriber<? super ByteBuf> newSubscriber) {
+    onEventLoop(new Runnable() {
+      @Override
+      public void run() {
+        subscribe(newSubscriber);
+      }
+    });
+  }
+
+  void onContent(final ByteBuf chunk) {
+    if (done || !chunk.isReadable()) {
+      return;
+    }
+
+    pending.add(chunk.retain());
+    drain();
+  }
+
+  void onEnd() {
+    ended = true;
+    drain();
+  }
+
+  void onError(final Throwable cause) {
+    if (ended || done) {
+      return;
+    }
+
+    ended = true;
+    error = cause;
+    releasePending();
+    drain();
+  }
+
+  /**
+   * drops the rest of the body, e.g. when the response was sent without reading all of it.
+   */
+  void discard() {
+    onEventLoop(new Runnable() {
+      @Override
+      public void run() {
+        done = true;
+        releasePending();
+        updateAutoRead();
+      }
+    });
+  }
+
+  private void subscribe(final Subscriber<? super ByteBuf> newSubscriber) {
+    if (subscriber != null || done) {
+      newSubscriber.onError(new IllegalStateException("the request body can only be consumed once."));
+      return;
+    }
+
+    subscriber = newSubscriber;
+    newSubscriber.add(Subscriptions.create(new Action0() {
+      @Override
+      public void call() {
+        discard();
+      }
+    }));
+
+    newSubscriber.setProducer(new Producer() {
+      @Override
+      public void request(final long n) {
+        if (n <= 0) {
+          return;
+        }
+
+        onEventLoop(new Runnable() {
+          @Override
+          public void run() {
+            requested = Long.MAX_VALUE - requested < n ? Long.MAX_VALUE : requested + n;
+            drain();
+          }
+        });
+      }
+    });
+  }
+
+  private void drain() {
+    if (draining) {
+      // the subscriber asked for more from within onNext, the running loop picks it up.
+      return;
+    }
+
+    draining = true;
+    try {
+      while (subscriber != null && !done) {
+        if (pending.isEmpty()) {
+          if (ended) {
+            done = true;
+            if (error != null) {
+              subscriber.onError(error);
+            } else {
+              subscriber.onCompleted();
+            }
+          }
+          break;
+        }
+
+        if (requested == 0) {
+          break;
+        }
+
+        if (requested != Long.MAX_VALUE) {
+          requested--;
+        }
+
+        final ByteBuf chunk = pending.poll();
+        try {
+          subscriber.onNext(chunk);
+        } finally {
+          chunk.release();
+        }
+      }
+    } finally {
+      draining = false;
+    }
+
+    updateAutoRead();
+  }
+
+  private void updateAutoRead() {
+    // keep reading while the subscriber wants more; once the body is over the channel goes back to normal.
+    channel.config().setAutoRead(ended || done || requested > 0);
+  }
+
+  private void releasePending() {
+    ByteBuf chunk;
+    while ((chunk = pending.poll()) != null) {
+      chunk.release();
+    }
+  }
+
+  private void onEventLoop(final Runnable task) {
+    if (channel.eventLoop().inEventLoop()) {
+      task.run();
+    } else {
+      channel.eventLoop().execute(task);
+    }
+  }
+}
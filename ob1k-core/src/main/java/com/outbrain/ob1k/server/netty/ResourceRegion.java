@@ -57,6 +57,33 @@ public class ResourceRegion extends AbstractReferenceCounted implements FileRegi
     return transfered;
   }
 
+  @Override
+  public long transferred() {
+    return transfered;
+  }
+
+  @Override
+  public ResourceRegion retain() {
+    super.retain();
+    return this;
+  }
+
+  @Override
+  public ResourceRegion retain(final int increment) {
+    super.retain(increment);
+    return this;
+  }
+
+  @Override
+  public ResourceRegion touch() {
+    return this;
+  }
+
+  @Override
+  public ResourceRegion touch(final Object hint) {
+    return this;
+  }
+
   @Override
   public long transferTo(WritableByteChannel target, long position) throws IOException {
     ByteBuffer buffer;
@@ -0,0 +1,173 @@
+package com.outbrain.ob1k.server.netty;
+
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.util.ReferenceCountUtil;
+import rx.Subscription;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * the responses of a connection, in the order of their requests.
+ *
+ * pipelined requests are dispatched concurrently, each gets a slot in the queue that its response is written to.
+ * a slot writes straight to the channel once the responses of all the requests before it were written,
+ * until then its messages wait in the slot.
+ * writes made while the channel is reading are flushed together when the read completes.
+ */
+class ResponseQueue {
+  private final ChannelHandlerContext ctx;
+
+  // only accessed on the event loop.
+  private final Queue<Slot> slots = new ArrayDeque<>();
+  private boolean reading;
+
+  ResponseQueue(final ChannelHandlerContext ctx) {
+    this.ctx = ctx;
+  }
+
+  Slot add(final HttpRequest request) {
+    return add(request, ctx);
+  }
+
+  /**
+   * @param writer the context the messages of the slot are written from, e.g. to skip handlers in between.
+   */
+  Slot add(final HttpRequest request, final ChannelHandlerContext writer) {
+    final Slot slot = new Slot(request, writer);
+    slots.add(slot);
+    return slot;
+  }
+
+  void readStarted() {
+    reading = true;
+  }
+
+  void readCompleted() {
+    reading = false;
+    ctx.flush();
+  }
+
+  /**
+   * drops all the responses that were not written yet, and cancels their calculation.
+   */
+  void close() {
+    Slot slot;
+    while ((slot = slots.poll()) != null) {
+      slot.discard();
+    }
+  }
+
+  private void writeReady() {
+    boolean written = false;
+    Slot head;
+    while ((head = slots.peek()) != null) {
+      written |= head.writePending();
+      if (!head.complete) {
+        break;
+      }
+
+      slots.poll();
+    }
+
+    if (written && !reading) {
+      ctx.flush();
+    }
+  }
+
+  final class Slot {
+    final HttpRequest request;
+    private final ChannelHandlerContext writer;
+    volatile ComposableFuture<Object> pendingResponse;
+    volatile Subscription subscription;
+
+    // only accessed on the event loop.
+    private final Queue<Object> messages = new ArrayDeque<>();
+    private final Queue<ChannelPromise> promises = new ArrayDeque<>();
+    private boolean complete;
+
+    private Slot(final HttpRequest request, final ChannelHandlerContext writer) {
+      this.request = request;
+      this.writer = writer;
+    }
+
+    ChannelFuture write(final Object message) {
+      return write(message, false);
+    }
+
+    /**
+     * writes the last message of the response, letting the responses after it go out.
+     */
+    ChannelFuture writeLast(final Object message) {
+      return write(message, true);
+    }
+
+    private ChannelFuture write(final Object message, final boolean last) {
+      final ChannelPromise promise = ctx.newPromise();
+      if (ctx.executor().inEventLoop()) {
+        enqueue(message, promise, last);
+      } else {
+        ctx.executor().execute(new Runnable() {
+          @Override
+          public void run() {
+            enqueue(message, promise, last);
+          }
+        });
+      }
+
+      return promise;
+    }
+
+    private void enqueue(final Object message, final ChannelPromise promise, final boolean last) {
+      if (complete) {
+        // the connection is gone, or the response was already written.
+        ReferenceCountUtil.release(message);
+        promise.setFailure(new ClosedChannelException());
+        return;
+      }
+
+      messages.add(message);
+      promises.add(promise);
+      complete = last;
+      writeReady();
+    }
+
+    private boolean writePending() {
+      if (slots.peek() != this || messages.isEmpty()) {
+        return false;
+      }
+
+      while (!messages.isEmpty()) {
+        writer.write(messages.poll(), promises.poll());
+      }
+
+      return true;
+    }
+
+    private void discard() {
+      complete = true;
+      Object message;
+      while ((message = messages.poll()) != null) {
+        ReferenceCountUtil.release(message);
+        promises.poll().setFailure(new ClosedChannelException());
+      }
+
+      final Subscription currentSubscription = subscription;
+      if (currentSubscription != null) {
+        currentSubscription.unsubscribe();
+      }
+
+      // nobody is waiting for the response anymore. it is the request's own future, cancelling it closes the scope
+      // of the request and leaves the future of the service to whoever else waits for it.
+      final ComposableFuture<Object> response = pendingResponse;
+      if (response != null) {
+        response.cancel(false);
+      }
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package com.outbrain.ob1k.server.netty;
+
+/**
+ * the transport and event loop topology of a netty server.
+ *
+ * by default the server uses NIO with a single acceptor thread and netty's default number of worker threads.
+ * the native epoll transport can be requested on linux, the server falls back to NIO when it is not available.
+ * with epoll, more than one acceptor binds that many server sockets to the same port with SO_REUSEPORT, and the
+ * kernel spreads the incoming connections between them.
+ */
+public final class ServerTransport {
+  public static final ServerTransport DEFAULT = new ServerTransport(false, 1, 0, 1024, 64 * 1024, 64 * 1024, 0, false);
+
+  private final boolean nativeTransport;
+  private final int acceptorThreads;
+  private final int workerThreads;
+  private final int backlog;
+  private final int receiveBufferSize;
+  private final int sendBufferSize;
+  private final int tcpFastOpenQueueLength;
+  private final boolean tcpQuickAck;
+
+  private ServerTransport(final boolean nativeTransport, final int acceptorThreads, final int workerThreads,
+                          final int backlog, final int receiveBufferSize, final int sendBufferSize,
+                          final int tcpFastOpenQueueLength, final boolean tcpQuickAck) {
+    this.nativeTransport = nativeTransport;
+    this.acceptorThreads = acceptorThreads;
+    this.workerThreads = workerThreads;
+    this.backlog = backlog;
+    this.receiveBufferSize = receiveBufferSize;
+    this.sendBufferSize = sendBufferSize;
+    this.tcpFastOpenQueueLength = tcpFastOpenQueueLength;
+    this.tcpQuickAck = tcpQuickAck;
+  }
+
+  /**
+   * use the native epoll transport when available.
+   */
+  public ServerTransport withNativeTransport(final boolean useNativeTransport) {
+    return new ServerTransport(useNativeTransport, acceptorThreads, workerThreads, backlog, receiveBufferSize,
+        sendBufferSize, tcpFastOpenQueueLength, tcpQuickAck);
+  }
+
+  /**
+   * @param acceptors the number of threads accepting connections, more than one requires the native transport.
+   * @param workers the number of threads serving the connections, zero for netty's default(twice the cores).
+   */
+  public ServerTransport withEventLoopThreads(final int acceptors, final int workers) {
+    if (acceptors < 1 || workers < 0) {
+      throw new IllegalArgumentException("invalid event loop threads: acceptors=" + acceptors + " workers=" + workers);
+    }
+
+    return new ServerTransport(nativeTransport, acceptors, workers, backlog, receiveBufferSize, sendBufferSize,
+        tcpFastOpenQueueLength, tcpQuickAck);
+  }
+
+  public ServerTransport withSocketOptions(final int backlog, final int receiveBufferSize, final int sendBufferSize) {
+    return new ServerTransport(nativeTransport, acceptorThreads, workerThreads, backlog, receiveBufferSize,
+        sendBufferSize, tcpFastOpenQueueLength, tcpQuickAck);
+  }
+
+  /**
+   * enables TCP fast open(native transport only), letting clients send their first request along with the SYN.
+   *
+   * @param queueLength the max number of pending fast open requests, zero disables fast open.
+   */
+  public ServerTransport withTcpFastOpen(final int queueLength) {
+    return new ServerTransport(nativeTransport, acceptorThreads, workerThreads, backlog, receiveBufferSize,
+        sendBufferSize, queueLength, tcpQuickAck);
+  }
+
+  /**
+   * acknowledges incoming segments right away instead of delaying the ack(native transport only).
+   */
+  public ServerTransport withTcpQuickAck(final boolean quickAck) {
+    return new ServerTransport(nativeTransport, acceptorThreads, workerThreads, backlog, receiveBufferSize,
+        sendBufferSize, tcpFastOpenQueueLength, quickAck);
+  }
+
+  public boolean isNativeTransport() {
+    return nativeTransport;
+  }
+
+  public int getAcceptorThreads() {
+    return acceptorThreads;
+  }
+
+  public int getWorkerThreads() {
+    return workerThreads;
+  }
+
+  public int getBacklog() {
+    return backlog;
+  }
+
+  public int getReceiveBufferSize() {
+    return receiveBufferSize;
+  }
+
+  public int getSendBufferSize() {
+    return sendBufferSize;
+  }
+
+  public int getTcpFastOpenQueueLength() {
+    return tcpFastOpenQueueLength;
+  }
+
+  public boolean isTcpQuickAck() {
+    return tcpQuickAck;
+  }
+}
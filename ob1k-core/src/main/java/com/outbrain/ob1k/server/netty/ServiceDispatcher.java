@@ -11,6 +11,9 @@ import com.outbrain.ob1k.server.registry.endpoints.ServerEndpoint;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.HashMap;
+
+import static com.outbrain.ob1k.common.endpoints.ServiceEndpointContract.isBodyStreamingMethod;
 
 /**
  * User: aronen
@@ -27,6 +30,18 @@ public class ServiceDispatcher {
     this.marshallerRegistry = marshallerRegistry;
   }
 
+  public boolean hasBodyStreamingEndpoints() {
+    return registry.hasBodyStreamingEndpoints();
+  }
+
+  /**
+   * @return true if the endpoint of the request receives its body as a stream.
+   */
+  public boolean isBodyStreamed(final String path, final HttpRequestMethodType methodType) {
+    final ServerEndpoint endpoint = registry.findEndpoint(path, methodType, new HashMap<String, String>());
+    return endpoint != null && isBodyStreamingMethod(endpoint.getMethod());
+  }
+
   public void callServiceRequest(final Request request, final ResponseHandler handler)
       throws InvocationTargetException, IllegalAccessException, IOException {
 
@@ -57,6 +72,8 @@ public class ServiceDispatcher {
       params = new Object[0];
     } else if (parameterTypes.length == 1 && parameterTypes[0] == Request.class) {
       params = new Object[]{ request };
+    } else if (isBodyStreamingMethod(method) && request instanceof NettyRequest) {
+      params = new Object[]{ request, ((NettyRequest) request).getRequestBodyStream() };
     } else {
       final RequestMarshaller marshaller = marshallerRegistry.getMarshaller(request.getContentType());
       params = marshaller.unmarshallRequestParams(request, method, endpoint.getParamNames());
@@ -0,0 +1,50 @@
+package com.outbrain.ob1k.server.netty;
+
+import com.outbrain.ob1k.HttpRequestMethodType;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+
+/**
+ * aggregates requests like HttpObjectAggregator, except for requests to body streaming endpoints,
+ * which pass through as a request followed by its content chunks.
+ */
+class StreamingRequestAggregator extends HttpObjectAggregator {
+  private final ServiceDispatcher dispatcher;
+  private boolean streaming;
+
+  StreamingRequestAggregator(final int maxContentLength, final ServiceDispatcher dispatcher) {
+    super(maxContentLength);
+    this.dispatcher = dispatcher;
+  }
+
+  @Override
+  public boolean acceptInboundMessage(final Object msg) throws Exception {
+    if (msg instanceof HttpRequest) {
+      streaming = isBodyStreamed((HttpRequest) msg);
+    }
+
+    if (!streaming) {
+      return super.acceptInboundMessage(msg);
+    }
+
+    if (msg instanceof LastHttpContent) {
+      streaming = false;
+    }
+
+    return false;
+  }
+
+  private boolean isBodyStreamed(final HttpRequest request) {
+    final HttpRequestMethodType methodType;
+    try {
+      methodType = HttpRequestMethodType.valueOf(request.getMethod().name().toUpperCase());
+    } catch (final IllegalArgumentException e) {
+      // the dispatcher rejects it after aggregation.
+      return false;
+    }
+
+    return dispatcher.isBodyStreamed(new QueryStringDecoder(request.getUri()).path(), methodType);
+  }
+}
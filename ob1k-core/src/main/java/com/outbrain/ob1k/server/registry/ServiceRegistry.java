@@ -19,6 +19,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -40,6 +41,7 @@ public class ServiceRegistry implements ServiceRegistryView {
   private final PathTrie<Map<HttpRequestMethodType, ServerEndpoint>> endpoints;
   private String contextPath;
   private final RequestMarshallerRegistry marshallerRegistry;
+  private volatile boolean bodyStreamingEndpoints;
 
   public ServiceRegistry(final RequestMarshallerRegistry marshallerRegistry) {
     this.endpoints = new PathTrie<>();
@@ -54,6 +56,13 @@ public class ServiceRegistry implements ServiceRegistryView {
     return contextPath;
   }
 
+  /**
+   * @return true if any endpoint receives its request body as a stream.
+   */
+  public boolean hasBodyStreamingEndpoints() {
+    return bodyStreamingEndpoints;
+  }
+
   public ServerEndpoint findEndpoint(final String path, final HttpRequestMethodType requestMethodType, final Map<String, String> pathParams) {
     final Map<HttpRequestMethodType, ServerEndpoint> serviceEndpoints = endpoints.retrieve(path, pathParams);
     if (serviceEndpoints == null) {
@@ -117,8 +126,11 @@ public class ServiceRegistry implements ServiceRegistryView {
         final Method method = endpointDesc.method;
         final List<String> methodParamNames = methodsParams.get(method);
 
+        final boolean bodyStreaming = isBodyStreamingMethod(method);
         try {
-          marshallerRegistry.registerTypes(TypeHelper.extractTypes(method));
+          // the params of a body streaming method are never unmarshalled.
+          marshallerRegistry.registerTypes(bodyStreaming ? new Type[] { TypeHelper.extractReturnType(method) } :
+            TypeHelper.extractTypes(method));
         } catch (final IllegalArgumentException e) {
           final String serviceName = service.getClass().getName();
           throw new RuntimeException("Failed registering method '" + method.getName() +
@@ -126,6 +138,9 @@ public class ServiceRegistry implements ServiceRegistryView {
         }
 
         validateMethodParams(methodBind, endpointDesc, method, methodParamNames);
+        if (bodyStreaming) {
+          bodyStreamingEndpoints = true;
+        }
 
         final String[] params = methodParamNames.toArray(new String[methodParamNames.size()]);
         if (isAsyncMethod(method)) {
@@ -180,6 +195,10 @@ public class ServiceRegistry implements ServiceRegistryView {
     if (parameterTypes.length == 1 && parameterTypes[0] == Request.class) {
       return;
     }
+    if (isBodyStreamingMethod(method)) {
+      // path params are read from the request, like in methods that only get the request.
+      return;
+    }
     if (Arrays.asList(parameterTypes).contains(Request.class)) {
       throw new RuntimeException("Request object must be the only param in the method signature");
     }
@@ -7,6 +7,10 @@ import com.outbrain.ob1k.common.concurrent.ComposableFutureHelper;
 import com.outbrain.ob1k.common.filters.AsyncFilter;
 import com.outbrain.ob1k.concurrent.ComposableFuture;
 import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.Consumer;
+import com.outbrain.ob1k.concurrent.Try;
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import com.outbrain.ob1k.concurrent.eager.EagerComposableFuture;
 import com.outbrain.ob1k.server.ResponseHandler;
 import com.outbrain.ob1k.server.ctx.AsyncServerRequestContext;
 import com.outbrain.ob1k.server.ctx.DefaultAsyncServerRequestContext;
@@ -43,8 +47,32 @@ public class AsyncServerEndpoint extends AbstractServerEndpoint<AsyncFilter> {
 
   @Override
   public void invoke(final Request request, final Object[] params, final ResponseHandler handler) {
-    final AsyncServerRequestContext ctx = new DefaultAsyncServerRequestContext(request, this, params);
-    final ComposableFuture<Object> response = invokeAsync(ctx);
-    handler.handleAsyncResponse(response);
+    final DefaultAsyncServerRequestContext ctx = new DefaultAsyncServerRequestContext(request, this, params);
+    final ComposableFuture<Object> serviceFuture = invokeAsync(ctx);
+    // the service may hand the same future to other requests as well, so the request gets a future of its own for
+    // the server to cancel when it times out or the client goes away. that cancels the scope of the request and lets
+    // go of the future of the service, which is cancelled only once nobody else waits for it either.
+    final ComposablePromise<Object> response = ComposableFutures.newPromise();
+    serviceFuture.consume(new Consumer<Object>() {
+      @Override
+      public void consume(final Try<Object> result) {
+        if (result.isSuccess()) {
+          response.set(result.getValue());
+        } else {
+          response.setException(result.getError());
+        }
+      }
+    });
+    response.setCancellationToken(EagerComposableFuture.dependencyOn(serviceFuture));
+
+    // nothing forked for the request outlives it, whether it completed, timed out or the client went away.
+    response.future().consume(new Consumer<Object>() {
+      @Override
+      public void consume(final Try<Object> result) {
+        ctx.closeScope();
+      }
+    });
+
+    handler.handleAsyncResponse(response.future());
   }
 }
@@ -0,0 +1,86 @@
+package com.outbrain.ob1k.common.concurrent;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.nio.NioEventLoopGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventLoopExecutorTest {
+
+  private NioEventLoopGroup group;
+  private EventLoop eventLoop;
+  private EventLoopExecutor executor;
+
+  @Before
+  public void setup() {
+    group = new NioEventLoopGroup(1);
+    eventLoop = group.next();
+    executor = new EventLoopExecutor(eventLoop);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+  }
+
+  @Test
+  public void testTasksFromOtherThreadsRunOnTheEventLoop() throws Exception {
+    final AtomicReference<Thread> thread = new AtomicReference<>();
+    final CountDownLatch done = new CountDownLatch(1);
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        thread.set(Thread.currentThread());
+        done.countDown();
+      }
+    });
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertTrue(eventLoop.inEventLoop(thread.get()));
+  }
+
+  @Test
+  public void testTasksFromTheEventLoopRunInlineWithoutGrowingTheStack() throws Exception {
+    final int tasks = 100000;
+    final AtomicInteger executed = new AtomicInteger();
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final CountDownLatch done = new CountDownLatch(1);
+    eventLoop.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          executor.execute(new Runnable() {
+            @Override
+            public void run() {
+              // every task submits the next one, as a long chain of continuations does.
+              if (executed.incrementAndGet() < tasks) {
+                executor.execute(this);
+              }
+            }
+          });
+
+          // nothing was handed over to the event loop, the whole chain already ran.
+          assertEquals(tasks, executed.get());
+        } catch (final Throwable e) {
+          error.set(e);
+        } finally {
+          done.countDown();
+        }
+      }
+    });
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    if (error.get() != null) {
+      throw new AssertionError(error.get());
+    }
+  }
+}
@@ -24,7 +24,11 @@ import com.outbrain.ob1k.server.services.SimpleTestServiceImpl;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
@@ -341,6 +345,82 @@ public class BasicServerRpcTest {
     }
   }
 
+  private static Server buildKeepAliveServer() {
+    return ServerBuilder.newBuilder().
+            contextPath("/test").
+            configure(new ConfigureBuilderSection() {
+              @Override
+              public void apply(final ConfigureBuilder builder) {
+                builder.useRandomPort().requestTimeout(50, TimeUnit.MILLISECONDS).acceptKeepAlive(true);
+              }
+            }).
+            service(new ServiceRegisterBuilderSection() {
+              @Override
+              public void apply(final ServiceRegisterBuilder builder) {
+                builder.register(new SimpleTestServiceImpl(), "/simple");
+              }
+            }).build();
+  }
+
+  @Test
+  public void testPipelinedResponsesKeepRequestOrder() throws Exception {
+    Server server = null;
+    try {
+      server = buildKeepAliveServer();
+      final int port = server.start().getPort();
+
+      try (final Socket socket = new Socket("localhost", port)) {
+        socket.setSoTimeout(5000);
+        final String slowBody = "30";
+        final String requests =
+            "POST /test/simple/slowMethod HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n" +
+            "Content-Length: " + slowBody.length() + "\r\n\r\n" + slowBody +
+            "GET /test/simple/nextRandom HTTP/1.1\r\nHost: localhost\r\n\r\n";
+        socket.getOutputStream().write(requests.getBytes(StandardCharsets.US_ASCII));
+        socket.getOutputStream().flush();
+
+        final DataInputStream in = new DataInputStream(socket.getInputStream());
+        Assert.assertEquals("the slow response goes first", "true", readResponseBody(in));
+        Assert.assertTrue("the fast response follows", readResponseBody(in).matches("-?\\d+"));
+      }
+    } finally {
+      if (server != null)
+        server.stop();
+    }
+  }
+
+  static String readResponseBody(final DataInputStream in) throws IOException {
+    final String statusLine = readLine(in);
+    Assert.assertTrue(statusLine, statusLine.startsWith("HTTP/1.1 200"));
+
+    int contentLength = -1;
+    String header;
+    while (!(header = readLine(in)).isEmpty()) {
+      if (header.toLowerCase().startsWith("content-length:")) {
+        contentLength = Integer.parseInt(header.substring("content-length:".length()).trim());
+      }
+    }
+
+    Assert.assertTrue("a kept alive response has a length", contentLength >= 0);
+    final byte[] body = new byte[contentLength];
+    in.readFully(body);
+    return new String(body, StandardCharsets.UTF_8);
+  }
+
+  static String readLine(final DataInputStream in) throws IOException {
+    final StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = in.read()) != '\n') {
+      if (c < 0) {
+        throw new EOFException("connection closed after: " + line);
+      }
+      if (c != '\r') {
+        line.append((char) c);
+      }
+    }
+    return line.toString();
+  }
+
   private static class Listener implements Server.Listener {
 
     private int serverStartedCallCount = 0;
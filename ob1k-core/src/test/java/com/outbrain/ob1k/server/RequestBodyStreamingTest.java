@@ -0,0 +1,112 @@
+package com.outbrain.ob1k.server;
+
+import com.outbrain.ob1k.server.builder.ConfigureBuilder;
+import com.outbrain.ob1k.server.builder.ConfigureBuilder.ConfigureBuilderSection;
+import com.outbrain.ob1k.server.builder.ServerBuilder;
+import com.outbrain.ob1k.server.builder.ServiceRegisterBuilder;
+import com.outbrain.ob1k.server.builder.ServiceRegisterBuilder.ServiceRegisterBuilderSection;
+import com.outbrain.ob1k.server.services.BodyStreamingTestServiceImpl;
+import com.outbrain.ob1k.server.services.SimpleTestServiceImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.outbrain.ob1k.server.BasicServerRpcTest.readResponseBody;
+
+/**
+ * endpoints that read the request body while it arrives, over a raw connection.
+ */
+public class RequestBodyStreamingTest {
+  private static final int CHUNK_SIZE = 8192;
+
+  private static Server buildServer() {
+    return ServerBuilder.newBuilder().
+            contextPath("/test").
+            configure(new ConfigureBuilderSection() {
+              @Override
+              public void apply(final ConfigureBuilder builder) {
+                builder.useRandomPort().acceptKeepAlive(true).maxContentLength(CHUNK_SIZE);
+              }
+            }).
+            service(new ServiceRegisterBuilderSection() {
+              @Override
+              public void apply(final ServiceRegisterBuilder builder) {
+                builder.register(new BodyStreamingTestServiceImpl(), "/upload").
+                register(new SimpleTestServiceImpl(), "/simple");
+              }
+            }).build();
+  }
+
+  @Test
+  public void testSlowConsumerReadsABodyLargerThanTheContentLimit() throws Exception {
+    final Server server = buildServer();
+    try (final Socket socket = new Socket("localhost", server.start().getPort())) {
+      socket.setSoTimeout(10000);
+      final OutputStream out = socket.getOutputStream();
+      final int chunks = 64;
+      writeHeaders(out, "/test/upload/countSlowly");
+      for (int i = 0; i < chunks; i++) {
+        writeChunk(out, CHUNK_SIZE);
+      }
+      writeLastChunk(out);
+
+      final DataInputStream in = new DataInputStream(socket.getInputStream());
+      Assert.assertEquals(String.valueOf(chunks * CHUNK_SIZE), readResponseBody(in));
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testEarlyResponseDiscardsTheRestOfTheBody() throws Exception {
+    final Server server = buildServer();
+    try (final Socket socket = new Socket("localhost", server.start().getPort())) {
+      socket.setSoTimeout(10000);
+      final OutputStream out = socket.getOutputStream();
+      writeHeaders(out, "/test/upload/firstChunk");
+      writeChunk(out, 100);
+
+      // answered before the body is over.
+      final DataInputStream in = new DataInputStream(socket.getInputStream());
+      Assert.assertEquals("100", readResponseBody(in));
+
+      for (int i = 0; i < 16; i++) {
+        writeChunk(out, CHUNK_SIZE);
+      }
+      writeLastChunk(out);
+
+      // the rest of the body was dropped, the connection keeps serving requests.
+      out.write("GET /test/simple/nextRandom HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+      Assert.assertTrue(readResponseBody(in).matches("-?\\d+"));
+    } finally {
+      server.stop();
+    }
+  }
+
+  private static void writeHeaders(final OutputStream out, final String path) throws IOException {
+    out.write(("POST " + path + " HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n")
+        .getBytes(StandardCharsets.US_ASCII));
+    out.flush();
+  }
+
+  private static void writeChunk(final OutputStream out, final int size) throws IOException {
+    final byte[] data = new byte[size];
+    Arrays.fill(data, (byte) 'x');
+    out.write((Integer.toHexString(size) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    out.write(data);
+    out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+    out.flush();
+  }
+
+  private static void writeLastChunk(final OutputStream out) throws IOException {
+    out.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+    out.flush();
+  }
+}
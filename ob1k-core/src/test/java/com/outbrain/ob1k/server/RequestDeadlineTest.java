@@ -0,0 +1,144 @@
+package com.outbrain.ob1k.server;
+
+import com.outbrain.ob1k.client.ClientBuilder;
+import com.outbrain.ob1k.client.Clients;
+import com.outbrain.ob1k.client.targets.SimpleTargetProvider;
+import com.outbrain.ob1k.common.concurrent.DeadlineHeader;
+import com.outbrain.ob1k.common.filters.AsyncFilter;
+import com.outbrain.ob1k.concurrent.AsyncContext;
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.Deadline;
+import com.outbrain.ob1k.server.builder.ConfigureBuilder;
+import com.outbrain.ob1k.server.builder.ConfigureBuilder.ConfigureBuilderSection;
+import com.outbrain.ob1k.server.builder.ServerBuilder;
+import com.outbrain.ob1k.server.builder.ServiceRegisterBuilder;
+import com.outbrain.ob1k.server.builder.ServiceRegisterBuilder.ServiceRegisterBuilderSection;
+import com.outbrain.ob1k.server.ctx.AsyncServerRequestContext;
+import com.outbrain.ob1k.server.services.SimpleTestService;
+import com.outbrain.ob1k.server.services.SimpleTestServiceImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.outbrain.ob1k.server.BasicServerRpcTest.readLine;
+import static com.outbrain.ob1k.server.BasicServerRpcTest.readResponseBody;
+
+/**
+ * the deadline of a request travels from the client to the service it calls, which doesn't work on it
+ * once it passed.
+ */
+public class RequestDeadlineTest {
+
+  private static Server buildServer(final DeadlineRecordingFilter filter) {
+    return ServerBuilder.newBuilder().
+            contextPath("/test").
+            configure(new ConfigureBuilderSection() {
+              @Override
+              public void apply(final ConfigureBuilder builder) {
+                builder.useRandomPort().acceptKeepAlive(true);
+              }
+            }).
+            service(new ServiceRegisterBuilderSection() {
+              @Override
+              public void apply(final ServiceRegisterBuilder builder) {
+                builder.register(new SimpleTestServiceImpl(), "/simple").withFilters(filter);
+              }
+            }).build();
+  }
+
+  @Test
+  public void testClientSendsTheRemainingBudget() throws Exception {
+    final DeadlineRecordingFilter filter = new DeadlineRecordingFilter();
+    final Server server = buildServer(filter);
+    final int port = server.start().getPort();
+    final SimpleTestService client = new ClientBuilder<>(SimpleTestService.class).
+            setTargetProvider(new SimpleTargetProvider("http://localhost:" + port + "/test/simple")).
+            build();
+    try {
+      // without a deadline nothing is sent.
+      Assert.assertNotNull(client.nextRandom().get());
+      Assert.assertEquals("none", filter.headers.poll(5, TimeUnit.SECONDS));
+      Assert.assertEquals(Long.valueOf(-1), filter.remaining.poll(5, TimeUnit.SECONDS));
+
+      final AsyncContext previous = Deadline.after(5, TimeUnit.SECONDS).attach();
+      final ComposableFuture<Integer> result;
+      try {
+        result = client.nextRandom();
+      } finally {
+        AsyncContext.restore(previous);
+      }
+
+      Assert.assertNotNull(result.get());
+      final long sent = Long.parseLong(filter.headers.poll(5, TimeUnit.SECONDS));
+      Assert.assertTrue(String.valueOf(sent), sent > 0 && sent <= 5000);
+      // the service runs within the deadline it was sent.
+      final long remaining = filter.remaining.poll(5, TimeUnit.SECONDS);
+      Assert.assertTrue(String.valueOf(remaining), remaining >= 0 && remaining <= sent);
+    } finally {
+      Clients.close(client);
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testExpiredRequestsAreRejectedWithoutCallingTheService() throws Exception {
+    final DeadlineRecordingFilter filter = new DeadlineRecordingFilter();
+    final Server server = buildServer(filter);
+    try (final Socket socket = new Socket("localhost", server.start().getPort())) {
+      socket.setSoTimeout(10000);
+      final OutputStream out = socket.getOutputStream();
+      final DataInputStream in = new DataInputStream(socket.getInputStream());
+
+      write(out, "GET /test/simple/nextRandom HTTP/1.1\r\nHost: localhost\r\n" + DeadlineHeader.NAME + ": 0\r\n\r\n");
+      final String statusLine = readLine(in);
+      Assert.assertTrue(statusLine, statusLine.startsWith("HTTP/1.1 500"));
+      int contentLength = 0;
+      String header;
+      while (!(header = readLine(in)).isEmpty()) {
+        if (header.toLowerCase().startsWith("content-length:")) {
+          contentLength = Integer.parseInt(header.substring("content-length:".length()).trim());
+        }
+      }
+      final byte[] body = new byte[contentLength];
+      in.readFully(body);
+      Assert.assertTrue(new String(body, StandardCharsets.UTF_8).contains("deadline"));
+      Assert.assertTrue(filter.headers.isEmpty());
+
+      // a request that is still in time is served on the same connection.
+      write(out, "GET /test/simple/nextRandom HTTP/1.1\r\nHost: localhost\r\n" + DeadlineHeader.NAME + ": 5000\r\n\r\n");
+      Assert.assertTrue(readResponseBody(in).matches("-?\\d+"));
+      Assert.assertEquals("5000", filter.headers.poll(5, TimeUnit.SECONDS));
+    } finally {
+      server.stop();
+    }
+  }
+
+  private static void write(final OutputStream out, final String request) throws Exception {
+    out.write(request.getBytes(StandardCharsets.US_ASCII));
+    out.flush();
+  }
+
+  /**
+   * records the deadline header of every request that reaches the service, and the deadline it runs within.
+   */
+  private static class DeadlineRecordingFilter implements AsyncFilter<Object, AsyncServerRequestContext> {
+    private final BlockingQueue<String> headers = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Long> remaining = new LinkedBlockingQueue<>();
+
+    @Override
+    public ComposableFuture<Object> handleAsync(final AsyncServerRequestContext ctx) {
+      final String header = ctx.getRequest().getHeader(DeadlineHeader.NAME);
+      headers.add(header == null ? "none" : header);
+      final Deadline deadline = Deadline.current();
+      remaining.add(deadline == null ? -1 : deadline.remaining(TimeUnit.MILLISECONDS));
+      return ctx.invokeAsync();
+    }
+  }
+}
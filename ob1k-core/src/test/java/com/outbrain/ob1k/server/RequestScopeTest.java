@@ -0,0 +1,181 @@
+package com.outbrain.ob1k.server;
+
+import com.outbrain.ob1k.client.ClientBuilder;
+import com.outbrain.ob1k.client.Clients;
+import com.outbrain.ob1k.client.targets.SimpleTargetProvider;
+import com.outbrain.ob1k.common.filters.AsyncFilter;
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import com.outbrain.ob1k.concurrent.handlers.SuccessHandler;
+import com.outbrain.ob1k.server.builder.ConfigureBuilder;
+import com.outbrain.ob1k.server.builder.ConfigureBuilder.ConfigureBuilderSection;
+import com.outbrain.ob1k.server.builder.ServerBuilder;
+import com.outbrain.ob1k.server.builder.ServiceRegisterBuilder;
+import com.outbrain.ob1k.server.builder.ServiceRegisterBuilder.ServiceRegisterBuilderSection;
+import com.outbrain.ob1k.server.ctx.AsyncServerRequestContext;
+import com.outbrain.ob1k.server.services.SimpleTestService;
+import com.outbrain.ob1k.server.services.SimpleTestServiceImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the futures forked in the scope of a request don't outlive it.
+ */
+public class RequestScopeTest {
+
+  private static Server buildServer(final ScopeTrackingFilter filter) {
+    return ServerBuilder.newBuilder().
+            contextPath("/test").
+            configure(new ConfigureBuilderSection() {
+              @Override
+              public void apply(final ConfigureBuilder builder) {
+                builder.useRandomPort();
+              }
+            }).
+            service(new ServiceRegisterBuilderSection() {
+              @Override
+              public void apply(final ServiceRegisterBuilder builder) {
+                builder.register(new SimpleTestServiceImpl(), "/simple").withFilters(filter);
+              }
+            }).build();
+  }
+
+  @Test
+  public void testScopeIsClosedOnceTheResponseIsDone() throws Exception {
+    final ScopeTrackingFilter filter = new ScopeTrackingFilter();
+    final Server server = buildServer(filter);
+    final int port = server.start().getPort();
+    final SimpleTestService client = new ClientBuilder<>(SimpleTestService.class).
+            setTargetProvider(new SimpleTargetProvider("http://localhost:" + port + "/test/simple")).
+            build();
+    try {
+      Assert.assertNotNull(client.nextRandom().get());
+      assertCancelled(filter.tracked.poll(5, TimeUnit.SECONDS));
+    } finally {
+      Clients.close(client);
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testScopeIsCancelledWhenTheClientGoesAway() throws Exception {
+    final ScopeTrackingFilter filter = new ScopeTrackingFilter();
+    final Server server = buildServer(filter);
+    try {
+      final ComposableFuture<String> tracked;
+      try (final Socket socket = new Socket("localhost", server.start().getPort())) {
+        final OutputStream out = socket.getOutputStream();
+        out.write("GET /test/simple/waitForever HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+
+        tracked = filter.tracked.poll(5, TimeUnit.SECONDS);
+      }
+
+      assertCancelled(tracked);
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testSharedServiceFutureOutlivesTheRequest() throws Exception {
+    final ComposablePromise<Object> shared = ComposableFutures.newPromise();
+    // another caller waits for the shared future as well.
+    final ComposableFuture<Object> other = shared.future().continueOnSuccess(new SuccessHandler<Object, Object>() {
+      @Override
+      public Object handle(final Object result) {
+        return result;
+      }
+    });
+    final ScopeTrackingFilter filter = new ScopeTrackingFilter(shared.future());
+    final Server server = buildServer(filter);
+    try {
+      final ComposableFuture<String> tracked;
+      try (final Socket socket = new Socket("localhost", server.start().getPort())) {
+        final OutputStream out = socket.getOutputStream();
+        out.write("GET /test/simple/nextRandom HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+
+        tracked = filter.tracked.poll(5, TimeUnit.SECONDS);
+      }
+
+      // the request is gone, but the future it shared with others is still theirs to wait for.
+      assertCancelled(tracked);
+      shared.set(1);
+      Assert.assertEquals(1, other.get(5, TimeUnit.SECONDS));
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testServiceFutureNobodyElseWaitsForIsCancelled() throws Exception {
+    final ComposablePromise<Object> shared = ComposableFutures.newPromise();
+    final ScopeTrackingFilter filter = new ScopeTrackingFilter(shared.future());
+    final Server server = buildServer(filter);
+    try {
+      try (final Socket socket = new Socket("localhost", server.start().getPort())) {
+        final OutputStream out = socket.getOutputStream();
+        out.write("GET /test/simple/nextRandom HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+
+        Assert.assertNotNull(filter.tracked.poll(5, TimeUnit.SECONDS));
+      }
+
+      // the request was the only one waiting for the future of the service, letting go of it cancels it.
+      try {
+        shared.future().get(5, TimeUnit.SECONDS);
+        Assert.fail("should have been cancelled");
+      } catch (final ExecutionException e) {
+        Assert.assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof CancellationException);
+      }
+    } finally {
+      server.stop();
+    }
+  }
+
+  private static void assertCancelled(final ComposableFuture<String> tracked) throws Exception {
+    Assert.assertNotNull(tracked);
+    try {
+      tracked.get(5, TimeUnit.SECONDS);
+      Assert.fail("should have been cancelled");
+    } catch (final ExecutionException e) {
+      Assert.assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof CancellationException);
+    }
+  }
+
+  /**
+   * forks a future that never completes on its own in the scope of every request.
+   */
+  private static class ScopeTrackingFilter implements AsyncFilter<Object, AsyncServerRequestContext> {
+    private final BlockingQueue<ComposableFuture<String>> tracked = new LinkedBlockingQueue<>();
+    private final ComposableFuture<Object> shared;
+
+    private ScopeTrackingFilter() {
+      this(null);
+    }
+
+    /**
+     * @param shared a future handed to every request instead of calling the service, as a cache would.
+     */
+    private ScopeTrackingFilter(final ComposableFuture<Object> shared) {
+      this.shared = shared;
+    }
+
+    @Override
+    public ComposableFuture<Object> handleAsync(final AsyncServerRequestContext ctx) {
+      tracked.add(ctx.getScope().track(ComposableFutures.<String>newPromise().future()));
+      return shared == null ? ctx.invokeAsync() : shared;
+    }
+  }
+}
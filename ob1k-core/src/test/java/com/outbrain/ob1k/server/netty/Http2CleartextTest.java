@@ -0,0 +1,196 @@
+package com.outbrain.ob1k.server.netty;
+
+import com.outbrain.ob1k.server.Server;
+import com.outbrain.ob1k.server.builder.ConfigureBuilder;
+import com.outbrain.ob1k.server.builder.ConfigureBuilder.ConfigureBuilderSection;
+import com.outbrain.ob1k.server.builder.ResourceMappingBuilder;
+import com.outbrain.ob1k.server.builder.ResourceMappingBuilder.ResourceMappingBuilderSection;
+import com.outbrain.ob1k.server.builder.ServerBuilder;
+import com.outbrain.ob1k.server.builder.ServiceRegisterBuilder;
+import com.outbrain.ob1k.server.builder.ServiceRegisterBuilder.ServiceRegisterBuilderSection;
+import com.outbrain.ob1k.server.services.SimpleTestServiceImpl;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpClientUpgradeHandler;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.Http2ClientUpgradeCodec;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * serves requests over HTTP/2 cleartext connections, both with prior knowledge and upgraded from HTTP/1.1.
+ */
+public class Http2CleartextTest {
+
+  private Server server;
+  private int port;
+  private EventLoopGroup group;
+  private final BlockingQueue<FullHttpResponse> responses = new LinkedBlockingQueue<>();
+
+  // collects the responses of the streams the client opens.
+  private final ChannelInitializer<Channel> streamInitializer = new ChannelInitializer<Channel>() {
+    @Override
+    protected void initChannel(final Channel ch) throws Exception {
+      ch.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(false), new HttpObjectAggregator(1024 * 1024),
+          new SimpleChannelInboundHandler<FullHttpResponse>() {
+            @Override
+            protected void channelRead0(final ChannelHandlerContext ctx, final FullHttpResponse response) {
+              responses.add(response.retain());
+            }
+          });
+    }
+  };
+
+  @Before
+  public void setup() throws Exception {
+    server = ServerBuilder.newBuilder().
+            contextPath("/test").
+            configure(new ConfigureBuilderSection() {
+              @Override
+              public void apply(final ConfigureBuilder builder) {
+                builder.useRandomPort();
+              }
+            }).
+            service(new ServiceRegisterBuilderSection() {
+              @Override
+              public void apply(final ServiceRegisterBuilder builder) {
+                builder.register(new SimpleTestServiceImpl(), "/simple");
+              }
+            }).
+            resource(new ResourceMappingBuilderSection() {
+              @Override
+              public void apply(final ResourceMappingBuilder builder) {
+                builder.staticMapping("/log4j.xml", "/log4j.xml");
+              }
+            }).build();
+    port = server.start().getPort();
+    group = new NioEventLoopGroup(1);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    group.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    server.stop();
+  }
+
+  @Test
+  public void testPriorKnowledge() throws Exception {
+    final Channel channel = connectWithPriorKnowledge();
+    try {
+      // several streams share the connection.
+      for (int i = 0; i < 3; i++) {
+        openStream(channel).writeAndFlush(newRequest("/test/simple/nextRandom"));
+      }
+
+      for (int i = 0; i < 3; i++) {
+        assertServed(responses.poll(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      channel.close().syncUninterruptibly();
+    }
+  }
+
+  @Test
+  public void testStaticFileOverStream() throws Exception {
+    final Channel channel = connectWithPriorKnowledge();
+    try {
+      openStream(channel).writeAndFlush(newRequest("/test/log4j.xml"));
+      final FullHttpResponse response = responses.poll(5, TimeUnit.SECONDS);
+      Assert.assertNotNull("no response", response);
+      try {
+        Assert.assertEquals(HttpResponseStatus.OK, response.getStatus());
+        Assert.assertTrue(response.content().toString(CharsetUtil.UTF_8).contains("log4j:configuration"));
+      } finally {
+        response.release();
+      }
+    } finally {
+      channel.close().syncUninterruptibly();
+    }
+  }
+
+  @Test
+  public void testUpgrade() throws Exception {
+    final Channel channel = connect(new ChannelInitializer<Channel>() {
+      @Override
+      protected void initChannel(final Channel ch) throws Exception {
+        // typed as a connection handler, the upgrade adds both the codec and the multiplexer behind it.
+        // given the frame codec type, the upgrade would add the multiplexer alone.
+        final Http2ConnectionHandler frameCodec = Http2FrameCodecBuilder.forClient().build();
+        final HttpClientCodec sourceCodec = new HttpClientCodec();
+        ch.pipeline().addLast(sourceCodec, new HttpClientUpgradeHandler(sourceCodec,
+            new Http2ClientUpgradeCodec(frameCodec, new Http2MultiplexHandler(streamInitializer, streamInitializer)),
+            1024 * 1024));
+      }
+    });
+
+    try {
+      // the response to the upgrade request comes back on the first stream.
+      channel.writeAndFlush(newRequest("/test/simple/nextRandom"));
+      assertServed(responses.poll(5, TimeUnit.SECONDS));
+    } finally {
+      channel.close().syncUninterruptibly();
+    }
+  }
+
+  private Channel connect(final ChannelInitializer<Channel> initializer) {
+    return new Bootstrap().group(group).channel(NioSocketChannel.class).handler(initializer).
+        connect("localhost", port).syncUninterruptibly().channel();
+  }
+
+  private Channel connectWithPriorKnowledge() {
+    return connect(new ChannelInitializer<Channel>() {
+      @Override
+      protected void initChannel(final Channel ch) throws Exception {
+        ch.pipeline().addLast(Http2FrameCodecBuilder.forClient().build(),
+            new Http2MultiplexHandler(streamInitializer));
+      }
+    });
+  }
+
+  private Http2StreamChannel openStream(final Channel channel) {
+    return new Http2StreamChannelBootstrap(channel).handler(streamInitializer).open().syncUninterruptibly().getNow();
+  }
+
+  private FullHttpRequest newRequest(final String uri) {
+    final FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+    request.headers().set(HttpHeaders.Names.HOST, "localhost:" + port);
+    return request;
+  }
+
+  private static void assertServed(final FullHttpResponse response) {
+    Assert.assertNotNull("no response", response);
+    try {
+      Assert.assertEquals(HttpResponseStatus.OK, response.getStatus());
+      Assert.assertFalse(response.content().toString(CharsetUtil.UTF_8).isEmpty());
+    } finally {
+      response.release();
+    }
+  }
+}
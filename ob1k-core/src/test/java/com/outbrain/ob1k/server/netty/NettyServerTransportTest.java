@@ -0,0 +1,87 @@
+package com.outbrain.ob1k.server.netty;
+
+import com.outbrain.ob1k.client.ClientBuilder;
+import com.outbrain.ob1k.client.Clients;
+import com.outbrain.ob1k.client.targets.SimpleTargetProvider;
+import com.outbrain.ob1k.server.Server;
+import com.outbrain.ob1k.server.builder.ConfigureBuilder;
+import com.outbrain.ob1k.server.builder.ConfigureBuilder.ConfigureBuilderSection;
+import com.outbrain.ob1k.server.builder.ServerBuilder;
+import com.outbrain.ob1k.server.builder.ServiceRegisterBuilder;
+import com.outbrain.ob1k.server.builder.ServiceRegisterBuilder.ServiceRegisterBuilderSection;
+import com.outbrain.ob1k.server.services.SimpleTestService;
+import com.outbrain.ob1k.server.services.SimpleTestServiceImpl;
+import io.netty.channel.MultithreadEventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * starts the server on the transports and event loop topologies it can be configured with.
+ */
+public class NettyServerTransportTest {
+
+  private static NettyServer buildServer(final boolean nativeTransport, final int acceptors, final int workers) {
+    return (NettyServer) ServerBuilder.newBuilder().
+            contextPath("/test").
+            configure(new ConfigureBuilderSection() {
+              @Override
+              public void apply(final ConfigureBuilder builder) {
+                builder.useRandomPort().useNativeTransport(nativeTransport).configureEventLoops(acceptors, workers);
+              }
+            }).
+            service(new ServiceRegisterBuilderSection() {
+              @Override
+              public void apply(final ServiceRegisterBuilder builder) {
+                builder.register(new SimpleTestServiceImpl(), "/simple");
+              }
+            }).build();
+  }
+
+  @Test
+  public void testNioWithConfiguredEventLoops() throws Exception {
+    final NettyServer server = buildServer(false, 1, 3);
+    try {
+      assertServes(server);
+      Assert.assertTrue(server.getBossGroup() instanceof NioEventLoopGroup);
+      Assert.assertTrue(server.getWorkerGroup() instanceof NioEventLoopGroup);
+      Assert.assertEquals(1, ((MultithreadEventLoopGroup) server.getBossGroup()).executorCount());
+      Assert.assertEquals(3, ((MultithreadEventLoopGroup) server.getWorkerGroup()).executorCount());
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testNativeTransportOrNioFallback() throws Exception {
+    final NettyServer server = buildServer(true, 2, 2);
+    try {
+      assertServes(server);
+      if (Epoll.isAvailable()) {
+        Assert.assertTrue(server.getWorkerGroup() instanceof EpollEventLoopGroup);
+        Assert.assertEquals(2, ((MultithreadEventLoopGroup) server.getBossGroup()).executorCount());
+      } else {
+        // without epoll a single acceptor thread accepts the single server socket.
+        Assert.assertTrue(server.getWorkerGroup() instanceof NioEventLoopGroup);
+        Assert.assertEquals(1, ((MultithreadEventLoopGroup) server.getBossGroup()).executorCount());
+      }
+      Assert.assertEquals(2, ((MultithreadEventLoopGroup) server.getWorkerGroup()).executorCount());
+    } finally {
+      server.stop();
+    }
+  }
+
+  private static void assertServes(final Server server) throws Exception {
+    final int port = server.start().getPort();
+    final SimpleTestService client = new ClientBuilder<>(SimpleTestService.class).
+            setTargetProvider(new SimpleTargetProvider("http://localhost:" + port + "/test/simple")).
+            build();
+    try {
+      Assert.assertNotNull(client.nextRandom().get());
+    } finally {
+      Clients.close(client);
+    }
+  }
+}
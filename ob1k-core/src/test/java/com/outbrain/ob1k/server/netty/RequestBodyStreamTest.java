@@ -0,0 +1,140 @@
+package com.outbrain.ob1k.server.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.Before;
+import org.junit.Test;
+import rx.Subscriber;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RequestBodyStreamTest {
+
+  private EmbeddedChannel channel;
+  private RequestBodyStream stream;
+  private RecordingSubscriber subscriber;
+
+  @Before
+  public void setup() {
+    channel = new EmbeddedChannel();
+    stream = new RequestBodyStream(channel);
+    subscriber = new RecordingSubscriber();
+  }
+
+  @Test
+  public void testChannelReadsOnlyWhileTheSubscriberAsksForMore() {
+    stream.toObservable().subscribe(subscriber);
+    subscriber.pull(1);
+    assertTrue(channel.config().isAutoRead());
+
+    final ByteBuf first = chunk("first");
+    final ByteBuf second = chunk("second");
+    stream.onContent(first);
+    stream.onContent(second);
+
+    // one chunk was asked for, the second waits and the channel stops reading.
+    assertEquals(1, subscriber.chunks.size());
+    assertFalse(channel.config().isAutoRead());
+
+    subscriber.pull(1);
+    assertEquals(2, subscriber.chunks.size());
+    assertEquals("second", subscriber.chunks.get(1));
+    assertFalse(channel.config().isAutoRead());
+
+    // the chunks are released once delivered, only the reference of the caller is left.
+    assertEquals(1, first.refCnt());
+    assertEquals(1, second.refCnt());
+
+    stream.onEnd();
+    assertTrue(subscriber.completed);
+    assertTrue(channel.config().isAutoRead());
+  }
+
+  @Test
+  public void testDiscardReleasesThePendingChunks() {
+    final ByteBuf pending = chunk("pending");
+    stream.onContent(pending);
+    assertEquals(2, pending.refCnt());
+
+    stream.discard();
+    assertEquals(1, pending.refCnt());
+    assertTrue(channel.config().isAutoRead());
+
+    // the body is gone, later chunks are ignored and it can't be consumed anymore.
+    final ByteBuf late = chunk("late");
+    stream.onContent(late);
+    assertEquals(1, late.refCnt());
+
+    stream.toObservable().subscribe(subscriber);
+    assertTrue(subscriber.error instanceof IllegalStateException);
+  }
+
+  @Test
+  public void testUnsubscribingDiscardsTheBody() {
+    stream.toObservable().subscribe(subscriber);
+    subscriber.pull(1);
+    stream.onContent(chunk("first"));
+    final ByteBuf pending = chunk("pending");
+    stream.onContent(pending);
+
+    subscriber.unsubscribe();
+    assertEquals(1, pending.refCnt());
+    assertTrue(channel.config().isAutoRead());
+  }
+
+  @Test
+  public void testConsumedOnceAndFailsWithTheConnection() {
+    stream.toObservable().subscribe(subscriber);
+    final RecordingSubscriber second = new RecordingSubscriber();
+    stream.toObservable().subscribe(second);
+    assertTrue(second.error instanceof IllegalStateException);
+
+    final ByteBuf pending = chunk("pending");
+    stream.onContent(pending);
+    stream.onError(new ClosedChannelException());
+    assertEquals(1, pending.refCnt());
+    assertTrue(subscriber.error instanceof ClosedChannelException);
+  }
+
+  private static ByteBuf chunk(final String content) {
+    return Unpooled.copiedBuffer(content, CharsetUtil.UTF_8);
+  }
+
+  private static class RecordingSubscriber extends Subscriber<ByteBuf> {
+    private final List<String> chunks = new ArrayList<>();
+    private boolean completed;
+    private Throwable error;
+
+    @Override
+    public void onStart() {
+      request(0);
+    }
+
+    @Override
+    public void onNext(final ByteBuf chunk) {
+      chunks.add(chunk.toString(CharsetUtil.UTF_8));
+    }
+
+    @Override
+    public void onCompleted() {
+      completed = true;
+    }
+
+    @Override
+    public void onError(final Throwable e) {
+      error = e;
+    }
+
+    private void pull(final long n) {
+      request(n);
+    }
+  }
+}
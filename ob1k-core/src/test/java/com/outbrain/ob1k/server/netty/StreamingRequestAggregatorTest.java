@@ -0,0 +1,84 @@
+package com.outbrain.ob1k.server.netty;
+
+import com.outbrain.ob1k.HttpRequestMethodType;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StreamingRequestAggregatorTest {
+
+  private EmbeddedChannel channel;
+
+  @Before
+  public void setup() {
+    final ServiceDispatcher dispatcher = mock(ServiceDispatcher.class);
+    when(dispatcher.isBodyStreamed("/app/upload", HttpRequestMethodType.POST)).thenReturn(true);
+    channel = new EmbeddedChannel(new StreamingRequestAggregator(1024, dispatcher));
+  }
+
+  @Test
+  public void testStreamedRequestsPassThrough() {
+    writeRequest("/app/upload?id=1");
+
+    final Object request = channel.readInbound();
+    assertTrue(request instanceof HttpRequest);
+    assertFalse(request instanceof FullHttpRequest);
+
+    final Object content = channel.readInbound();
+    assertTrue(content instanceof HttpContent);
+    assertFalse(content instanceof LastHttpContent);
+    assertEquals("body", ((HttpContent) content).content().toString(CharsetUtil.UTF_8));
+    ReferenceCountUtil.release(content);
+
+    final Object last = channel.readInbound();
+    assertTrue(last instanceof LastHttpContent);
+    ReferenceCountUtil.release(last);
+    assertNull(channel.readInbound());
+  }
+
+  @Test
+  public void testOtherRequestsAreAggregated() {
+    writeRequest("/app/upload");
+    drainInbound();
+
+    // the next request on the connection goes to another endpoint.
+    writeRequest("/app/other");
+    final Object request = channel.readInbound();
+    assertTrue(request instanceof FullHttpRequest);
+    assertEquals("body", ((FullHttpRequest) request).content().toString(CharsetUtil.UTF_8));
+    ReferenceCountUtil.release(request);
+    assertNull(channel.readInbound());
+  }
+
+  private void writeRequest(final String uri) {
+    channel.writeInbound(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, uri));
+    channel.writeInbound(new DefaultHttpContent(Unpooled.copiedBuffer("body", CharsetUtil.UTF_8)));
+    channel.writeInbound(new DefaultLastHttpContent());
+  }
+
+  private void drainInbound() {
+    Object message;
+    while ((message = channel.readInbound()) != null) {
+      ReferenceCountUtil.release(message);
+    }
+  }
+}
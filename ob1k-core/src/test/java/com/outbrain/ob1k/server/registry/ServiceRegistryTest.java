@@ -1,15 +1,22 @@
 package com.outbrain.ob1k.server.registry;
 
+import com.outbrain.ob1k.Request;
 import com.outbrain.ob1k.Service;
 import com.outbrain.ob1k.common.marshalling.RequestMarshallerRegistry;
 import com.outbrain.ob1k.concurrent.ComposableFuture;
+import io.netty.buffer.ByteBuf;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import rx.Observable;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ServiceRegistryTest {
@@ -56,6 +63,21 @@ public class ServiceRegistryTest {
     verify(marshallerRegistry, never()).registerTypes(String.class);
   }
 
+  @Test
+  public void shouldRegisterOnlyTheReturnTypeOfBodyStreamingMethods() {
+    registry.register("name", new MyBodyStreamingService(), false);
+
+    // the request and the body are never unmarshalled.
+    verify(marshallerRegistry, atLeastOnce()).registerTypes(Long.class);
+    verifyNoMoreInteractions(marshallerRegistry);
+    assertTrue(registry.hasBodyStreamingEndpoints());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void shouldNotStreamTheBodyIntoObservablesOfOtherTypes() {
+    registry.register("name", new MyServiceWithObservableParam(), false);
+  }
+
 
   public static class MyService implements Service {
 
@@ -86,6 +108,18 @@ public class ServiceRegistryTest {
     }
   }
 
+  public static class MyBodyStreamingService implements Service {
+    public ComposableFuture<Long> upload(Request request, Observable<ByteBuf> body) {
+      return null;
+    }
+  }
+
+  public static class MyServiceWithObservableParam implements Service {
+    public ComposableFuture<Long> upload(Request request, Observable<String> lines) {
+      return null;
+    }
+  }
+
   public static class MyServiceWithStaticMethod implements Service {
 
     public static ComposableFuture<String> returnString() {
@@ -0,0 +1,15 @@
+package com.outbrain.ob1k.server.services;
+
+import com.outbrain.ob1k.Request;
+import com.outbrain.ob1k.Service;
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import io.netty.buffer.ByteBuf;
+import rx.Observable;
+
+/**
+ * endpoints that read the request body while it arrives.
+ */
+public interface BodyStreamingTestService extends Service {
+  ComposableFuture<Long> countSlowly(Request request, Observable<ByteBuf> body);
+  ComposableFuture<Integer> firstChunk(Request request, Observable<ByteBuf> body);
+}
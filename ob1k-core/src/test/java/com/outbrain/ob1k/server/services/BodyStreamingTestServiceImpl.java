@@ -0,0 +1,83 @@
+package com.outbrain.ob1k.server.services;
+
+import com.outbrain.ob1k.Request;
+import com.outbrain.ob1k.concurrent.ComposableFuture;
+import com.outbrain.ob1k.concurrent.ComposableFutures;
+import com.outbrain.ob1k.concurrent.eager.ComposablePromise;
+import io.netty.buffer.ByteBuf;
+import rx.Observable;
+import rx.Subscriber;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a consumer that pulls the body one chunk at a time with a delay, and one that is done after the first chunk.
+ */
+public class BodyStreamingTestServiceImpl implements BodyStreamingTestService {
+
+  @Override
+  public ComposableFuture<Long> countSlowly(final Request request, final Observable<ByteBuf> body) {
+    final ComposablePromise<Long> result = ComposableFutures.newPromise();
+    body.subscribe(new Subscriber<ByteBuf>() {
+      private long count;
+
+      @Override
+      public void onStart() {
+        request(1);
+      }
+
+      @Override
+      public void onNext(final ByteBuf chunk) {
+        count += chunk.readableBytes();
+        ComposableFutures.getScheduler().schedule(new Runnable() {
+          @Override
+          public void run() {
+            request(1);
+          }
+        }, 1, TimeUnit.MILLISECONDS);
+      }
+
+      @Override
+      public void onCompleted() {
+        result.set(count);
+      }
+
+      @Override
+      public void onError(final Throwable e) {
+        result.setException(e);
+      }
+    });
+
+    return result.future();
+  }
+
+  @Override
+  public ComposableFuture<Integer> firstChunk(final Request request, final Observable<ByteBuf> body) {
+    final ComposablePromise<Integer> result = ComposableFutures.newPromise();
+    body.subscribe(new Subscriber<ByteBuf>() {
+      @Override
+      public void onStart() {
+        request(1);
+      }
+
+      @Override
+      public void onNext(final ByteBuf chunk) {
+        // the rest of the body is not needed.
+        unsubscribe();
+        result.set(chunk.readableBytes());
+      }
+
+      @Override
+      public void onCompleted() {
+        result.set(0);
+      }
+
+      @Override
+      public void onError(final Throwable e) {
+        result.setException(e);
+      }
+    });
+
+    return result.future();
+  }
+}
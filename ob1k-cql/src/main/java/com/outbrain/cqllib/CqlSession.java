@@ -27,7 +27,9 @@ import rx.exceptions.Exceptions;
 import java.net.InetSocketAddress;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 import static com.outbrain.ob1k.concurrent.ComposableFutures.fromTry;
 
@@ -38,6 +40,7 @@ public class CqlSession {
   private final Session session;
   private final RetryPolicy retryPolicy;
   private final MetricFactory metricFactory;
+  private final Executor listenerExecutor;
 
   private static final Logger logger = LoggerFactory.getLogger(CqlSession.class);
 
@@ -45,6 +48,18 @@ public class CqlSession {
                     final RetryPolicy retryPolicy, final QueryOptions queryOptions,
                     final LoadBalancingPolicy loadBalancingPolicy, final int maxConnectionsPerHost,
                     final MetricFactory metricFactory) {
+    this(nodes, port, keyspace, socketOptions, retryPolicy, queryOptions, loadBalancingPolicy, maxConnectionsPerHost,
+        metricFactory, ComposableFutures.getExecutor());
+  }
+
+  /**
+   * @param listenerExecutor runs the completion of the driver's futures. the completion itself is cheap, so
+   *                         a direct executor keeps it on the driver's IO thread and saves the handoff.
+   */
+  public CqlSession(final String nodes, final int port, final String keyspace, final SocketOptions socketOptions,
+                    final RetryPolicy retryPolicy, final QueryOptions queryOptions,
+                    final LoadBalancingPolicy loadBalancingPolicy, final int maxConnectionsPerHost,
+                    final MetricFactory metricFactory, final Executor listenerExecutor) {
 
     // this is temp. to reuse current hosts properties:
     final Iterable<String> nodesIter = Splitter.on(",").split(nodes);
@@ -75,6 +90,7 @@ public class CqlSession {
     this.session = cluster.connect(keyspace);
     this.retryPolicy = Preconditions.checkNotNull(retryPolicy);
     this.metricFactory = Preconditions.checkNotNull(metricFactory);
+    this.listenerExecutor = Preconditions.checkNotNull(listenerExecutor);
   }
 
   public CqlStatementFactory newFactory(final String... tags) {
@@ -96,9 +112,9 @@ public class CqlSession {
   private ComposableFuture<ResultSet> executeImpl(final Statement statement, final List<TagMetrics> tagMetrics) {
     statement.setRetryPolicy(new RetryPolicyWithMetrics(retryPolicy, tagMetrics));
     final Iterable<Timer.Context> timerContexts = measureOnStart(tagMetrics);
-    return ComposableFutures.build(new Producer<ResultSet>() {
+    return ComposableFutures.buildCancellable(new CancellableProducer<ResultSet>() {
       @Override
-      public void produce(final Consumer<ResultSet> consumer) {
+      public CancellationToken produce(final Consumer<ResultSet> consumer) {
         final ResultSetFuture resultSetFuture = session.executeAsync(statement);
 
         resultSetFuture.addListener(new Runnable() {
@@ -122,9 +138,19 @@ public class CqlSession {
               }
 
               consumer.consume(Try.<ResultSet>fromError(e.getCause() != null ? e.getCause() : e));
+            } catch (final CancellationException e) {
+              consumer.consume(Try.<ResultSet>fromError(e));
             }
           }
-        }, ComposableFutures.getExecutor());
+        }, listenerExecutor);
+
+        // cancelling the driver's future aborts the request and releases its stream on the connection.
+        return new CancellationToken() {
+          @Override
+          public boolean cancel(final boolean mayInterrupt) {
+            return resultSetFuture.cancel(mayInterrupt);
+          }
+        };
       }
     }).continueWith(new FutureResultHandler<ResultSet, ResultSet>() {
       @Override
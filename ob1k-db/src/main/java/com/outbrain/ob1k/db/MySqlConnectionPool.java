@@ -15,8 +15,10 @@ import org.slf4j.LoggerFactory;
 import scala.collection.JavaConversions;
 import scala.collection.mutable.Buffer;
 import scala.concurrent.Future;
+import scala.runtime.AbstractFunction1;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.outbrain.ob1k.concurrent.ComposableFutures.fromError;
 import static com.outbrain.ob1k.concurrent.ComposableFutures.fromValue;
@@ -29,6 +31,8 @@ import static com.outbrain.ob1k.concurrent.ComposableFutures.fromValue;
 class MySqlConnectionPool implements DbConnectionPool {
   private static final Logger logger = LoggerFactory.getLogger(MySqlConnectionPool.class);
 
+  private static final Object CANCELLED = new Object();
+
   private final ConnectionPool<MySQLConnection> _pool;
 
   MySqlConnectionPool(final MySQLConnectionFactory connFactory, final PoolConfiguration poolConfiguration, final MetricFactory metricFactory) {
@@ -84,17 +88,39 @@ class MySqlConnectionPool implements DbConnectionPool {
   }
 
   private ComposableFuture<MySqlAsyncConnection> take() {
-    final ComposableFuture<MySQLConnection> connFuture = ScalaFutureHelper.from(new ScalaFutureHelper.FutureProvider<MySQLConnection>() {
+    return ComposableFutures.buildCancellable(new CancellableProducer<MySqlAsyncConnection>() {
       @Override
-      public Future<MySQLConnection> provide() {
-        return _pool.take();
-      }
-    });
+      public CancellationToken produce(final Consumer<MySqlAsyncConnection> consumer) {
+        // either the checked out connection or CANCELLED, whichever comes first.
+        final AtomicReference<Object> checkout = new AtomicReference<>();
+        _pool.take().onComplete(new AbstractFunction1<scala.util.Try<MySQLConnection>, Void>() {
+          @Override
+          public Void apply(final scala.util.Try<MySQLConnection> res) {
+            if (res.isFailure()) {
+              consumer.consume(Try.<MySqlAsyncConnection>fromError(res.failed().get()));
+            } else if (checkout.compareAndSet(null, res.get())) {
+              consumer.consume(Try.fromValue(new MySqlAsyncConnection(res.get())));
+            } else {
+              // nobody is waiting for the connection anymore.
+              _pool.giveBack(res.get());
+            }
+
+            return null;
+          }
+        }, ScalaFutureHelper.ctx);
 
-    return connFuture.continueOnSuccess(new SuccessHandler<MySQLConnection, MySqlAsyncConnection>() {
-      @Override
-      public MySqlAsyncConnection handle(final MySQLConnection result) {
-        return new MySqlAsyncConnection(result);
+        return new CancellationToken() {
+          @Override
+          public boolean cancel(final boolean mayInterrupt) {
+            // the token is only cancelled if the connection was not handed over, return it to the pool if it arrived.
+            final Object previous = checkout.getAndSet(CANCELLED);
+            if (previous instanceof MySQLConnection) {
+              _pool.giveBack((MySQLConnection) previous);
+            }
+
+            return previous != CANCELLED;
+          }
+        };
       }
     });
   }
@@ -4,7 +4,9 @@ import com.ning.http.client.ListenableFuture;
 import com.outbrain.ob1k.concurrent.ComposableFuture;
 import com.outbrain.ob1k.concurrent.ComposableFutures;
 import com.outbrain.ob1k.concurrent.Try;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 public class ComposableFutureAdapter {
 
@@ -14,8 +16,12 @@ public class ComposableFutureAdapter {
   }
 
   public static <T> ComposableFuture<T> fromListenableFuture(final Provider<T> provider) {
+    return fromListenableFuture(provider, ComposableFutures.getExecutor());
+  }
+
+  public static <T> ComposableFuture<T> fromListenableFuture(final Provider<T> provider, final Executor executor) {
 
-    return ComposableFutures.build(consumer -> {
+    return ComposableFutures.buildCancellable(consumer -> {
 
       final ListenableFuture<T> source = provider.provide();
       source.addListener(() -> {
@@ -27,8 +33,13 @@ public class ComposableFutureAdapter {
         } catch (final ExecutionException e) {
           final Throwable error = e.getCause() != null ? e.getCause() : e;
           consumer.consume(Try.<T>fromError(error));
+        } catch (final CancellationException e) {
+          consumer.consume(Try.<T>fromError(e));
         }
-      }, ComposableFutures.getExecutor());
+      }, executor);
+
+      // cancelling the request aborts it and closes its connection instead of waiting for the response.
+      return source::cancel;
     });
   }
 }
\ No newline at end of file
@@ -23,7 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import static io.netty.handler.codec.http.HttpHeaders.Names.WWW_AUTHENTICATE;
+import static io.netty.handler.codec.http.HttpHeaderNames.WWW_AUTHENTICATE;
 
 public class HttpBasicAuthenticationFilter implements AsyncFilter<Response, AsyncServerRequestContext> {
 
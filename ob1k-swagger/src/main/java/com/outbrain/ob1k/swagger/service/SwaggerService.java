@@ -28,7 +28,7 @@ import java.util.List;
 import java.util.Map;
 
 import static com.google.common.collect.Lists.asList;
-import static io.netty.handler.codec.http.HttpHeaders.Names.CONTENT_TYPE;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
 import static java.util.Collections.unmodifiableList;
 
 public class SwaggerService implements Service {